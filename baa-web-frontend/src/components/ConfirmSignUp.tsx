@@ -1,4 +1,4 @@
-import React, { useState } from "react";
+import React, { useEffect, useRef, useState } from "react";
 import {
     Box,
     Card,
@@ -13,13 +13,22 @@ export const ConfirmSignup: React.FC = () => {
     const [password, setPassword] = useState("");
     const [message, setMessage] = useState("");
 
+    // One key per form contents: double-clicks and retries reuse it, so the password is set once.
+    const idempotencyKey = useRef(crypto.randomUUID());
+    useEffect(() => {
+        idempotencyKey.current = crypto.randomUUID();
+    }, [username, password]);
+
     const handleConfirm = async (e: React.FormEvent) => {
         e.preventDefault();
 
         try {
             const response = await fetch(`${API_URL}/confirmSignup`, {
                 method: "POST",
-                headers: { "Content-Type": "application/json" },
+                headers: {
+                    "Content-Type": "application/json",
+                    "Idempotency-Key": idempotencyKey.current,
+                },
                 body: JSON.stringify({
                     action: "confirmSignup",
                     username,
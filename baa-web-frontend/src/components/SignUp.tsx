@@ -1,4 +1,4 @@
-import { useState } from "react";
+import { useEffect, useRef, useState } from "react";
 import {
     Box,
     Card,
@@ -22,6 +22,12 @@ export default function SignupPage() {
     const [message, setMessage] = useState("");
     const { accessToken, idToken, refreshToken } = useAuth();
 
+    // One key per form contents: double-clicks and retries reuse it, so the server creates the user once.
+    const idempotencyKey = useRef(crypto.randomUUID());
+    useEffect(() => {
+        idempotencyKey.current = crypto.randomUUID();
+    }, [username, email, phone_number, birthday, sex]);
+
     const handleSubmit = async (e: React.FormEvent) => {
         e.preventDefault();
         if (!accessToken || !idToken || !refreshToken) {
@@ -35,6 +41,7 @@ export default function SignupPage() {
                 headers: {
                     "Content-Type": "application/json",
                     Authorization: `Bearer ${accessToken}`,
+                    "Idempotency-Key": idempotencyKey.current,
                 },
                 body: JSON.stringify({
                     action: "signup",
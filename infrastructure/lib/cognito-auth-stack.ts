@@ -50,12 +50,16 @@ export class CognitoAuthStack extends cdk.Stack {
     new cdk.CfnOutput(this, 'ClientId', { value: this.userPoolClient.userPoolClientId });
 
     // --- Lambda Function ---
+    // `cdk deploy -c native=true` deploys the native executable built with `mvn -Pnative package`
+    const native = this.node.tryGetContext('native') === 'true';
     this.authLambda = new lambda.Function(this, 'AuthServiceLambda', {
-      runtime: lambda.Runtime.JAVA_21, // or JAVA_17 if using older runtime
-      handler: 'com.homieomie.authservice.AuthServiceMain::handleRequest',
+      runtime: native ? lambda.Runtime.PROVIDED_AL2023 : lambda.Runtime.JAVA_21, // the service is compiled for Java 21
+      handler: native ? 'bootstrap' : 'com.homieomie.authservice.AuthServiceMain::handleRequest',
       memorySize: 1024,
       timeout: cdk.Duration.seconds(15),
-      code: lambda.Code.fromAsset(path.join(__dirname, '../../services/auth-service/target/auth-service-1.0-SNAPSHOT.jar')),
+      code: lambda.Code.fromAsset(path.join(__dirname, native
+          ? '../../services/auth-service/target/function.zip'
+          : '../../services/auth-service/target/auth-service-1.0-SNAPSHOT.jar')),
       environment: {
           USER_POOL_ID: this.userPool.userPoolId,
           CLIENT_ID: this.userPoolClient.userPoolClientId,
@@ -72,7 +76,9 @@ export class CognitoAuthStack extends cdk.Stack {
           "cognito-idp:AdminCreateUser",
           "cognito-idp:AdminConfirmSignUp",
           "cognito-idp:AdminSetUserPassword",
-          "cognito-idp:InitiateAuth"
+          "cognito-idp:AdminListGroupsForUser",
+          "cognito-idp:InitiateAuth",
+          "cognito-idp:ListUsers"
       ],
       resources: [this.userPool.userPoolArn],
     }));
@@ -101,7 +107,7 @@ export class CognitoAuthStack extends cdk.Stack {
       signupResource.addCorsPreflight({
           allowOrigins: apigateway.Cors.ALL_ORIGINS,
           allowMethods: ['POST', 'OPTIONS'],
-          allowHeaders: ['Content-Type', 'Authorization'],
+          allowHeaders: ['Content-Type', 'Authorization', 'Idempotency-Key'],
       });
 
       // --- /confirmSignup resource ---
@@ -117,7 +123,7 @@ export class CognitoAuthStack extends cdk.Stack {
       confirmSignupResource.addCorsPreflight({
           allowOrigins: apigateway.Cors.ALL_ORIGINS,
           allowMethods: ['POST', 'OPTIONS'],
-          allowHeaders: ['Content-Type', 'Authorization'],
+          allowHeaders: ['Content-Type', 'Authorization', 'Idempotency-Key'],
       });
 
       new cdk.CfnOutput(this, 'ApiEndpoint', { value: this.api.url });
@@ -135,10 +141,35 @@ export class CognitoAuthStack extends cdk.Stack {
       loginResource.addCorsPreflight({
           allowOrigins: apigateway.Cors.ALL_ORIGINS,
           allowMethods: ['POST', 'OPTIONS'],
-          allowHeaders: ['Content-Type', 'Authorization'],
+          allowHeaders: ['Content-Type', 'Authorization', 'Idempotency-Key'],
       });
 
       new cdk.CfnOutput(this, 'LoginApiEndpoint', { value: this.api.url });
 
+      // --- /refresh, /listUsers, /searchUsers and /bulkSignup resources ---
+      for (const action of ['refresh', 'listUsers', 'searchUsers', 'bulkSignup']) {
+          const resource = this.api.root.addResource(action);
+
+          resource.addMethod(
+              'POST',
+              new apigateway.LambdaIntegration(this.authLambda, { proxy: true }),
+              { authorizationType: apigateway.AuthorizationType.NONE }
+          );
+
+          // Enable CORS
+          resource.addCorsPreflight({
+              allowOrigins: apigateway.Cors.ALL_ORIGINS,
+              allowMethods: ['POST', 'OPTIONS'],
+              allowHeaders: ['Content-Type', 'Authorization', 'Idempotency-Key'],
+          });
+      }
+
+      // --- Root resource: routed by the body's action, for older clients ---
+      this.api.root.addMethod(
+          'POST',
+          new apigateway.LambdaIntegration(this.authLambda, { proxy: true }),
+          { authorizationType: apigateway.AuthorizationType.NONE }
+      );
+
   }
 }
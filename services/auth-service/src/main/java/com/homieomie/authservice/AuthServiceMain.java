@@ -5,6 +5,13 @@ import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.metrics.Metrics;
+import com.homieomie.authservice.resilience.Deadline;
+import com.homieomie.authservice.startup.Bootstrap;
+import com.homieomie.authservice.startup.StartupTimings;
+import org.crac.Core;
+import org.crac.Resource;
 
 /**
  * Entry point for the {@code auth-service} AWS Lambda function.
@@ -14,16 +21,58 @@ import com.homieomie.authservice.controllers.AuthController;
  * {@link APIGatewayProxyResponseEvent} responses. Delegates request routing
  * to the {@link AuthController}.
  * </p>
+ * <p>
+ * The controller and its collaborators are built eagerly while the class is
+ * initialized, which happens during the Lambda init phase rather than on the
+ * first invocation. Unless {@code PRIME_ON_INIT} is {@code false}, the request
+ * paths are also primed at that point. Under SnapStart the class registers a
+ * CRaC {@link Resource} while it is initialized: it primes before the snapshot
+ * is taken and replaces the Cognito client after restore. Each phase is timed
+ * and logged.
+ * </p>
  */
 public class AuthServiceMain implements RequestHandler<APIGatewayProxyRequestEvent, APIGatewayProxyResponseEvent> {
 
+    /**
+     * Durations of the startup phases, logged once initialization completes.
+     */
+    private static final StartupTimings STARTUP = new StartupTimings();
+
+    /**
+     * Time kept back from the invocation's remaining time for writing the response.
+     */
+    private static final long RESPONSE_MARGIN_MILLIS = 500;
+
     /**
      * Controller responsible for routing and handling authentication-related requests.
      */
-    private final AuthController authController = new AuthController();
+    private static final AuthController AUTH_CONTROLLER = createController();
+
+    /**
+     * Whether each invocation's metrics are logged, from {@code METRICS_EMF}.
+     */
+    private static final boolean EMIT_METRICS = !"false".equalsIgnoreCase(System.getenv("METRICS_EMF"));
+
+    /**
+     * SnapStart checkpoint and restore hooks, held here as CRaC keeps only a
+     * weak reference to a registered resource.
+     */
+    private static final Resource SNAP_START_HOOKS = new SnapStartHooks();
+
+    static {
+        Core.getGlobalContext().register(SNAP_START_HOOKS);
+    }
 
     /**
      * Handles an incoming API Gateway request and delegates it to the {@link AuthController}.
+     * Cognito calls are given only the invocation's remaining time, less a
+     * margin for answering, so a slow Cognito yields a {@code 504} rather
+     * than a function timeout.
+     * The invocation's log events are then written to the function's log
+     * and, unless {@code METRICS_EMF} is {@code false}, the metrics it
+     * recorded as one CloudWatch Embedded Metric Format line. Both are
+     * written before the handler returns, as Lambda may freeze the
+     * environment as soon as it has.
      *
      * @param request the incoming request from API Gateway
      * @param context the AWS Lambda execution context
@@ -31,6 +80,55 @@ public class AuthServiceMain implements RequestHandler<APIGatewayProxyRequestEve
      */
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent request, Context context) {
-        return authController.routeRequest(request);
+        APIGatewayProxyResponseEvent response = context == null
+                ? AUTH_CONTROLLER.routeRequest(request)
+                : Deadline.within(context.getRemainingTimeInMillis() - RESPONSE_MARGIN_MILLIS,
+                        () -> AUTH_CONTROLLER.routeRequest(request));
+        EventLog.shared().flush(System.out);
+        if (EMIT_METRICS) {
+            Metrics.shared().flush(System.out);
+        }
+        return response;
+    }
+
+    /**
+     * Builds the controller through {@link Bootstrap} and logs the timings.
+     *
+     * @return the ready-to-use controller
+     */
+    private static AuthController createController() {
+        AuthController controller = Bootstrap.createController(STARTUP);
+        STARTUP.log("init");
+        return controller;
+    }
+
+    /**
+     * Primes the controller before a SnapStart snapshot and reconnects it after restore.
+     */
+    private static final class SnapStartHooks implements Resource {
+
+        /**
+         * Primes the request paths before SnapStart takes its snapshot.
+         *
+         * @param context the CRaC context
+         */
+        @Override
+        public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+            STARTUP.run("prime", AUTH_CONTROLLER::warmUp);
+            STARTUP.log("checkpoint");
+        }
+
+        /**
+         * Replaces the Cognito client, and closes the tenants' clients, after a
+         * snapshot restore so no connection opened before the snapshot is reused.
+         *
+         * @param context the CRaC context
+         */
+        @Override
+        public void afterRestore(org.crac.Context<? extends Resource> context) {
+            STARTUP.run("reconnect", AUTH_CONTROLLER.getCognitoService()::reconnect);
+            STARTUP.run("reconnectTenants", AUTH_CONTROLLER.getTenantRegistry()::reconnect);
+            STARTUP.log("restore");
+        }
     }
 }
@@ -0,0 +1,49 @@
+package com.homieomie.authservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.runtime.LambdaRuntimeLoop;
+import com.homieomie.authservice.startup.Bootstrap;
+import com.homieomie.authservice.startup.StartupTimings;
+import java.io.IOException;
+
+/**
+ * Entry point of the native executable run by a Lambda custom runtime
+ * ({@code provided.al2023}), where it is the {@code bootstrap} file.
+ * <p>
+ * The controller is built and primed exactly as for the managed Java
+ * runtime, then the {@link LambdaRuntimeLoop} serves invocations from the
+ * Runtime API named by {@code AWS_LAMBDA_RUNTIME_API}. A failure to start is
+ * reported to the Runtime API before the process exits. The same class runs
+ * on a JVM, which is how the native-image configuration is traced.
+ * </p>
+ */
+public final class NativeMain {
+
+    /**
+     * Not instantiable.
+     */
+    private NativeMain() {}
+
+    /**
+     * Starts serving invocations.
+     *
+     * @param args ignored
+     * @throws IOException if the Runtime API cannot be reached
+     */
+    public static void main(String[] args) throws IOException {
+        String runtimeApi = System.getenv("AWS_LAMBDA_RUNTIME_API");
+        StartupTimings startup = new StartupTimings();
+        ObjectMapper mapper = new ObjectMapper();
+        LambdaRuntimeLoop loop;
+        try {
+            AuthController controller = Bootstrap.createController(startup);
+            loop = new LambdaRuntimeLoop(runtimeApi, controller, mapper);
+        } catch (RuntimeException | Error e) {
+            LambdaRuntimeLoop.reportInitError(runtimeApi, e, mapper);
+            throw e;
+        }
+        startup.log("init");
+        loop.run();
+    }
+}
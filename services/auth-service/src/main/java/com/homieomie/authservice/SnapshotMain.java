@@ -0,0 +1,168 @@
+package com.homieomie.authservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.UserExporter;
+import com.homieomie.authservice.snapshot.SnapshotDiff;
+import com.homieomie.authservice.snapshot.SnapshotRow;
+import com.homieomie.authservice.snapshot.UserSnapshot;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command-line tool exporting the user pool to a snapshot file and querying
+ * snapshots locally, for analytics and audit jobs.
+ * <p>
+ * {@code export} lists the pool through Cognito with the credentials and
+ * {@code USER_POOL_ID} of the environment, the same as the service, so only
+ * principals allowed to call {@code ListUsers} can run it. The other commands
+ * read snapshot files only, printing users as JSON lines:
+ * </p>
+ * <ul>
+ *   <li>{@code export <file> [prefix,prefix...]} writes a snapshot, segmented by username prefix;</li>
+ *   <li>{@code info <file>} prints the row count, block count, creation time and columns;</li>
+ *   <li>{@code find <file> <username>} prints one user;</li>
+ *   <li>{@code query <file> <column> <prefix>} prints the users whose column starts with the prefix;</li>
+ *   <li>{@code count <file> <column> <prefix>} counts them, reading only that column;</li>
+ *   <li>{@code diff <before> <after>} prints {@code +}, {@code -} or {@code ~} and each
+ *       added, removed or changed username, then the totals.</li>
+ * </ul>
+ */
+public final class SnapshotMain {
+
+    /**
+     * Mapper printing users as JSON.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Not instantiable.
+     */
+    private SnapshotMain() {}
+
+    /**
+     * Runs one command.
+     *
+     * @param args the command and its arguments
+     * @throws IOException if a snapshot cannot be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        PrintStream out = System.out;
+        String command = args.length == 0 ? "" : args[0];
+        switch (command) {
+            case "export" -> {
+                requireArguments(args, 2, 3);
+                List<String> prefixes = args.length == 3 ? Arrays.asList(args[2].split(",")) : List.of();
+                CognitoService cognitoService = new CognitoService();
+                try {
+                    long start = System.nanoTime();
+                    long rows = UserExporter.fromEnvironment(cognitoService).export(Path.of(args[1]), prefixes);
+                    out.printf("Exported %d users to %s in %d ms%n", rows, args[1],
+                            (System.nanoTime() - start) / 1_000_000);
+                } finally {
+                    cognitoService.close();
+                }
+            }
+            case "info" -> {
+                requireArguments(args, 2, 2);
+                try (UserSnapshot snapshot = UserSnapshot.open(Path.of(args[1]))) {
+                    out.printf("Users:   %d%nBlocks:  %d%nCreated: %s%nColumns: %s%n", snapshot.rowCount(),
+                            snapshot.blockCount(), Instant.ofEpochMilli(snapshot.createdAtMillis()),
+                            String.join(", ", snapshot.columns()));
+                }
+            }
+            case "find" -> {
+                requireArguments(args, 3, 3);
+                try (UserSnapshot snapshot = UserSnapshot.open(Path.of(args[1]))) {
+                    SnapshotRow row = snapshot.find(args[2]);
+                    if (row == null) {
+                        System.err.println("No user " + args[2]);
+                        System.exit(1);
+                    }
+                    out.println(toJson(row));
+                }
+            }
+            case "query" -> {
+                requireArguments(args, 4, 4);
+                try (UserSnapshot snapshot = UserSnapshot.open(Path.of(args[1]))) {
+                    snapshot.select(args[2], value -> value != null && value.startsWith(args[3]),
+                            row -> out.println(toJson(row)));
+                }
+            }
+            case "count" -> {
+                requireArguments(args, 4, 4);
+                try (UserSnapshot snapshot = UserSnapshot.open(Path.of(args[1]))) {
+                    out.println(snapshot.count(args[2], value -> value != null && value.startsWith(args[3])));
+                }
+            }
+            case "diff" -> {
+                requireArguments(args, 3, 3);
+                try (UserSnapshot before = UserSnapshot.open(Path.of(args[1]));
+                     UserSnapshot after = UserSnapshot.open(Path.of(args[2]))) {
+                    SnapshotDiff diff = SnapshotDiff.compare(before, after, (change, username) -> out.println(
+                            switch (change) {
+                                case ADDED -> "+ ";
+                                case REMOVED -> "- ";
+                                case CHANGED -> "~ ";
+                            } + username));
+                    out.printf("%d added, %d removed, %d changed, %d unchanged%n",
+                            diff.added(), diff.removed(), diff.changed(), diff.unchanged());
+                }
+            }
+            default -> usage();
+        }
+    }
+
+    /**
+     * Exits with the usage if a command has the wrong number of arguments.
+     *
+     * @param args the command and its arguments
+     * @param min  the fewest arguments, command included
+     * @param max  the most arguments, command included
+     */
+    private static void requireArguments(String[] args, int min, int max) {
+        if (args.length < min || args.length > max) {
+            usage();
+        }
+    }
+
+    /**
+     * Prints the usage and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: SnapshotMain export <file> [prefix,prefix...]");
+        System.err.println("       SnapshotMain info <file>");
+        System.err.println("       SnapshotMain find <file> <username>");
+        System.err.println("       SnapshotMain query|count <file> <column> <prefix>");
+        System.err.println("       SnapshotMain diff <before> <after>");
+        System.exit(2);
+    }
+
+    /**
+     * Formats a user as a JSON object.
+     *
+     * @param row the user
+     * @return the JSON text
+     */
+    private static String toJson(SnapshotRow row) {
+        ObjectNode node = MAPPER.createObjectNode()
+                .put("username", row.username())
+                .put("status", row.status())
+                .put("lastModified", Instant.ofEpochMilli(row.lastModifiedMillis()).toString());
+        for (Map.Entry<String, String> attribute : row.attributes().entrySet()) {
+            node.put(attribute.getKey(), attribute.getValue());
+        }
+        try {
+            return MAPPER.writeValueAsString(node);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
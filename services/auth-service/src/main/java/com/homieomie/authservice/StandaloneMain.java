@@ -0,0 +1,51 @@
+package com.homieomie.authservice;
+
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.server.StandaloneServer;
+import com.homieomie.authservice.startup.Bootstrap;
+import com.homieomie.authservice.startup.StartupTimings;
+import java.io.IOException;
+
+/**
+ * Entry point for running {@code auth-service} as a long-lived process with
+ * an embedded HTTP server, instead of as a Lambda function.
+ * <p>
+ * The controller is built and primed once, exactly as for Lambda, then the
+ * {@link StandaloneServer} starts serving it. The {@link EventLog} is
+ * written out by a background thread. A JVM shutdown hook (run on
+ * {@code SIGTERM}) stops the server gracefully, closes the Cognito client and
+ * writes the last log events.
+ * </p>
+ */
+public final class StandaloneMain {
+
+    /**
+     * Not instantiable.
+     */
+    private StandaloneMain() {}
+
+    /**
+     * Starts the standalone server.
+     *
+     * @param args ignored
+     * @throws IOException if the server port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        StartupTimings startup = new StartupTimings();
+        AuthController controller = Bootstrap.createController(startup);
+        StandaloneServer server = StandaloneServer.fromEnvironment(controller);
+        long start = System.nanoTime();
+        server.start();
+        startup.record("server", System.nanoTime() - start);
+        startup.log("init");
+        EventLog.shared().startFlusher(System.out);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            controller.getCognitoService().close();
+            controller.getTenantRegistry().close();
+            EventLog.shared().stopFlusher(System.out);
+        }, "shutdown"));
+    }
+}
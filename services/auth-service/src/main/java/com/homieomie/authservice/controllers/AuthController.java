@@ -4,17 +4,42 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.homieomie.authservice.idempotency.IdempotencyConflictException;
+import com.homieomie.authservice.idempotency.IdempotencyGuard;
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.metrics.Metrics;
+import com.homieomie.authservice.models.BulkSignupRequest;
 import com.homieomie.authservice.models.LoginRequest;
 import com.homieomie.authservice.models.ConfirmSignupRequest;
+import com.homieomie.authservice.models.RefreshRequest;
 import com.homieomie.authservice.models.SignupRequest;
+import com.homieomie.authservice.models.UserListRequest;
+import com.homieomie.authservice.models.UserSearchRequest;
+import com.homieomie.authservice.ratelimit.RateLimiter;
+import com.homieomie.authservice.resilience.CircuitOpenException;
+import com.homieomie.authservice.services.CognitoBackend;
 import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.UserDirectory;
+import com.homieomie.authservice.tenancy.Tenant;
+import com.homieomie.authservice.tenancy.TenantRegistry;
+import com.homieomie.authservice.tenancy.UnknownTenantException;
+import com.homieomie.authservice.validation.CompiledValidator;
+import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import jakarta.validation.ConstraintViolation;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
+import org.hibernate.validator.messageinterpolation.ParameterMessageInterpolator;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UsernameExistsException;
 
 /**
  * Controller responsible for routing authentication-related requests
@@ -24,148 +49,814 @@ import jakarta.validation.ValidatorFactory;
 public class AuthController {
 
     /**
-     * Service responsible for interacting with AWS Cognito.
+     * Request models whose validation and JSON metadata are primed by {@link #warmUp()}.
      */
-    private final CognitoService cognitoService = new CognitoService();
+    private static final List<Class<?>> REQUEST_TYPES = List.of(
+            SignupRequest.class, LoginRequest.class, ConfirmSignupRequest.class, UserListRequest.class,
+            UserSearchRequest.class, BulkSignupRequest.class, RefreshRequest.class);
+
+    /**
+     * Request model bound to each action name.
+     */
+    private static final Map<String, Class<?>> ACTIONS = Map.of(
+            "signup", SignupRequest.class,
+            "confirmSignup", ConfirmSignupRequest.class,
+            "login", LoginRequest.class,
+            "refresh", RefreshRequest.class,
+            "listUsers", UserListRequest.class,
+            "searchUsers", UserSearchRequest.class,
+            "bulkSignup", BulkSignupRequest.class);
+
+    /**
+     * Actions that honour an {@code Idempotency-Key} header: those creating or
+     * changing a user, which a repeat would otherwise send to Cognito again.
+     */
+    private static final Set<String> IDEMPOTENT_ACTIONS = Set.of("signup", "confirmSignup");
+
+    /**
+     * Header carrying the client's idempotency key.
+     */
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Media type of newline-delimited JSON request bodies.
+     */
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    /**
+     * Wait suggested after Cognito kept throttling a request, in milliseconds.
+     */
+    private static final long THROTTLED_RETRY_AFTER_MILLIS = 1_000;
+
+    /**
+     * Representative request bodies used by {@link #warmUp()}.
+     */
+    private static final List<String> WARM_UP_BODIES = List.of(
+            "{\"action\":\"signup\",\"username\":\"warmup\",\"email\":\"warmup@example.com\","
+                    + "\"birthdate\":\"2000-01-01\",\"phone_number\":\"+15555550100\","
+                    + "\"first_name\":\"Warm\",\"last_name\":\"Up\",\"sex\":\"other\"}",
+            "{\"action\":\"login\",\"username\":\"warmup\",\"password\":\"warmup\"}",
+            "{\"username\":\"warmup\",\"password\":\"warmup\",\"action\":\"confirmSignup\"}",
+            "{\"action\":\"listUsers\",\"pageSize\":10}",
+            "{\"action\":\"searchUsers\",\"field\":\"last_name\",\"query\":\"Up\",\"pageSize\":10}",
+            "{\"action\":\"refresh\",\"refreshToken\":\"warmup\"}");
+
+    /**
+     * Route table of the actions' resource paths.
+     */
+    private final Router router = new Router();
+
+    /**
+     * Services of the pool set by the environment, for requests selecting no tenant.
+     */
+    private final Tenant defaultTenant;
+
+    /**
+     * Registry selecting each request's tenant.
+     */
+    private final TenantRegistry tenantRegistry;
 
     /**
      * JSON mapper used for converting request bodies into model objects.
      */
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Validator enforcing model constraints through precompiled rules.
+     */
+    private final CompiledValidator compiledValidator;
+
+    /**
+     * Single-pass decoder binding request bodies to their action's model.
+     */
+    private final RequestDecoder requestDecoder;
+
+    /**
+     * Writer of the typed response bodies.
+     */
+    private final ResponseWriter responseWriter;
+
+    /**
+     * Action name of each request model, for rate limiting.
+     */
+    private final Map<Class<?>, String> actionNames = new HashMap<>();
+
+    /**
+     * Limiter turning away floods before they reach Cognito.
+     */
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Guard answering repeated idempotency keys without repeating the request.
+     */
+    private final IdempotencyGuard idempotencyGuard;
+
+    /**
+     * Metrics each request is timed and counted in.
+     */
+    private final Metrics metrics = Metrics.shared();
+
+    /**
+     * Log each request is written to.
+     */
+    private final EventLog eventLog = EventLog.shared();
+
+    /**
+     * Constructs an {@code AuthController} from pre-built collaborators, so they
+     * can be created (and timed) individually at startup or shared.
+     *
+     * @param cognitoService   the service used to reach the pool of requests selecting no tenant
+     * @param objectMapper     the JSON mapper for request and response bodies
+     * @param validator        the reference validator for models the compiled rules cannot cover
+     * @param rateLimiter      the limiter applied before dispatch
+     * @param idempotencyGuard the guard applied to requests carrying an {@code Idempotency-Key}
+     * @param tenantRegistry   the registry selecting each request's tenant
+     */
+    public AuthController(CognitoService cognitoService, ObjectMapper objectMapper, Validator validator,
+                          RateLimiter rateLimiter, IdempotencyGuard idempotencyGuard, TenantRegistry tenantRegistry) {
+        this.defaultTenant = new Tenant(null, cognitoService, UserDirectory.fromEnvironment(cognitoService));
+        this.tenantRegistry = tenantRegistry;
+        this.objectMapper = objectMapper;
+        this.compiledValidator = new CompiledValidator(validator, REQUEST_TYPES);
+        this.requestDecoder = new RequestDecoder(objectMapper, ACTIONS);
+        this.requestDecoder.bindLines("bulkSignup", SignupRequest.class, BulkSignupRequest::new);
+        this.responseWriter = new ResponseWriter(objectMapper.getFactory());
+        for (Map.Entry<String, Class<?>> action : ACTIONS.entrySet()) {
+            actionNames.put(action.getValue(), action.getKey());
+            router.add("POST", "/" + action.getKey(), action.getKey(), "bulkSignup".equals(action.getKey())
+                    ? Router.BULK_MAX_BODY_CHARS
+                    : Router.DEFAULT_MAX_BODY_CHARS);
+        }
+        this.rateLimiter = rateLimiter;
+        this.idempotencyGuard = idempotencyGuard;
+    }
+
+    /**
+     * Creates an {@code AuthController} whose rate limiter, idempotency guard
+     * and tenant registry are configured from the environment.
+     *
+     * @param cognitoService the service used to reach the pool of requests selecting no tenant
+     * @param objectMapper   the JSON mapper for request and response bodies
+     * @param validator      the reference validator for models the compiled rules cannot cover
+     * @return the controller
+     */
+    public static AuthController fromEnvironment(CognitoService cognitoService, ObjectMapper objectMapper,
+                                                 Validator validator) {
+        return new AuthController(cognitoService, objectMapper, validator, RateLimiter.fromEnvironment(),
+                IdempotencyGuard.fromEnvironment(), TenantRegistry.fromEnvironment());
+    }
 
     /**
-     * Validator used to enforce model constraints.
+     * Builds the JSON mapper for request and response bodies, with the
+     * Blackbird module replacing reflective property access by generated
+     * lambdas.
+     * <p>
+     * A native image cannot define classes at run time, so there the module
+     * is left out and the models are accessed through the reflection
+     * metadata registered for the image.
+     * </p>
+     *
+     * @return a new mapper
      */
-    private final Validator validator;
+    public static ObjectMapper buildObjectMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        return System.getProperty("org.graalvm.nativeimage.imagecode") != null
+                ? mapper
+                : mapper.registerModule(new BlackbirdModule());
+    }
 
     /**
-     * Constructs an {@code AuthController} and initializes
-     * the validator for request model validation.
+     * Builds the request model validator.
+     * <p>
+     * Uses Hibernate's {@link ParameterMessageInterpolator}, which needs no
+     * Expression Language implementation and starts noticeably faster than the
+     * default interpolator; the model messages are plain strings.
+     * </p>
+     *
+     * @return a new validator
      */
-    public AuthController() {
-        ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
-        this.validator = factory.getValidator();
+    public static Validator buildValidator() {
+        ValidatorFactory factory = Validation.byDefaultProvider()
+                .configure()
+                .messageInterpolator(new ParameterMessageInterpolator())
+                .buildValidatorFactory();
+        return factory.getValidator();
     }
 
     /**
      * Routes an incoming API Gateway request to the appropriate
-     * authentication handler based on the provided action.
+     * authentication handler based on the provided action, waiting for the
+     * response. Used by the Lambda handler.
      *
      * @param request the API Gateway request event
      * @return the API Gateway response event containing the result
      */
     public APIGatewayProxyResponseEvent routeRequest(APIGatewayProxyRequestEvent request) {
-        Map<String, Object> responseMap = new HashMap<>();
-        int statusCode = 200;
+        return routeRequestAsync(request).join();
+    }
+
+    /**
+     * Routes an incoming API Gateway request to the appropriate
+     * authentication handler based on its resource path and method.
+     * <p>
+     * The request's tenant is selected and its route resolved before any JSON
+     * is read; the body is then decoded once into its action's model, rate
+     * limited, passed through the {@link IdempotencyGuard} if it carries an
+     * {@code Idempotency-Key}, and dispatched. The Cognito call is composed
+     * rather than waited for.
+     * </p>
+     *
+     * @param request the API Gateway request event
+     * @return a future of the API Gateway response event; it always completes
+     *         normally, failures being turned into error responses
+     */
+    public CompletableFuture<APIGatewayProxyResponseEvent> routeRequestAsync(APIGatewayProxyRequestEvent request) {
+        long startedAt = System.nanoTime();
+        String resourcePath = resourcePath(request);
+        Tenant selected;
+        try {
+            selected = tenantRegistry.select(request.getHeaders(), resourcePath);
+        } catch (UnknownTenantException e) {
+            return CompletableFuture.completedFuture(finish("unknown", startedAt, errorResponse(e), request, null,
+                    null, e));
+        }
+        Tenant tenant = selected == null ? defaultTenant : selected;
+        String path = tenant.getConfig() == null ? resourcePath : tenant.getConfig().stripPrefix(resourcePath);
+        Router.Route route = router.resolve(request.getHttpMethod(), path);
+        APIGatewayProxyResponseEvent refusal = refuse(route, request);
+        if (refusal != null) {
+            String action = refusal.getStatusCode() == 200 ? "options" : "unknown";
+            return CompletableFuture.completedFuture(finish(action, startedAt, refusal, request, tenant, null, null));
+        }
+
+        String body = request.getBody();
+        if (route.action() == null && Router.UNNAMED.rejects(body)
+                && router.routeOf(requestDecoder.leadingAction(body)).rejects(body)) {
+            return CompletableFuture.completedFuture(finish("unknown", startedAt, tooLargeResponse(), request, tenant,
+                    null, null));
+        }
 
+        Object payload;
         try {
-            if ("OPTIONS".equalsIgnoreCase(request.getHttpMethod())) {
-                return corsResponse();
-            }
+            payload = isLineDelimited(request.getHeaders())
+                    ? requestDecoder.decodeLines(route.action(), body)
+                    : requestDecoder.decode(route.action(), body);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.completedFuture(finish("unknown", startedAt, errorResponse(e), request, tenant,
+                    null, e));
+        }
+        String action = actionNames.get(payload.getClass());
+        long decodedAt = System.nanoTime();
+        metrics.recordRequest(action, Metrics.Segment.PARSE, decodedAt - startedAt);
 
-            Map<String, Object> body = objectMapper.readValue(request.getBody(), Map.class);
-            String action = (String) body.get("action");
-
-            switch (action) {
-                case "signup" -> {
-                    SignupRequest signupRequest = objectMapper.convertValue(body, SignupRequest.class);
-                    validate(signupRequest);
-                    responseMap.put("result", cognitoService.signup(signupRequest, request.getHeaders()));
-                }
-                case "confirmSignup" -> {
-                    ConfirmSignupRequest confirmSignupRequest = objectMapper.convertValue(
-                            body, ConfirmSignupRequest.class);
-                    validate(confirmSignupRequest);
-                    responseMap.put("result", cognitoService.confirmSignup(confirmSignupRequest));
-                }
-                case "login" -> {
-                    LoginRequest loginRequest = objectMapper.convertValue(body, LoginRequest.class);
-                    validate(loginRequest);
-                    responseMap.put("result", cognitoService.login(loginRequest));
-                }
-                case "listUsers" -> {
-                    responseMap.put("result", cognitoService.listUsers(request.getHeaders()));
-                }
-                default -> {
-                    statusCode = 400;
-                    responseMap.put("error", "Unknown action: " + action);
-                }
+        CompletableFuture<APIGatewayProxyResponseEvent> response;
+        Throwable[] failure = new Throwable[1];
+        String idempotencyKey = IDEMPOTENT_ACTIONS.contains(action)
+                ? headerValue(request.getHeaders(), IDEMPOTENCY_KEY_HEADER)
+                : null;
+        if (idempotencyKey == null) {
+            response = limitAndDispatch(action, payload, request, tenant, decodedAt, failure);
+        } else if (idempotencyKey.isEmpty() || idempotencyKey.length() > IdempotencyGuard.MAX_KEY_LENGTH) {
+            response = CompletableFuture.completedFuture(responseWriter.error(400,
+                    "Idempotency-Key must be 1 to " + IdempotencyGuard.MAX_KEY_LENGTH + " characters"));
+        } else {
+            String fingerprint = idempotencyGuard.fingerprint(action,
+                    headerValue(request.getHeaders(), "Authorization"), body);
+            response = idempotencyGuard.execute(scoped(tenant, action) + ':' + idempotencyKey, fingerprint,
+                    () -> limitAndDispatch(action, payload, request, tenant, decodedAt, failure));
+        }
+        return response.exceptionally(e -> {
+            failure[0] = e;
+            return errorResponse(e);
+        }).thenApply(result -> finish(action, startedAt, result, request, tenant, payload, failure[0]));
+    }
+
+    /**
+     * Exercises the parsing, validation and serialization paths once so that
+     * their classes are loaded and their metadata is built before the first
+     * real request (or before a SnapStart snapshot is taken). No call
+     * reaches Cognito, and nothing is left in the metrics or the log.
+     */
+    public void warmUp() {
+        try {
+            for (Class<?> type : REQUEST_TYPES) {
+                compiledValidator.validate(objectMapper.readValue("{}", type));
             }
-        } catch (JsonProcessingException e) {   // Jackson parsing
-            statusCode = 400;
-            responseMap.put("error", "Invalid JSON: " + e.getOriginalMessage());
-        } catch (IllegalArgumentException e) {   // validation failures
-            statusCode = 400;
-            responseMap.put("error", e.getMessage());
-        } catch (RuntimeException e) {           // unexpected runtime issues
-            statusCode = 500;
-            responseMap.put("error", e.getMessage());
+            for (String body : WARM_UP_BODIES) {
+                compiledValidator.validate(requestDecoder.decode(body));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Warm-up request bodies are invalid", e);
         }
+        responseWriter.tokens(Map.of("idToken", "warmup", "accessToken", "warmup", "refreshToken", "warmup"));
+        responseWriter.message("warmup");
+        responseWriter.flag(true);
+
+        routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("OPTIONS"));
+        routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST").withBody("{"));
+        routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST").withBody("{\"action\":\"warmUp\"}"));
+        routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath("/warmUp"));
+        routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("GET").withPath("/login"));
+        routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath("/login").withBody("[]"));
+        metrics.reset();
+        eventLog.discard();
+    }
+
+    /**
+     * Returns the rate limiter applied before dispatch, whose counters show
+     * how many requests it refused.
+     *
+     * @return the rate limiter
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Returns the guard applied to requests carrying an {@code Idempotency-Key},
+     * whose counters show how many repeats were answered without Cognito.
+     *
+     * @return the idempotency guard
+     */
+    public IdempotencyGuard getIdempotencyGuard() {
+        return idempotencyGuard;
+    }
+
+    /**
+     * Returns the Cognito service serving requests that select no tenant.
+     *
+     * @return the Cognito service
+     */
+    public CognitoService getCognitoService() {
+        return defaultTenant.getCognitoService();
+    }
 
-        return buildResponse(statusCode, responseMap);
+    /**
+     * Returns the registry selecting each request's tenant, which holds the
+     * tenants' services.
+     *
+     * @return the tenant registry
+     */
+    public TenantRegistry getTenantRegistry() {
+        return tenantRegistry;
     }
 
     /**
      * Validates a given request DTO against its declared constraints.
+     * Package-private so the benchmarks module can measure it directly.
      *
      * @param dto the object to validate
      * @throws IllegalArgumentException if validation fails
      */
-    private void validate(Object dto) {
-        Set<ConstraintViolation<Object>> violations = validator.validate(dto);
-        if (!violations.isEmpty()) {
-            String message = violations.stream()
-                    .map(ConstraintViolation::getMessage)
-                    .reduce((m1, m2) -> m1 + "; " + m2)
-                    .orElse("Validation failed");
+    void validate(Object dto) {
+        String message = compiledValidator.validate(dto);
+        if (message != null) {
             throw new IllegalArgumentException(message);
         }
     }
 
     /**
-     * Builds an API Gateway response object with the given
-     * status code and body.
+     * Takes the request's rate limit tokens and, unless it is over its limit,
+     * dispatches it. Buckets are kept per tenant, so a flood against one pool
+     * does not lock out a client or username of another.
      *
-     * @param statusCode the HTTP status code
-     * @param body the response body
-     * @return the constructed API Gateway response event
+     * @param action    the action name
+     * @param payload   the decoded request model
+     * @param request   the API Gateway request event
+     * @param tenant    the tenant whose pool serves the request
+     * @param decodedAt the {@link System#nanoTime()} decoding finished at
+     * @param failure   where the failure turned into an error response is kept, for the log
+     * @return a future of the response, which completes normally: failures are turned into error responses
      */
-    private APIGatewayProxyResponseEvent buildResponse(int statusCode, Map<String, Object> body) {
+    private CompletableFuture<APIGatewayProxyResponseEvent> limitAndDispatch(
+            String action, Object payload, APIGatewayProxyRequestEvent request, Tenant tenant, long decodedAt,
+            Throwable[] failure) {
+        CompletableFuture<APIGatewayProxyResponseEvent> response;
         try {
-            return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(statusCode)
-                    .withHeaders(corsHeaders())
-                    .withBody(objectMapper.writeValueAsString(body));
-        } catch (JsonProcessingException e) { // narrowed
-            return new APIGatewayProxyResponseEvent()
-                    .withStatusCode(500)
-                    .withBody("{\"error\":\"Serialization failed\"}");
+            long retryAfterMillis = rateLimiter.acquire(scoped(tenant, action), sourceIp(request),
+                    usernameOf(payload));
+            response = retryAfterMillis > 0
+                    ? CompletableFuture.completedFuture(tooManyRequestsResponse(retryAfterMillis))
+                    : dispatch(action, payload, request.getHeaders(), tenant, decodedAt);
+        } catch (IOException | RuntimeException e) {
+            failure[0] = e;
+            response = CompletableFuture.completedFuture(errorResponse(e));
+        }
+        return response.exceptionally(e -> {
+            failure[0] = e;
+            return errorResponse(e);
+        });
+    }
+
+    /**
+     * Validates a decoded request and calls the service method of its action.
+     *
+     * @param action    the action name
+     * @param payload   the decoded request model
+     * @param headers   the request headers
+     * @param tenant    the tenant whose pool serves the request
+     * @param decodedAt the {@link System#nanoTime()} decoding finished at
+     * @return a future of the API Gateway response event containing the result
+     * @throws IOException if a streamed response cannot be started
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> dispatch(String action, Object payload,
+                                                                     Map<String, String> headers, Tenant tenant,
+                                                                     long decodedAt)
+            throws IOException {
+        if (payload instanceof BulkSignupRequest bulkRequest) {
+            validateBulk(bulkRequest);
+        } else {
+            validate(payload);
+        }
+        long validatedAt = System.nanoTime();
+        metrics.recordRequest(action, Metrics.Segment.VALIDATE, validatedAt - decodedAt);
+
+        UserDirectory userDirectory = tenant.getUserDirectory();
+        CognitoService cognitoService = tenant.getCognitoService();
+        if (payload instanceof SignupRequest signupRequest) {
+            return respond(action, userDirectory.signup(signupRequest, headers), responseWriter::message,
+                    validatedAt);
+        } else if (payload instanceof ConfirmSignupRequest confirmSignupRequest) {
+            return respond(action, userDirectory.confirmSignup(confirmSignupRequest), responseWriter::flag,
+                    validatedAt);
+        } else if (payload instanceof LoginRequest loginRequest) {
+            return respond(action, cognitoService.login(loginRequest), responseWriter::tokens, validatedAt);
+        } else if (payload instanceof RefreshRequest refreshRequest) {
+            return respond(action, cognitoService.refresh(refreshRequest), responseWriter::tokens, validatedAt);
+        } else if (payload instanceof UserListRequest listRequest) {
+            return streamed(action, listUsersResponse(listRequest, headers, userDirectory), validatedAt);
+        } else if (payload instanceof UserSearchRequest searchRequest) {
+            return streamed(action, searchUsersResponse(searchRequest, headers, userDirectory), validatedAt);
+        } else if (payload instanceof BulkSignupRequest bulkRequest) {
+            return streamed(action, bulkSignupResponse(bulkRequest, headers, userDirectory), validatedAt);
+        }
+        throw new IllegalArgumentException("Unknown action: " + payload);
+    }
+
+    /**
+     * Turns a service call's result into a response, timing the wait for the
+     * result and the serialization separately.
+     *
+     * @param action   the action name
+     * @param call     the service call's future
+     * @param writer   the {@link ResponseWriter} method writing the result
+     * @param calledAt the {@link System#nanoTime()} the call was made at
+     * @param <T>      the result type
+     * @return a future of the API Gateway response event carrying the result
+     */
+    private <T> CompletableFuture<APIGatewayProxyResponseEvent> respond(
+            String action, CompletableFuture<T> call, Function<? super T, APIGatewayProxyResponseEvent> writer,
+            long calledAt) {
+        return call.thenApply(result -> {
+            long answeredAt = System.nanoTime();
+            metrics.recordRequest(action, Metrics.Segment.COGNITO, answeredAt - calledAt);
+            APIGatewayProxyResponseEvent response = writer.apply(result);
+            metrics.recordRequest(action, Metrics.Segment.SERIALIZE, System.nanoTime() - answeredAt);
+            return response;
+        });
+    }
+
+    /**
+     * Times a response written while the service streams its results, whose
+     * serialization cannot be told apart from the wait for Cognito.
+     *
+     * @param action   the action name
+     * @param response the streamed response's future
+     * @param calledAt the {@link System#nanoTime()} the call was made at
+     * @return a future completing like {@code response}, once timed
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> streamed(
+            String action, CompletableFuture<APIGatewayProxyResponseEvent> response, long calledAt) {
+        return response.thenApply(result -> {
+            metrics.recordRequest(action, Metrics.Segment.COGNITO, System.nanoTime() - calledAt);
+            return result;
+        });
+    }
+
+    /**
+     * Records a request's total time and response status, and logs it.
+     *
+     * @param action    the action name
+     * @param startedAt the {@link System#nanoTime()} routing started at
+     * @param response  the response about to be returned
+     * @param request   the API Gateway request event
+     * @param tenant    the tenant whose pool served the request, or {@code null} if none was selected
+     * @param payload   the decoded request model, or {@code null} if not decoded
+     * @param failure   the failure turned into {@code response}, or {@code null}
+     * @return {@code response}
+     */
+    private APIGatewayProxyResponseEvent finish(String action, long startedAt, APIGatewayProxyResponseEvent response,
+                                                APIGatewayProxyRequestEvent request, Tenant tenant, Object payload,
+                                                Throwable failure) {
+        long nanos = System.nanoTime() - startedAt;
+        metrics.recordRequest(action, Metrics.Segment.TOTAL, nanos);
+        metrics.countStatus(response.getStatusCode());
+        eventLog.request(requestId(request), tenant == null ? null : tenant.getId(), action,
+                response.getStatusCode(), nanos,
+                failure == null ? null : CognitoBackend.errorCodeOf(failure), payload);
+        return response;
+    }
+
+    /**
+     * Validates a bulk signup request and every user in it, so that nothing
+     * is created unless the whole batch is valid. Each user's messages are
+     * prefixed with its position, as in {@code users[3]: Email is required}.
+     *
+     * @param bulkRequest the request to validate
+     * @throws IllegalArgumentException if validation fails
+     */
+    private void validateBulk(BulkSignupRequest bulkRequest) {
+        validate(bulkRequest);
+        StringBuilder messages = null;
+        List<SignupRequest> users = bulkRequest.getUsers();
+        for (int i = 0; i < users.size(); i++) {
+            SignupRequest user = users.get(i);
+            String message = user == null ? "Entry is required" : compiledValidator.validate(user);
+            if (message != null) {
+                messages = messages == null ? new StringBuilder() : messages.append("; ");
+                messages.append("users[").append(i).append("]: ").append(message);
+            }
+        }
+        if (messages != null) {
+            throw new IllegalArgumentException(messages.toString());
+        }
+    }
+
+    /**
+     * Creates the users of a bulk signup request and writes each outcome into
+     * the response body as it completes, followed by the created and failed
+     * counts.
+     *
+     * @param bulkRequest   the validated request
+     * @param headers       the request headers carrying the admin token
+     * @param userDirectory the user directory of the tenant's pool
+     * @return a future of the API Gateway response event listing every outcome
+     * @throws IOException if the response cannot be written
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> bulkSignupResponse(BulkSignupRequest bulkRequest,
+                                                                               Map<String, String> headers,
+                                                                               UserDirectory userDirectory)
+            throws IOException {
+        ResponseWriter.Body body = responseWriter.openSignupOutcomes(bulkRequest.getUsers().size());
+        int[] created = new int[1];
+        return userDirectory.bulkSignup(bulkRequest.getUsers(), headers, outcome -> {
+            if (outcome.isCreated()) {
+                created[0]++;
+            }
+            ResponseWriter.writeOutcome(body.generator(), outcome);
+        }).thenApply(ignored -> body.finishSignupOutcomes(created[0], bulkRequest.getUsers().size() - created[0]));
+    }
+
+    /**
+     * Fetches one page of users from the user directory and writes it straight
+     * into the response body, without an intermediate collection.
+     *
+     * @param listRequest   the validated page request
+     * @param headers       the request headers carrying the admin token
+     * @param userDirectory the user directory of the tenant's pool
+     * @return a future of the API Gateway response event containing the page
+     * @throws IOException if the response cannot be written
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> listUsersResponse(UserListRequest listRequest,
+                                                                              Map<String, String> headers,
+                                                                              UserDirectory userDirectory)
+            throws IOException {
+        ResponseWriter.Body body = responseWriter.openUserPage(listRequest.effectivePageSize());
+        return userDirectory.listUsers(headers, listRequest.effectivePageSize(), listRequest.getCursor(),
+                        listRequest.isForceRefresh(), user -> ResponseWriter.writeUser(body.generator(), user))
+                .thenApply(body::finishUserPage);
+    }
+
+    /**
+     * Searches the user directory and writes the page of matches straight
+     * into the response body, without an intermediate collection.
+     *
+     * @param searchRequest the validated search request
+     * @param headers       the request headers carrying the admin token
+     * @param userDirectory the user directory of the tenant's pool
+     * @return a future of the API Gateway response event containing the page
+     * @throws IOException if the response cannot be written
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> searchUsersResponse(UserSearchRequest searchRequest,
+                                                                                Map<String, String> headers,
+                                                                                UserDirectory userDirectory)
+            throws IOException {
+        ResponseWriter.Body body = responseWriter.openUserPage(searchRequest.effectivePageSize());
+        return userDirectory.searchUsers(headers, searchRequest.getField(), searchRequest.getQuery(),
+                        searchRequest.effectivePageSize(), searchRequest.getCursor(),
+                        match -> ResponseWriter.writeMatch(body.generator(), match))
+                .thenApply(body::finishUserPage);
+    }
+
+    /**
+     * Answers a request the route table settles without reading the body:
+     * preflights, unknown paths, methods a path does not accept and bodies
+     * over the route's limit. Preflights are answered whatever their path,
+     * as before routing by path, so a browser is never told a path is
+     * missing before it has sent the request.
+     *
+     * @param route   the route resolved for the request
+     * @param request the API Gateway request event
+     * @return the response, or {@code null} if the request is to be decoded and dispatched
+     */
+    private APIGatewayProxyResponseEvent refuse(Router.Route route, APIGatewayProxyRequestEvent request) {
+        if ("OPTIONS".equalsIgnoreCase(request.getHttpMethod())) {
+            return responseWriter.preflight();
+        }
+        if (route == Router.NOT_FOUND) {
+            return responseWriter.error(404, "Not found");
+        }
+        if (route.allow() != null) {
+            Map<String, String> headers = new HashMap<>(ResponseWriter.HEADERS);
+            headers.put("Allow", route.allow());
+            return responseWriter.error(405, "Method not allowed").withHeaders(headers);
+        }
+        return route.rejects(request.getBody()) ? tooLargeResponse() : null;
+    }
+
+    /**
+     * Builds the response refusing a body over its route's limit.
+     *
+     * @return the API Gateway response event
+     */
+    private APIGatewayProxyResponseEvent tooLargeResponse() {
+        return responseWriter.error(413, "Request body is too large");
+    }
+
+    /**
+     * Builds the response refusing a request over its rate limit.
+     *
+     * @param retryAfterMillis the time until the request would be accepted
+     * @return the API Gateway response event, with a {@code Retry-After} header in whole seconds
+     */
+    private APIGatewayProxyResponseEvent tooManyRequestsResponse(long retryAfterMillis) {
+        return withRetryAfter(responseWriter.error(429, "Too many requests"), retryAfterMillis);
+    }
+
+    /**
+     * Adds a {@code Retry-After} header to a response.
+     *
+     * @param response         the response
+     * @param retryAfterMillis the time until the request may be retried
+     * @return the response, with the wait rounded up to whole seconds
+     */
+    private static APIGatewayProxyResponseEvent withRetryAfter(APIGatewayProxyResponseEvent response,
+                                                               long retryAfterMillis) {
+        Map<String, String> headers = new HashMap<>(ResponseWriter.HEADERS);
+        headers.put("Retry-After", Long.toString((retryAfterMillis + 999) / 1000));
+        return response.withHeaders(headers);
+    }
+
+    /**
+     * Maps a failure to its error response.
+     * <p>
+     * Unreadable JSON and invalid input answer 400, an unknown tenant 404, an
+     * idempotency key reused with a different request 422, a username that is
+     * already taken 409, a Cognito call that ran out
+     * of time answers 504, an open circuit or throttling that outlasted the
+     * retries answers 503 with {@code Retry-After}, and any other failure
+     * answers 500, so the response future always completes normally; only a
+     * {@link VirtualMachineError} is rethrown.
+     * </p>
+     *
+     * @param failure the failure, possibly wrapped by a future
+     * @return the API Gateway response event describing the error
+     */
+    private APIGatewayProxyResponseEvent errorResponse(Throwable failure) {
+        Throwable cause = CognitoBackend.unwrap(failure);
+        int statusCode;
+        String message;
+        if (cause instanceof JsonProcessingException e) {           // Jackson parsing
+            statusCode = 400;
+            message = "Invalid JSON: " + e.getOriginalMessage();
+        } else if (cause instanceof IOException) {                 // unreadable body
+            statusCode = 400;
+            message = "Invalid JSON: " + cause.getMessage();
+        } else if (cause instanceof IllegalArgumentException) {    // validation failures
+            statusCode = 400;
+            message = cause.getMessage();
+        } else if (cause instanceof UnknownTenantException) {      // tenant not configured
+            statusCode = 404;
+            message = "Unknown tenant";
+        } else if (cause instanceof IdempotencyConflictException) { // key reused
+            statusCode = 422;
+            message = cause.getMessage();
+        } else if (cause instanceof UsernameExistsException) {     // duplicate signup
+            statusCode = 409;
+            message = "User already exists";
+        } else if (cause instanceof ApiCallTimeoutException
+                || cause instanceof TimeoutException) {            // Cognito too slow
+            statusCode = 504;
+            message = "Request timed out";
+        } else if (cause instanceof CircuitOpenException e) {      // Cognito unhealthy
+            return withRetryAfter(responseWriter.error(503, "Service unavailable"), e.getRetryAfterMillis());
+        } else if (cause instanceof AwsServiceException e
+                && e.isThrottlingException()) {                    // Cognito throttling
+            return withRetryAfter(responseWriter.error(503, "Service busy"), THROTTLED_RETRY_AFTER_MILLIS);
+        } else if (cause instanceof VirtualMachineError e) {       // not survivable
+            throw e;
+        } else {                                                   // anything else unexpected
+            statusCode = 500;
+            message = cause instanceof RuntimeException ? cause.getMessage() : "Internal server error";
+        }
+        return responseWriter.error(statusCode, message);
+    }
+
+    /**
+     * Scopes an action to a tenant, for keys that must not be shared between
+     * pools: the same username or idempotency key may belong to different
+     * users in different pools.
+     *
+     * @param tenant the tenant serving the request
+     * @param action the action name
+     * @return the action, prefixed with the tenant id unless it is the default tenant
+     */
+    private static String scoped(Tenant tenant, String action) {
+        return tenant.getId() == null ? action : tenant.getId() + ':' + action;
+    }
+
+    /**
+     * Returns the path a request is routed by: the API Gateway resource it
+     * was sent to, such as {@code /login}, which leaves out any stage or
+     * custom domain base path, or else the raw request path.
+     *
+     * @param request the API Gateway request event
+     * @return the resource path, or {@code null} if the event carries none
+     */
+    private static String resourcePath(APIGatewayProxyRequestEvent request) {
+        String resource = request.getResource();
+        return resource != null && resource.indexOf('{') < 0 ? resource : request.getPath();
+    }
+
+    /**
+     * Returns the client address API Gateway reports for a request.
+     *
+     * @param request the API Gateway request event
+     * @return the source IP, or {@code null} if the event carries none
+     */
+    private static String sourceIp(APIGatewayProxyRequestEvent request) {
+        APIGatewayProxyRequestEvent.ProxyRequestContext context = request.getRequestContext();
+        if (context == null || context.getIdentity() == null) {
+            return null;
+        }
+        return context.getIdentity().getSourceIp();
+    }
+
+    /**
+     * Returns the ID API Gateway, or the standalone server, gave a request.
+     *
+     * @param request the API Gateway request event
+     * @return the request ID, or {@code null} if the event carries none
+     */
+    private static String requestId(APIGatewayProxyRequestEvent request) {
+        APIGatewayProxyRequestEvent.ProxyRequestContext context = request.getRequestContext();
+        return context == null ? null : context.getRequestId();
+    }
+
+    /**
+     * Returns the user a credential-checking request names, which is rate
+     * limited on its own so that guesses spread over many clients still add up.
+     *
+     * @param payload the decoded request model
+     * @return the username, or {@code null} if the action checks no credentials
+     */
+    private static String usernameOf(Object payload) {
+        if (payload instanceof LoginRequest loginRequest) {
+            return loginRequest.getUsername();
+        } else if (payload instanceof ConfirmSignupRequest confirmSignupRequest) {
+            return confirmSignupRequest.getUsername();
         }
+        return null;
     }
 
     /**
-     * Returns CORS headers required for API Gateway responses.
+     * Tells whether a request body is newline-delimited JSON, from its
+     * {@code Content-Type} header in any letter case.
      *
-     * @return a map of CORS headers
+     * @param headers the request headers, possibly {@code null}
+     * @return {@code true} if the body is {@code application/x-ndjson}
      */
-    private Map<String, String> corsHeaders() {
-        return Map.of(
-                "Content-Type", "application/json",
-                "Access-Control-Allow-Origin", "*",
-                "Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key",
-                "Access-Control-Allow-Methods", "OPTIONS,POST,GET"
-        );
+    private static boolean isLineDelimited(Map<String, String> headers) {
+        String value = headerValue(headers, "Content-Type");
+        return value != null && value.regionMatches(true, 0, NDJSON_MEDIA_TYPE, 0, NDJSON_MEDIA_TYPE.length());
     }
 
     /**
-     * Builds a simple CORS preflight response for API Gateway.
+     * Returns a request header's value, finding its name in any letter case.
      *
-     * @return the API Gateway response event for CORS
+     * @param headers the request headers, possibly {@code null}
+     * @param name    the header name
+     * @return the value, or {@code null} if the header is absent
      */
-    private APIGatewayProxyResponseEvent corsResponse() {
-        return new APIGatewayProxyResponseEvent()
-                .withStatusCode(200)
-                .withHeaders(corsHeaders())
-                .withBody("");
+    private static String headerValue(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null) {
+                return header.getValue();
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,327 @@
+package com.homieomie.authservice.controllers;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Decodes request bodies straight into their typed request models in a single
+ * streaming pass.
+ * <p>
+ * The parser reads fields until it meets {@code action}, picks the model bound
+ * to that action and lets Jackson bind the rest of the object directly into
+ * it. No intermediate map or tree is built. When {@code action} is the first
+ * field, as every client sends it, nothing is buffered at all; fields that
+ * precede it are kept in a {@link TokenBuffer} and replayed in front of the
+ * remaining input.
+ * </p>
+ * <p>
+ * When the action is already known from the request path, the body is bound
+ * to its model from the first field. An {@code action} field leading the body
+ * must then name the same action.
+ * </p>
+ * <p>
+ * Actions bound with {@link #bindLines} can also arrive as newline-delimited
+ * JSON: a first object naming the action, then one item per line, or only
+ * the items when the path names the action. Each item is bound directly into
+ * its model as the parser reaches it.
+ * </p>
+ */
+public class RequestDecoder {
+
+    /**
+     * Name of the field selecting the action.
+     */
+    private static final String ACTION_FIELD = "action";
+
+    /**
+     * Body bound when {@code action} is the only field.
+     */
+    private static final String EMPTY_OBJECT = "{}";
+
+    /**
+     * Factory creating the streaming parsers.
+     */
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Mapper used as codec for buffered tokens.
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Pre-built reader per action name.
+     */
+    private final Map<String, ObjectReader> readers = new HashMap<>();
+
+    /**
+     * Line-delimited binding per action name.
+     */
+    private final Map<String, LineBinding> lineBindings = new HashMap<>();
+
+    /**
+     * Creates a decoder for the given action to model bindings.
+     *
+     * @param objectMapper the mapper whose configuration and modules are used for binding
+     * @param actions      action name to request model type
+     */
+    public RequestDecoder(ObjectMapper objectMapper, Map<String, Class<?>> actions) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+        for (Map.Entry<String, Class<?>> entry : actions.entrySet()) {
+            readers.put(entry.getKey(), objectMapper.readerFor(entry.getValue()));
+        }
+    }
+
+    /**
+     * Accepts an action as newline-delimited JSON, whose items are collected
+     * in order and handed to an assembler building the request model.
+     *
+     * @param action    the action name
+     * @param itemType  the model each line is bound to
+     * @param assembler builds the request model from the items
+     * @param <T>       the item type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void bindLines(String action, Class<T> itemType, Function<List<T>, ?> assembler) {
+        Function<List<Object>, ?> untyped = (Function<List<Object>, ?>) (Function<?, ?>) assembler;
+        lineBindings.put(action, new LineBinding(objectMapper.readerFor(itemType), untyped));
+    }
+
+    /**
+     * Decodes a request body into the model bound to its {@code action}.
+     *
+     * @param body the JSON request body
+     * @return the typed request model
+     * @throws IOException              if the body is not valid JSON or does not match the model
+     * @throws IllegalArgumentException if the body is missing or names an unknown action
+     */
+    public Object decode(String body) throws IOException {
+        return decode(null, body);
+    }
+
+    /**
+     * Decodes a request body into the model of the given action, or of the
+     * action its {@code action} field names when none is given.
+     *
+     * @param pathAction the action named by the request path, or {@code null}
+     * @param body       the JSON request body
+     * @return the typed request model
+     * @throws IOException              if the body is not valid JSON or does not match the model
+     * @throws IllegalArgumentException if the body is missing, names an unknown action
+     *                                  or leads with an action other than the given one
+     */
+    public Object decode(String pathAction, String body) throws IOException {
+        if (body == null) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Request body must be a JSON object");
+            }
+            if (pathAction != null) {
+                return decodeFor(pathAction, parser);
+            }
+
+            TokenBuffer preceding = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if (ACTION_FIELD.equals(field)) {
+                    String action = parser.getValueAsString();
+                    ObjectReader reader = readers.get(action);
+                    if (reader == null) {
+                        throw new IllegalArgumentException("Unknown action: " + action);
+                    }
+                    if (preceding == null) {
+                        // Jackson binds from a FIELD_NAME, but reads a bare END_OBJECT as "no value"
+                        return parser.nextToken() == JsonToken.END_OBJECT
+                                ? reader.readValue(EMPTY_OBJECT)
+                                : reader.readValue(parser);
+                    }
+                    JsonParser replay = JsonParserSequence.createFlattened(false, preceding.asParser(), parser);
+                    replay.nextToken();
+                    return reader.readValue(replay);
+                }
+                if (preceding == null) {
+                    preceding = new TokenBuffer(objectMapper, false);
+                    preceding.writeStartObject();
+                }
+                preceding.writeFieldName(field);
+                preceding.copyCurrentStructure(parser);
+            }
+            throw new IllegalArgumentException("Unknown action: null");
+        }
+    }
+
+    /**
+     * Reads the action named by a body's first field, binding nothing, so
+     * that a body routed by its action can be measured against that action's
+     * limit before it is decoded. Only the first field is read, which is
+     * where every client sends {@code action}; for a newline-delimited body
+     * it is the first field of the first line.
+     *
+     * @param body the request body, possibly {@code null}
+     * @return the action named, or {@code null} if the body does not start
+     *         with an object whose first field is a string {@code action}
+     */
+    public String leadingAction(String body) {
+        if (body == null) {
+            return null;
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT && parser.nextToken() == JsonToken.FIELD_NAME
+                    && ACTION_FIELD.equals(parser.currentName()) && parser.nextToken() == JsonToken.VALUE_STRING) {
+                return parser.getText();
+            }
+            return null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes a newline-delimited JSON body: a first object naming the action,
+     * followed by one item per line.
+     *
+     * @param body the request body
+     * @return the request model assembled from the items
+     * @throws IOException              if a line is not valid JSON or does not match the item model
+     * @throws IllegalArgumentException if the body is missing or names an action not bound to lines
+     */
+    public Object decodeLines(String body) throws IOException {
+        return decodeLines(null, body);
+    }
+
+    /**
+     * Decodes a newline-delimited JSON body of the given action, made of its
+     * items only, or, when no action is given, of a first object naming the
+     * action followed by the items.
+     *
+     * @param action the action named by the request path, or {@code null}
+     * @param body   the request body
+     * @return the request model assembled from the items
+     * @throws IOException              if a line is not valid JSON or does not match the item model
+     * @throws IllegalArgumentException if the body is missing or the action is not bound to lines
+     */
+    public Object decodeLines(String action, String body) throws IOException {
+        if (body == null) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (action == null) {
+                action = readLeadingAction(parser);
+            } else {
+                parser.nextToken();
+            }
+            LineBinding binding = lineBindings.get(action);
+            if (binding == null) {
+                throw new IllegalArgumentException("Unknown line-delimited action: " + action);
+            }
+
+            List<Object> items = new ArrayList<>();
+            if (parser.currentToken() != null) {
+                try (MappingIterator<Object> values = binding.itemReader.readValues(parser)) {
+                    while (values.hasNextValue()) {
+                        items.add(values.nextValue());
+                    }
+                }
+            }
+            return binding.assembler.apply(items);
+        }
+    }
+
+    /**
+     * Binds the rest of an object to the model of a known action, past a
+     * leading {@code action} field naming the same action.
+     *
+     * @param action the action
+     * @param parser the parser, positioned on the object's start
+     * @return the typed request model
+     * @throws IOException              if the body does not match the model
+     * @throws IllegalArgumentException if the action is unknown or the body leads with another one
+     */
+    private Object decodeFor(String action, JsonParser parser) throws IOException {
+        ObjectReader reader = readers.get(action);
+        if (reader == null) {
+            throw new IllegalArgumentException("Unknown action: " + action);
+        }
+        if (parser.nextToken() == JsonToken.FIELD_NAME && ACTION_FIELD.equals(parser.currentName())) {
+            parser.nextToken();
+            String named = parser.getValueAsString();
+            if (!action.equals(named)) {
+                throw new IllegalArgumentException("Action " + named + " does not match the path of " + action);
+            }
+            parser.nextToken();
+        }
+        // Jackson binds from a FIELD_NAME, but reads a bare END_OBJECT as "no value"
+        return parser.currentToken() == JsonToken.END_OBJECT
+                ? reader.readValue(EMPTY_OBJECT)
+                : reader.readValue(parser);
+    }
+
+    /**
+     * Reads the first line of a newline-delimited body, the object naming the action.
+     *
+     * @param parser the parser, before the first token
+     * @return the action named, or {@code null} if none is
+     * @throws IOException if the first line is not a JSON object
+     */
+    private static String readLeadingAction(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "First line must be a JSON object naming the action");
+        }
+        String action = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (ACTION_FIELD.equals(field)) {
+                action = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        parser.nextToken();
+        return action;
+    }
+
+    /**
+     * Reader for the items of a line-delimited action and the assembler
+     * turning them into its request model.
+     */
+    private static final class LineBinding {
+
+        /**
+         * Reader binding one line to the item model.
+         */
+        private final ObjectReader itemReader;
+
+        /**
+         * Builds the request model from the items.
+         */
+        private final Function<List<Object>, ?> assembler;
+
+        /**
+         * Creates a binding.
+         *
+         * @param itemReader the reader for one line
+         * @param assembler  builds the request model from the items
+         */
+        private LineBinding(ObjectReader itemReader, Function<List<Object>, ?> assembler) {
+            this.itemReader = itemReader;
+            this.assembler = assembler;
+        }
+    }
+}
@@ -0,0 +1,624 @@
+package com.homieomie.authservice.controllers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.homieomie.authservice.models.SignupOutcome;
+import com.homieomie.authservice.models.UserMatch;
+import com.homieomie.authservice.models.UserSummary;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Writes response bodies for the result types the controller returns, without
+ * going through generic object serialization.
+ * <p>
+ * Each result type has its own method writing exactly its fields. Field names
+ * are {@link SerializedString}s, encoded once, and the JSON is written into
+ * character buffers taken from a small pool and returned after use. Writing
+ * characters rather than UTF-8 bytes keeps the bodies identical to those of
+ * {@code ObjectMapper#writeValueAsString}: Jackson's byte generator escapes
+ * characters outside the Basic Multilingual Plane, such as emoji.
+ * Every response shares one immutable header map, and the preflight response
+ * is built once. A response costs the generator, the body string and the
+ * response event.
+ * </p>
+ * <p>
+ * Buffers that grew past {@link #DEFAULT_MAX_RETAINED_BYTES}, such as those
+ * of a large {@code bulkSignup} result, are not returned to the pool, so it
+ * never holds more than a few megabytes. When the pool is empty, for example
+ * under a burst of concurrent requests, a new buffer is used.
+ * </p>
+ */
+public class ResponseWriter {
+
+    /**
+     * Largest buffer returned to the pool, in bytes.
+     */
+    public static final int DEFAULT_MAX_RETAINED_BYTES = 64 * 1024;
+
+    /**
+     * Headers of every response: the content type and the CORS headers.
+     */
+    static final Map<String, String> HEADERS = Map.of(
+            "Content-Type", "application/json",
+            "Access-Control-Allow-Origin", "*",
+            "Access-Control-Allow-Headers", "Content-Type,X-Amz-Date,Authorization,X-Api-Key,Idempotency-Key",
+            "Access-Control-Allow-Methods", "OPTIONS,POST,GET"
+    );
+
+    /**
+     * Number of pooled buffers; a power of two.
+     */
+    private static final int POOL_SLOTS = 64;
+
+    /**
+     * Initial size of a new buffer in characters, enough for a token triple.
+     */
+    private static final int INITIAL_CAPACITY = 2 * 1024;
+
+    /**
+     * Field name {@code result}.
+     */
+    private static final SerializedString RESULT = new SerializedString("result");
+
+    /**
+     * Field name {@code error}.
+     */
+    private static final SerializedString ERROR = new SerializedString("error");
+
+    /**
+     * Field name {@code idToken}.
+     */
+    private static final SerializedString ID_TOKEN = new SerializedString("idToken");
+
+    /**
+     * Field name {@code accessToken}.
+     */
+    private static final SerializedString ACCESS_TOKEN = new SerializedString("accessToken");
+
+    /**
+     * Field name {@code refreshToken}.
+     */
+    private static final SerializedString REFRESH_TOKEN = new SerializedString("refreshToken");
+
+    /**
+     * Field name {@code users}.
+     */
+    private static final SerializedString USERS = new SerializedString("users");
+
+    /**
+     * Field name {@code nextCursor}.
+     */
+    private static final SerializedString NEXT_CURSOR = new SerializedString("nextCursor");
+
+    /**
+     * Field name {@code username}.
+     */
+    private static final SerializedString USERNAME = new SerializedString("username");
+
+    /**
+     * Field name {@code email}.
+     */
+    private static final SerializedString EMAIL = new SerializedString("email");
+
+    /**
+     * Field name {@code phone_number}.
+     */
+    private static final SerializedString PHONE_NUMBER = new SerializedString("phone_number");
+
+    /**
+     * Field name {@code first_name}.
+     */
+    private static final SerializedString FIRST_NAME = new SerializedString("first_name");
+
+    /**
+     * Field name {@code last_name}.
+     */
+    private static final SerializedString LAST_NAME = new SerializedString("last_name");
+
+    /**
+     * Field name {@code items}.
+     */
+    private static final SerializedString ITEMS = new SerializedString("items");
+
+    /**
+     * Field name {@code index}.
+     */
+    private static final SerializedString INDEX = new SerializedString("index");
+
+    /**
+     * Field name {@code created}.
+     */
+    private static final SerializedString CREATED = new SerializedString("created");
+
+    /**
+     * Field name {@code failed}.
+     */
+    private static final SerializedString FAILED = new SerializedString("failed");
+
+    /**
+     * Factory creating the generators.
+     */
+    private final JsonFactory jsonFactory;
+
+    /**
+     * Largest buffer returned to the pool, in bytes.
+     */
+    private final int maxRetainedBytes;
+
+    /**
+     * Idle buffers; an empty slot is {@code null}.
+     */
+    private final AtomicReferenceArray<Buffer> pool = new AtomicReferenceArray<>(POOL_SLOTS);
+
+    /**
+     * Response to every CORS preflight request, built once.
+     */
+    private final APIGatewayProxyResponseEvent preflight = new APIGatewayProxyResponseEvent()
+            .withStatusCode(200)
+            .withHeaders(HEADERS)
+            .withBody("");
+
+    /**
+     * Creates a writer that pools buffers of up to {@link #DEFAULT_MAX_RETAINED_BYTES}.
+     *
+     * @param jsonFactory the factory creating the generators
+     */
+    public ResponseWriter(JsonFactory jsonFactory) {
+        this(jsonFactory, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param jsonFactory      the factory creating the generators
+     * @param maxRetainedBytes the largest buffer returned to the pool, in bytes
+     */
+    public ResponseWriter(JsonFactory jsonFactory, int maxRetainedBytes) {
+        this.jsonFactory = jsonFactory;
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * Returns the response to a CORS preflight request. The same instance is
+     * returned every time and must not be modified.
+     *
+     * @return the preflight response
+     */
+    public APIGatewayProxyResponseEvent preflight() {
+        return preflight;
+    }
+
+    /**
+     * Writes a message result, as in {@code {"result":"User created"}}.
+     *
+     * @param message the message
+     * @return the {@code 200} response
+     */
+    public APIGatewayProxyResponseEvent message(String message) {
+        Body body = open(0);
+        try {
+            body.generator.writeStartObject();
+            body.generator.writeFieldName(RESULT);
+            body.generator.writeString(message);
+            body.generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.finish(200);
+    }
+
+    /**
+     * Writes a yes-or-no result, as in {@code {"result":true}}.
+     *
+     * @param flag the result
+     * @return the {@code 200} response
+     */
+    public APIGatewayProxyResponseEvent flag(boolean flag) {
+        Body body = open(0);
+        try {
+            body.generator.writeStartObject();
+            body.generator.writeFieldName(RESULT);
+            body.generator.writeBoolean(flag);
+            body.generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.finish(200);
+    }
+
+    /**
+     * Writes a token result, as in
+     * {@code {"result":{"idToken":"...","accessToken":"...","refreshToken":"..."}}}.
+     *
+     * @param tokens the tokens by name, as returned by {@code login} and {@code refresh}
+     * @return the {@code 200} response
+     */
+    public APIGatewayProxyResponseEvent tokens(Map<String, String> tokens) {
+        Body body = open(0);
+        try {
+            body.generator.writeStartObject();
+            body.generator.writeFieldName(RESULT);
+            body.generator.writeStartObject();
+            body.generator.writeFieldName(ID_TOKEN);
+            body.generator.writeString(tokens.get("idToken"));
+            body.generator.writeFieldName(ACCESS_TOKEN);
+            body.generator.writeString(tokens.get("accessToken"));
+            body.generator.writeFieldName(REFRESH_TOKEN);
+            body.generator.writeString(tokens.get("refreshToken"));
+            body.generator.writeEndObject();
+            body.generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.finish(200);
+    }
+
+    /**
+     * Writes an error, as in {@code {"error":"Username is required"}}.
+     *
+     * @param statusCode the HTTP status code
+     * @param message    the error message
+     * @return the response
+     */
+    public APIGatewayProxyResponseEvent error(int statusCode, String message) {
+        Body body = open(0);
+        try {
+            body.generator.writeStartObject();
+            body.generator.writeFieldName(ERROR);
+            body.generator.writeString(message);
+            body.generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return body.finish(statusCode);
+    }
+
+    /**
+     * Starts a {@code listUsers} or {@code searchUsers} page, positioned inside its {@code users}
+     * array, for users to be written as they arrive.
+     *
+     * @param pageSize the number of users expected, to size the buffer
+     * @return the body being written
+     * @throws IOException if the body cannot be started
+     */
+    Body openUserPage(int pageSize) throws IOException {
+        Body body = open(pageSize * 64);
+        body.generator.writeStartObject();
+        body.generator.writeFieldName(RESULT);
+        body.generator.writeStartObject();
+        body.generator.writeFieldName(USERS);
+        body.generator.writeStartArray();
+        return body;
+    }
+
+    /**
+     * Starts a {@code bulkSignup} result, positioned inside its {@code items}
+     * array, for outcomes to be written as they complete.
+     *
+     * @param users the number of outcomes expected, to size the buffer
+     * @return the body being written
+     * @throws IOException if the body cannot be started
+     */
+    Body openSignupOutcomes(int users) throws IOException {
+        Body body = open(users * 64);
+        body.generator.writeStartObject();
+        body.generator.writeFieldName(RESULT);
+        body.generator.writeStartObject();
+        body.generator.writeFieldName(ITEMS);
+        body.generator.writeStartArray();
+        return body;
+    }
+
+    /**
+     * Takes a buffer from the pool, or creates one, and opens a body on it.
+     *
+     * @param sizeHint the expected body size in characters, or {@code 0} if small
+     * @return the body
+     */
+    private Body open(int sizeHint) {
+        Buffer buffer = acquire(sizeHint);
+        try {
+            return new Body(buffer, jsonFactory.createGenerator(buffer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Takes an idle buffer from the pool, starting at a slot chosen by the
+     * calling thread so that threads rarely compete for the same slot.
+     *
+     * @param sizeHint the expected body size in characters
+     * @return an empty buffer with room for {@code sizeHint} characters
+     */
+    private Buffer acquire(int sizeHint) {
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i < POOL_SLOTS; i++) {
+            Buffer buffer = pool.getAndSet((start + i) & (POOL_SLOTS - 1), null);
+            if (buffer != null) {
+                buffer.reset(sizeHint);
+                return buffer;
+            }
+        }
+        return new Buffer(Math.max(INITIAL_CAPACITY, sizeHint));
+    }
+
+    /**
+     * Returns a buffer to the pool, unless it grew too large or the pool is full.
+     *
+     * @param buffer the buffer, no longer used
+     */
+    private void release(Buffer buffer) {
+        if (buffer.chars.length * (long) Character.BYTES > maxRetainedBytes) {
+            return;
+        }
+        int start = (int) Thread.currentThread().threadId();
+        for (int i = 0; i < POOL_SLOTS; i++) {
+            if (pool.compareAndSet((start + i) & (POOL_SLOTS - 1), null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a single user entry of a {@code listUsers} page.
+     *
+     * @param generator the generator positioned inside the {@code users} array
+     * @param user      the user to write
+     */
+    static void writeUser(JsonGenerator generator, UserSummary user) {
+        try {
+            generator.writeStartObject();
+            generator.writeFieldName(USERNAME);
+            generator.writeString(user.getUsername());
+            generator.writeFieldName(EMAIL);
+            generator.writeString(user.getEmail());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a single user entry of a {@code searchUsers} page.
+     *
+     * @param generator the generator positioned inside the {@code users} array
+     * @param match     the user to write
+     */
+    static void writeMatch(JsonGenerator generator, UserMatch match) {
+        try {
+            generator.writeStartObject();
+            generator.writeFieldName(USERNAME);
+            generator.writeString(match.getUsername());
+            generator.writeFieldName(EMAIL);
+            generator.writeString(match.getEmail());
+            generator.writeFieldName(PHONE_NUMBER);
+            generator.writeString(match.getPhoneNumber());
+            generator.writeFieldName(FIRST_NAME);
+            generator.writeString(match.getFirstName());
+            generator.writeFieldName(LAST_NAME);
+            generator.writeString(match.getLastName());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the outcome of one user of a {@code bulkSignup} request.
+     *
+     * @param generator the generator positioned inside the {@code items} array
+     * @param outcome   the outcome to write
+     */
+    static void writeOutcome(JsonGenerator generator, SignupOutcome outcome) {
+        try {
+            generator.writeStartObject();
+            generator.writeFieldName(INDEX);
+            generator.writeNumber(outcome.getIndex());
+            generator.writeFieldName(USERNAME);
+            generator.writeString(outcome.getUsername());
+            if (outcome.isCreated()) {
+                generator.writeFieldName(RESULT);
+                generator.writeString(outcome.getResult());
+            } else {
+                generator.writeFieldName(ERROR);
+                generator.writeString(outcome.getError());
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A response body being written into a pooled buffer.
+     */
+    final class Body {
+
+        /**
+         * Buffer the body is written into.
+         */
+        private final Buffer buffer;
+
+        /**
+         * Generator writing into {@link #buffer}.
+         */
+        private final JsonGenerator generator;
+
+        /**
+         * Creates a body.
+         *
+         * @param buffer    the buffer the body is written into
+         * @param generator the generator writing into it
+         */
+        private Body(Buffer buffer, JsonGenerator generator) {
+            this.buffer = buffer;
+            this.generator = generator;
+        }
+
+        /**
+         * Returns the generator the body is written through.
+         *
+         * @return the generator
+         */
+        JsonGenerator generator() {
+            return generator;
+        }
+
+        /**
+         * Ends a {@code listUsers} or {@code searchUsers} page started by
+         * {@link #openUserPage} and builds its response.
+         *
+         * @param nextCursor the cursor of the next page, or {@code null}
+         * @return the {@code 200} response
+         */
+        APIGatewayProxyResponseEvent finishUserPage(String nextCursor) {
+            try {
+                generator.writeEndArray();
+                generator.writeFieldName(NEXT_CURSOR);
+                generator.writeString(nextCursor);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return finish(200);
+        }
+
+        /**
+         * Ends a {@code bulkSignup} result started by {@link #openSignupOutcomes}
+         * and builds its response.
+         *
+         * @param created the number of users created
+         * @param failed  the number of users not created
+         * @return the {@code 200} response
+         */
+        APIGatewayProxyResponseEvent finishSignupOutcomes(int created, int failed) {
+            try {
+                generator.writeEndArray();
+                generator.writeFieldName(CREATED);
+                generator.writeNumber(created);
+                generator.writeFieldName(FAILED);
+                generator.writeNumber(failed);
+                generator.writeEndObject();
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return finish(200);
+        }
+
+        /**
+         * Flushes the body, builds its response and returns the buffer to the pool.
+         *
+         * @param statusCode the HTTP status code
+         * @return the response
+         */
+        private APIGatewayProxyResponseEvent finish(int statusCode) {
+            try {
+                generator.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            String text = buffer.toString();
+            release(buffer);
+            return new APIGatewayProxyResponseEvent()
+                    .withStatusCode(statusCode)
+                    .withHeaders(HEADERS)
+                    .withBody(text);
+        }
+    }
+
+    /**
+     * Growable character buffer the generators write into.
+     */
+    private static final class Buffer extends Writer {
+
+        /**
+         * Characters written so far, followed by spare room.
+         */
+        private char[] chars;
+
+        /**
+         * Number of characters written.
+         */
+        private int count;
+
+        /**
+         * Creates an empty buffer.
+         *
+         * @param capacity the initial capacity in characters
+         */
+        private Buffer(int capacity) {
+            this.chars = new char[capacity];
+        }
+
+        @Override
+        public void write(int c) {
+            ensureCapacity(count + 1);
+            chars[count++] = (char) c;
+        }
+
+        @Override
+        public void write(char[] source, int offset, int length) {
+            ensureCapacity(count + length);
+            System.arraycopy(source, offset, chars, count, length);
+            count += length;
+        }
+
+        @Override
+        public void write(String source, int offset, int length) {
+            ensureCapacity(count + length);
+            source.getChars(offset, offset + length, chars, count);
+            count += length;
+        }
+
+        @Override
+        public void flush() {
+            // nothing buffered elsewhere
+        }
+
+        @Override
+        public void close() {
+            // reused after the generator closes it
+        }
+
+        /**
+         * Returns the characters written.
+         *
+         * @return the text written
+         */
+        @Override
+        public String toString() {
+            return new String(chars, 0, count);
+        }
+
+        /**
+         * Empties the buffer for reuse.
+         *
+         * @param sizeHint the expected number of characters to be written
+         */
+        private void reset(int sizeHint) {
+            count = 0;
+            ensureCapacity(sizeHint);
+        }
+
+        /**
+         * Grows the buffer to hold at least the given number of characters.
+         *
+         * @param capacity the number of characters needed
+         */
+        private void ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.homieomie.authservice.controllers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Route table mapping a request's resource path and HTTP method to its
+ * action, built once so that routing is a couple of map lookups and never
+ * looks at the body.
+ * <p>
+ * Every action has its own path, such as {@code POST /login}, with its own
+ * largest accepted body. The root path, or no path at all, keeps routing by
+ * the body's {@code action} field for older clients, whatever the method; its
+ * body limit is the largest of all routes, and the limit of the action the
+ * body's first field names is checked before the body is decoded. A body
+ * that does not lead with its action gets the single-record limit. Paths are
+ * matched exactly, ignoring a trailing slash. Body sizes are counted in
+ * characters of the body string, as API Gateway hands it over.
+ * </p>
+ */
+final class Router {
+
+    /**
+     * Largest body of an action carrying a single record, in characters.
+     */
+    static final int DEFAULT_MAX_BODY_CHARS = 16 * 1024;
+
+    /**
+     * Largest body of a bulk action, in characters: room for the largest
+     * batch while staying well under API Gateway's 10 MB payload limit.
+     */
+    static final int BULK_MAX_BODY_CHARS = 4 * 1024 * 1024;
+
+    /**
+     * Result for a path that is not in the table.
+     */
+    static final Route NOT_FOUND = new Route(null, 0, null);
+
+    /**
+     * Route of a body sent to the root path without a leading action it
+     * names, limited to a single record.
+     */
+    static final Route UNNAMED = new Route(null, DEFAULT_MAX_BODY_CHARS, null);
+
+    /**
+     * Routes by path, then by method.
+     */
+    private final Map<String, Map<String, Route>> routes = new HashMap<>();
+
+    /**
+     * Result per path for a method it does not accept, carrying the {@code Allow} header value.
+     */
+    private final Map<String, Route> notAllowed = new HashMap<>();
+
+    /**
+     * Route per action, for the body limit of a request routed by its body.
+     */
+    private final Map<String, Route> byAction = new HashMap<>();
+
+    /**
+     * Route of the root path, dispatching by the body's {@code action}.
+     */
+    private Route fallback = new Route(null, 0, null);
+
+    /**
+     * Adds a route. {@code OPTIONS} is accepted on its path for CORS preflights.
+     *
+     * @param method       the HTTP method, in upper case
+     * @param path         the resource path, starting with {@code /}
+     * @param action       the action it dispatches to
+     * @param maxBodyChars the largest body accepted, in characters
+     * @return this router
+     */
+    Router add(String method, String path, String action, int maxBodyChars) {
+        Route route = new Route(action, maxBodyChars, null);
+        Map<String, Route> methods = routes.computeIfAbsent(path, ignored -> new HashMap<>());
+        methods.put(method, route);
+        notAllowed.put(path, new Route(null, 0, String.join(", ", methods.keySet()) + ", OPTIONS"));
+        byAction.put(action, route);
+        if (maxBodyChars > fallback.maxBodyChars) {
+            fallback = new Route(null, maxBodyChars, null);
+        }
+        return this;
+    }
+
+    /**
+     * Finds the route of a request.
+     *
+     * @param method the HTTP method
+     * @param path   the resource path, possibly {@code null}
+     * @return the matching route; the fallback for the root path;
+     *         {@link #NOT_FOUND} for an unknown path; or, for a method the
+     *         path does not accept, a route whose {@link Route#allow()} is set
+     */
+    Route resolve(String method, String path) {
+        int end = path == null ? 0 : path.length();
+        if (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        if (end <= 1) {
+            return fallback;
+        }
+        String key = end == path.length() ? path : path.substring(0, end);
+        Map<String, Route> methods = routes.get(key);
+        if (methods == null) {
+            return NOT_FOUND;
+        }
+        Route route = methods.get(method);
+        return route != null ? route : notAllowed.get(key);
+    }
+
+    /**
+     * Returns the route of an action, for a request that reached it through
+     * the root path.
+     *
+     * @param action the action name, possibly {@code null}
+     * @return the action's route, or {@link #UNNAMED} if it has none
+     */
+    Route routeOf(String action) {
+        return action == null ? UNNAMED : byAction.getOrDefault(action, UNNAMED);
+    }
+
+    /**
+     * One entry of the table.
+     */
+    static final class Route {
+
+        /**
+         * Action dispatched to, or {@code null} to read it from the body.
+         */
+        private final String action;
+
+        /**
+         * Largest body accepted, in characters.
+         */
+        private final int maxBodyChars;
+
+        /**
+         * Methods the path accepts when the request's method is not one of
+         * them, or {@code null} when the route matched.
+         */
+        private final String allow;
+
+        /**
+         * Creates a route.
+         *
+         * @param action       the action, or {@code null} to read it from the body
+         * @param maxBodyChars the largest body accepted, in characters
+         * @param allow        the methods the path accepts, for a method it does not
+         */
+        private Route(String action, int maxBodyChars, String allow) {
+            this.action = action;
+            this.maxBodyChars = maxBodyChars;
+            this.allow = allow;
+        }
+
+        /**
+         * Returns the action the route dispatches to.
+         *
+         * @return the action name, or {@code null} if it is read from the body
+         */
+        String action() {
+            return action;
+        }
+
+        /**
+         * Returns the {@code Allow} header value when the method did not match.
+         *
+         * @return the accepted methods, comma-separated, or {@code null} if the method matched
+         */
+        String allow() {
+            return allow;
+        }
+
+        /**
+         * Tells whether a body is too large for the route.
+         *
+         * @param body the request body, possibly {@code null}
+         * @return whether the body exceeds the route's limit
+         */
+        boolean rejects(String body) {
+            return body != null && body.length() > maxBodyChars;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.homieomie.authservice.idempotency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+/**
+ * {@link IdempotencyStore} keeping each response in a file of a local
+ * directory.
+ * <p>
+ * Responses survive a restart of the process and are shared by every
+ * process on the host pointed at the same directory, which makes the store a
+ * stand-in for a shared table in tests and on a single-host deployment. Each
+ * key has its own file, named by the SHA-256 of the key so any key makes a
+ * safe file name, and written to a temporary file first and moved into place,
+ * so a reader sees either the previous response or the new one. Expired files
+ * are deleted when read and by {@link #purgeExpired()}.
+ * </p>
+ * <p>
+ * The fingerprint key is kept in {@value #KEY_FILE}, created by the first
+ * store opening the directory with owner-only permissions and linked into
+ * place, so every process agrees on the key the first one wrote.
+ * </p>
+ */
+public class FileIdempotencyStore implements IdempotencyStore {
+
+    /**
+     * Version of the file layout, written first in each file.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Suffix of the files holding responses.
+     */
+    private static final String SUFFIX = ".response";
+
+    /**
+     * Name of the file holding the fingerprint key.
+     */
+    private static final String KEY_FILE = "fingerprint.key";
+
+    /**
+     * Per-thread SHA-256 digest used to name the files.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(FileIdempotencyStore::newDigest);
+
+    /**
+     * Directory holding the files.
+     */
+    private final Path directory;
+
+    /**
+     * Fingerprint key shared through {@link #KEY_FILE}.
+     */
+    private final byte[] fingerprintKey;
+
+    /**
+     * Creates a store, creating its directory and fingerprint key if needed.
+     *
+     * @param directory the directory holding the files
+     * @throws UncheckedIOException if the directory or key cannot be created or read
+     */
+    public FileIdempotencyStore(Path directory) {
+        try {
+            this.directory = Files.createDirectories(directory);
+            this.fingerprintKey = loadKey(this.directory.resolve(KEY_FILE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A missing file, or one that cannot be read, is treated as no response,
+     * so the request runs again rather than failing.
+     * </p>
+     */
+    @Override
+    public StoredResponse find(String key) {
+        Path file = fileOf(key);
+        StoredResponse response;
+        try (InputStream in = Files.newInputStream(file)) {
+            response = read(new DataInputStream(in));
+        } catch (IOException e) {
+            return null;
+        }
+        if (response == null) {
+            return null;
+        }
+        if (response.isExpired(System.currentTimeMillis())) {
+            deleteQuietly(file);
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    @Override
+    public void save(String key, StoredResponse response) {
+        Path file = fileOf(key);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory, null, ".tmp");
+            Files.write(temp, encode(response));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte[] fingerprintKey() {
+        return fingerprintKey.clone();
+    }
+
+    /**
+     * Deletes the files of expired responses.
+     *
+     * @return the number of files deleted
+     */
+    public int purgeExpired() {
+        long now = System.currentTimeMillis();
+        int purged = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                StoredResponse response;
+                try (InputStream in = Files.newInputStream(file)) {
+                    response = read(new DataInputStream(in));
+                } catch (IOException e) {
+                    continue;
+                }
+                if (response == null || response.isExpired(now)) {
+                    deleteQuietly(file);
+                    purged++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return purged;
+    }
+
+    /**
+     * Returns the file holding the response saved under a key.
+     *
+     * @param key the scoped idempotency key
+     * @return the path of the file
+     */
+    private Path fileOf(String key) {
+        byte[] digest = SHA_256.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(HexFormat.of().formatHex(digest) + SUFFIX);
+    }
+
+    /**
+     * Reads the fingerprint key, first creating it if no process has. A new
+     * key is written to a temporary file, which is created readable by its
+     * owner only, and linked to its name, which fails rather than replace a
+     * key another process linked first.
+     *
+     * @param file the key file
+     * @return the key
+     * @throws IOException if the key cannot be created or read
+     */
+    private static byte[] loadKey(Path file) throws IOException {
+        if (Files.notExists(file)) {
+            Path temp = Files.createTempFile(file.getParent(), null, ".tmp");
+            try {
+                Files.write(temp, IdempotencyGuard.newFingerprintKey());
+                Files.createLink(file, temp);
+            } catch (FileAlreadyExistsException e) {
+                // another process created it first
+            } finally {
+                deleteQuietly(temp);
+            }
+        }
+        byte[] key = Files.readAllBytes(file);
+        if (key.length == 0) {
+            throw new IOException("Empty fingerprint key in " + file);
+        }
+        return key;
+    }
+
+    /**
+     * Encodes a response as the contents of its file.
+     *
+     * @param response the response
+     * @return the file contents
+     * @throws IOException never in practice, as the encoding is in memory
+     */
+    private static byte[] encode(StoredResponse response) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(response.getExpiresAtMillis());
+        writeString(out, response.getFingerprint());
+        out.writeInt(response.getStatusCode());
+        out.writeInt(response.getHeaders().size());
+        for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+            writeString(out, header.getKey());
+            writeString(out, header.getValue());
+        }
+        writeString(out, response.getBody());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads a response written by {@link #encode(StoredResponse)}.
+     *
+     * @param in the file contents
+     * @return the response, or {@code null} if the file has another layout
+     * @throws IOException if the file cannot be read or is truncated
+     */
+    private static StoredResponse read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        long expiresAtMillis = in.readLong();
+        String fingerprint = readString(in);
+        int statusCode = in.readInt();
+        int headerCount = in.readInt();
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(readString(in), readString(in));
+        }
+        String body = readString(in);
+        return new StoredResponse(fingerprint, statusCode, headers, body, expiresAtMillis);
+    }
+
+    /**
+     * Writes a string as its UTF-8 length and bytes, {@code -1} for {@code null}.
+     *
+     * @param out   the output
+     * @param value the string, possibly {@code null}
+     * @throws IOException if the output fails
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the input
+     * @return the string, possibly {@code null}
+     * @throws IOException if the input fails or is truncated
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return a new digest instance
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Deletes a file, ignoring failures; another process may have deleted or
+     * replaced it already.
+     *
+     * @param file the file
+     */
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // left for the next read or purge
+        }
+    }
+}
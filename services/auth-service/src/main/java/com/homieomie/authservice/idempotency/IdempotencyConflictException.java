@@ -0,0 +1,20 @@
+package com.homieomie.authservice.idempotency;
+
+/**
+ * Thrown when an {@code Idempotency-Key} arrives with a request other than
+ * the one it was first used for.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception.
+     */
+    public IdempotencyConflictException() {
+        super("Idempotency-Key was already used with a different request");
+    }
+}
@@ -0,0 +1,374 @@
+package com.homieomie.authservice.idempotency;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.homieomie.authservice.logging.EventLog;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Runs each request carrying an {@code Idempotency-Key} at most once per
+ * time-to-live, so retries and double submissions do not repeat their
+ * Cognito writes.
+ * <p>
+ * A request repeating a key whose first request is still running waits for
+ * that request and receives the same response. Once it has answered, the
+ * response is saved in the {@link IdempotencyStore} and replayed, marked with
+ * {@link StoredResponse#REPLAYED_HEADER}, to repeats until the time-to-live
+ * runs out. Only answers the client would get again are saved: successes and
+ * client errors other than {@code 429}. After a server error, a timeout or a
+ * rate limit the next repeat runs the request anew.
+ * </p>
+ * <p>
+ * Every key is bound to the fingerprint of the request that first used it;
+ * a different request with the same key fails with an
+ * {@link IdempotencyConflictException} rather than receiving another
+ * request's response. The fingerprint is an HMAC keyed with the store's
+ * {@link IdempotencyStore#fingerprintKey() secret}, as the fingerprinted
+ * parts include credentials and passwords and the store may keep it on disk.
+ * </p>
+ */
+public class IdempotencyGuard {
+
+    /**
+     * Default time a response is replayed.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    /**
+     * Default upper bound on the number of saved responses.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Longest key accepted, in characters.
+     */
+    public static final int MAX_KEY_LENGTH = 255;
+
+    /**
+     * Size of a generated fingerprint key, in bytes.
+     */
+    private static final int FINGERPRINT_KEY_BYTES = 32;
+
+    /**
+     * Where answered responses are saved.
+     */
+    private final IdempotencyStore store;
+
+    /**
+     * Key of the HMAC requests are fingerprinted with.
+     */
+    private final SecretKeySpec fingerprintKey;
+
+    /**
+     * Per-thread HMAC-SHA256 keyed with {@link #fingerprintKey}.
+     */
+    private final ThreadLocal<Mac> hmac = ThreadLocal.withInitial(this::newMac);
+
+    /**
+     * Time in milliseconds a response is replayed; {@code 0} only coalesces concurrent repeats.
+     */
+    private final long ttlMillis;
+
+    /**
+     * Requests running, keyed by scoped idempotency key.
+     */
+    private final Map<String, Pending> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Number of repeats answered from the store.
+     */
+    private final LongAdder replayed = new LongAdder();
+
+    /**
+     * Number of repeats that waited for the running request.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Number of requests run.
+     */
+    private final LongAdder executed = new LongAdder();
+
+    /**
+     * Number of keys reused with a different request.
+     */
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * Creates a guard.
+     *
+     * @param store the store answered responses are saved in
+     * @param ttl   the time a response is replayed, zero to only coalesce concurrent repeats
+     */
+    public IdempotencyGuard(IdempotencyStore store, Duration ttl) {
+        this.store = store;
+        this.fingerprintKey = new SecretKeySpec(store.fingerprintKey(), "HmacSHA256");
+        this.ttlMillis = Math.max(0, ttl.toMillis());
+    }
+
+    /**
+     * Creates a guard configured from {@code IDEMPOTENCY_TTL_SECONDS}. Responses
+     * are kept in a {@link FileIdempotencyStore} in {@code IDEMPOTENCY_STORE_DIR}
+     * when it is set, otherwise in an {@link InMemoryIdempotencyStore} bounded by
+     * {@code IDEMPOTENCY_MAX_ENTRIES}.
+     *
+     * @return the guard
+     */
+    public static IdempotencyGuard fromEnvironment() {
+        String directory = System.getenv("IDEMPOTENCY_STORE_DIR");
+        IdempotencyStore store = directory == null || directory.isBlank()
+                ? new InMemoryIdempotencyStore((int) envLong("IDEMPOTENCY_MAX_ENTRIES", DEFAULT_MAX_ENTRIES))
+                : new FileIdempotencyStore(Path.of(directory.trim()));
+        return new IdempotencyGuard(store,
+                Duration.ofSeconds(envLong("IDEMPOTENCY_TTL_SECONDS", DEFAULT_TTL.toSeconds())));
+    }
+
+    /**
+     * Answers a request carrying an idempotency key: from the store, from
+     * the request already running with the same key, or by running it.
+     *
+     * @param key         the idempotency key, scoped to the action
+     * @param fingerprint the request's fingerprint, from {@link #fingerprint(String...)}
+     * @param request     runs the request; its future must complete with the response, errors included
+     * @return a future of the response; it fails with an {@link IdempotencyConflictException}
+     *         if the key was used with a different request
+     */
+    public CompletableFuture<APIGatewayProxyResponseEvent> execute(
+            String key, String fingerprint, Supplier<CompletableFuture<APIGatewayProxyResponseEvent>> request) {
+        StoredResponse stored = store.find(key);
+        if (stored != null) {
+            return replay(stored, fingerprint);
+        }
+
+        Pending pending = new Pending(fingerprint);
+        Pending running = inFlight.putIfAbsent(key, pending);
+        if (running != null) {
+            if (!running.fingerprint.equals(fingerprint)) {
+                return conflict();
+            }
+            coalesced.increment();
+            return running.response;
+        }
+        stored = store.find(key);
+        if (stored != null) {
+            inFlight.remove(key, pending);
+            pending.response.complete(stored.toReplay());
+            return replay(stored, fingerprint);
+        }
+
+        executed.increment();
+        CompletableFuture<APIGatewayProxyResponseEvent> call;
+        try {
+            call = request.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((response, failure) -> {
+            try {
+                if (failure == null && ttlMillis > 0 && isReplayable(response.getStatusCode())) {
+                    save(key, new StoredResponse(fingerprint, response.getStatusCode(), response.getHeaders(),
+                            response.getBody(), System.currentTimeMillis() + ttlMillis));
+                }
+            } finally {
+                inFlight.remove(key, pending);
+                if (failure != null) {
+                    pending.response.completeExceptionally(failure);
+                } else {
+                    pending.response.complete(response);
+                }
+            }
+        });
+        return pending.response;
+    }
+
+    /**
+     * Returns the number of repeats answered from the store.
+     *
+     * @return the replay count
+     */
+    public long replayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * Returns the number of repeats that waited for the running request.
+     *
+     * @return the coalesced request count
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of requests run.
+     *
+     * @return the executed request count
+     */
+    public long executedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * Returns the number of keys reused with a different request.
+     *
+     * @return the conflict count
+     */
+    public long conflictCount() {
+        return conflicts.sum();
+    }
+
+    /**
+     * Fingerprints a request by the HMAC-SHA256 of its parts under the
+     * store's key, so a key can only replay a response to the request that
+     * produced it, and a saved fingerprint cannot be checked against guessed
+     * parts without the key.
+     *
+     * @param parts the parts identifying the request, such as its action,
+     *              credentials and body; {@code null} parts are allowed
+     * @return the HMAC as hex
+     */
+    public String fingerprint(String... parts) {
+        Mac mac = hmac.get();
+        for (String part : parts) {
+            if (part != null) {
+                mac.update(part.getBytes(StandardCharsets.UTF_8));
+            }
+            mac.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(mac.doFinal());
+    }
+
+    /**
+     * Generates a random fingerprint key, for stores whose key is not
+     * shared with another process yet.
+     *
+     * @return a new 256-bit key
+     */
+    static byte[] newFingerprintKey() {
+        byte[] key = new byte[FINGERPRINT_KEY_BYTES];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    /**
+     * Saves a response for replay. A store that fails only costs the replay:
+     * the failure is logged and the response still reaches the request and
+     * its waiting repeats.
+     *
+     * @param key      the scoped idempotency key
+     * @param response the response to replay
+     */
+    private void save(String key, StoredResponse response) {
+        try {
+            store.save(key, response);
+        } catch (RuntimeException e) {
+            EventLog.shared().warn("Idempotent response could not be saved", null, null, e.toString(), null);
+        }
+    }
+
+    /**
+     * Replays a saved response, if it was produced by the same request.
+     *
+     * @param stored      the saved response
+     * @param fingerprint the fingerprint of the repeating request
+     * @return a future of the replayed response, or a failed one on a conflict
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> replay(StoredResponse stored, String fingerprint) {
+        if (!stored.getFingerprint().equals(fingerprint)) {
+            return conflict();
+        }
+        replayed.increment();
+        return CompletableFuture.completedFuture(stored.toReplay());
+    }
+
+    /**
+     * Counts and reports a key reused with a different request.
+     *
+     * @return a future failed with an {@link IdempotencyConflictException}
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> conflict() {
+        conflicts.increment();
+        return CompletableFuture.failedFuture(new IdempotencyConflictException());
+    }
+
+    /**
+     * Tells whether a response is one the client would get again, and is saved for replay.
+     *
+     * @param statusCode the response status code
+     * @return {@code true} for successes and client errors other than {@code 429}
+     */
+    private static boolean isReplayable(int statusCode) {
+        return statusCode < 500 && statusCode != 429;
+    }
+
+    /**
+     * Reads a whole number from an environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or malformed
+     * @return the value
+     */
+    private static long envLong(String name, long fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Creates an HMAC-SHA256 keyed with {@link #fingerprintKey}.
+     *
+     * @return a new initialized instance
+     */
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fingerprintKey);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    /**
+     * A request running under a key.
+     */
+    private static final class Pending {
+
+        /**
+         * Fingerprint of the running request.
+         */
+        private final String fingerprint;
+
+        /**
+         * Response shared with the repeats that wait for it.
+         */
+        private final CompletableFuture<APIGatewayProxyResponseEvent> response = new CompletableFuture<>();
+
+        /**
+         * Creates an entry.
+         *
+         * @param fingerprint the fingerprint of the running request
+         */
+        private Pending(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.homieomie.authservice.idempotency;
+
+/**
+ * Storage of the responses replayed for repeated {@code Idempotency-Key}s.
+ * <p>
+ * The {@link IdempotencyGuard} only needs to find and save whole responses
+ * by key, so the store can be anything from the bounded in-process map of
+ * {@link InMemoryIdempotencyStore} to a file or a shared table that lets every
+ * instance replay what any of them answered. Implementations must be safe
+ * for concurrent use and must not return an entry past its expiry.
+ * </p>
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Finds the response saved under a key.
+     *
+     * @param key the scoped idempotency key
+     * @return the response, or {@code null} if none is saved or it has expired
+     */
+    StoredResponse find(String key);
+
+    /**
+     * Saves a response under a key until its expiry, replacing any earlier one.
+     *
+     * @param key      the scoped idempotency key
+     * @param response the response to replay
+     */
+    void save(String key, StoredResponse response);
+
+    /**
+     * Returns the secret key the {@link IdempotencyGuard} fingerprints
+     * requests with. Every process sharing the store gets the same key, so a
+     * fingerprint saved by one matches a repeat reaching another.
+     *
+     * @return the key bytes
+     */
+    byte[] fingerprintKey();
+}
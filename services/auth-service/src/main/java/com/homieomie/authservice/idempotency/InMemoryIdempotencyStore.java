@@ -0,0 +1,83 @@
+package com.homieomie.authservice.idempotency;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded {@link IdempotencyStore} kept in the memory of this process.
+ * <p>
+ * Each Lambda instance and each standalone server keeps its own responses,
+ * so a retry only replays when it reaches the instance that answered the
+ * first attempt, as browser retries over a kept-alive connection usually do.
+ * When the store is full, expired entries are dropped first, then arbitrary
+ * ones.
+ * </p>
+ */
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    /**
+     * Maximum number of saved responses.
+     */
+    private final int maxEntries;
+
+    /**
+     * Saved responses, keyed by scoped idempotency key.
+     */
+    private final Map<String, StoredResponse> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Fingerprint key, drawn at random as no other process shares the store.
+     */
+    private final byte[] fingerprintKey = IdempotencyGuard.newFingerprintKey();
+
+    /**
+     * Creates an empty store.
+     *
+     * @param maxEntries the maximum number of saved responses
+     */
+    public InMemoryIdempotencyStore(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    @Override
+    public StoredResponse find(String key) {
+        StoredResponse response = entries.get(key);
+        if (response == null) {
+            return null;
+        }
+        if (response.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, response);
+            return null;
+        }
+        return response;
+    }
+
+    @Override
+    public void save(String key, StoredResponse response) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            long now = System.currentTimeMillis();
+            entries.values().removeIf(entry -> entry.isExpired(now));
+            Iterator<String> it = entries.keySet().iterator();
+            while (entries.size() >= maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        entries.put(key, response);
+    }
+
+    /**
+     * Returns the number of saved responses, expired ones included until they are dropped.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public byte[] fingerprintKey() {
+        return fingerprintKey.clone();
+    }
+}
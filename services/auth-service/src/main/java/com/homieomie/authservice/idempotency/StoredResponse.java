@@ -0,0 +1,134 @@
+package com.homieomie.authservice.idempotency;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A response saved for replay, with the fingerprint of the request that
+ * produced it and the time it stops being replayed.
+ * <p>
+ * Holds only strings and numbers, so that a store outside the process can
+ * write it out field by field.
+ * </p>
+ */
+public final class StoredResponse {
+
+    /**
+     * Header set on a replayed response, so clients can tell it from a new one.
+     */
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    /**
+     * SHA-256 of the request that produced the response, as hex.
+     */
+    private final String fingerprint;
+
+    /**
+     * HTTP status code.
+     */
+    private final int statusCode;
+
+    /**
+     * Response headers.
+     */
+    private final Map<String, String> headers;
+
+    /**
+     * Response body.
+     */
+    private final String body;
+
+    /**
+     * Epoch milliseconds after which the response is no longer replayed.
+     */
+    private final long expiresAtMillis;
+
+    /**
+     * Creates a stored response.
+     *
+     * @param fingerprint     the SHA-256 of the request that produced the response, as hex
+     * @param statusCode      the HTTP status code
+     * @param headers         the response headers
+     * @param body            the response body
+     * @param expiresAtMillis the end of replay in epoch milliseconds
+     */
+    public StoredResponse(String fingerprint, int statusCode, Map<String, String> headers, String body,
+                          long expiresAtMillis) {
+        this.fingerprint = fingerprint;
+        this.statusCode = statusCode;
+        this.headers = headers == null ? Map.of() : Map.copyOf(headers);
+        this.body = body;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+
+    /**
+     * Returns the fingerprint of the request that produced the response.
+     *
+     * @return the SHA-256 as hex
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the HTTP status code.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the response headers.
+     *
+     * @return a read-only map of the headers
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the response body.
+     *
+     * @return the body
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Returns the time the response stops being replayed.
+     *
+     * @return the expiry in epoch milliseconds
+     */
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    /**
+     * Tells whether the response is past its expiry.
+     *
+     * @param nowMillis the current time in epoch milliseconds
+     * @return {@code true} if it is no longer replayed
+     */
+    public boolean isExpired(long nowMillis) {
+        return expiresAtMillis <= nowMillis;
+    }
+
+    /**
+     * Builds the response a repeated request receives, marked with
+     * {@link #REPLAYED_HEADER}.
+     *
+     * @return a new API Gateway response event
+     */
+    public APIGatewayProxyResponseEvent toReplay() {
+        Map<String, String> replayHeaders = new HashMap<>(headers);
+        replayHeaders.put(REPLAYED_HEADER, "true");
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(statusCode)
+                .withHeaders(replayHeaders)
+                .withBody(body);
+    }
+}
@@ -0,0 +1,357 @@
+package com.homieomie.authservice.logging;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide structured log of the request path, one JSON line per event
+ * on the stream CloudWatch Logs collects.
+ * <p>
+ * Logging an event only claims a slot of a lock-free {@link LogRing} and
+ * stores the references it was given: nothing is formatted, copied or
+ * written on the calling thread, which never waits. Events are encoded in
+ * batches by {@link #flush(PrintStream)}, under Lambda at the end of each
+ * invocation once the response is on its way, on the standalone server by a
+ * background thread. When the ring is full, events are dropped and counted,
+ * and the count is logged with the next batch.
+ * </p>
+ * <p>
+ * Successful requests are all logged up to a number per second, and beyond
+ * it one in {@code sampleRate}, each marked with the rate it stands for.
+ * Failures are always logged. Passwords and tokens in request models are
+ * never written.
+ * </p>
+ */
+public final class EventLog {
+
+    /**
+     * Default number of events buffered between flushes.
+     */
+    static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * Default number of successful requests logged per second before sampling.
+     */
+    static final int DEFAULT_FULL_PER_SECOND = 100;
+
+    /**
+     * Default share of successful requests logged beyond that, one in this many.
+     */
+    static final int DEFAULT_SAMPLE_RATE = 10;
+
+    /**
+     * Default interval of the standalone server's background flush, in milliseconds.
+     */
+    static final int DEFAULT_FLUSH_MILLIS = 200;
+
+    /**
+     * Bytes encoded before a batch is written out.
+     */
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    /**
+     * Instance shared by the controller and the Cognito service.
+     */
+    private static final EventLog SHARED = fromEnvironment();
+
+    /**
+     * Whether requests are logged at all; warnings always are.
+     */
+    private final boolean logRequests;
+
+    /**
+     * Events waiting to be written.
+     */
+    private final LogRing ring;
+
+    /**
+     * Successful requests logged per second before sampling starts.
+     */
+    private final int fullPerSecond;
+
+    /**
+     * One in this many successful requests is logged once sampling.
+     */
+    private final int sampleRate;
+
+    /**
+     * Interval of the background flush, in milliseconds.
+     */
+    private final long flushMillis;
+
+    /**
+     * Events lost to a full ring since the last flush.
+     */
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Successful requests seen in the current second.
+     */
+    private final AtomicInteger windowCount = new AtomicInteger();
+
+    /**
+     * Encoder of the batches, used under this object's lock only.
+     */
+    private final JsonLogEncoder encoder = new JsonLogEncoder(BATCH_BYTES);
+
+    /**
+     * Epoch second {@link #windowCount} counts.
+     */
+    private volatile long windowSecond;
+
+    /**
+     * Background flush of the standalone server, or {@code null}.
+     */
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Creates a log.
+     *
+     * @param logRequests   whether requests are logged at all
+     * @param capacity      the number of events buffered between flushes
+     * @param fullPerSecond the successful requests logged per second before sampling
+     * @param sampleRate    one in this many successful requests is logged beyond that
+     * @param flushMillis   the interval of the background flush, in milliseconds
+     */
+    public EventLog(boolean logRequests, int capacity, int fullPerSecond, int sampleRate, long flushMillis) {
+        this.logRequests = logRequests;
+        this.ring = new LogRing(capacity);
+        this.fullPerSecond = fullPerSecond;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Returns the process-wide instance.
+     *
+     * @return the shared log
+     */
+    public static EventLog shared() {
+        return SHARED;
+    }
+
+    /**
+     * Creates a log configured from {@code LOG_REQUESTS},
+     * {@code LOG_BUFFER_EVENTS}, {@code LOG_SAMPLE_AFTER_PER_SECOND},
+     * {@code LOG_SAMPLE_RATE} and {@code LOG_FLUSH_MILLIS}.
+     *
+     * @return the log
+     */
+    public static EventLog fromEnvironment() {
+        return new EventLog(
+                !"false".equalsIgnoreCase(System.getenv("LOG_REQUESTS")),
+                envInt("LOG_BUFFER_EVENTS", DEFAULT_CAPACITY),
+                envInt("LOG_SAMPLE_AFTER_PER_SECOND", DEFAULT_FULL_PER_SECOND),
+                envInt("LOG_SAMPLE_RATE", DEFAULT_SAMPLE_RATE),
+                envInt("LOG_FLUSH_MILLIS", DEFAULT_FLUSH_MILLIS));
+    }
+
+    /**
+     * Logs a handled request: as an error if it was answered with a server
+     * error, as a warning if a Cognito call failed, otherwise, subject to
+     * sampling, as information.
+     *
+     * @param requestId    the request ID, or {@code null}
+     * @param tenant       the tenant ID, or {@code null} for the environment's pool
+     * @param action       the action name
+     * @param status       the HTTP status answered
+     * @param latencyNanos the time the request took, in nanoseconds
+     * @param errorCode    the error code of the Cognito call that failed, or {@code null}
+     * @param request      the request model, or {@code null}; its secrets are not logged
+     */
+    public void request(String requestId, String tenant, String action, int status, long latencyNanos,
+                        String errorCode, Object request) {
+        if (!logRequests) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        LogEvent.Level level = status >= 500 ? LogEvent.Level.ERROR
+                : errorCode != null ? LogEvent.Level.WARN : LogEvent.Level.INFO;
+        int rate = level == LogEvent.Level.INFO ? sample(now) : 1;
+        if (rate == 0) {
+            return;
+        }
+        append(now, level, "Request handled", requestId, tenant, action, status, latencyNanos, errorCode, null,
+                request, rate);
+    }
+
+    /**
+     * Logs a failure handled outside the response, such as a Cognito call
+     * whose error the caller does not see.
+     *
+     * @param message   what happened
+     * @param action    the action name, or {@code null}
+     * @param errorCode the error code of the Cognito call that failed, or {@code null}
+     * @param detail    the error message, or {@code null}
+     * @param request   the request model, or {@code null}; its secrets are not logged
+     */
+    public void warn(String message, String action, String errorCode, String detail, Object request) {
+        append(System.currentTimeMillis(), LogEvent.Level.WARN, message, null, null, action, 0, -1, errorCode,
+                detail, request, 1);
+    }
+
+    /**
+     * Writes the buffered events, in batches of JSON lines.
+     *
+     * @param out the stream CloudWatch Logs collects, normally {@code System.out}
+     */
+    public synchronized void flush(PrintStream out) {
+        long lost = dropped.sumThenReset();
+        if (lost > 0) {
+            encoder.encodeDropped(System.currentTimeMillis(), lost);
+        }
+        LogEvent event;
+        while ((event = ring.peek()) != null) {
+            encoder.encode(event);
+            ring.release(event);
+            if (encoder.length() >= BATCH_BYTES) {
+                write(out);
+            }
+        }
+        if (encoder.length() > 0) {
+            write(out);
+        }
+    }
+
+    /**
+     * Discards the buffered events, such as those of the requests made while
+     * warming up.
+     */
+    public synchronized void discard() {
+        LogEvent event;
+        while ((event = ring.peek()) != null) {
+            ring.release(event);
+        }
+        dropped.reset();
+    }
+
+    /**
+     * Starts flushing in the background every {@code LOG_FLUSH_MILLIS}, for
+     * a process that is not frozen between requests.
+     *
+     * @param out the stream to write to
+     */
+    public synchronized void startFlusher(PrintStream out) {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "event-log-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> flush(out), flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background flush and writes what is left.
+     *
+     * @param out the stream to write to
+     */
+    public void stopFlusher(PrintStream out) {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = flusher;
+            flusher = null;
+        }
+        if (running != null) {
+            running.shutdown();
+        }
+        flush(out);
+    }
+
+    /**
+     * Decides whether a successful request is logged. The window is reset by
+     * whichever thread first sees a new second, so a race may log a few more
+     * than the budget.
+     *
+     * @param now the current time, in epoch milliseconds
+     * @return the rate the event stands for, or {@code 0} to skip it
+     */
+    private int sample(long now) {
+        long second = now / 1_000;
+        if (second != windowSecond) {
+            windowSecond = second;
+            windowCount.set(0);
+        }
+        int count = windowCount.incrementAndGet();
+        if (count <= fullPerSecond) {
+            return 1;
+        }
+        return (count - fullPerSecond) % sampleRate == 0 ? sampleRate : 0;
+    }
+
+    /**
+     * Stores an event in the ring, or counts it as dropped if the ring is full.
+     *
+     * @param now          the time of the event, in epoch milliseconds
+     * @param level        the severity
+     * @param message      what happened
+     * @param requestId    the request ID, or {@code null}
+     * @param tenant       the tenant ID, or {@code null}
+     * @param action       the action name, or {@code null}
+     * @param status       the HTTP status answered, or {@code 0}
+     * @param latencyNanos the time the request took in nanoseconds, or {@code -1}
+     * @param errorCode    the Cognito error code, or {@code null}
+     * @param detail       the detail, or {@code null}
+     * @param request      the request model, or {@code null}
+     * @param rate         the number of events this one stands for
+     */
+    private void append(long now, LogEvent.Level level, String message, String requestId, String tenant,
+                        String action, int status, long latencyNanos, String errorCode, String detail, Object request,
+                        int rate) {
+        LogEvent event = ring.claim();
+        if (event == null) {
+            dropped.increment();
+            return;
+        }
+        event.timestampMillis = now;
+        event.level = level;
+        event.message = message;
+        event.requestId = requestId;
+        event.tenant = tenant;
+        event.action = action;
+        event.status = status;
+        event.latencyNanos = latencyNanos;
+        event.errorCode = errorCode;
+        event.detail = detail;
+        event.request = request;
+        event.sampleRate = rate;
+        ring.publish(event);
+    }
+
+    /**
+     * Writes the encoded batch in one call and empties the encoder.
+     *
+     * @param out the stream to write to
+     */
+    private void write(PrintStream out) {
+        out.write(encoder.buffer(), 0, encoder.length());
+        out.flush();
+        encoder.reset();
+    }
+
+    /**
+     * Reads a positive integer environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or invalid
+     * @return the value
+     */
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.homieomie.authservice.logging;
+
+import com.homieomie.authservice.models.ConfirmSignupRequest;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.models.RefreshRequest;
+import com.homieomie.authservice.models.SignupRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encodes {@link LogEvent}s as JSON lines, UTF-8, into one reusable byte buffer.
+ * <p>
+ * Strings are escaped and encoded straight from the event's references into
+ * the buffer, so encoding allocates nothing once the buffer has grown to the
+ * size of a batch. Request models are written field by field: passwords and
+ * tokens are never read, only a placeholder is written in their place. Values
+ * longer than {@link #MAX_VALUE_CHARS} are cut short. Not thread-safe; only
+ * the consumer of the ring encodes.
+ * </p>
+ */
+final class JsonLogEncoder {
+
+    /**
+     * Placeholder written in place of a secret.
+     */
+    private static final String REDACTED = "[REDACTED]";
+
+    /**
+     * Longest value written, in characters.
+     */
+    private static final int MAX_VALUE_CHARS = 1024;
+
+    /**
+     * Hexadecimal digits of {@code \\u} escapes.
+     */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Scratch space for the digits of a number.
+     */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * The encoded lines.
+     */
+    private byte[] buffer;
+
+    /**
+     * Number of bytes of {@link #buffer} in use.
+     */
+    private int length;
+
+    /**
+     * Creates an encoder.
+     *
+     * @param capacity the initial buffer size, in bytes
+     */
+    JsonLogEncoder(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * Appends an event as one line.
+     *
+     * @param event the event
+     */
+    void encode(LogEvent event) {
+        ascii("{\"timestamp\":");
+        number(event.timestampMillis);
+        ascii(",\"level\":\"");
+        ascii(event.level.name());
+        ascii("\"");
+        stringField("message", event.message);
+        stringField("requestId", event.requestId);
+        stringField("tenant", event.tenant);
+        stringField("action", event.action);
+        if (event.status != 0) {
+            ascii(",\"status\":");
+            number(event.status);
+        }
+        if (event.latencyNanos >= 0) {
+            long micros = event.latencyNanos / 1_000;
+            ascii(",\"latencyMs\":");
+            number(micros / 1_000);
+            ensure(4);
+            buffer[length++] = '.';
+            buffer[length++] = (byte) ('0' + micros / 100 % 10);
+            buffer[length++] = (byte) ('0' + micros / 10 % 10);
+            buffer[length++] = (byte) ('0' + micros % 10);
+        }
+        stringField("cognitoError", event.errorCode);
+        stringField("detail", event.detail);
+        if (event.request != null) {
+            request(event.request);
+        }
+        if (event.sampleRate > 1) {
+            ascii(",\"sampleRate\":");
+            number(event.sampleRate);
+        }
+        ascii("}\n");
+    }
+
+    /**
+     * Appends a line reporting events lost because the ring was full.
+     *
+     * @param timestampMillis the time of the report, in epoch milliseconds
+     * @param dropped         the number of events lost
+     */
+    void encodeDropped(long timestampMillis, long dropped) {
+        ascii("{\"timestamp\":");
+        number(timestampMillis);
+        ascii(",\"level\":\"WARN\",\"message\":\"Log events dropped\",\"dropped\":");
+        number(dropped);
+        ascii("}\n");
+    }
+
+    /**
+     * Returns the buffer holding the encoded lines.
+     *
+     * @return the buffer, of which the first {@link #length()} bytes are in use
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the number of bytes encoded since the last {@link #reset()}.
+     *
+     * @return the length
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Empties the buffer for the next batch.
+     */
+    void reset() {
+        length = 0;
+    }
+
+    /**
+     * Appends the fields of a request model, redacting its secrets.
+     *
+     * @param request the request model
+     */
+    private void request(Object request) {
+        if (request instanceof LoginRequest login) {
+            ascii(",\"request\":{\"username\":");
+            string(login.getUsername());
+            ascii(",\"password\":");
+            string(REDACTED);
+        } else if (request instanceof ConfirmSignupRequest confirm) {
+            ascii(",\"request\":{\"username\":");
+            string(confirm.getUsername());
+            ascii(",\"password\":");
+            string(REDACTED);
+        } else if (request instanceof RefreshRequest) {
+            ascii(",\"request\":{\"refreshToken\":");
+            string(REDACTED);
+        } else if (request instanceof SignupRequest signup) {
+            ascii(",\"request\":{\"username\":");
+            string(signup.getUsername());
+        } else {
+            return;
+        }
+        ascii("}");
+    }
+
+    /**
+     * Appends a string field, unless the value is {@code null}.
+     *
+     * @param name  the field name, plain ASCII
+     * @param value the value
+     */
+    private void stringField(String name, String value) {
+        if (value == null) {
+            return;
+        }
+        ascii(",\"");
+        ascii(name);
+        ascii("\":");
+        string(value);
+    }
+
+    /**
+     * Appends a string as a JSON string, escaped and UTF-8 encoded.
+     *
+     * @param value the value, or {@code null} for {@code null}
+     */
+    private void string(String value) {
+        if (value == null) {
+            ascii("null");
+            return;
+        }
+        int chars = Math.min(value.length(), MAX_VALUE_CHARS);
+        ensure(chars * 6 + 2);
+        buffer[length++] = '"';
+        for (int i = 0; i < chars; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                buffer[length++] = (byte) c;
+            } else if (c < 0x80) {
+                escape(c);
+            } else if (c < 0x800) {
+                buffer[length++] = (byte) (0xc0 | c >> 6);
+                buffer[length++] = (byte) (0x80 | c & 0x3f);
+            } else if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer[length++] = (byte) (0xf0 | codePoint >> 18);
+                buffer[length++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+                buffer[length++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+                buffer[length++] = (byte) (0x80 | codePoint & 0x3f);
+            } else if (Character.isSurrogate(c)) {
+                buffer[length++] = '?';
+            } else {
+                buffer[length++] = (byte) (0xe0 | c >> 12);
+                buffer[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+                buffer[length++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+        buffer[length++] = '"';
+    }
+
+    /**
+     * Appends the JSON escape of an ASCII character.
+     *
+     * @param c the character: a quote, a backslash or a control character
+     */
+    private void escape(char c) {
+        buffer[length++] = '\\';
+        switch (c) {
+            case '"', '\\' -> buffer[length++] = (byte) c;
+            case '\n' -> buffer[length++] = 'n';
+            case '\r' -> buffer[length++] = 'r';
+            case '\t' -> buffer[length++] = 't';
+            default -> {
+                buffer[length++] = 'u';
+                buffer[length++] = '0';
+                buffer[length++] = '0';
+                buffer[length++] = HEX_DIGITS[c >> 4];
+                buffer[length++] = HEX_DIGITS[c & 0xf];
+            }
+        }
+    }
+
+    /**
+     * Appends text known to be plain ASCII and to need no escaping.
+     *
+     * @param text the text
+     */
+    private void ascii(String text) {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer[length++] = (byte) text.charAt(i);
+        }
+    }
+
+    /**
+     * Appends a non-negative number in decimal.
+     *
+     * @param value the number
+     */
+    private void number(long value) {
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        ensure(count);
+        while (count > 0) {
+            buffer[length++] = digits[--count];
+        }
+    }
+
+    /**
+     * Grows the buffer to fit the given number of further bytes.
+     *
+     * @param bytes the bytes about to be appended
+     */
+    private void ensure(int bytes) {
+        if (length + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + bytes));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.homieomie.authservice.logging;
+
+/**
+ * One slot of the {@link LogRing}, reused for every event that passes through it.
+ * <p>
+ * A producer fills the fields of the slot it claimed, then publishes it by
+ * writing its sequence; the consumer reads the fields only once it sees that
+ * sequence, and clears the references after encoding them. Values are kept
+ * as the references the caller passed, never copied.
+ * </p>
+ */
+final class LogEvent {
+
+    /**
+     * Sequence of the event last published in this slot, {@code -1} before the first.
+     */
+    volatile long published = -1;
+
+    /**
+     * Sequence the slot was last claimed for, known to the claiming producer only.
+     */
+    long sequence;
+
+    /**
+     * Time of the event, in epoch milliseconds.
+     */
+    long timestampMillis;
+
+    /**
+     * Severity.
+     */
+    Level level;
+
+    /**
+     * What happened.
+     */
+    String message;
+
+    /**
+     * Request ID the event belongs to, or {@code null}.
+     */
+    String requestId;
+
+    /**
+     * Tenant the request was handled for, or {@code null}.
+     */
+    String tenant;
+
+    /**
+     * Action the event belongs to, or {@code null}.
+     */
+    String action;
+
+    /**
+     * HTTP status answered, or {@code 0} if none.
+     */
+    int status;
+
+    /**
+     * Time the request took in nanoseconds, or {@code -1} if not timed.
+     */
+    long latencyNanos;
+
+    /**
+     * Error code of the Cognito call that failed, or {@code null}.
+     */
+    String errorCode;
+
+    /**
+     * Free-form detail, such as the error message, or {@code null}.
+     */
+    String detail;
+
+    /**
+     * Request model, written with its secrets redacted, or {@code null}.
+     */
+    Object request;
+
+    /**
+     * Number of events this one stands for after sampling.
+     */
+    int sampleRate;
+
+    /**
+     * Drops the references held, so the slot keeps nothing alive until reused.
+     */
+    void clear() {
+        message = null;
+        requestId = null;
+        tenant = null;
+        action = null;
+        errorCode = null;
+        detail = null;
+        request = null;
+    }
+
+    /**
+     * Severity of an event.
+     */
+    enum Level {
+
+        /**
+         * Normal operation.
+         */
+        INFO,
+
+        /**
+         * A failure the service handled.
+         */
+        WARN,
+
+        /**
+         * A failure answered with a server error.
+         */
+        ERROR
+    }
+}
@@ -0,0 +1,98 @@
+package com.homieomie.authservice.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free ring of preallocated {@link LogEvent} slots, written by
+ * any number of threads and drained by one.
+ * <p>
+ * A producer claims the next sequence with one compare-and-set, fills the
+ * slot it maps to and publishes it; it never waits, and finds no slot when
+ * the consumer is a whole ring behind. The consumer reads slots in sequence
+ * order, stopping at the first one not yet published.
+ * </p>
+ */
+final class LogRing {
+
+    /**
+     * The slots; slot {@code i} holds the events of sequences {@code i}, {@code i + length}...
+     */
+    private final LogEvent[] slots;
+
+    /**
+     * Mask mapping a sequence to its slot.
+     */
+    private final int mask;
+
+    /**
+     * Next sequence to claim.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * Next sequence to consume, written by the consumer only.
+     */
+    private volatile long consumed;
+
+    /**
+     * Creates a ring.
+     *
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    LogRing(int capacity) {
+        int length = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new LogEvent[length];
+        this.mask = length - 1;
+        for (int i = 0; i < length; i++) {
+            slots[i] = new LogEvent();
+        }
+    }
+
+    /**
+     * Claims the slot of the next sequence.
+     *
+     * @return the slot to fill and {@link #publish}, or {@code null} if the ring is full
+     */
+    LogEvent claim() {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length) {
+                return null;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        LogEvent event = slots[(int) sequence & mask];
+        event.sequence = sequence;
+        return event;
+    }
+
+    /**
+     * Publishes a filled slot to the consumer.
+     *
+     * @param event the slot from {@link #claim()}
+     */
+    void publish(LogEvent event) {
+        event.published = event.sequence;
+    }
+
+    /**
+     * Returns the next published event without consuming it.
+     *
+     * @return the event, or {@code null} if the next one is not published yet
+     */
+    LogEvent peek() {
+        long next = consumed;
+        LogEvent event = slots[(int) next & mask];
+        return event.published == next ? event : null;
+    }
+
+    /**
+     * Consumes the event returned by {@link #peek()}, freeing its slot.
+     *
+     * @param event the event
+     */
+    void release(LogEvent event) {
+        event.clear();
+        consumed = consumed + 1;
+    }
+}
@@ -0,0 +1,56 @@
+package com.homieomie.authservice.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic event counter that can also report what was added since it was
+ * last drained.
+ */
+final class Counter {
+
+    /**
+     * Events counted so far.
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Value of {@link #count} at the previous drain; guarded by this counter.
+     */
+    private long drained;
+
+    /**
+     * Counts one event.
+     */
+    void increment() {
+        count.increment();
+    }
+
+    /**
+     * Returns the events counted since the previous drain.
+     *
+     * @return the count added since the previous drain
+     */
+    synchronized long drain() {
+        long now = count.sum();
+        long delta = now - drained;
+        drained = now;
+        return delta;
+    }
+
+    /**
+     * Returns every event counted so far.
+     *
+     * @return the running count
+     */
+    long total() {
+        return count.sum();
+    }
+
+    /**
+     * Discards everything counted so far.
+     */
+    synchronized void reset() {
+        count.reset();
+        drained = 0;
+    }
+}
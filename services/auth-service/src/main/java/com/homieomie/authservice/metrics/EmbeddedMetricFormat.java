@@ -0,0 +1,162 @@
+package com.homieomie.authservice.metrics;
+
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+
+/**
+ * Renders the metrics recorded since the previous flush as a CloudWatch
+ * Embedded Metric Format log line.
+ * <p>
+ * Timers become metrics in microseconds named {@code <action>.<segment>} and
+ * {@code cognito.<operation>}; counters become counts named
+ * {@code status.<code>} and {@code cognitoError.<type>}. Every recorded
+ * duration is listed, up to the 100 values a metric may carry; above that,
+ * 100 evenly spaced percentiles stand in for them. Metrics with nothing new
+ * are left out.
+ * </p>
+ */
+final class EmbeddedMetricFormat {
+
+    /**
+     * CloudWatch namespace of the metrics, from {@code METRICS_NAMESPACE}.
+     */
+    private static final String NAMESPACE = namespace();
+
+    /**
+     * Most values a single metric may carry in one line.
+     */
+    private static final int MAX_VALUES = 100;
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private EmbeddedMetricFormat() {}
+
+    /**
+     * Drains the metrics into one log line.
+     *
+     * @param metrics     the metrics to drain
+     * @param timestampMs the line's timestamp in epoch milliseconds
+     * @return the JSON line, or {@code null} if nothing was recorded
+     */
+    static String format(Metrics metrics, long timestampMs) {
+        StringBuilder definitions = new StringBuilder(512);
+        StringBuilder values = new StringBuilder(512);
+
+        for (Map.Entry<String, Timer[]> action : metrics.requestTimers().entrySet()) {
+            for (Metrics.Segment segment : Metrics.Segment.values()) {
+                Histogram drained = action.getValue()[segment.ordinal()].drain();
+                appendTimer(definitions, values, action.getKey() + "." + segment.label(), drained);
+            }
+        }
+        for (Map.Entry<String, Timer> operation : metrics.cognitoTimers().entrySet()) {
+            appendTimer(definitions, values, "cognito." + operation.getKey(), operation.getValue().drain());
+        }
+        for (Map.Entry<Integer, Counter> status : metrics.statusCounters().entrySet()) {
+            appendCount(definitions, values, "status." + status.getKey(), status.getValue().drain());
+        }
+        for (Map.Entry<String, Counter> error : metrics.cognitoErrors().entrySet()) {
+            appendCount(definitions, values, "cognitoError." + error.getKey(), error.getValue().drain());
+        }
+        if (definitions.length() == 0) {
+            return null;
+        }
+
+        return new StringBuilder(definitions.length() + values.length() + 160)
+                .append("{\"_aws\":{\"Timestamp\":").append(timestampMs)
+                .append(",\"CloudWatchMetrics\":[{\"Namespace\":\"").append(NAMESPACE)
+                .append("\",\"Dimensions\":[[]],\"Metrics\":[").append(definitions)
+                .append("]}]}").append(values).append('}')
+                .toString();
+    }
+
+    /**
+     * Appends a timer's durations, if it has any.
+     *
+     * @param definitions the metric definitions being built
+     * @param values      the metric values being built
+     * @param name        the metric name
+     * @param histogram   the durations to write, in nanoseconds
+     */
+    private static void appendTimer(StringBuilder definitions, StringBuilder values, String name,
+                                    Histogram histogram) {
+        long count = histogram.getTotalCount();
+        if (count == 0) {
+            return;
+        }
+        appendDefinition(definitions, name, "Microseconds");
+        values.append(",\"").append(name).append("\":[");
+        int written = 0;
+        if (count <= MAX_VALUES) {
+            for (HistogramIterationValue value : histogram.recordedValues()) {
+                double micros = histogram.medianEquivalentValue(value.getValueIteratedTo()) / 1_000.0;
+                for (long i = 0; i < value.getCountAtValueIteratedTo(); i++) {
+                    written = appendValue(values, written, micros);
+                }
+            }
+        } else {
+            for (int i = 0; i < MAX_VALUES; i++) {
+                double percentile = (i + 0.5) * 100.0 / MAX_VALUES;
+                written = appendValue(values, written, histogram.getValueAtPercentile(percentile) / 1_000.0);
+            }
+        }
+        values.append(']');
+    }
+
+    /**
+     * Appends a counter's increase, if it has any.
+     *
+     * @param definitions the metric definitions being built
+     * @param values      the metric values being built
+     * @param name        the metric name
+     * @param count       the increase since the previous flush
+     */
+    private static void appendCount(StringBuilder definitions, StringBuilder values, String name, long count) {
+        if (count == 0) {
+            return;
+        }
+        appendDefinition(definitions, name, "Count");
+        values.append(",\"").append(name).append("\":").append(count);
+    }
+
+    /**
+     * Appends one metric definition.
+     *
+     * @param definitions the metric definitions being built
+     * @param name        the metric name
+     * @param unit        the CloudWatch unit
+     */
+    private static void appendDefinition(StringBuilder definitions, String name, String unit) {
+        if (definitions.length() > 0) {
+            definitions.append(',');
+        }
+        definitions.append("{\"Name\":\"").append(name).append("\",\"Unit\":\"").append(unit).append("\"}");
+    }
+
+    /**
+     * Appends one value to a value array.
+     *
+     * @param values  the metric values being built
+     * @param written the number of values already in the array
+     * @param value   the value
+     * @return the number of values now in the array
+     */
+    private static int appendValue(StringBuilder values, int written, double value) {
+        if (written > 0) {
+            values.append(',');
+        }
+        values.append(value);
+        return written + 1;
+    }
+
+    /**
+     * Reads the CloudWatch namespace.
+     *
+     * @return {@code METRICS_NAMESPACE}, or {@code AuthService} if unset
+     */
+    private static String namespace() {
+        String value = System.getenv("METRICS_NAMESPACE");
+        return value == null || value.isBlank() ? "AuthService" : value.trim();
+    }
+}
@@ -0,0 +1,262 @@
+package com.homieomie.authservice.metrics;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Process-wide latency and outcome metrics of the request path.
+ * <p>
+ * Every request is timed per action, as a whole and split into the
+ * {@link Segment}s it spends parsing, validating, waiting on Cognito and
+ * serializing. Every Cognito call is timed per operation. Response status
+ * codes and the exception types Cognito fails with are counted. Recording
+ * takes a few tens of nanoseconds and allocates nothing once an action or
+ * operation has been seen.
+ * </p>
+ * <p>
+ * Under Lambda, {@link #flush(PrintStream)} writes what the invocation
+ * recorded as one CloudWatch Embedded Metric Format line; the standalone
+ * server serves cumulative figures in the Prometheus text format from
+ * {@code /metrics}.
+ * </p>
+ */
+public final class Metrics {
+
+    /**
+     * Instance shared by the controller and the Cognito service.
+     */
+    private static final Metrics SHARED = new Metrics();
+
+    /**
+     * Highest status code counted; anything above is counted as this.
+     */
+    private static final int MAX_STATUS = 599;
+
+    /**
+     * Segment timers per action, indexed by {@link Segment#ordinal()}.
+     */
+    private final Map<String, Timer[]> requestTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Call timers per Cognito operation.
+     */
+    private final Map<String, Timer> cognitoTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Response counters indexed by status code, created on first use.
+     */
+    private final AtomicReferenceArray<Counter> statusCounters = new AtomicReferenceArray<>(MAX_STATUS + 1);
+
+    /**
+     * Failure counters per Cognito exception type.
+     */
+    private final Map<String, Counter> cognitoErrors = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the process-wide instance.
+     *
+     * @return the shared metrics
+     */
+    public static Metrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Records the time an action spent in one segment.
+     *
+     * @param action  the action name
+     * @param segment the segment
+     * @param nanos   the duration in nanoseconds
+     */
+    public void recordRequest(String action, Segment segment, long nanos) {
+        Timer[] timers = requestTimers.get(action);
+        if (timers == null) {
+            timers = requestTimers.computeIfAbsent(action, name -> newTimers());
+        }
+        timers[segment.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records the duration of one Cognito call.
+     *
+     * @param operation the Cognito operation name
+     * @param nanos     the duration in nanoseconds
+     */
+    public void recordCognito(String operation, long nanos) {
+        Timer timer = cognitoTimers.get(operation);
+        if (timer == null) {
+            timer = cognitoTimers.computeIfAbsent(operation, name -> new Timer());
+        }
+        timer.record(nanos);
+    }
+
+    /**
+     * Counts one response.
+     *
+     * @param statusCode the HTTP status code
+     */
+    public void countStatus(int statusCode) {
+        int index = Math.max(0, Math.min(statusCode, MAX_STATUS));
+        Counter counter = statusCounters.get(index);
+        if (counter == null) {
+            statusCounters.compareAndSet(index, null, new Counter());
+            counter = statusCounters.get(index);
+        }
+        counter.increment();
+    }
+
+    /**
+     * Counts one failed Cognito call by exception type.
+     *
+     * @param failure the unwrapped failure
+     */
+    public void countCognitoError(Throwable failure) {
+        cognitoErrors.computeIfAbsent(failure.getClass().getSimpleName(), name -> new Counter()).increment();
+    }
+
+    /**
+     * Writes what was recorded since the previous flush as one Embedded
+     * Metric Format line, if anything was recorded.
+     *
+     * @param out the stream CloudWatch Logs collects, normally {@code System.out}
+     */
+    public synchronized void flush(PrintStream out) {
+        String line = EmbeddedMetricFormat.format(this, System.currentTimeMillis());
+        if (line != null) {
+            out.println(line);
+        }
+    }
+
+    /**
+     * Renders everything recorded since startup in the Prometheus text format.
+     *
+     * @return the exposition text
+     */
+    public synchronized String toPrometheus() {
+        return PrometheusFormat.format(this);
+    }
+
+    /**
+     * Discards everything recorded so far, such as the requests made while
+     * warming up.
+     */
+    public synchronized void reset() {
+        for (Timer[] timers : requestTimers.values()) {
+            for (Timer timer : timers) {
+                timer.reset();
+            }
+        }
+        for (Timer timer : cognitoTimers.values()) {
+            timer.reset();
+        }
+        for (int i = 0; i <= MAX_STATUS; i++) {
+            Counter counter = statusCounters.get(i);
+            if (counter != null) {
+                counter.reset();
+            }
+        }
+        for (Counter counter : cognitoErrors.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Returns the segment timers per action, sorted by action.
+     *
+     * @return action name to timers indexed by segment
+     */
+    Map<String, Timer[]> requestTimers() {
+        return new TreeMap<>(requestTimers);
+    }
+
+    /**
+     * Returns the call timers per Cognito operation, sorted by operation.
+     *
+     * @return operation name to timer
+     */
+    Map<String, Timer> cognitoTimers() {
+        return new TreeMap<>(cognitoTimers);
+    }
+
+    /**
+     * Returns the response counters that were used, by status code.
+     *
+     * @return status code to counter
+     */
+    Map<Integer, Counter> statusCounters() {
+        Map<Integer, Counter> counters = new TreeMap<>();
+        for (int i = 0; i <= MAX_STATUS; i++) {
+            Counter counter = statusCounters.get(i);
+            if (counter != null) {
+                counters.put(i, counter);
+            }
+        }
+        return counters;
+    }
+
+    /**
+     * Returns the failure counters per Cognito exception type, sorted by type.
+     *
+     * @return exception type to counter
+     */
+    Map<String, Counter> cognitoErrors() {
+        return new TreeMap<>(cognitoErrors);
+    }
+
+    /**
+     * Creates one timer per segment.
+     *
+     * @return timers indexed by segment
+     */
+    private static Timer[] newTimers() {
+        Timer[] timers = new Timer[Segment.values().length];
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new Timer();
+        }
+        return timers;
+    }
+
+    /**
+     * Parts of a request timed separately.
+     */
+    public enum Segment {
+
+        /**
+         * The whole request, from routing to response.
+         */
+        TOTAL,
+
+        /**
+         * Decoding the body into its request model.
+         */
+        PARSE,
+
+        /**
+         * Checking the request model's constraints.
+         */
+        VALIDATE,
+
+        /**
+         * Waiting for the service, and through it Cognito, to answer.
+         */
+        COGNITO,
+
+        /**
+         * Writing the response body.
+         */
+        SERIALIZE;
+
+        /**
+         * Returns the name used in metric names and labels.
+         *
+         * @return the lower-case segment name
+         */
+        public String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
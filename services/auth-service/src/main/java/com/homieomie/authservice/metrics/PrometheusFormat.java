@@ -0,0 +1,97 @@
+package com.homieomie.authservice.metrics;
+
+import java.util.Map;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Renders cumulative metrics in the Prometheus text exposition format.
+ * <p>
+ * Timers become summaries in seconds with the median, 90th, 99th and 99.9th
+ * percentiles; counters become counters.
+ * </p>
+ */
+final class PrometheusFormat {
+
+    /**
+     * Quantiles reported for every summary.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private PrometheusFormat() {}
+
+    /**
+     * Renders everything recorded so far.
+     *
+     * @param metrics the metrics to render
+     * @return the exposition text
+     */
+    static String format(Metrics metrics) {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP auth_request_seconds Time spent on requests, per action and segment.\n")
+                .append("# TYPE auth_request_seconds summary\n");
+        for (Map.Entry<String, Timer[]> action : metrics.requestTimers().entrySet()) {
+            for (Metrics.Segment segment : Metrics.Segment.values()) {
+                String labels = "action=\"" + action.getKey() + "\",segment=\"" + segment.label() + "\"";
+                appendSummary(out, "auth_request_seconds", labels, action.getValue()[segment.ordinal()].total());
+            }
+        }
+
+        out.append("# HELP auth_cognito_seconds Time spent on Cognito calls, per operation.\n")
+                .append("# TYPE auth_cognito_seconds summary\n");
+        for (Map.Entry<String, Timer> operation : metrics.cognitoTimers().entrySet()) {
+            appendSummary(out, "auth_cognito_seconds", "operation=\"" + operation.getKey() + "\"",
+                    operation.getValue().total());
+        }
+
+        out.append("# HELP auth_responses_total Responses sent, per status code.\n")
+                .append("# TYPE auth_responses_total counter\n");
+        for (Map.Entry<Integer, Counter> status : metrics.statusCounters().entrySet()) {
+            out.append("auth_responses_total{status=\"").append(status.getKey()).append("\"} ")
+                    .append(status.getValue().total()).append('\n');
+        }
+
+        out.append("# HELP auth_cognito_errors_total Failed Cognito calls, per exception type.\n")
+                .append("# TYPE auth_cognito_errors_total counter\n");
+        for (Map.Entry<String, Counter> error : metrics.cognitoErrors().entrySet()) {
+            out.append("auth_cognito_errors_total{type=\"").append(error.getKey()).append("\"} ")
+                    .append(error.getValue().total()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends one summary: its quantiles, sum and count.
+     *
+     * @param out       the text being built
+     * @param name      the metric name
+     * @param labels    the labels identifying the series, without braces
+     * @param histogram the durations recorded so far, in nanoseconds
+     */
+    private static void appendSummary(StringBuilder out, String name, String labels, Histogram histogram) {
+        long count = histogram.getTotalCount();
+        if (count == 0) {
+            return;
+        }
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ")
+                .append(seconds((long) (histogram.getMean() * count))).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+    }
+
+    /**
+     * Converts nanoseconds to seconds.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration in seconds
+     */
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
@@ -0,0 +1,83 @@
+package com.homieomie.authservice.metrics;
+
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency recorder backed by an HdrHistogram {@link Recorder}.
+ * <p>
+ * Recording is wait-free and allocation-free, so it can sit on the request
+ * path. Readers drain what was recorded since the previous drain, as an
+ * interval histogram; every drained interval is also added to a running
+ * total for readers that report cumulative figures. Durations are kept in
+ * nanoseconds with two significant digits, up to one minute; longer ones are
+ * recorded as one minute.
+ * </p>
+ */
+public final class Timer {
+
+    /**
+     * Longest duration tracked, in nanoseconds.
+     */
+    static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Significant decimal digits kept for every duration.
+     */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    /**
+     * Recorder written by the request path.
+     */
+    private final Recorder recorder = new Recorder(1, HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+
+    /**
+     * Everything drained so far; guarded by this timer.
+     */
+    private final Histogram total = new Histogram(1, HIGHEST_TRACKABLE_NANOS, SIGNIFICANT_DIGITS);
+
+    /**
+     * Histogram handed back to the recorder on the next drain; guarded by this timer.
+     */
+    private Histogram interval;
+
+    /**
+     * Records one duration.
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        recorder.recordValue(Math.max(0, Math.min(nanos, HIGHEST_TRACKABLE_NANOS)));
+    }
+
+    /**
+     * Takes the durations recorded since the previous drain and adds them to
+     * the running total.
+     *
+     * @return the interval histogram, valid until the next drain
+     */
+    synchronized Histogram drain() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    /**
+     * Drains pending durations and returns everything recorded so far.
+     *
+     * @return the running total, valid until the next drain
+     */
+    synchronized Histogram total() {
+        drain();
+        return total;
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    synchronized void reset() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.reset();
+    }
+}
@@ -0,0 +1,62 @@
+package com.homieomie.authservice.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * Model representing a request to create many users at once.
+ * <p>
+ * Arrives either as a JSON object with a {@code users} array, or as an NDJSON
+ * body whose first line names the action and whose following lines are one
+ * {@link SignupRequest} each.
+ * </p>
+ */
+@JsonIgnoreProperties({"action"})
+public class BulkSignupRequest {
+
+    /**
+     * Largest number of users a single request may create.
+     */
+    public static final int MAX_USERS = 10_000;
+
+    /**
+     * The users to create, in request order.
+     */
+    @NotNull(message = "Users are required")
+    @Size(min = 1, max = MAX_USERS, message = "Users must contain between 1 and 10000 entries")
+    private List<SignupRequest> users;
+
+    /**
+     * Default constructor for deserialization and frameworks.
+     */
+    public BulkSignupRequest() {}
+
+    /**
+     * Constructs a {@code BulkSignupRequest} with the given users.
+     *
+     * @param users the users to create
+     */
+    public BulkSignupRequest(List<SignupRequest> users) {
+        this.users = users;
+    }
+
+    /**
+     * Gets the users to create.
+     *
+     * @return the users, in request order
+     */
+    public List<SignupRequest> getUsers() {
+        return this.users;
+    }
+
+    /**
+     * Sets the users to create.
+     *
+     * @param users the users
+     */
+    public void setUsers(List<SignupRequest> users) {
+        this.users = users;
+    }
+}
@@ -1,5 +1,6 @@
 package com.homieomie.authservice.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.NotBlank;
 
 /**
@@ -9,6 +10,7 @@ import jakarta.validation.constraints.NotBlank;
  * password or code provided by the user to complete the signup flow.
  * </p>
  */
+@JsonIgnoreProperties({"action"})
 public class ConfirmSignupRequest {
 
     /**
@@ -1,11 +1,13 @@
 package com.homieomie.authservice.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.NotBlank;
 
 /**
  * Model class representing a login request containing
  * the username and password of the user attempting to authenticate.
  */
+@JsonIgnoreProperties({"action"})
 public class LoginRequest {
 
     /**
@@ -0,0 +1,51 @@
+package com.homieomie.authservice.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Model class representing a request to exchange a refresh token
+ * for new ID and access tokens.
+ */
+@JsonIgnoreProperties({"action"})
+public class RefreshRequest {
+
+    /**
+     * The refresh token issued at login.
+     * Cannot be {@code null} or blank.
+     */
+    @NotBlank(message = "Refresh token is required")
+    private String refreshToken;
+
+    /**
+     * Default constructor for deserialization and frameworks.
+     */
+    public RefreshRequest() {}
+
+    /**
+     * Constructs a {@code RefreshRequest} with the specified refresh token.
+     *
+     * @param refreshToken the refresh token issued at login, must not be blank
+     */
+    public RefreshRequest(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
+    /**
+     * Returns the refresh token.
+     *
+     * @return the refresh token issued at login
+     */
+    public String getRefreshToken() {
+        return this.refreshToken;
+    }
+
+    /**
+     * Sets the refresh token.
+     *
+     * @param refreshToken the refresh token issued at login, must not be blank
+     */
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+}
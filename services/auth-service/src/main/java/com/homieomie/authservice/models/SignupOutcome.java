@@ -0,0 +1,111 @@
+package com.homieomie.authservice.models;
+
+/**
+ * Model representing the outcome of one user in a {@code bulkSignup} request.
+ */
+public class SignupOutcome {
+
+    /**
+     * Position of the user in the request.
+     */
+    private final int index;
+
+    /**
+     * The requested username.
+     */
+    private final String username;
+
+    /**
+     * The creation message, or {@code null} if creation failed.
+     */
+    private final String result;
+
+    /**
+     * The failure message, or {@code null} if the user was created.
+     */
+    private final String error;
+
+    /**
+     * Constructs a {@code SignupOutcome}.
+     *
+     * @param index    the position of the user in the request
+     * @param username the requested username
+     * @param result   the creation message, or {@code null}
+     * @param error    the failure message, or {@code null}
+     */
+    private SignupOutcome(int index, String username, String result, String error) {
+        this.index = index;
+        this.username = username;
+        this.result = result;
+        this.error = error;
+    }
+
+    /**
+     * Creates the outcome of a user that was created.
+     *
+     * @param index    the position of the user in the request
+     * @param username the requested username
+     * @param result   the creation message
+     * @return the outcome
+     */
+    public static SignupOutcome created(int index, String username, String result) {
+        return new SignupOutcome(index, username, result, null);
+    }
+
+    /**
+     * Creates the outcome of a user that could not be created.
+     *
+     * @param index    the position of the user in the request
+     * @param username the requested username
+     * @param error    the failure message
+     * @return the outcome
+     */
+    public static SignupOutcome failed(int index, String username, String error) {
+        return new SignupOutcome(index, username, null, error);
+    }
+
+    /**
+     * Returns the position of the user in the request.
+     *
+     * @return the index
+     */
+    public int getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns the requested username.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Returns the creation message.
+     *
+     * @return the message, or {@code null} if creation failed
+     */
+    public String getResult() {
+        return this.result;
+    }
+
+    /**
+     * Returns the failure message.
+     *
+     * @return the message, or {@code null} if the user was created
+     */
+    public String getError() {
+        return this.error;
+    }
+
+    /**
+     * Tells whether the user was created.
+     *
+     * @return {@code true} if the user was created
+     */
+    public boolean isCreated() {
+        return this.error == null;
+    }
+}
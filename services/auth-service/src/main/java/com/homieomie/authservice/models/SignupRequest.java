@@ -1,5 +1,6 @@
 package com.homieomie.authservice.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
@@ -12,6 +13,7 @@ import jakarta.validation.constraints.Size;
  * formats and business rules.
  * </p>
  */
+@JsonIgnoreProperties({"action"})
 public class SignupRequest {
 
     /**
@@ -32,23 +34,17 @@ public class SignupRequest {
 
     /**
      * The user's birthdate.
-     * Must be provided in E.164 phone number format (e.g., {@code +15551234567}).
-     * <p>
-     * Note: This field appears mislabeled and may represent a phone number instead.
-     * </p>
+     * Must follow the {@code YYYY-MM-DD} format (year-month-day).
      */
-    @NotBlank(message = "Phone number is required")
+    @NotBlank(message = "Birthday is required")
     @Pattern(regexp = "^\\d{4}-\\d{2}-\\d{2}$", message = "Birthday must be in the format YYYY-MM-DD")
     private String birthdate;
 
     /**
      * The user's phone number.
-     * Must follow the {@code YYYY-MM-DD} format (year-month-day).
-     * <p>
-     * Note: This field appears mislabeled and may represent a birthdate instead.
-     * </p>
+     * Must be provided in E.164 phone number format (e.g., {@code +15551234567}).
      */
-    @NotBlank(message = "Birthday is required")
+    @NotBlank(message = "Phone number is required")
     @Pattern(regexp = "^\\+[1-9]\\d{1,14}$", message = "Phone number must be in E.164 format, e.g. +15551234567")
     private String phoneNumber;
 
@@ -81,8 +77,8 @@ public class SignupRequest {
      *
      * @param username    the username of the user
      * @param email       the email address of the user
-     * @param birthdate   the user's birthdate (or phone number, depending on intent)
-     * @param phoneNumber the user's phone number (or birthdate, depending on intent)
+     * @param birthdate   the user's birthdate
+     * @param phoneNumber the user's phone number
      * @param firstName   the user's first name
      * @param lastName    the user's last name
      * @param sex         the user's sex
@@ -118,7 +114,7 @@ public class SignupRequest {
     }
 
     /**
-     * Gets the birthdate (or phone number, depending on field intent).
+     * Gets the birthdate.
      *
      * @return the birthdate
      */
@@ -127,7 +123,7 @@ public class SignupRequest {
     }
 
     /**
-     * Gets the phone number (or birthdate, depending on field intent).
+     * Gets the phone number.
      *
      * @return the phone number
      */
@@ -181,7 +177,7 @@ public class SignupRequest {
     }
 
     /**
-     * Sets the birthdate (or phone number, depending on intent).
+     * Sets the birthdate.
      *
      * @param birthdate the birthdate
      */
@@ -190,7 +186,7 @@ public class SignupRequest {
     }
 
     /**
-     * Sets the phone number (or birthdate, depending on intent).
+     * Sets the phone number.
      *
      * @param phoneNumber the phone number
      */
@@ -0,0 +1,132 @@
+package com.homieomie.authservice.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Model representing a request for one page of users from the User Pool.
+ * <p>
+ * All fields are optional: a missing page size falls back to
+ * {@link #DEFAULT_PAGE_SIZE}, a missing cursor starts from the first page
+ * and a missing refresh flag lets the cached directory answer.
+ * </p>
+ */
+@JsonIgnoreProperties({"action"})
+public class UserListRequest {
+
+    /**
+     * Page size used when the request does not specify one.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 60;
+
+    /**
+     * Largest page size a single request may ask for.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * The maximum number of users to return.
+     */
+    @Min(value = 1, message = "Page size must be at least 1")
+    @Max(value = MAX_PAGE_SIZE, message = "Page size must be at most 1000")
+    private Integer pageSize;
+
+    /**
+     * The opaque cursor returned with the previous page, if any.
+     */
+    private String cursor;
+
+    /**
+     * Whether the cached user directory must be refreshed before answering.
+     */
+    private Boolean refresh;
+
+    /**
+     * Default constructor for deserialization and frameworks.
+     */
+    public UserListRequest() {}
+
+    /**
+     * Constructs a {@code UserListRequest} with the given page size and cursor.
+     *
+     * @param pageSize the maximum number of users to return, or {@code null}
+     * @param cursor   the cursor from the previous page, or {@code null}
+     */
+    public UserListRequest(Integer pageSize, String cursor) {
+        this.pageSize = pageSize;
+        this.cursor = cursor;
+    }
+
+    /**
+     * Returns the requested page size.
+     *
+     * @return the page size, or {@code null} if not specified
+     */
+    public Integer getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Returns the requested page size, falling back to the default.
+     *
+     * @return the effective page size
+     */
+    public int effectivePageSize() {
+        return this.pageSize == null ? DEFAULT_PAGE_SIZE : this.pageSize;
+    }
+
+    /**
+     * Returns the cursor.
+     *
+     * @return the cursor, or {@code null} for the first page
+     */
+    public String getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * Returns the forced-refresh flag.
+     *
+     * @return the flag, or {@code null} if not specified
+     */
+    public Boolean getRefresh() {
+        return this.refresh;
+    }
+
+    /**
+     * Returns whether the caller asked for a forced refresh.
+     *
+     * @return {@code true} if the directory must be refreshed first
+     */
+    public boolean isForceRefresh() {
+        return Boolean.TRUE.equals(this.refresh);
+    }
+
+    /**
+     * Sets the requested page size.
+     *
+     * @param pageSize the page size
+     */
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the cursor.
+     *
+     * @param cursor the cursor from the previous page
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    /**
+     * Sets the forced-refresh flag.
+     *
+     * @param refresh whether the directory must be refreshed first
+     */
+    public void setRefresh(Boolean refresh) {
+        this.refresh = refresh;
+    }
+}
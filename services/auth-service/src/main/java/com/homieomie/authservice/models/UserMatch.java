@@ -0,0 +1,99 @@
+package com.homieomie.authservice.models;
+
+/**
+ * Model representing a single user entry in a {@code searchUsers} page.
+ * <p>
+ * Carries the attributes support staff search by, so a match can be told
+ * apart from others sharing a name without a second lookup. Missing
+ * attributes are empty strings.
+ * </p>
+ */
+public class UserMatch {
+
+    /**
+     * The Cognito username.
+     */
+    private final String username;
+
+    /**
+     * The user's email address.
+     */
+    private final String email;
+
+    /**
+     * The user's phone number.
+     */
+    private final String phoneNumber;
+
+    /**
+     * The user's first name.
+     */
+    private final String firstName;
+
+    /**
+     * The user's last name.
+     */
+    private final String lastName;
+
+    /**
+     * Constructs a {@code UserMatch}.
+     *
+     * @param username    the Cognito username
+     * @param email       the email address, or an empty string
+     * @param phoneNumber the phone number, or an empty string
+     * @param firstName   the first name, or an empty string
+     * @param lastName    the last name, or an empty string
+     */
+    public UserMatch(String username, String email, String phoneNumber, String firstName, String lastName) {
+        this.username = username;
+        this.email = email;
+        this.phoneNumber = phoneNumber;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    /**
+     * Returns the username.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Returns the email address.
+     *
+     * @return the email address, or an empty string
+     */
+    public String getEmail() {
+        return this.email;
+    }
+
+    /**
+     * Returns the phone number.
+     *
+     * @return the phone number, or an empty string
+     */
+    public String getPhoneNumber() {
+        return this.phoneNumber;
+    }
+
+    /**
+     * Returns the first name.
+     *
+     * @return the first name, or an empty string
+     */
+    public String getFirstName() {
+        return this.firstName;
+    }
+
+    /**
+     * Returns the last name.
+     *
+     * @return the last name, or an empty string
+     */
+    public String getLastName() {
+        return this.lastName;
+    }
+}
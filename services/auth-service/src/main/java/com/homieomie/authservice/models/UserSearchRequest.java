@@ -0,0 +1,145 @@
+package com.homieomie.authservice.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Model representing a request for one page of the users matching a search.
+ * <p>
+ * {@code email} and {@code phone_number} match whole values, ignoring letter
+ * case and phone formatting; {@code first_name} and {@code last_name} match
+ * names starting with the query, ignoring letter case. The page size and
+ * cursor work as for {@link UserListRequest}.
+ * </p>
+ */
+@JsonIgnoreProperties({"action"})
+public class UserSearchRequest {
+
+    /**
+     * The field searched: {@code email}, {@code phone_number}, {@code first_name} or {@code last_name}.
+     */
+    @NotBlank(message = "Field is required")
+    @Pattern(regexp = "^(email|phone_number|first_name|last_name)$",
+            message = "Field must be one of email, phone_number, first_name or last_name")
+    private String field;
+
+    /**
+     * The value or prefix searched for.
+     */
+    @NotBlank(message = "Query is required")
+    @Size(max = 256, message = "Query must be at most 256 characters")
+    private String query;
+
+    /**
+     * The maximum number of users to return.
+     */
+    @Min(value = 1, message = "Page size must be at least 1")
+    @Max(value = UserListRequest.MAX_PAGE_SIZE, message = "Page size must be at most 1000")
+    private Integer pageSize;
+
+    /**
+     * The opaque cursor returned with the previous page, if any.
+     */
+    private String cursor;
+
+    /**
+     * Default constructor for deserialization and frameworks.
+     */
+    public UserSearchRequest() {}
+
+    /**
+     * Constructs a {@code UserSearchRequest} for the first page.
+     *
+     * @param field the field searched
+     * @param query the value or prefix searched for
+     */
+    public UserSearchRequest(String field, String query) {
+        this.field = field;
+        this.query = query;
+    }
+
+    /**
+     * Returns the field searched.
+     *
+     * @return the field name
+     */
+    public String getField() {
+        return this.field;
+    }
+
+    /**
+     * Returns the value or prefix searched for.
+     *
+     * @return the query
+     */
+    public String getQuery() {
+        return this.query;
+    }
+
+    /**
+     * Returns the requested page size.
+     *
+     * @return the page size, or {@code null} if not specified
+     */
+    public Integer getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Returns the requested page size, falling back to the default.
+     *
+     * @return the effective page size
+     */
+    public int effectivePageSize() {
+        return this.pageSize == null ? UserListRequest.DEFAULT_PAGE_SIZE : this.pageSize;
+    }
+
+    /**
+     * Returns the cursor.
+     *
+     * @return the cursor, or {@code null} for the first page
+     */
+    public String getCursor() {
+        return this.cursor;
+    }
+
+    /**
+     * Sets the field searched.
+     *
+     * @param field the field name
+     */
+    public void setField(String field) {
+        this.field = field;
+    }
+
+    /**
+     * Sets the value or prefix searched for.
+     *
+     * @param query the query
+     */
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    /**
+     * Sets the requested page size.
+     *
+     * @param pageSize the page size
+     */
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Sets the cursor.
+     *
+     * @param cursor the cursor from the previous page
+     */
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+}
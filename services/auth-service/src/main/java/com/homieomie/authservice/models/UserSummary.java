@@ -0,0 +1,46 @@
+package com.homieomie.authservice.models;
+
+/**
+ * Model representing a single user entry in a {@code listUsers} page.
+ */
+public class UserSummary {
+
+    /**
+     * The Cognito username.
+     */
+    private final String username;
+
+    /**
+     * The user's email address, or an empty string if none is set.
+     */
+    private final String email;
+
+    /**
+     * Constructs a {@code UserSummary}.
+     *
+     * @param username the Cognito username
+     * @param email    the email address, or an empty string
+     */
+    public UserSummary(String username, String email) {
+        this.username = username;
+        this.email = email;
+    }
+
+    /**
+     * Returns the username.
+     *
+     * @return the username
+     */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /**
+     * Returns the email address.
+     *
+     * @return the email address, or an empty string
+     */
+    public String getEmail() {
+        return this.email;
+    }
+}
@@ -0,0 +1,153 @@
+package com.homieomie.authservice.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free table of token buckets, one {@code long} per key.
+ * <p>
+ * Each bucket is kept in its generic cell rate form: instead of a token count
+ * and a refill time, it stores the single instant at which it will be full
+ * again (its theoretical arrival time). Taking a token pushes that instant one
+ * emission interval later; a request is refused while the instant lies more
+ * than the burst tolerance ahead of now. This is exactly a token bucket, but
+ * it needs no refill step, and a bucket whose instant has passed is full,
+ * which is the same as not being tracked at all.
+ * </p>
+ * <p>
+ * A slot packs a 24-bit key fingerprint with a 40-bit instant in milliseconds
+ * since the table was created, and is updated with a single compare-and-set.
+ * Slots are grouped by eight, one cache line; a key lives in the group picked
+ * by its hash. Inserting into a full group first reclaims a full bucket, which
+ * loses nothing; only when every bucket in the group is still draining is the
+ * one closest to full evicted, which lets its key start over with a full
+ * burst. So idle keys never need a sweep, and memory stays at eight bytes per
+ * tracked key whatever the traffic.
+ * </p>
+ */
+final class BucketTable {
+
+    /**
+     * Slots per group: eight {@code long}s fill one 64-byte cache line.
+     */
+    private static final int GROUP_SIZE = 8;
+
+    /**
+     * Bits of a slot holding the instant.
+     */
+    private static final int INSTANT_BITS = 40;
+
+    /**
+     * Mask extracting the instant of a slot.
+     */
+    private static final long INSTANT_MASK = (1L << INSTANT_BITS) - 1;
+
+    /**
+     * Mask of the 24-bit fingerprint, before shifting into place.
+     */
+    private static final long FINGERPRINT_MASK = (1L << (Long.SIZE - INSTANT_BITS)) - 1;
+
+    /**
+     * The slots; {@code 0} marks an empty slot.
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * Mask turning a hash into a group's first slot.
+     */
+    private final int groupMask;
+
+    /**
+     * Time origin of the stored instants, in {@link System#nanoTime()} units.
+     */
+    private final long originNanos = System.nanoTime();
+
+    /**
+     * Number of keys evicted while their bucket was still draining.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a table.
+     *
+     * @param capacity the number of keys tracked at once, rounded up to a power of two, at least eight
+     */
+    BucketTable(int capacity) {
+        int size = capacity <= GROUP_SIZE ? GROUP_SIZE : Integer.highestOneBit(Math.min(capacity - 1, 1 << 29)) << 1;
+        this.slots = new AtomicLongArray(size);
+        this.groupMask = (size - 1) & -GROUP_SIZE;
+    }
+
+    /**
+     * Takes one token from the bucket of a key.
+     *
+     * @param hash            the 64-bit hash of the key
+     * @param intervalMillis  the emission interval: milliseconds per token
+     * @param toleranceMillis the burst tolerance: {@code (burst - 1) * intervalMillis}
+     * @return {@code 0} if a token was taken, otherwise the milliseconds until one is available
+     */
+    long acquire(long hash, long intervalMillis, long toleranceMillis) {
+        long now = nowMillis();
+        long fingerprint = Math.max(1, (hash >>> INSTANT_BITS) & FINGERPRINT_MASK) << INSTANT_BITS;
+        int group = (int) hash & groupMask;
+        retry:
+        while (true) {
+            int victim = group;
+            long victimSlot = 0;
+            long victimInstant = Long.MAX_VALUE;
+            for (int i = group; i < group + GROUP_SIZE; i++) {
+                long slot = slots.get(i);
+                long instant = slot & INSTANT_MASK;
+                if (slot != 0 && (slot & ~INSTANT_MASK) == fingerprint) {
+                    long start = Math.max(instant, now);
+                    if (start - now > toleranceMillis) {
+                        return start - now - toleranceMillis;
+                    }
+                    if (slots.compareAndSet(i, slot, fingerprint | ((start + intervalMillis) & INSTANT_MASK))) {
+                        return 0;
+                    }
+                    continue retry;
+                }
+                long age = slot == 0 ? Long.MIN_VALUE : instant;
+                if (age < victimInstant) {
+                    victim = i;
+                    victimSlot = slot;
+                    victimInstant = age;
+                }
+            }
+            if (slots.compareAndSet(victim, victimSlot, fingerprint | ((now + intervalMillis) & INSTANT_MASK))) {
+                if (victimSlot != 0 && victimInstant > now) {
+                    evictions.increment();
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of keys evicted while their bucket was still draining.
+     *
+     * @return the eviction count
+     */
+    long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of slots, which is the most keys tracked at once.
+     *
+     * @return the capacity
+     */
+    int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * Returns the current instant relative to the table's origin.
+     *
+     * @return milliseconds since the table was created
+     */
+    private long nowMillis() {
+        return (System.nanoTime() - originNanos) / 1_000_000;
+    }
+}
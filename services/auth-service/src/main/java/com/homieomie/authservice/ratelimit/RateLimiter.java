@@ -0,0 +1,253 @@
+package com.homieomie.authservice.ratelimit;
+
+import java.security.SecureRandom;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process rate limiter applied to every request before it is dispatched,
+ * so a flood is turned away without reaching Cognito.
+ * <p>
+ * Each request takes a token from two buckets: one for its client (source IP
+ * and action) and, when the action names a user, one for that user and
+ * action. The client limit stops a single source from flooding; the much
+ * stricter user limit stops credential stuffing against one account spread
+ * over many sources. A request is refused if either bucket is empty, and the
+ * caller is told how long to wait.
+ * </p>
+ * <p>
+ * Both kinds of bucket share one {@link BucketTable}, eight bytes per tracked
+ * key, so a million keys fit in 8 MB. Keys are hashed, never stored. The
+ * hash seeds are drawn at random for each limiter, so no one can pick keys
+ * that land in the same group as another's and evict its draining bucket.
+ * </p>
+ */
+public class RateLimiter {
+
+    /**
+     * Default requests per second a client may sustain for one action.
+     */
+    public static final double DEFAULT_CLIENT_PER_SECOND = 20;
+
+    /**
+     * Default burst a client may send for one action.
+     */
+    public static final int DEFAULT_CLIENT_BURST = 40;
+
+    /**
+     * Default requests per minute that may name one user for one action.
+     */
+    public static final double DEFAULT_USERNAME_PER_MINUTE = 10;
+
+    /**
+     * Default burst that may name one user for one action.
+     */
+    public static final int DEFAULT_USERNAME_BURST = 5;
+
+    /**
+     * Default number of keys tracked at once.
+     */
+    public static final int DEFAULT_MAX_KEYS = 1 << 20;
+
+    /**
+     * FNV-1a 64-bit prime.
+     */
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * Whether requests are limited at all.
+     */
+    private final boolean enabled;
+
+    /**
+     * Buckets of all keys.
+     */
+    private final BucketTable buckets;
+
+    /**
+     * Hash seed of client keys, keeping them apart from username keys.
+     */
+    private final long clientSeed;
+
+    /**
+     * Hash seed of username keys.
+     */
+    private final long usernameSeed;
+
+    /**
+     * Milliseconds per client token.
+     */
+    private final long clientInterval;
+
+    /**
+     * Client burst tolerance in milliseconds.
+     */
+    private final long clientTolerance;
+
+    /**
+     * Milliseconds per username token.
+     */
+    private final long usernameInterval;
+
+    /**
+     * Username burst tolerance in milliseconds.
+     */
+    private final long usernameTolerance;
+
+    /**
+     * Number of requests refused.
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Creates a rate limiter.
+     *
+     * @param enabled           whether requests are limited at all
+     * @param clientPerSecond   the requests per second a client may sustain for one action
+     * @param clientBurst       the burst a client may send for one action
+     * @param usernamePerMinute the requests per minute that may name one user for one action
+     * @param usernameBurst     the burst that may name one user for one action
+     * @param maxKeys           the number of keys tracked at once
+     */
+    public RateLimiter(boolean enabled, double clientPerSecond, int clientBurst, double usernamePerMinute,
+                       int usernameBurst, int maxKeys) {
+        this(enabled, clientPerSecond, clientBurst, usernamePerMinute, usernameBurst, maxKeys, new SecureRandom());
+    }
+
+    /**
+     * Creates a rate limiter whose hash seeds are drawn from the given source.
+     *
+     * @param enabled           whether requests are limited at all
+     * @param clientPerSecond   the requests per second a client may sustain for one action
+     * @param clientBurst       the burst a client may send for one action
+     * @param usernamePerMinute the requests per minute that may name one user for one action
+     * @param usernameBurst     the burst that may name one user for one action
+     * @param maxKeys           the number of keys tracked at once
+     * @param seeds             the source of the client and username hash seeds
+     */
+    RateLimiter(boolean enabled, double clientPerSecond, int clientBurst, double usernamePerMinute,
+                int usernameBurst, int maxKeys, Random seeds) {
+        this.enabled = enabled;
+        this.buckets = new BucketTable(maxKeys);
+        this.clientSeed = seeds.nextLong();
+        this.usernameSeed = seeds.nextLong();
+        this.clientInterval = intervalMillis(1_000 / clientPerSecond);
+        this.clientTolerance = (Math.max(1, clientBurst) - 1) * clientInterval;
+        this.usernameInterval = intervalMillis(60_000 / usernamePerMinute);
+        this.usernameTolerance = (Math.max(1, usernameBurst) - 1) * usernameInterval;
+    }
+
+    /**
+     * Creates a rate limiter configured from {@code RATE_LIMIT_ENABLED},
+     * {@code RATE_LIMIT_CLIENT_PER_SECOND}, {@code RATE_LIMIT_CLIENT_BURST},
+     * {@code RATE_LIMIT_USERNAME_PER_MINUTE}, {@code RATE_LIMIT_USERNAME_BURST}
+     * and {@code RATE_LIMIT_MAX_KEYS}.
+     *
+     * @return the rate limiter
+     */
+    public static RateLimiter fromEnvironment() {
+        return new RateLimiter(
+                !"false".equalsIgnoreCase(System.getenv("RATE_LIMIT_ENABLED")),
+                envDouble("RATE_LIMIT_CLIENT_PER_SECOND", DEFAULT_CLIENT_PER_SECOND),
+                (int) envDouble("RATE_LIMIT_CLIENT_BURST", DEFAULT_CLIENT_BURST),
+                envDouble("RATE_LIMIT_USERNAME_PER_MINUTE", DEFAULT_USERNAME_PER_MINUTE),
+                (int) envDouble("RATE_LIMIT_USERNAME_BURST", DEFAULT_USERNAME_BURST),
+                (int) envDouble("RATE_LIMIT_MAX_KEYS", DEFAULT_MAX_KEYS));
+    }
+
+    /**
+     * Takes a token for a request from its client's bucket and, if it names a
+     * user, from that user's bucket.
+     *
+     * @param action   the request's action
+     * @param sourceIp the client address, or {@code null} if unknown
+     * @param username the user the request names, or {@code null}
+     * @return {@code 0} if the request may proceed, otherwise the milliseconds to wait before retrying
+     */
+    public long acquire(String action, String sourceIp, String username) {
+        if (!enabled) {
+            return 0;
+        }
+        long wait = buckets.acquire(hash(clientSeed, action, sourceIp == null ? "" : sourceIp),
+                clientInterval, clientTolerance);
+        if (wait == 0 && username != null) {
+            wait = buckets.acquire(hash(usernameSeed, action, username), usernameInterval, usernameTolerance);
+        }
+        if (wait > 0) {
+            rejected.increment();
+        }
+        return wait;
+    }
+
+    /**
+     * Returns the number of requests refused.
+     *
+     * @return the rejection count
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Returns the number of keys evicted before their bucket was full again,
+     * which is non-zero only when more keys are active than the table holds.
+     *
+     * @return the eviction count
+     */
+    public long evictionCount() {
+        return buckets.evictionCount();
+    }
+
+    /**
+     * Hashes a key made of an action and a value, ignoring letter case in the
+     * value so that {@code Alice} and {@code alice} share a bucket.
+     *
+     * @param seed   the seed of the key kind
+     * @param action the action
+     * @param value  the client address or username
+     * @return the 64-bit hash
+     */
+    static long hash(long seed, String action, String value) {
+        long h = seed;
+        for (int i = 0; i < action.length(); i++) {
+            h = (h ^ action.charAt(i)) * FNV_PRIME;
+        }
+        h = (h ^ 0xFFFF) * FNV_PRIME;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ Character.toLowerCase(value.charAt(i))) * FNV_PRIME;
+        }
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Rounds an emission interval to whole milliseconds, at least one.
+     *
+     * @param millis the interval in milliseconds
+     * @return the rounded interval
+     */
+    private static long intervalMillis(double millis) {
+        return Math.max(1, Math.round(millis));
+    }
+
+    /**
+     * Reads a positive numeric environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or invalid
+     * @return the value
+     */
+    private static double envDouble(String name, double fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
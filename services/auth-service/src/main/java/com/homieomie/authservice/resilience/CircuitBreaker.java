@@ -0,0 +1,285 @@
+package com.homieomie.authservice.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker that stops calling Cognito while most calls fail.
+ * <p>
+ * Outcomes are counted over a sliding window of ten one-second buckets. Once
+ * the window holds at least the minimum number of calls and the share of
+ * failures reaches the threshold, the breaker opens: calls are refused
+ * without reaching Cognito, and the caller answers {@code 503} at once rather
+ * than waiting for timeouts. After the open period one probe call is let
+ * through; if it succeeds the breaker closes, otherwise it opens again.
+ * </p>
+ * <p>
+ * Only outcomes that say Cognito is unhealthy count as failures: server
+ * errors, timeouts and connection failures. A rejected password or an
+ * existing username is an answer, and counts as a success.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * Default share of failed calls, in percent, that opens the breaker.
+     */
+    public static final int DEFAULT_FAILURE_RATE_PERCENT = 50;
+
+    /**
+     * Default number of calls in the window before the breaker may open.
+     */
+    public static final int DEFAULT_MINIMUM_CALLS = 20;
+
+    /**
+     * Default time the breaker stays open before a probe, in milliseconds.
+     */
+    public static final long DEFAULT_OPEN_MILLIS = 5_000;
+
+    /**
+     * Number of buckets in the window.
+     */
+    private static final int BUCKETS = 10;
+
+    /**
+     * Time covered by one bucket, in nanoseconds.
+     */
+    private static final long BUCKET_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Wait suggested to callers refused while a probe is in flight, in milliseconds.
+     */
+    private static final long PROBE_WAIT_MILLIS = 1_000;
+
+    /**
+     * Share of failed calls, in percent, that opens the breaker.
+     */
+    private final int failureRatePercent;
+
+    /**
+     * Number of calls in the window before the breaker may open.
+     */
+    private final int minimumCalls;
+
+    /**
+     * Time the breaker stays open before a probe, in nanoseconds.
+     */
+    private final long openNanos;
+
+    /**
+     * Calls counted per bucket; guarded by this breaker.
+     */
+    private final int[] calls = new int[BUCKETS];
+
+    /**
+     * Failures counted per bucket; guarded by this breaker.
+     */
+    private final int[] failures = new int[BUCKETS];
+
+    /**
+     * Second each bucket currently counts, since an arbitrary origin; guarded by this breaker.
+     */
+    private final long[] bucketSeconds = new long[BUCKETS];
+
+    /**
+     * Number of calls refused.
+     */
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Current state; written under this breaker's lock.
+     */
+    private volatile State state = State.CLOSED;
+
+    /**
+     * {@link System#nanoTime()} at which an open breaker lets a probe through; guarded by this breaker.
+     */
+    private long openUntil;
+
+    /**
+     * Whether the half-open probe is in flight; guarded by this breaker.
+     */
+    private boolean probing;
+
+    /**
+     * Creates a closed breaker.
+     *
+     * @param failureRatePercent the share of failed calls, in percent, that opens the breaker
+     * @param minimumCalls       the number of calls in the window before the breaker may open
+     * @param openMillis         the time the breaker stays open before a probe, in milliseconds
+     */
+    public CircuitBreaker(int failureRatePercent, int minimumCalls, long openMillis) {
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Creates a closed breaker configured from
+     * {@code COGNITO_BREAKER_FAILURE_RATE},
+     * {@code COGNITO_BREAKER_MINIMUM_CALLS} and {@code COGNITO_BREAKER_OPEN_MILLIS}.
+     *
+     * @return the breaker
+     */
+    public static CircuitBreaker fromEnvironment() {
+        return new CircuitBreaker(
+                Math.min(100, envInt("COGNITO_BREAKER_FAILURE_RATE", DEFAULT_FAILURE_RATE_PERCENT)),
+                envInt("COGNITO_BREAKER_MINIMUM_CALLS", DEFAULT_MINIMUM_CALLS),
+                envInt("COGNITO_BREAKER_OPEN_MILLIS", (int) DEFAULT_OPEN_MILLIS));
+    }
+
+    /**
+     * Asks to make a call. Every permitted call must be followed by
+     * {@link #onSuccess()} or {@link #onFailure()}.
+     *
+     * @return {@code 0} if the call may be made, otherwise the milliseconds until calls are tried again
+     */
+    public long acquire() {
+        if (state == State.CLOSED) {
+            return 0;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            long wait = 0;
+            if (state == State.OPEN && now - openUntil < 0) {
+                wait = TimeUnit.NANOSECONDS.toMillis(openUntil - now) + 1;
+            } else if (state == State.OPEN) {
+                state = State.HALF_OPEN;
+                probing = true;
+            } else if (state == State.HALF_OPEN && probing) {
+                wait = PROBE_WAIT_MILLIS;
+            } else if (state == State.HALF_OPEN) {
+                probing = true;
+            }
+            if (wait > 0) {
+                rejected.increment();
+            }
+            return wait;
+        }
+    }
+
+    /**
+     * Records a call that Cognito answered.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probing = false;
+            Arrays.fill(calls, 0);
+            Arrays.fill(failures, 0);
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    /**
+     * Records a call that failed because Cognito is unhealthy, opening the
+     * breaker if failures have reached the threshold.
+     */
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED && record(true)) {
+            open();
+        }
+    }
+
+    /**
+     * Tells whether calls are currently refused.
+     *
+     * @return {@code true} unless the breaker is closed
+     */
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    /**
+     * Returns the number of calls refused.
+     *
+     * @return the rejection count
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Counts an outcome in the current bucket.
+     *
+     * @param failed whether the call failed
+     * @return {@code true} if the failures in the window have reached the threshold
+     */
+    private boolean record(boolean failed) {
+        long second = System.nanoTime() / BUCKET_NANOS;
+        int index = Math.floorMod(second, BUCKETS);
+        if (bucketSeconds[index] != second) {
+            bucketSeconds[index] = second;
+            calls[index] = 0;
+            failures[index] = 0;
+        }
+        calls[index]++;
+        if (failed) {
+            failures[index]++;
+        }
+
+        int totalCalls = 0;
+        int totalFailures = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (second - bucketSeconds[i] < BUCKETS) {
+                totalCalls += calls[i];
+                totalFailures += failures[i];
+            }
+        }
+        return totalCalls >= minimumCalls && totalFailures * 100L >= (long) failureRatePercent * totalCalls;
+    }
+
+    /**
+     * Opens the breaker for the open period.
+     */
+    private void open() {
+        state = State.OPEN;
+        probing = false;
+        openUntil = System.nanoTime() + openNanos;
+    }
+
+    /**
+     * Reads a positive integer environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or invalid
+     * @return the value
+     */
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Breaker states.
+     */
+    private enum State {
+
+        /**
+         * Calls are made and their outcomes counted.
+         */
+        CLOSED,
+
+        /**
+         * Calls are refused until the open period ends.
+         */
+        OPEN,
+
+        /**
+         * One probe call is in flight or about to be made.
+         */
+        HALF_OPEN
+    }
+}
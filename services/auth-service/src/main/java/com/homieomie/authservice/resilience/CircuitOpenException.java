@@ -0,0 +1,36 @@
+package com.homieomie.authservice.resilience;
+
+/**
+ * Thrown instead of calling Cognito while the {@link CircuitBreaker} is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Time until calls are tried again, in milliseconds.
+     */
+    private final long retryAfterMillis;
+
+    /**
+     * Creates the exception.
+     *
+     * @param retryAfterMillis the time until calls are tried again, in milliseconds
+     */
+    public CircuitOpenException(long retryAfterMillis) {
+        super("Cognito is unavailable");
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    /**
+     * Returns the time until calls are tried again.
+     *
+     * @return the time in milliseconds
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,104 @@
+package com.homieomie.authservice.resilience;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Time left to answer the request being handled on the current thread.
+ * <p>
+ * The Lambda handler sets a deadline from the invocation's remaining time
+ * before routing; Cognito calls made on that thread size their timeouts to
+ * fit within it, instead of running into the function timeout. A call started
+ * without a deadline, as in the standalone server, keeps the client's own
+ * call timeout.
+ * </p>
+ * <p>
+ * The deadline belongs to the thread, so a continuation that runs on an SDK
+ * or scheduler thread does not see it. Code that makes further calls from a
+ * continuation wraps it with {@link #carry(Function)}, which captures the
+ * deadline where the continuation is created and sets it again where it
+ * runs.
+ * </p>
+ */
+public final class Deadline {
+
+    /**
+     * Value of {@link #current()} when no deadline is set.
+     */
+    public static final long NONE = Long.MAX_VALUE;
+
+    /**
+     * The current thread's deadline, in {@link System#nanoTime()} terms.
+     */
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private Deadline() {}
+
+    /**
+     * Runs an action with a deadline on the current thread, restoring the
+     * previous one afterwards.
+     *
+     * @param budgetMillis the time the action may take, in milliseconds
+     * @param action       the action
+     * @param <T>          the result type
+     * @return the action's result
+     */
+    public static <T> T within(long budgetMillis, Supplier<T> action) {
+        return at(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis), action);
+    }
+
+    /**
+     * Runs an action with a given deadline on the current thread, restoring
+     * the previous one afterwards.
+     *
+     * @param deadline the deadline in {@link System#nanoTime()} terms, or {@link #NONE} to run without one
+     * @param action   the action
+     * @param <T>      the result type
+     * @return the action's result
+     */
+    public static <T> T at(long deadline, Supplier<T> action) {
+        Long previous = CURRENT.get();
+        if (deadline == NONE) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Binds a continuation to the current thread's deadline, so that calls it
+     * makes on whichever thread it runs still fit within the request.
+     *
+     * @param continuation the continuation
+     * @param <T>          the argument type
+     * @param <R>          the result type
+     * @return a function running the continuation with the deadline captured now
+     */
+    public static <T, R> Function<T, R> carry(Function<T, R> continuation) {
+        long deadline = current();
+        return deadline == NONE ? continuation : value -> at(deadline, () -> continuation.apply(value));
+    }
+
+    /**
+     * Returns the current thread's deadline.
+     *
+     * @return the deadline in {@link System#nanoTime()} terms, or {@link #NONE}
+     */
+    public static long current() {
+        Long deadline = CURRENT.get();
+        return deadline == null ? NONE : deadline;
+    }
+}
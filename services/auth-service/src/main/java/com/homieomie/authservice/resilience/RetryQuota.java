@@ -0,0 +1,121 @@
+package com.homieomie.authservice.resilience;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token bucket bounding how many retries are made, shared by every call.
+ * <p>
+ * Each retry takes {@link #RETRY_COST} tokens and is not made if the bucket
+ * is short of them. Each call that succeeds at once puts one token back, and
+ * one that succeeds on a retry puts back what the retry took. While Cognito
+ * answers most calls, the bucket stays full and every failure may be retried;
+ * when it throttles or fails persistently, the bucket drains and retries stop
+ * until calls succeed again, so retries never multiply the load on a service
+ * that is already struggling.
+ * </p>
+ */
+public class RetryQuota {
+
+    /**
+     * Default bucket capacity, enough for 100 retries in a row.
+     */
+    public static final int DEFAULT_CAPACITY = 500;
+
+    /**
+     * Tokens a retry takes.
+     */
+    public static final int RETRY_COST = 5;
+
+    /**
+     * Tokens a call that succeeds at once puts back.
+     */
+    private static final int SUCCESS_REFUND = 1;
+
+    /**
+     * Bucket capacity.
+     */
+    private final int capacity;
+
+    /**
+     * Tokens available.
+     */
+    private final AtomicInteger tokens;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param capacity the bucket capacity
+     */
+    public RetryQuota(int capacity) {
+        this.capacity = capacity;
+        this.tokens = new AtomicInteger(capacity);
+    }
+
+    /**
+     * Creates a full bucket sized by {@code COGNITO_RETRY_QUOTA}.
+     *
+     * @return the quota
+     */
+    public static RetryQuota fromEnvironment() {
+        return new RetryQuota(envInt("COGNITO_RETRY_QUOTA", DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Takes the tokens for one retry, if available.
+     *
+     * @return {@code true} if the retry may be made
+     */
+    public boolean tryAcquire() {
+        int available = tokens.get();
+        while (available >= RETRY_COST) {
+            if (tokens.compareAndSet(available, available - RETRY_COST)) {
+                return true;
+            }
+            available = tokens.get();
+        }
+        return false;
+    }
+
+    /**
+     * Puts tokens back after a call succeeded.
+     *
+     * @param retried whether the call succeeded on a retry
+     */
+    public void onSuccess(boolean retried) {
+        int refund = retried ? RETRY_COST : SUCCESS_REFUND;
+        int available = tokens.get();
+        while (available < capacity
+                && !tokens.compareAndSet(available, Math.min(capacity, available + refund))) {
+            available = tokens.get();
+        }
+    }
+
+    /**
+     * Returns the tokens available.
+     *
+     * @return the available tokens
+     */
+    public int available() {
+        return tokens.get();
+    }
+
+    /**
+     * Reads a positive integer environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or invalid
+     * @return the value
+     */
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
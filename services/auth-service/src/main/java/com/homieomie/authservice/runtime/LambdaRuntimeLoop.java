@@ -0,0 +1,246 @@
+package com.homieomie.authservice.runtime;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.metrics.Metrics;
+import com.homieomie.authservice.resilience.Deadline;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URL;
+
+/**
+ * Minimal client of the Lambda Runtime API, serving invocations through an
+ * {@link AuthController} in a custom runtime such as {@code provided.al2023}.
+ * <p>
+ * Takes the place of the managed Java runtime for the native executable:
+ * it asks the Runtime API for the next invocation, routes its API Gateway
+ * event with the invocation's remaining time as the Cognito deadline, less
+ * a margin for answering, and posts the response back, one invocation at a
+ * time. An invocation that fails outside the controller is reported as an
+ * invocation error; the loop itself only stops when the process does.
+ * The invocation's log events are written once its answer is posted, so
+ * the client never waits for them.
+ * </p>
+ * <p>
+ * The Runtime API is reached over plain HTTP with {@link HttpURLConnection},
+ * which the SDK's URL connection client already brings into the image.
+ * </p>
+ */
+public final class LambdaRuntimeLoop {
+
+    /**
+     * Version prefix of every Runtime API path.
+     */
+    private static final String API_VERSION = "/2018-06-01/runtime";
+
+    /**
+     * Time kept back from the invocation's remaining time for writing the response.
+     */
+    private static final long RESPONSE_MARGIN_MILLIS = 500;
+
+    /**
+     * Base URL of the Runtime API, such as {@code http://127.0.0.1:9001/2018-06-01/runtime}.
+     */
+    private final String baseUrl;
+
+    /**
+     * Controller the invocations are routed through.
+     */
+    private final AuthController controller;
+
+    /**
+     * Mapper reading the events and writing the responses.
+     */
+    private final ObjectMapper mapper;
+
+    /**
+     * Whether each invocation's metrics are logged, from {@code METRICS_EMF}.
+     */
+    private final boolean emitMetrics = !"false".equalsIgnoreCase(System.getenv("METRICS_EMF"));
+
+    /**
+     * Creates a loop.
+     *
+     * @param runtimeApi the Runtime API's {@code host:port}, as in {@code AWS_LAMBDA_RUNTIME_API}
+     * @param controller the controller the invocations are routed through
+     * @param mapper     the mapper reading the events and writing the responses
+     */
+    public LambdaRuntimeLoop(String runtimeApi, AuthController controller, ObjectMapper mapper) {
+        this.baseUrl = baseUrlOf(runtimeApi);
+        this.controller = controller;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Serves invocations until the process ends.
+     *
+     * @throws IOException if the Runtime API cannot be reached
+     */
+    public void run() throws IOException {
+        while (true) {
+            serveNext();
+        }
+    }
+
+    /**
+     * Waits for the next invocation and answers it.
+     *
+     * @throws IOException if the Runtime API cannot be reached
+     */
+    public void serveNext() throws IOException {
+        HttpURLConnection next = open("/invocation/next", "GET");
+        String requestId;
+        long deadlineMillis;
+        byte[] event;
+        try (InputStream in = next.getInputStream()) {
+            requestId = next.getHeaderField("Lambda-Runtime-Aws-Request-Id");
+            deadlineMillis = parseDeadline(next.getHeaderField("Lambda-Runtime-Deadline-Ms"));
+            String traceId = next.getHeaderField("Lambda-Runtime-Trace-Id");
+            if (traceId != null) {
+                System.setProperty("com.amazonaws.xray.traceHeader", traceId);
+            }
+            event = in.readAllBytes();
+        }
+
+        byte[] answer;
+        try {
+            APIGatewayProxyRequestEvent request = ProxyEvents.readRequest(mapper, event);
+            APIGatewayProxyResponseEvent response = deadlineMillis == 0
+                    ? controller.routeRequest(request)
+                    : Deadline.within(deadlineMillis - System.currentTimeMillis() - RESPONSE_MARGIN_MILLIS,
+                            () -> controller.routeRequest(request));
+            answer = ProxyEvents.writeResponse(mapper.getFactory(), response);
+        } catch (IOException | RuntimeException e) {
+            post("/invocation/" + requestId + "/error", ProxyEvents.writeError(mapper.getFactory(), e), e);
+            EventLog.shared().flush(System.out);
+            return;
+        }
+        post("/invocation/" + requestId + "/response", answer, null);
+        EventLog.shared().flush(System.out);
+        if (emitMetrics) {
+            Metrics.shared().flush(System.out);
+        }
+    }
+
+    /**
+     * Reports a failure to initialize, after which Lambda ends the process.
+     *
+     * @param runtimeApi the Runtime API's {@code host:port}
+     * @param failure    the failure
+     * @param mapper     the mapper writing the error document
+     * @throws IOException if the Runtime API cannot be reached
+     */
+    public static void reportInitError(String runtimeApi, Throwable failure, ObjectMapper mapper) throws IOException {
+        HttpURLConnection connection = open(baseUrlOf(runtimeApi), "/init/error", "POST");
+        send(connection, ProxyEvents.writeError(mapper.getFactory(), failure), failure);
+    }
+
+    /**
+     * Posts a document to the Runtime API and waits for it to be accepted.
+     *
+     * @param path     the path under the API version
+     * @param document the JSON document
+     * @param failure  the failure reported, or {@code null} for a response
+     * @throws IOException if the Runtime API cannot be reached
+     */
+    private void post(String path, byte[] document, Throwable failure) throws IOException {
+        send(open(path, "POST"), document, failure);
+    }
+
+    /**
+     * Opens a connection to a Runtime API path.
+     *
+     * @param path   the path under the API version
+     * @param method the HTTP method
+     * @return the connection, not yet connected
+     * @throws IOException if the URL is malformed
+     */
+    private HttpURLConnection open(String path, String method) throws IOException {
+        return open(baseUrl, path, method);
+    }
+
+    /**
+     * Opens a connection to a Runtime API path. No read timeout is set:
+     * asking for the next invocation waits until there is one.
+     *
+     * @param baseUrl the base URL of the Runtime API
+     * @param path    the path under the API version
+     * @param method  the HTTP method
+     * @return the connection, not yet connected
+     * @throws IOException if the URL is malformed
+     */
+    private static HttpURLConnection open(String baseUrl, String path, String method) throws IOException {
+        URL url = URI.create(baseUrl + path).toURL();
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setReadTimeout(0);
+        return connection;
+    }
+
+    /**
+     * Sends a JSON document and drains the answer, so the connection can be kept alive.
+     *
+     * @param connection the connection
+     * @param document   the JSON document
+     * @param failure    the failure reported, or {@code null} for a response
+     * @throws IOException if the Runtime API cannot be reached or refuses the document
+     */
+    private static void send(HttpURLConnection connection, byte[] document, Throwable failure) throws IOException {
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(document.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        if (failure != null) {
+            connection.setRequestProperty("Lambda-Runtime-Function-Error-Type", failure.getClass().getSimpleName());
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(document);
+        }
+        int status = connection.getResponseCode();
+        InputStream answer = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        if (answer != null) {
+            try (InputStream in = answer) {
+                in.readAllBytes();
+            }
+        }
+        if (status >= 400) {
+            throw new IOException("Runtime API answered " + status + " to " + connection.getURL());
+        }
+    }
+
+    /**
+     * Parses the invocation's deadline.
+     *
+     * @param value the {@code Lambda-Runtime-Deadline-Ms} header, possibly {@code null}
+     * @return the deadline in epoch milliseconds, or {@code 0} if there is none
+     */
+    private static long parseDeadline(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Builds the base URL of the Runtime API.
+     *
+     * @param runtimeApi the Runtime API's {@code host:port}
+     * @return the base URL
+     * @throws IllegalStateException if no Runtime API is given
+     */
+    private static String baseUrlOf(String runtimeApi) {
+        if (runtimeApi == null || runtimeApi.isBlank()) {
+            throw new IllegalStateException("AWS_LAMBDA_RUNTIME_API is not set");
+        }
+        return "http://" + runtimeApi.trim() + API_VERSION;
+    }
+}
@@ -0,0 +1,145 @@
+package com.homieomie.authservice.runtime;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Converts API Gateway proxy events between their JSON form and the event
+ * classes the {@link com.homieomie.authservice.controllers.AuthController}
+ * works with.
+ * <p>
+ * Only the fields the service reads are taken from the request, and the
+ * response is written field by field, so neither direction needs reflection
+ * over the event classes: in a native image, only the fields listed here
+ * exist.
+ * </p>
+ */
+final class ProxyEvents {
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private ProxyEvents() {}
+
+    /**
+     * Reads a request event.
+     *
+     * @param mapper the mapper parsing the JSON
+     * @param json   the event as sent by the Runtime API
+     * @return the request event
+     * @throws IOException if the JSON cannot be parsed
+     */
+    static APIGatewayProxyRequestEvent readRequest(ObjectMapper mapper, byte[] json) throws IOException {
+        JsonNode event = mapper.readTree(json);
+        String body = textOf(event.get("body"));
+        if (body != null && event.path("isBase64Encoded").asBoolean()) {
+            body = new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+        }
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent()
+                .withHttpMethod(textOf(event.get("httpMethod")))
+                .withResource(textOf(event.get("resource")))
+                .withPath(textOf(event.get("path")))
+                .withHeaders(headersOf(event.get("headers")))
+                .withBody(body);
+        JsonNode context = event.path("requestContext");
+        String sourceIp = textOf(context.path("identity").get("sourceIp"));
+        String requestId = textOf(context.get("requestId"));
+        if (sourceIp != null || requestId != null) {
+            request.setRequestContext(new APIGatewayProxyRequestEvent.ProxyRequestContext()
+                    .withRequestId(requestId)
+                    .withIdentity(new APIGatewayProxyRequestEvent.RequestIdentity().withSourceIp(sourceIp)));
+        }
+        return request;
+    }
+
+    /**
+     * Writes a response event.
+     *
+     * @param factory  the factory creating the generator
+     * @param response the response event
+     * @return the event as the Runtime API expects it
+     * @throws IOException if the JSON cannot be written
+     */
+    static byte[] writeResponse(JsonFactory factory, APIGatewayProxyResponseEvent response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeNumberField("statusCode", response.getStatusCode() == null ? 500 : response.getStatusCode());
+            if (response.getHeaders() != null) {
+                generator.writeObjectFieldStart("headers");
+                for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                    generator.writeStringField(header.getKey(), header.getValue());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeStringField("body", response.getBody() == null ? "" : response.getBody());
+            generator.writeBooleanField("isBase64Encoded", false);
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the error document the Runtime API takes for a failed invocation
+     * or a failed initialization.
+     *
+     * @param factory the factory creating the generator
+     * @param failure the failure
+     * @return the error document
+     * @throws IOException if the JSON cannot be written
+     */
+    static byte[] writeError(JsonFactory factory, Throwable failure) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try (JsonGenerator generator = factory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("errorMessage", String.valueOf(failure.getMessage()));
+            generator.writeStringField("errorType", failure.getClass().getName());
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the headers of a request, looked up case-insensitively as HTTP
+     * header names are.
+     *
+     * @param headers the {@code headers} object, possibly {@code null}
+     * @return the headers, or {@code null} if the event carries none
+     */
+    private static Map<String, String> headersOf(JsonNode headers) {
+        if (headers == null || !headers.isObject()) {
+            return null;
+        }
+        Map<String, String> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        Iterator<Map.Entry<String, JsonNode>> fields = headers.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String value = textOf(field.getValue());
+            if (value != null) {
+                result.put(field.getKey(), value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the text of a string node.
+     *
+     * @param node the node, possibly {@code null}
+     * @return the text, or {@code null} for a missing or {@code null} node
+     */
+    private static String textOf(JsonNode node) {
+        return node == null || node.isNull() || node.isMissingNode() ? null : node.asText();
+    }
+}
@@ -0,0 +1,208 @@
+package com.homieomie.authservice.server;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Converts between JDK {@link HttpExchange}s and the API Gateway events the
+ * {@code AuthController} speaks, so the controller runs unchanged behind the
+ * embedded server.
+ */
+final class Exchanges {
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private Exchanges() {}
+
+    /**
+     * Builds the API Gateway request event for an exchange.
+     * <p>
+     * The body is read straight into a byte array sized by
+     * {@code Content-Length} when the client sends one, and decoded into the
+     * event's string once. Headers are looked up case-insensitively, as HTTP
+     * requires; only the first value of a repeated header is kept, as in the
+     * event's single-value header map. The client address is set as the
+     * request context's source IP, as API Gateway does, and the
+     * {@code X-Request-Id} header, or else the load balancer's
+     * {@code X-Amzn-Trace-Id}, as its request ID.
+     * </p>
+     *
+     * @param exchange          the exchange
+     * @param maxBodyBytes      the largest body accepted
+     * @param trustForwardedFor whether the last {@code X-Forwarded-For} entry,
+     *                          added by the load balancer, is the client address
+     * @return the request event
+     * @throws BodyTooLargeException if the body exceeds {@code maxBodyBytes}
+     * @throws IOException           if the body cannot be read
+     */
+    static APIGatewayProxyRequestEvent toRequestEvent(HttpExchange exchange, int maxBodyBytes,
+                                                      boolean trustForwardedFor) throws IOException {
+        Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+            if (!header.getValue().isEmpty()) {
+                headers.put(header.getKey(), header.getValue().get(0));
+            }
+        }
+
+        return new APIGatewayProxyRequestEvent()
+                .withHttpMethod(exchange.getRequestMethod())
+                .withPath(exchange.getRequestURI().getRawPath())
+                .withHeaders(headers)
+                .withRequestContext(new APIGatewayProxyRequestEvent.ProxyRequestContext()
+                        .withRequestId(headers.getOrDefault("X-Request-Id", headers.get("X-Amzn-Trace-Id")))
+                        .withIdentity(new APIGatewayProxyRequestEvent.RequestIdentity()
+                                .withSourceIp(sourceIp(exchange, trustForwardedFor))))
+                .withQueryStringParameters(queryParameters(exchange.getRequestURI().getRawQuery()))
+                .withBody(readBody(exchange, maxBodyBytes))
+                .withIsBase64Encoded(false);
+    }
+
+    /**
+     * Sends an API Gateway response event over an exchange and closes it.
+     *
+     * @param exchange the exchange
+     * @param response the response event
+     * @throws IOException if the response cannot be written
+     */
+    static void send(HttpExchange exchange, APIGatewayProxyResponseEvent response) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        if (response.getHeaders() != null) {
+            for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                headers.set(header.getKey(), header.getValue());
+            }
+        }
+        String body = response.getBody();
+        send(exchange, response.getStatusCode() == null ? 200 : response.getStatusCode(),
+                body == null ? new byte[0] : body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a status and body over an exchange and closes it.
+     *
+     * @param exchange   the exchange
+     * @param statusCode the HTTP status
+     * @param body       the body bytes, possibly empty
+     * @throws IOException if the response cannot be written
+     */
+    static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+        try (exchange) {
+            exchange.sendResponseHeaders(statusCode, body.length == 0 ? -1 : body.length);
+            if (body.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the address of the client: the last {@code X-Forwarded-For}
+     * entry when the load balancer in front is trusted to append it, the peer
+     * address otherwise. Earlier entries are set by the client and ignored.
+     *
+     * @param exchange          the exchange
+     * @param trustForwardedFor whether to read {@code X-Forwarded-For}
+     * @return the client address
+     */
+    private static String sourceIp(HttpExchange exchange, boolean trustForwardedFor) {
+        if (trustForwardedFor) {
+            List<String> forwarded = exchange.getRequestHeaders().get("X-Forwarded-For");
+            if (forwarded != null && !forwarded.isEmpty()) {
+                String last = forwarded.get(forwarded.size() - 1);
+                String client = last.substring(last.lastIndexOf(',') + 1).trim();
+                if (!client.isEmpty()) {
+                    return client;
+                }
+            }
+        }
+        return exchange.getRemoteAddress().getAddress().getHostAddress();
+    }
+
+    /**
+     * Reads the request body.
+     *
+     * @param exchange     the exchange
+     * @param maxBodyBytes the largest body accepted
+     * @return the body, or {@code null} if it is empty
+     * @throws BodyTooLargeException if the body exceeds {@code maxBodyBytes}
+     * @throws IOException           if the body cannot be read
+     */
+    private static String readBody(HttpExchange exchange, int maxBodyBytes) throws IOException {
+        String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        long declared = -1;
+        if (contentLength != null) {
+            try {
+                declared = Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                declared = -1;
+            }
+        }
+        if (declared > maxBodyBytes) {
+            throw new BodyTooLargeException(maxBodyBytes);
+        }
+
+        byte[] bytes;
+        try (InputStream in = exchange.getRequestBody()) {
+            bytes = in.readNBytes(declared >= 0 ? (int) declared : maxBodyBytes + 1);
+        }
+        if (bytes.length > maxBodyBytes) {
+            throw new BodyTooLargeException(maxBodyBytes);
+        }
+        return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a raw query string into single-value parameters, keeping the
+     * first value of a repeated name.
+     *
+     * @param rawQuery the raw query, or {@code null}
+     * @return the parameters, or {@code null} if there are none, as API Gateway sends them
+     */
+    private static Map<String, String> queryParameters(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return null;
+        }
+        Map<String, String> parameters = new TreeMap<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            parameters.putIfAbsent(name, value);
+        }
+        return parameters;
+    }
+
+    /**
+     * Thrown when a request body exceeds the configured limit.
+     */
+    static final class BodyTooLargeException extends IOException {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates the exception.
+         *
+         * @param maxBodyBytes the limit that was exceeded
+         */
+        BodyTooLargeException(int maxBodyBytes) {
+            super("Request body exceeds " + maxBodyBytes + " bytes");
+        }
+    }
+}
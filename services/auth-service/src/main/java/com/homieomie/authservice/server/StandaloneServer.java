@@ -0,0 +1,272 @@
+package com.homieomie.authservice.server;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.metrics.Metrics;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP server running the {@link AuthController} as a long-lived
+ * process, for deployments behind a load balancer instead of API Gateway and
+ * Lambda.
+ * <p>
+ * Every request is handled on its own virtual thread, so a request waiting on
+ * Cognito costs no platform thread. All requests share the one controller,
+ * and with it one warmed Cognito client, mapper and validator. A semaphore
+ * caps the requests handled at once; requests beyond the cap are answered
+ * {@code 503} right away rather than queued. {@code GET /health} answers
+ * {@code 200} and {@code GET /metrics} answers the {@link Metrics} in the
+ * Prometheus text format, both without reaching the controller.
+ * </p>
+ * <p>
+ * {@link #stop()} shuts down gracefully: the listening socket is closed
+ * first, then in-flight requests get up to the shutdown grace period to
+ * finish.
+ * </p>
+ */
+public class StandaloneServer {
+
+    /**
+     * Default listening port.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Default number of requests handled at once.
+     */
+    public static final int DEFAULT_MAX_CONCURRENCY = 1000;
+
+    /**
+     * Default largest request body, in bytes.
+     */
+    public static final int DEFAULT_MAX_BODY_BYTES = 64 * 1024;
+
+    /**
+     * Default time in-flight requests get to finish on shutdown.
+     */
+    public static final Duration DEFAULT_SHUTDOWN_GRACE = Duration.ofSeconds(20);
+
+    /**
+     * Path answered by the load balancer health check.
+     */
+    private static final String HEALTH_PATH = "/health";
+
+    /**
+     * Path serving the metrics in the Prometheus text format.
+     */
+    private static final String METRICS_PATH = "/metrics";
+
+    /**
+     * Body of the health check response.
+     */
+    private static final byte[] HEALTHY = "{\"status\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Body of the response to requests beyond the concurrency cap.
+     */
+    private static final byte[] BUSY = "{\"error\":\"Server is busy\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Body of the response to oversized requests.
+     */
+    private static final byte[] TOO_LARGE =
+            "{\"error\":\"Request body is too large\"}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Controller shared by all requests.
+     */
+    private final AuthController controller;
+
+    /**
+     * Port to listen on; {@code 0} picks a free one.
+     */
+    private final int port;
+
+    /**
+     * Largest request body accepted, in bytes.
+     */
+    private final int maxBodyBytes;
+
+    /**
+     * Time in-flight requests get to finish on shutdown.
+     */
+    private final Duration shutdownGrace;
+
+    /**
+     * Whether the load balancer in front is trusted to report the client
+     * address in {@code X-Forwarded-For}.
+     */
+    private final boolean trustForwardedFor;
+
+    /**
+     * Permits for the requests handled at once.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Executor starting one virtual thread per request.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * The underlying server, set by {@link #start()}.
+     */
+    private HttpServer server;
+
+    /**
+     * Creates a server.
+     *
+     * @param controller     the controller shared by all requests
+     * @param port           the port to listen on, {@code 0} for any free port
+     * @param maxConcurrency the number of requests handled at once
+     * @param maxBodyBytes   the largest request body accepted, in bytes
+     * @param shutdownGrace  the time in-flight requests get to finish on shutdown
+     */
+    public StandaloneServer(AuthController controller, int port, int maxConcurrency, int maxBodyBytes,
+                            Duration shutdownGrace) {
+        this(controller, port, maxConcurrency, maxBodyBytes, shutdownGrace, false);
+    }
+
+    /**
+     * Creates a server, optionally behind a load balancer that reports the
+     * client address in {@code X-Forwarded-For}.
+     *
+     * @param controller        the controller shared by all requests
+     * @param port              the port to listen on, {@code 0} for any free port
+     * @param maxConcurrency    the number of requests handled at once
+     * @param maxBodyBytes      the largest request body accepted, in bytes
+     * @param shutdownGrace     the time in-flight requests get to finish on shutdown
+     * @param trustForwardedFor whether the last {@code X-Forwarded-For} entry is the client address
+     */
+    public StandaloneServer(AuthController controller, int port, int maxConcurrency, int maxBodyBytes,
+                            Duration shutdownGrace, boolean trustForwardedFor) {
+        this.controller = controller;
+        this.port = port;
+        this.maxBodyBytes = maxBodyBytes;
+        this.shutdownGrace = shutdownGrace;
+        this.trustForwardedFor = trustForwardedFor;
+        this.permits = new Semaphore(maxConcurrency);
+    }
+
+    /**
+     * Creates a server configured from {@code SERVER_PORT},
+     * {@code SERVER_MAX_CONCURRENCY}, {@code SERVER_MAX_BODY_BYTES},
+     * {@code SERVER_SHUTDOWN_GRACE_SECONDS} and {@code SERVER_TRUST_FORWARDED_FOR}.
+     *
+     * @param controller the controller shared by all requests
+     * @return the server, not yet started
+     */
+    public static StandaloneServer fromEnvironment(AuthController controller) {
+        return new StandaloneServer(controller,
+                envInt("SERVER_PORT", DEFAULT_PORT),
+                envInt("SERVER_MAX_CONCURRENCY", DEFAULT_MAX_CONCURRENCY),
+                envInt("SERVER_MAX_BODY_BYTES", DEFAULT_MAX_BODY_BYTES),
+                Duration.ofSeconds(envInt("SERVER_SHUTDOWN_GRACE_SECONDS", (int) DEFAULT_SHUTDOWN_GRACE.toSeconds())),
+                "true".equalsIgnoreCase(System.getenv("SERVER_TRUST_FORWARDED_FOR")));
+    }
+
+    /**
+     * Binds the port and starts accepting requests.
+     *
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to the shutdown grace period for the
+     * in-flight ones and releases the request threads.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop((int) Math.max(1, shutdownGrace.toSeconds()));
+        executor.shutdown();
+        try {
+            executor.awaitTermination(shutdownGrace.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the bound port
+     * @throws IllegalStateException if the server is not started
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("Server is not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles one exchange on its virtual thread.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if (HEALTH_PATH.equals(exchange.getRequestURI().getPath())) {
+            Exchanges.send(exchange, 200, HEALTHY);
+            return;
+        }
+        if (METRICS_PATH.equals(exchange.getRequestURI().getPath())) {
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            Exchanges.send(exchange, 200, Metrics.shared().toPrometheus().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (!permits.tryAcquire()) {
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            Exchanges.send(exchange, 503, BUSY);
+            return;
+        }
+        try {
+            APIGatewayProxyResponseEvent response = controller.routeRequest(
+                    Exchanges.toRequestEvent(exchange, maxBodyBytes, trustForwardedFor));
+            Exchanges.send(exchange, response);
+        } catch (Exchanges.BodyTooLargeException e) {
+            Exchanges.send(exchange, 413, TOO_LARGE);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Reads a positive integer environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or invalid
+     * @return the value
+     */
+    private static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.homieomie.authservice.services;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Decides whether a user is currently in the admin group by asking Cognito,
+ * caching each answer briefly so that most admin requests make no extra call.
+ * <p>
+ * A token's {@code cognito:groups} claim reflects the groups at sign-in, so it
+ * keeps granting access after the user is removed from the group. This
+ * authorizer looks the membership up with {@code AdminListGroupsForUser}
+ * instead, and reuses the answer for a short time-to-live: a revocation
+ * takes effect within that time, or at once if {@link #invalidate(String)} is
+ * called. Answers that the user is not a member are cached too, with their
+ * own time-to-live, so a revoked admin retrying does not reach Cognito on
+ * every request.
+ * </p>
+ * <p>
+ * Concurrent lookups for the same user share one Cognito call. Failed
+ * lookups are never cached. A lookup still in flight when the user is
+ * invalidated completes its waiting requests but does not fill the cache.
+ * </p>
+ */
+public class AdminAuthorizer {
+
+    /**
+     * Default time a membership is reused.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(5);
+
+    /**
+     * Default time a non-membership is reused.
+     */
+    public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofSeconds(5);
+
+    /**
+     * Default upper bound on the number of cached answers.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Looks up in Cognito whether a username is in the admin group.
+     */
+    private final Function<String, CompletableFuture<Boolean>> lookup;
+
+    /**
+     * Time in milliseconds a membership is reused; {@code 0} disables caching it.
+     */
+    private final long ttlMillis;
+
+    /**
+     * Time in milliseconds a non-membership is reused; {@code 0} disables caching it.
+     */
+    private final long negativeTtlMillis;
+
+    /**
+     * Maximum number of cached answers.
+     */
+    private final int maxEntries;
+
+    /**
+     * Lookups in flight, keyed by username.
+     */
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Recent answers, keyed by username.
+     */
+    private final Map<String, Membership> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Number of checks answered from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of checks that joined a lookup already in flight.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Number of lookups sent to Cognito.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates an authorizer.
+     *
+     * @param lookup      looks up in Cognito whether a username is in the admin group
+     * @param ttl         the time a membership is reused, zero to disable caching it
+     * @param negativeTtl the time a non-membership is reused, zero to disable caching it
+     * @param maxEntries  the maximum number of cached answers
+     */
+    public AdminAuthorizer(Function<String, CompletableFuture<Boolean>> lookup, Duration ttl, Duration negativeTtl,
+                           int maxEntries) {
+        this.lookup = lookup;
+        this.ttlMillis = Math.max(0, ttl.toMillis());
+        this.negativeTtlMillis = Math.max(0, negativeTtl.toMillis());
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Creates an authorizer whose times-to-live are read from
+     * {@code ADMIN_CACHE_TTL_SECONDS} and {@code ADMIN_CACHE_NEGATIVE_TTL_SECONDS}.
+     *
+     * @param lookup looks up in Cognito whether a username is in the admin group
+     * @return the authorizer
+     */
+    public static AdminAuthorizer fromEnvironment(Function<String, CompletableFuture<Boolean>> lookup) {
+        return new AdminAuthorizer(lookup, envSeconds("ADMIN_CACHE_TTL_SECONDS", DEFAULT_TTL),
+                envSeconds("ADMIN_CACHE_NEGATIVE_TTL_SECONDS", DEFAULT_NEGATIVE_TTL), DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Tells whether a user is in the admin group, from the cache, from a
+     * lookup already in flight, or from a new lookup.
+     *
+     * @param username the Cognito username
+     * @return a future of {@code true} if the user is in the admin group; it
+     *         fails if Cognito could not be asked
+     */
+    public CompletableFuture<Boolean> isAdmin(String username) {
+        long now = System.currentTimeMillis();
+
+        Membership cached = cache.get(username);
+        if (cached != null) {
+            if (cached.expiresAtMillis > now) {
+                hits.increment();
+                return cached.answer;
+            }
+            cache.remove(username, cached);
+        }
+
+        CompletableFuture<Boolean> promise = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(username, promise);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+
+        misses.increment();
+        CompletableFuture<Boolean> call;
+        try {
+            call = lookup.apply(username);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((member, failure) -> {
+            if (inFlight.remove(username, promise) && failure == null) {
+                store(username, member);
+            }
+            if (failure != null) {
+                promise.completeExceptionally(failure);
+            } else {
+                promise.complete(member);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Forgets the cached answer for a user, so that the next check asks
+     * Cognito. Call it after changing the user's groups.
+     *
+     * @param username the Cognito username
+     */
+    public void invalidate(String username) {
+        inFlight.remove(username);
+        cache.remove(username);
+    }
+
+    /**
+     * Forgets every cached answer.
+     */
+    public void invalidateAll() {
+        inFlight.clear();
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of checks answered from the cache.
+     *
+     * @return the cache hit count
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of checks that joined a lookup already in flight.
+     *
+     * @return the coalesced check count
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of lookups sent to Cognito.
+     *
+     * @return the cache miss count
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Caches an answer for its time-to-live, making room first if the cache is full.
+     *
+     * @param username the Cognito username
+     * @param member   whether the user is in the admin group
+     */
+    private void store(String username, boolean member) {
+        long lifetime = member ? ttlMillis : negativeTtlMillis;
+        if (lifetime <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            Iterator<String> it = cache.keySet().iterator();
+            while (cache.size() >= maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(username, new Membership(member, now + lifetime));
+    }
+
+    /**
+     * Reads a duration in whole seconds from an environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the duration used when the variable is unset or malformed
+     * @return the duration
+     */
+    private static Duration envSeconds(String name, Duration fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * A cached answer and the time it stops being reused.
+     */
+    private static final class Membership {
+
+        /**
+         * Completed future of whether the user is in the admin group, shared by every hit.
+         */
+        private final CompletableFuture<Boolean> answer;
+
+        /**
+         * Epoch milliseconds after which the entry is no longer used.
+         */
+        private final long expiresAtMillis;
+
+        /**
+         * Creates a cache entry.
+         *
+         * @param member          whether the user is in the admin group
+         * @param expiresAtMillis the end of reuse in epoch milliseconds
+         */
+        private Membership(boolean member, long expiresAtMillis) {
+            this.answer = CompletableFuture.completedFuture(member);
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.homieomie.authservice.services;
+
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * {@link CognitoBackend} over the non-blocking
+ * {@link CognitoIdentityProviderAsyncClient}.
+ * <p>
+ * Calls return as soon as the request is handed to the Netty event loop, so
+ * no thread waits on Cognito; thousands of calls can be in flight on a few
+ * threads. Futures complete on the SDK's completion executor.
+ * </p>
+ */
+public class AsyncCognitoBackend implements CognitoBackend {
+
+    /**
+     * The non-blocking SDK client.
+     */
+    private final CognitoIdentityProviderAsyncClient client;
+
+    /**
+     * Creates a backend over the given client.
+     *
+     * @param client the non-blocking SDK client
+     */
+    public AsyncCognitoBackend(CognitoIdentityProviderAsyncClient client) {
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+        return client.adminCreateUser(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+            AdminListGroupsForUserRequest request) {
+        return client.adminListGroupsForUser(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(AdminSetUserPasswordRequest request) {
+        return client.adminSetUserPassword(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+        return client.initiateAuth(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+        return client.listUsers(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+            RespondToAuthChallengeRequest request) {
+        return client.respondToAuthChallenge(request);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        client.close();
+    }
+}
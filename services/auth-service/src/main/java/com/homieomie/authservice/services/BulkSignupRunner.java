@@ -0,0 +1,228 @@
+package com.homieomie.authservice.services;
+
+import com.homieomie.authservice.models.SignupOutcome;
+import com.homieomie.authservice.models.SignupRequest;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.TooManyRequestsException;
+
+/**
+ * Creates a batch of users with bounded, adaptive concurrency.
+ * <p>
+ * Calls are started while fewer than the current limit are in flight. The
+ * limit follows additive-increase/multiplicative-decrease: every success
+ * raises it by {@code 1/limit} (about one per round of calls) up to the
+ * configured maximum, and every {@link TooManyRequestsException} halves it.
+ * A throttled user is retried after an exponential, fully jittered backoff;
+ * once its attempts are exhausted, or on any other failure, it is reported as
+ * failed and the batch moves on.
+ * </p>
+ * <p>
+ * Each call is started on a virtual thread, so the blocking backend fans out
+ * as well as the non-blocking one. Outcomes reach the sink one at a time, in
+ * completion order.
+ * </p>
+ */
+final class BulkSignupRunner {
+
+    /**
+     * Default upper bound on calls in flight.
+     */
+    static final int DEFAULT_MAX_CONCURRENCY = 10;
+
+    /**
+     * Attempts per user before a throttled call is reported as failed.
+     */
+    private static final int MAX_ATTEMPTS = 8;
+
+    /**
+     * Backoff before the first retry, in milliseconds.
+     */
+    private static final long BASE_BACKOFF_MILLIS = 100;
+
+    /**
+     * Longest backoff between retries, in milliseconds.
+     */
+    private static final long MAX_BACKOFF_MILLIS = 5_000;
+
+    /**
+     * Threads the calls are started on.
+     */
+    private static final ExecutorService CALLS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Creates one user and completes with the creation message.
+     */
+    private final Function<SignupRequest, CompletableFuture<String>> createUser;
+
+    /**
+     * Upper bound of the adaptive limit.
+     */
+    private final int maxConcurrency;
+
+    /**
+     * Users of the batch, in request order.
+     */
+    private final List<SignupRequest> users;
+
+    /**
+     * Receives each outcome as it completes.
+     */
+    private final Consumer<SignupOutcome> sink;
+
+    /**
+     * Completes once every user has an outcome.
+     */
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    /**
+     * Users waiting for a call slot, as {@code {index, attempt}} pairs.
+     */
+    private final ArrayDeque<int[]> ready = new ArrayDeque<>();
+
+    /**
+     * Current adaptive limit on calls in flight.
+     */
+    private double limit;
+
+    /**
+     * Calls currently in flight.
+     */
+    private int inFlight;
+
+    /**
+     * Users without an outcome yet.
+     */
+    private int remaining;
+
+    /**
+     * Creates a runner for one batch.
+     *
+     * @param createUser     creates one user, completing with the creation message
+     * @param maxConcurrency the upper bound on calls in flight
+     * @param users          the users to create
+     * @param sink           receives each outcome as it completes
+     */
+    BulkSignupRunner(Function<SignupRequest, CompletableFuture<String>> createUser, int maxConcurrency,
+                     List<SignupRequest> users, Consumer<SignupOutcome> sink) {
+        this.createUser = createUser;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.users = users;
+        this.sink = sink;
+        this.limit = this.maxConcurrency;
+        this.remaining = users.size();
+    }
+
+    /**
+     * Returns the upper bound on calls in flight from
+     * {@code BULK_SIGNUP_CONCURRENCY}.
+     *
+     * @return the configured bound, or {@link #DEFAULT_MAX_CONCURRENCY}
+     */
+    static int maxConcurrencyFromEnvironment() {
+        String value = System.getenv("BULK_SIGNUP_CONCURRENCY");
+        if (value == null || value.isBlank()) {
+            return DEFAULT_MAX_CONCURRENCY;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : DEFAULT_MAX_CONCURRENCY;
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAX_CONCURRENCY;
+        }
+    }
+
+    /**
+     * Starts the batch.
+     *
+     * @return a future completing once every user has an outcome, or
+     *         exceptionally if the sink fails
+     */
+    CompletableFuture<Void> run() {
+        synchronized (this) {
+            for (int i = 0; i < users.size(); i++) {
+                ready.add(new int[] {i, 1});
+            }
+            if (remaining == 0) {
+                done.complete(null);
+            }
+            pump();
+        }
+        return done;
+    }
+
+    /**
+     * Starts calls while the limit allows. Must be called holding this
+     * runner's lock.
+     */
+    private void pump() {
+        while (inFlight < (int) limit && !ready.isEmpty() && !done.isDone()) {
+            int[] next = ready.poll();
+            inFlight++;
+            int index = next[0];
+            int attempt = next[1];
+            CompletableFuture.supplyAsync(() -> createUser.apply(users.get(index)), CALLS)
+                    .thenCompose(Function.identity())
+                    .whenComplete((result, failure) -> complete(index, attempt, result, failure));
+        }
+    }
+
+    /**
+     * Records the end of one call: adapts the limit, schedules a retry or
+     * emits the outcome, then starts more calls.
+     *
+     * @param index   the user's position
+     * @param attempt the attempt that ended, from 1
+     * @param result  the creation message, or {@code null} on failure
+     * @param failure the failure, or {@code null} on success
+     */
+    private synchronized void complete(int index, int attempt, String result, Throwable failure) {
+        inFlight--;
+        Throwable cause = failure == null ? null : CognitoBackend.unwrap(failure);
+        if (cause instanceof TooManyRequestsException && attempt < MAX_ATTEMPTS) {
+            limit = Math.max(1, limit / 2);
+            long cap = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+            Executor delayed = CompletableFuture.delayedExecutor(
+                    ThreadLocalRandom.current().nextLong(cap + 1), TimeUnit.MILLISECONDS, CALLS);
+            delayed.execute(() -> retry(index, attempt + 1));
+        } else {
+            String username = users.get(index).getUsername();
+            SignupOutcome outcome;
+            if (cause == null) {
+                limit = Math.min(maxConcurrency, limit + 1 / limit);
+                outcome = SignupOutcome.created(index, username, result);
+            } else {
+                outcome = SignupOutcome.failed(index, username, cause.getMessage());
+            }
+            try {
+                sink.accept(outcome);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+                return;
+            }
+            if (--remaining == 0) {
+                done.complete(null);
+            }
+        }
+        pump();
+    }
+
+    /**
+     * Puts a throttled user back in line once its backoff has elapsed.
+     *
+     * @param index   the user's position
+     * @param attempt the attempt about to be made
+     */
+    private synchronized void retry(int index, int attempt) {
+        ready.addFirst(new int[] {index, attempt});
+        pump();
+    }
+}
@@ -0,0 +1,122 @@
+package com.homieomie.authservice.services;
+
+import com.homieomie.authservice.resilience.CircuitOpenException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * The Cognito operations {@link CognitoService} needs, behind one interface so
+ * the blocking and the non-blocking SDK clients are interchangeable.
+ * <p>
+ * Every operation returns a future. {@link SyncCognitoBackend} completes it
+ * before returning, on the calling thread; {@link AsyncCognitoBackend}
+ * completes it on an SDK thread once Cognito answers. Failures, including
+ * timeouts, complete the future exceptionally with the SDK exception.
+ * </p>
+ */
+public interface CognitoBackend extends AutoCloseable {
+
+    /**
+     * Calls {@code AdminCreateUser}.
+     *
+     * @param request the request
+     * @return the response
+     */
+    CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request);
+
+    /**
+     * Calls {@code AdminListGroupsForUser}.
+     *
+     * @param request the request
+     * @return the response
+     */
+    CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(AdminListGroupsForUserRequest request);
+
+    /**
+     * Calls {@code AdminSetUserPassword}.
+     *
+     * @param request the request
+     * @return the response
+     */
+    CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(AdminSetUserPasswordRequest request);
+
+    /**
+     * Calls {@code InitiateAuth}.
+     *
+     * @param request the request
+     * @return the response
+     */
+    CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request);
+
+    /**
+     * Calls {@code ListUsers}.
+     *
+     * @param request the request
+     * @return the response
+     */
+    CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request);
+
+    /**
+     * Calls {@code RespondToAuthChallenge}.
+     *
+     * @param request the request
+     * @return the response
+     */
+    CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(RespondToAuthChallengeRequest request);
+
+    /**
+     * Closes the underlying SDK client and its connections.
+     */
+    @Override
+    void close();
+
+    /**
+     * Returns the cause of a failed call, unwrapped from the
+     * {@link CompletionException}s that dependent futures add around it.
+     *
+     * @param failure the failure a future completed with
+     * @return the original exception
+     */
+    static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Returns the code identifying why a Cognito call failed, as logged: the
+     * error code Cognito answered with, or the exception type of a failure
+     * that never got an answer.
+     *
+     * @param failure the failure a future completed with
+     * @return the error code, or {@code null} if the failure is not a Cognito call's
+     */
+    static String errorCodeOf(Throwable failure) {
+        Throwable cause = unwrap(failure);
+        if (cause instanceof AwsServiceException e && e.awsErrorDetails() != null
+                && e.awsErrorDetails().errorCode() != null) {
+            return e.awsErrorDetails().errorCode();
+        } else if (cause instanceof SdkException || cause instanceof CircuitOpenException
+                || cause instanceof TimeoutException) {
+            return cause.getClass().getSimpleName();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,309 @@
+package com.homieomie.authservice.services;
+
+import java.net.URI;
+import java.time.Duration;
+import software.amazon.awssdk.auth.credentials.AnonymousCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderAsyncClientBuilder;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClientBuilder;
+
+/**
+ * Builds Cognito SDK clients with an explicit configuration.
+ * <p>
+ * {@code CognitoIdentityProviderClient.create()} walks the default region and
+ * credential provider chains and loads the Apache HTTP client, all of which
+ * shows up in Lambda cold starts. This factory instead reads the region from
+ * {@code AWS_REGION}, picks the one credentials provider Lambda actually uses
+ * and plugs in the lightweight URL-connection HTTP client.
+ * </p>
+ * <p>
+ * Connections to Cognito are kept open between calls, and so between
+ * invocations of a warm function, for {@code COGNITO_KEEP_ALIVE_SECONDS}
+ * (default 30) of idleness, so most calls skip the TCP and TLS handshakes.
+ * The blocking client's pool is the JDK's, which otherwise keeps a connection
+ * only 5 seconds when the server does not say how long it may; up to
+ * {@code COGNITO_MAX_IDLE_CONNECTIONS} (default 10) idle connections are kept.
+ * </p>
+ * <p>
+ * Outside Lambda, {@code COGNITO_BACKEND=async} selects the non-blocking
+ * client on Netty instead. Either way, every call is bounded by
+ * {@code COGNITO_CALL_TIMEOUT_SECONDS}, and the SDK makes no retries of its
+ * own: {@link CognitoService} retries through a {@link ResilientCognitoBackend}.
+ * </p>
+ * <p>
+ * {@code COGNITO_ENDPOINT} points the clients at another endpoint, such as a
+ * local stub of Cognito. Without environment credentials, calls to it are
+ * then sent unsigned.
+ * </p>
+ */
+public final class CognitoClientFactory {
+
+    /**
+     * Timeout for establishing a connection to Cognito.
+     */
+    private static final Duration CONNECTION_TIMEOUT = Duration.ofSeconds(2);
+
+    /**
+     * Timeout for reading a response from Cognito.
+     */
+    private static final Duration SOCKET_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Default bound on a whole Cognito call, retries included. It stays under
+     * API Gateway's 29 second integration timeout so the caller gets a 504
+     * from the service rather than from the gateway.
+     */
+    private static final Duration DEFAULT_CALL_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Default number of concurrent connections of the async client.
+     */
+    private static final int DEFAULT_MAX_CONCURRENCY = 500;
+
+    /**
+     * Default seconds an idle connection to Cognito is kept for reuse.
+     */
+    private static final int DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Default number of idle connections the blocking client keeps per endpoint.
+     */
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 10;
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private CognitoClientFactory() {}
+
+    /**
+     * Creates the backend selected by {@code COGNITO_BACKEND}: {@code async}
+     * for the Netty-based client, anything else for the blocking one.
+     *
+     * @return a new backend
+     */
+    public static CognitoBackend createBackend() {
+        return createBackend(region());
+    }
+
+    /**
+     * Creates the backend selected by {@code COGNITO_BACKEND} for the pools
+     * of another region than the function's.
+     *
+     * @param region the region to call
+     * @return a new backend
+     */
+    public static CognitoBackend createBackend(Region region) {
+        if ("async".equalsIgnoreCase(System.getenv("COGNITO_BACKEND"))) {
+            return new AsyncCognitoBackend(createAsync(endpoint(), region));
+        }
+        return new SyncCognitoBackend(create(endpoint(), region));
+    }
+
+    /**
+     * Creates a synchronous Cognito client for the current environment.
+     *
+     * @return a new client
+     */
+    public static CognitoIdentityProviderClient create() {
+        return create(endpoint());
+    }
+
+    /**
+     * Creates a synchronous Cognito client calling the given endpoint, such
+     * as a local stub of Cognito, instead of the region's.
+     *
+     * @param endpoint the endpoint to call, or {@code null} for the region's Cognito endpoint
+     * @return a new client
+     */
+    public static CognitoIdentityProviderClient create(URI endpoint) {
+        return create(endpoint, region());
+    }
+
+    /**
+     * Creates a synchronous Cognito client calling the given endpoint, or
+     * else the given region's.
+     *
+     * @param endpoint the endpoint to call, or {@code null} for the region's Cognito endpoint
+     * @param region   the region to call
+     * @return a new client
+     */
+    public static CognitoIdentityProviderClient create(URI endpoint, Region region) {
+        configureKeepAlive();
+        CognitoIdentityProviderClientBuilder builder = CognitoIdentityProviderClient.builder()
+                .region(region)
+                .credentialsProvider(credentialsProvider(endpoint))
+                .overrideConfiguration(overrideConfiguration())
+                .httpClientBuilder(UrlConnectionHttpClient.builder()
+                        .connectionTimeout(CONNECTION_TIMEOUT)
+                        .socketTimeout(SOCKET_TIMEOUT));
+        if (endpoint != null) {
+            builder.endpointOverride(endpoint);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a non-blocking Cognito client on the Netty NIO HTTP client,
+     * sized by {@code COGNITO_MAX_CONCURRENCY}.
+     *
+     * @return a new client
+     */
+    public static CognitoIdentityProviderAsyncClient createAsync() {
+        return createAsync(endpoint());
+    }
+
+    /**
+     * Creates a non-blocking Cognito client calling the given endpoint, such
+     * as a local stub of Cognito, instead of the region's.
+     *
+     * @param endpoint the endpoint to call, or {@code null} for the region's Cognito endpoint
+     * @return a new client
+     */
+    public static CognitoIdentityProviderAsyncClient createAsync(URI endpoint) {
+        return createAsync(endpoint, region());
+    }
+
+    /**
+     * Creates a non-blocking Cognito client calling the given endpoint, or
+     * else the given region's.
+     *
+     * @param endpoint the endpoint to call, or {@code null} for the region's Cognito endpoint
+     * @param region   the region to call
+     * @return a new client
+     */
+    public static CognitoIdentityProviderAsyncClient createAsync(URI endpoint, Region region) {
+        CognitoIdentityProviderAsyncClientBuilder builder = CognitoIdentityProviderAsyncClient.builder()
+                .region(region)
+                .credentialsProvider(credentialsProvider(endpoint))
+                .overrideConfiguration(overrideConfiguration())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .connectionTimeout(CONNECTION_TIMEOUT)
+                        .readTimeout(SOCKET_TIMEOUT)
+                        .maxConcurrency(envInt("COGNITO_MAX_CONCURRENCY", DEFAULT_MAX_CONCURRENCY))
+                        .connectionMaxIdleTime(keepAlive())
+                        .tcpKeepAlive(true));
+        if (endpoint != null) {
+            builder.endpointOverride(endpoint);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the region from {@code AWS_REGION}, which Lambda always sets.
+     *
+     * @return the region, defaulting to {@code us-east-1} outside Lambda
+     */
+    static Region region() {
+        String region = System.getenv("AWS_REGION");
+        return region == null || region.isBlank() ? Region.US_EAST_1 : Region.of(region);
+    }
+
+    /**
+     * Returns the credentials provider matching how Lambda hands out credentials.
+     * <p>
+     * SnapStart functions receive credentials from a container endpoint
+     * (advertised through {@code AWS_CONTAINER_CREDENTIALS_FULL_URI}) because
+     * environment credentials captured in a snapshot would go stale; all other
+     * functions receive them as environment variables. Calls to an endpoint
+     * other than Cognito's are sent unsigned unless such credentials are set.
+     * </p>
+     *
+     * @param endpoint the endpoint called, or {@code null} for the region's Cognito endpoint
+     * @return the credentials provider
+     */
+    static AwsCredentialsProvider credentialsProvider(URI endpoint) {
+        if (System.getenv("AWS_CONTAINER_CREDENTIALS_FULL_URI") != null) {
+            return ContainerCredentialsProvider.builder().build();
+        }
+        if (endpoint != null && System.getenv("AWS_ACCESS_KEY_ID") == null) {
+            return AnonymousCredentialsProvider.create();
+        }
+        return EnvironmentVariableCredentialsProvider.create();
+    }
+
+    /**
+     * Returns the endpoint from {@code COGNITO_ENDPOINT}, if set.
+     *
+     * @return the endpoint, or {@code null} to use the region's Cognito endpoint
+     */
+    static URI endpoint() {
+        String endpoint = System.getenv("COGNITO_ENDPOINT");
+        return endpoint == null || endpoint.isBlank() ? null : URI.create(endpoint.trim());
+    }
+
+    /**
+     * Returns the bound on a whole Cognito call from {@code COGNITO_CALL_TIMEOUT_SECONDS}.
+     *
+     * @return the call timeout
+     */
+    static Duration callTimeout() {
+        return Duration.ofSeconds(envInt("COGNITO_CALL_TIMEOUT_SECONDS", (int) DEFAULT_CALL_TIMEOUT.toSeconds()));
+    }
+
+    /**
+     * Returns how long an idle connection is kept, from {@code COGNITO_KEEP_ALIVE_SECONDS}.
+     *
+     * @return the keep-alive time
+     */
+    static Duration keepAlive() {
+        return Duration.ofSeconds(envInt("COGNITO_KEEP_ALIVE_SECONDS", DEFAULT_KEEP_ALIVE_SECONDS));
+    }
+
+    /**
+     * Sizes the JDK's pool of idle HTTP connections, which the blocking
+     * client uses, unless the JVM was started with its own settings. The JDK
+     * reads them once, so this takes effect only before the first connection.
+     */
+    private static void configureKeepAlive() {
+        if (System.getProperty("http.keepAlive.time.server") == null) {
+            System.setProperty("http.keepAlive.time.server", Long.toString(keepAlive().toSeconds()));
+        }
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections",
+                    Integer.toString(envInt("COGNITO_MAX_IDLE_CONNECTIONS", DEFAULT_MAX_IDLE_CONNECTIONS)));
+        }
+    }
+
+    /**
+     * Returns the client configuration bounding each call by
+     * {@code COGNITO_CALL_TIMEOUT_SECONDS}, with the SDK's retries turned off.
+     * A call that runs out of time fails with {@code ApiCallTimeoutException}.
+     *
+     * @return the override configuration
+     */
+    private static ClientOverrideConfiguration overrideConfiguration() {
+        return ClientOverrideConfiguration.builder()
+                .apiCallTimeout(callTimeout())
+                .retryStrategy(AwsRetryStrategy.doNotRetry())
+                .build();
+    }
+
+    /**
+     * Reads a positive integer environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value used when the variable is unset or invalid
+     * @return the value
+     */
+    static int envInt(String name, int fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            return parsed > 0 ? parsed : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -1,47 +1,202 @@
 package com.homieomie.authservice.services;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.interfaces.DecodedJWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.metrics.Metrics;
 import com.homieomie.authservice.models.ConfirmSignupRequest;
 import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.models.RefreshRequest;
+import com.homieomie.authservice.models.SignupOutcome;
 import com.homieomie.authservice.models.SignupRequest;
-import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
-import software.amazon.awssdk.services.cognitoidentityprovider.model.*;
-
+import com.homieomie.authservice.models.UserMatch;
+import com.homieomie.authservice.models.UserSummary;
+import com.homieomie.authservice.resilience.Deadline;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthFlowType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthenticationResultType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ChallengeNameType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.DeliveryMediumType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.GroupType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
 
 /**
  * Service class responsible for handling interactions with
  * Amazon Cognito, including user signup, confirmation,
  * and authentication flows.
+ * <p>
+ * Cognito is reached through a {@link CognitoBackend}, blocking or not, and
+ * every operation returns a {@link CompletableFuture}. With the blocking
+ * backend the future is already complete when it is returned.
+ * </p>
  */
 public class CognitoService {
 
     /**
-     * Amazon Cognito User Pool ID for this application.
-     * <p>
-     * The value is loaded from the {@code USER_POOL_ID} environment variable
-     * at application startup. If this environment variable is not set,
-     * Cognito API calls may fail.
+     * Flow used to authenticate logins, from the {@code LOGIN_AUTH_FLOW}
+     * environment variable: {@code USER_SRP_AUTH} proves the password to
+     * Cognito by SRP, anything else sends it with {@code USER_PASSWORD_AUTH}.
      */
-    private static final String USER_POOL_ID = System.getenv("USER_POOL_ID");
+    private static final AuthFlowType LOGIN_AUTH_FLOW =
+            "USER_SRP_AUTH".equalsIgnoreCase(System.getenv("LOGIN_AUTH_FLOW"))
+                    ? AuthFlowType.USER_SRP_AUTH : AuthFlowType.USER_PASSWORD_AUTH;
 
     /**
-     * Amazon Cognito App Client ID associated with the configured User Pool.
-     * <p>
-     * The value is loaded from the {@code CLIENT_ID} environment variable
-     * at application startup. If this environment variable is not set,
-     * authentication flows may fail.
+     * Name of the Cognito group whose members may call admin-only actions.
      */
-    private static final String CLIENT_ID = System.getenv("CLIENT_ID");
+    private static final String ADMIN_GROUP = "admin";
 
     /**
-     * Cognito client used to perform operations against AWS Cognito.
+     * Largest {@code limit} Cognito accepts for a single {@code AdminListGroupsForUser} call.
      */
-    private final CognitoIdentityProviderClient cognitoClient =
-            CognitoIdentityProviderClient.create();
+    private static final int COGNITO_MAX_GROUPS_PAGE_SIZE = 60;
+
+    /**
+     * Name of the Cognito attribute holding the user's email address.
+     */
+    private static final String EMAIL_ATTRIBUTE = "email";
+
+    /**
+     * Largest {@code limit} Cognito accepts for a single {@code ListUsers} call.
+     */
+    static final int COGNITO_MAX_PAGE_SIZE = 60;
+
+    /**
+     * Attribute projection used when listing users.
+     */
+    private static final List<String> EMAIL_PROJECTION = List.of(EMAIL_ATTRIBUTE);
+
+    /**
+     * Attributes users are searched by, and projected for each match.
+     */
+    static final List<String> SEARCH_ATTRIBUTES = List.of(EMAIL_ATTRIBUTE, "phone_number", "given_name", "family_name");
+
+    /**
+     * Encoder for the opaque cursors handed out by {@code listUsers}.
+     */
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * User Pool and app client this service works with.
+     */
+    private final PoolConfig pool;
+
+    /**
+     * Backend used to perform operations against AWS Cognito, timed into
+     * {@link Metrics#shared()} and kept within each request's time budget by
+     * a {@link ResilientCognitoBackend}. Replaced by {@link #reconnect()} after a snapshot restore.
+     */
+    private volatile ResilientCognitoBackend backend;
+
+    /**
+     * View of {@link #backend} that does not retry throttled calls, for the
+     * bulk signup, which backs off and lowers its concurrency on its own.
+     */
+    private volatile CognitoBackend bulkBackend;
+
+    /**
+     * Verifier for Cognito-issued tokens, backed by a cache of verified tokens
+     * and of the pool's JWKS signing keys.
+     */
+    private final TokenVerifier tokenVerifier;
+
+    /**
+     * Coalescing, briefly caching exchanger of refresh tokens.
+     */
+    private final TokenRefresher tokenRefresher;
+
+    /**
+     * Briefly caching checker of admin group membership against Cognito.
+     */
+    private final AdminAuthorizer adminAuthorizer;
+
+    /**
+     * Client side of the {@code USER_SRP_AUTH} flow, keeping ephemeral keys ready.
+     */
+    private final SrpAuthenticator srpAuthenticator;
+
+    /**
+     * Creates a service for the pool set by the environment, using the
+     * backend selected by {@link CognitoClientFactory#createBackend()}.
+     */
+    public CognitoService() {
+        this(CognitoClientFactory.createBackend(), newTokenVerifier(PoolConfig.fromEnvironment()));
+    }
+
+    /**
+     * Creates a service using the given blocking client.
+     *
+     * @param cognitoClient the Cognito client to use
+     */
+    public CognitoService(CognitoIdentityProviderClient cognitoClient) {
+        this(new SyncCognitoBackend(cognitoClient), newTokenVerifier(PoolConfig.fromEnvironment()));
+    }
+
+    /**
+     * Creates a service using the given blocking client and token verifier.
+     *
+     * @param cognitoClient the Cognito client to use
+     * @param tokenVerifier the verifier used for admin checks
+     */
+    public CognitoService(CognitoIdentityProviderClient cognitoClient, TokenVerifier tokenVerifier) {
+        this(new SyncCognitoBackend(cognitoClient), tokenVerifier);
+    }
+
+    /**
+     * Creates a service for the pool set by the environment, using the given
+     * backend and token verifier.
+     *
+     * @param backend       the backend to reach Cognito through
+     * @param tokenVerifier the verifier used for admin checks
+     */
+    public CognitoService(CognitoBackend backend, TokenVerifier tokenVerifier) {
+        this(PoolConfig.fromEnvironment(), backend, tokenVerifier);
+    }
+
+    /**
+     * Creates a service for the given pool, using the given backend and
+     * token verifier, either of which may be shared with services of other pools.
+     *
+     * @param pool          the User Pool and app client to work with
+     * @param backend       the backend to reach Cognito through
+     * @param tokenVerifier the verifier of the pool's tokens, used for admin checks
+     */
+    public CognitoService(PoolConfig pool, CognitoBackend backend, TokenVerifier tokenVerifier) {
+        this.pool = pool;
+        this.backend = decorate(backend);
+        this.bulkBackend = this.backend.withoutThrottlingRetries();
+        this.tokenVerifier = tokenVerifier;
+        this.tokenRefresher = TokenRefresher.fromEnvironment(this::exchangeRefreshToken);
+        this.adminAuthorizer = AdminAuthorizer.fromEnvironment(this::lookUpAdmin);
+        this.srpAuthenticator = new SrpAuthenticator(pool.getUserPoolId(),
+                CognitoClientFactory.envInt("SRP_SPARE_KEYS", SrpAuthenticator.DEFAULT_SPARE_KEYS));
+        if (LOGIN_AUTH_FLOW == AuthFlowType.USER_SRP_AUTH) {
+            srpAuthenticator.prepareKeys();
+        }
+    }
 
     /**
      * Creates a new user in the Cognito User Pool.
@@ -49,126 +204,692 @@ public class CognitoService {
      * @param req     the signup request containing user attributes
      * @param headers request headers, expected to contain an
      *                {@code Authorization} token with admin privileges
-     * @return a string message indicating successful user creation
-     * @throws RuntimeException if the request is not authorized
+     * @return a future of a string message indicating successful user creation;
+     *         it fails with a {@link RuntimeException} if the request is not authorized
      */
-    public String signup(SignupRequest req, Map<String, String> headers) {
-        String authHeader = headers.get("Authorization");
-        if (authHeader == null || !isAdmin(authHeader)) {
-            throw new RuntimeException("Forbidden: admin access required");
+    public CompletableFuture<String> signup(SignupRequest req, Map<String, String> headers) {
+        return requireAdmin(headers).thenCompose(Deadline.carry(ignored -> createUser(req)));
+    }
+
+    /**
+     * Creates many users in the Cognito User Pool, checking the admin token
+     * once for the whole batch.
+     * <p>
+     * Up to {@code BULK_SIGNUP_CONCURRENCY} users (default 10) are created at
+     * once, fewer while Cognito throttles; a throttled user is retried with
+     * backoff. Those calls go through a backend that does not retry throttled
+     * calls itself, so the runner's backoff is the only one and its limit
+     * drops at the first throttle. One user failing does not stop the others.
+     * </p>
+     *
+     * @param users   the users to create
+     * @param headers request headers, expected to contain an
+     *                {@code Authorization} token with admin privileges
+     * @param sink    receives the outcome of each user as it completes
+     * @return a future completing once every user has an outcome; it fails
+     *         with a {@link RuntimeException} if the request is not authorized
+     */
+    public CompletableFuture<Void> bulkSignup(List<SignupRequest> users, Map<String, String> headers,
+                                              Consumer<SignupOutcome> sink) {
+        return requireAdmin(headers).thenCompose(Deadline.carry(ignored -> new BulkSignupRunner(
+                Deadline.carry(req -> createUser(req, bulkBackend)), BulkSignupRunner.maxConcurrencyFromEnvironment(),
+                users, sink).run()));
+    }
+
+    /**
+     * Confirms a user's signup by setting their password permanently.
+     * <p>
+     * Only a call Cognito rejects as a client error, such as an unknown user
+     * or a password that breaks the pool's policy, answers {@code false}; it
+     * is logged to the {@link EventLog} as a warning, without the password.
+     * Timeouts, throttling, server errors and an open circuit fail the future,
+     * so they surface as {@code 5xx} rather than as a wrong password.
+     * </p>
+     *
+     * @param req the confirmation request containing username and password
+     * @return a future of {@code true} if confirmation succeeds, {@code false} if Cognito rejects it
+     */
+    public CompletableFuture<Boolean> confirmSignup(ConfirmSignupRequest req) {
+        AdminSetUserPasswordRequest request = AdminSetUserPasswordRequest.builder()
+                .userPoolId(pool.getUserPoolId())
+                .username(req.getUsername())
+                .password(req.getPassword())
+                .permanent(true)
+                .build();
+
+        return backend.adminSetUserPassword(request).handle((response, failure) -> {
+            if (failure == null) {
+                return true;
+            }
+            Throwable cause = CognitoBackend.unwrap(failure);
+            if (!isRejection(cause)) {
+                throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
+            }
+            AwsServiceException rejection = (AwsServiceException) cause;
+            EventLog.shared().warn("Cognito rejected confirmSignup", "confirmSignup",
+                    CognitoBackend.errorCodeOf(rejection),
+                    rejection.awsErrorDetails() == null ? null : rejection.awsErrorDetails().errorMessage(), req);
+            return false;
+        });
+    }
+
+    /**
+     * Authenticates a user and retrieves Cognito-issued tokens, with the
+     * flow selected by {@code LOGIN_AUTH_FLOW}.
+     *
+     * @param req the login request containing username and password
+     * @return a future of a map containing ID, access, and refresh tokens
+     */
+    public CompletableFuture<Map<String, String>> login(LoginRequest req) {
+        return login(req, LOGIN_AUTH_FLOW);
+    }
+
+    /**
+     * Authenticates a user with the given flow and retrieves Cognito-issued tokens.
+     * <p>
+     * {@code USER_PASSWORD_AUTH} sends the password to Cognito in one call.
+     * {@code USER_SRP_AUTH} takes two calls, {@code InitiateAuth} then
+     * {@code RespondToAuthChallenge}, but only proves knowledge of the
+     * password; the app client must allow the flow used.
+     * </p>
+     *
+     * @param req  the login request containing username and password
+     * @param flow {@code USER_PASSWORD_AUTH} or {@code USER_SRP_AUTH}
+     * @return a future of a map containing ID, access, and refresh tokens
+     * @throws IllegalArgumentException if the flow is not supported
+     */
+    public CompletableFuture<Map<String, String>> login(LoginRequest req, AuthFlowType flow) {
+        if (flow == AuthFlowType.USER_SRP_AUTH) {
+            return loginWithSrp(req);
+        }
+        if (flow != AuthFlowType.USER_PASSWORD_AUTH) {
+            throw new IllegalArgumentException("Unsupported login flow " + flow);
+        }
+        InitiateAuthRequest request = InitiateAuthRequest.builder()
+                .clientId(pool.getClientId())
+                .authFlow(AuthFlowType.USER_PASSWORD_AUTH)
+                .authParameters(Map.of(
+                        "USERNAME", req.getUsername(),
+                        "PASSWORD", req.getPassword()
+                ))
+                .build();
+
+        return backend.initiateAuth(request).thenApply(response -> tokensOf(response.authenticationResult()));
+    }
+
+    /**
+     * Exchanges a refresh token for new ID and access tokens.
+     * <p>
+     * Concurrent requests with the same refresh token share one Cognito call,
+     * and a recent result is reused for a short time; see {@link TokenRefresher}.
+     * </p>
+     *
+     * @param req the refresh request containing the refresh token
+     * @return a future of a map containing ID, access, and refresh tokens
+     */
+    public CompletableFuture<Map<String, String>> refresh(RefreshRequest req) {
+        return tokenRefresher.refresh(req.getRefreshToken());
+    }
+
+    /**
+     * Streams one page of users from the Cognito User Pool to the given sink.
+     * <p>
+     * A page larger than Cognito's 60-user limit is assembled from several
+     * {@code ListUsers} calls, and each user is handed to the sink as soon as
+     * its Cognito page arrives. Only the {@code email} attribute is requested.
+     * Each Cognito call is chained onto the previous one, so no thread waits
+     * between pages.
+     * </p>
+     *
+     * @param headers  request headers, expected to contain an
+     *                 {@code Authorization} token with admin privileges
+     * @param pageSize the maximum number of users to return
+     * @param cursor   the cursor returned with the previous page, or
+     *                 {@code null} to start from the beginning
+     * @param sink     receives each user in pool order
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page;
+     *         it fails with a {@link RuntimeException} if the request is not authorized, and with an
+     *         {@link IllegalArgumentException} if the cursor is malformed
+     */
+    public CompletableFuture<String> listUsers(Map<String, String> headers, int pageSize, String cursor,
+                                               Consumer<UserSummary> sink) {
+        return requireAdmin(headers).thenCompose(Deadline.carry(ignored -> listUsersFrom(null, EMAIL_PROJECTION,
+                user -> new UserSummary(user.username(), attributeOf(user, EMAIL_ATTRIBUTE)), decodeCursor(cursor),
+                pageSize, sink)));
+    }
+
+    /**
+     * Streams one page of the users whose attribute matches a query, through
+     * a Cognito {@code ListUsers} filter.
+     * <p>
+     * Cognito compares the query as given, so unlike the
+     * {@link UserDirectory} it does not ignore letter case or phone
+     * formatting. Pages are assembled as for {@link #listUsers}.
+     * </p>
+     *
+     * @param headers   request headers, expected to contain an
+     *                  {@code Authorization} token with admin privileges
+     * @param attribute the attribute searched, one of {@link #SEARCH_ATTRIBUTES}
+     * @param prefix    whether the attribute must start with the query rather than equal it
+     * @param query     the value or prefix searched for
+     * @param pageSize  the maximum number of users to return
+     * @param cursor    the cursor returned with the previous page, or {@code null}
+     * @param sink      receives each matching user in pool order
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page;
+     *         it fails with a {@link RuntimeException} if the request is not authorized, and with an
+     *         {@link IllegalArgumentException} if the cursor is malformed
+     */
+    public CompletableFuture<String> searchUsers(Map<String, String> headers, String attribute, boolean prefix,
+                                                 String query, int pageSize, String cursor,
+                                                 Consumer<UserMatch> sink) {
+        String filter = attribute + (prefix ? " ^= \"" : " = \"")
+                + query.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+        return requireAdmin(headers).thenCompose(Deadline.carry(ignored -> listUsersFrom(filter, SEARCH_ATTRIBUTES,
+                user -> new UserMatch(user.username(), attributeOf(user, EMAIL_ATTRIBUTE),
+                        attributeOf(user, "phone_number"), attributeOf(user, "given_name"),
+                        attributeOf(user, "family_name")),
+                decodeCursor(cursor), pageSize, sink)));
+    }
+
+    /**
+     * Verifies that the request carries a token of a user who is in the admin
+     * group, both according to the token and according to Cognito now.
+     * <p>
+     * A token without the group is refused without asking Cognito. For one
+     * with it, membership is confirmed through the {@link AdminAuthorizer},
+     * whose cached answers keep most checks from making a Cognito call, so a
+     * user removed from the group loses access within seconds rather than
+     * when their token expires.
+     * </p>
+     *
+     * @param headers request headers, possibly {@code null}, expected to
+     *                contain an {@code Authorization} token, under any letter
+     *                case, with admin privileges
+     * @return a future completing once the request is authorized; it fails
+     *         with a {@link RuntimeException} if it is not, or with the Cognito
+     *         failure if membership could not be confirmed
+     */
+    public CompletableFuture<Void> requireAdmin(Map<String, String> headers) {
+        String username = adminClaimOf(headerValue(headers, "Authorization"));
+        if (username == null) {
+            return CompletableFuture.failedFuture(forbidden());
         }
+        return adminAuthorizer.isAdmin(username).thenAccept(member -> {
+            if (!member) {
+                throw forbidden();
+            }
+        });
+    }
+
+    /**
+     * Forgets the cached admin membership of a user, so that a change to
+     * their groups applies to their next request. Admin tools changing groups
+     * through this service call it after the change.
+     *
+     * @param username the Cognito username
+     */
+    public void invalidateAdmin(String username) {
+        adminAuthorizer.invalidate(username);
+    }
 
+    /**
+     * Replaces the Cognito client with a fresh one and closes the old one, so
+     * connections captured in a SnapStart snapshot are not reused after restore,
+     * and renews the SRP ephemeral keys for the same reason.
+     */
+    public void reconnect() {
+        srpAuthenticator.renewKeys();
+        CognitoBackend previous = backend;
+        backend = decorate(CognitoClientFactory.createBackend(Region.of(pool.getRegion())));
+        bulkBackend = backend.withoutThrottlingRetries();
+        previous.close();
+    }
+
+    /**
+     * Closes the backend and its connections and stops generating SRP keys,
+     * when the service shuts down.
+     */
+    public void close() {
+        backend.close();
+        srpAuthenticator.close();
+    }
+
+    /**
+     * Returns the User Pool and app client this service works with.
+     *
+     * @return the pool configuration
+     */
+    public PoolConfig getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the verifier used for admin checks, whose hit and miss
+     * counters show how often repeat tokens skip verification.
+     *
+     * @return the token verifier
+     */
+    public TokenVerifier getTokenVerifier() {
+        return tokenVerifier;
+    }
+
+    /**
+     * Returns the refresher serving the {@code refresh} action, whose counters
+     * show how many refreshes were coalesced or answered from its cache.
+     *
+     * @return the token refresher
+     */
+    public TokenRefresher getTokenRefresher() {
+        return tokenRefresher;
+    }
+
+    /**
+     * Returns the authorizer confirming admin membership, whose counters show
+     * how many admin checks were answered without a Cognito call.
+     *
+     * @return the admin authorizer
+     */
+    public AdminAuthorizer getAdminAuthorizer() {
+        return adminAuthorizer;
+    }
+
+    /**
+     * Names of the Cognito attributes a signup request sets, in the order of {@link #signupAttributes}.
+     */
+    static final List<String> SIGNUP_ATTRIBUTES =
+            List.of(EMAIL_ATTRIBUTE, "birthdate", "phone_number", "given_name", "family_name", "sex");
+
+    /**
+     * Returns the Cognito attributes a signup request sets, in a stable order.
+     *
+     * @param req the signup request
+     * @return attribute name to value
+     */
+    static Map<String, String> signupAttributes(SignupRequest req) {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        attributes.put(EMAIL_ATTRIBUTE, req.getEmail());
+        attributes.put("birthdate", req.getBirthdate());
+        attributes.put("phone_number", req.getPhone_number());
+        attributes.put("given_name", req.getFirst_name());
+        attributes.put("family_name", req.getLast_name());
+        attributes.put("sex", req.get_sex());
+        return attributes;
+    }
+
+    /**
+     * Creates a user without an admin check, for callers that already
+     * performed it.
+     *
+     * @param req the signup request containing user attributes
+     * @return a future of a string message indicating successful user creation
+     */
+    CompletableFuture<String> createUser(SignupRequest req) {
+        return createUser(req, backend);
+    }
+
+    /**
+     * Creates a user through the given backend, without an admin check.
+     *
+     * @param req     the signup request containing user attributes
+     * @param through the backend making the call
+     * @return a future of a string message indicating successful user creation
+     */
+    private CompletableFuture<String> createUser(SignupRequest req, CognitoBackend through) {
         AdminCreateUserRequest request = AdminCreateUserRequest.builder()
-                .userPoolId(USER_POOL_ID)
+                .userPoolId(pool.getUserPoolId())
                 .username(req.getUsername())
-                .userAttributes(
-                        AttributeType.builder().name("email").value(req.getEmail()).build(),
-                        AttributeType.builder().name("birthdate").value(req.getBirthdate()).build(),
-                        AttributeType.builder().name("phone_number").value(req.getPhone_number()).build(),
-                        AttributeType.builder().name("given_name").value(req.getFirst_name()).build(),
-                        AttributeType.builder().name("family_name").value(req.getLast_name()).build(),
-                        AttributeType.builder().name("sex").value(req.get_sex()).build()
-                )
+                .userAttributes(toAttributes(signupAttributes(req)))
                 .desiredDeliveryMediums(DeliveryMediumType.EMAIL)
                 .build();
 
-        AdminCreateUserResponse response = cognitoClient.adminCreateUser(request);
-        return "User created: " + response.user().username();
+        return through.adminCreateUser(request)
+                .thenApply(response -> "User created: " + response.user().username());
     }
 
     /**
-     * Confirms a user's signup by setting their password permanently.
+     * Fetches a single {@code ListUsers} page without an admin check, for
+     * internal callers that sweep the pool on their own schedule. Blocks
+     * until the page arrives.
      *
-     * @param req the confirmation request containing username and password
-     * @return {@code true} if confirmation succeeds, {@code false} otherwise
+     * @param paginationToken the Cognito pagination token, or {@code null} for the first page
+     * @param limit           the page size, at most 60
+     * @param attributes      the attributes to project
+     * @return the Cognito response holding the users and the next pagination token
+     * @throws RuntimeException the exception Cognito failed with
      */
-    public boolean confirmSignup(ConfirmSignupRequest req) {
-        try {
-            AdminSetUserPasswordRequest request = AdminSetUserPasswordRequest.builder()
-                    .userPoolId(USER_POOL_ID)
-                    .username(req.getUsername())
-                    .password(req.getPassword())
-                    .permanent(true)
-                    .build();
+    ListUsersResponse listUserPage(String paginationToken, int limit, Collection<String> attributes) {
+        return listUserPage(null, paginationToken, limit, attributes);
+    }
 
-            cognitoClient.adminSetUserPassword(request);
-            return true;
-        } catch (Exception e) {
-            System.err.println("Error confirming signup for user "
-                    + req.getUsername() + ": " + e.getMessage());
-            return false;
+    /**
+     * Fetches a single {@code ListUsers} page of the users matching a
+     * Cognito filter, such as {@code username ^= "a"}, without an admin
+     * check. Blocks until the page arrives.
+     *
+     * @param filter          the Cognito filter expression, or {@code null} for every user
+     * @param paginationToken the Cognito pagination token, or {@code null} for the first page
+     * @param limit           the page size, at most 60
+     * @param attributes      the attributes to project
+     * @return the Cognito response holding the users and the next pagination token
+     * @throws RuntimeException the exception Cognito failed with
+     */
+    ListUsersResponse listUserPage(String filter, String paginationToken, int limit, Collection<String> attributes) {
+        try {
+            return requestUserPage(filter, paginationToken, limit, attributes).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
     }
 
     /**
-     * Authenticates a user and retrieves Cognito-issued tokens.
+     * Authenticates a user by SRP: sends an ephemeral public key with
+     * {@code InitiateAuth}, then answers the {@code PASSWORD_VERIFIER}
+     * challenge Cognito returns with a password claim.
      *
      * @param req the login request containing username and password
-     * @return a map containing ID, access, and refresh tokens
+     * @return a future of a map containing ID, access, and refresh tokens
      */
-    public Map<String, String> login(LoginRequest req) {
+    private CompletableFuture<Map<String, String>> loginWithSrp(LoginRequest req) {
+        SrpAuthenticator.EphemeralKey key = srpAuthenticator.nextKey();
         InitiateAuthRequest request = InitiateAuthRequest.builder()
-                .clientId(CLIENT_ID)
-                .authFlow(AuthFlowType.USER_PASSWORD_AUTH)
+                .clientId(pool.getClientId())
+                .authFlow(AuthFlowType.USER_SRP_AUTH)
                 .authParameters(Map.of(
                         "USERNAME", req.getUsername(),
-                        "PASSWORD", req.getPassword()
+                        "SRP_A", key.publicHex()
                 ))
                 .build();
 
-        InitiateAuthResponse response = cognitoClient.initiateAuth(request);
+        return backend.initiateAuth(request).thenCompose(Deadline.carry(challenge -> {
+            if (challenge.challengeName() != ChallengeNameType.PASSWORD_VERIFIER) {
+                throw new IllegalStateException("Unexpected login challenge " + challenge.challengeNameAsString());
+            }
+            RespondToAuthChallengeRequest answer = RespondToAuthChallengeRequest.builder()
+                    .clientId(pool.getClientId())
+                    .challengeName(ChallengeNameType.PASSWORD_VERIFIER)
+                    .session(challenge.session())
+                    .challengeResponses(srpAuthenticator.respond(key, challenge.challengeParameters(),
+                            req.getPassword(), Instant.now()))
+                    .build();
+            return backend.respondToAuthChallenge(answer);
+        })).thenApply(response -> tokensOf(response.authenticationResult()));
+    }
 
-        Map<String, String> tokens = new HashMap<>();
-        tokens.put("idToken", response.authenticationResult().idToken());
-        tokens.put("accessToken", response.authenticationResult().accessToken());
-        tokens.put("refreshToken", response.authenticationResult().refreshToken());
+    /**
+     * Performs a single {@code REFRESH_TOKEN_AUTH} call.
+     *
+     * @param refreshToken the refresh token to exchange
+     * @return a future of the Cognito authentication result
+     */
+    private CompletableFuture<AuthenticationResultType> exchangeRefreshToken(String refreshToken) {
+        InitiateAuthRequest request = InitiateAuthRequest.builder()
+                .clientId(pool.getClientId())
+                .authFlow(AuthFlowType.REFRESH_TOKEN_AUTH)
+                .authParameters(Map.of("REFRESH_TOKEN", refreshToken))
+                .build();
 
-        return tokens;
+        return backend.initiateAuth(request).thenApply(InitiateAuthResponse::authenticationResult);
+    }
+
+    /**
+     * Requests users page by page until the page is full or the pool is
+     * exhausted, handing each user to the sink as its Cognito page arrives.
+     *
+     * @param filter          the Cognito filter expression, or {@code null} for every user
+     * @param attributes      the attributes to project
+     * @param entry           turns a Cognito user into the entry handed to the sink
+     * @param paginationToken the Cognito pagination token to continue from, or {@code null}
+     * @param remaining       the number of users still wanted
+     * @param sink            receives each user in pool order
+     * @param <T>             the type of entry
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page
+     */
+    private <T> CompletableFuture<String> listUsersFrom(String filter, List<String> attributes,
+                                                        Function<UserType, T> entry, String paginationToken,
+                                                        int remaining, Consumer<T> sink) {
+        return requestUserPage(filter, paginationToken, Math.min(remaining, COGNITO_MAX_PAGE_SIZE), attributes)
+                .thenCompose(Deadline.carry(response -> {
+                    for (UserType user : response.users()) {
+                        sink.accept(entry.apply(user));
+                    }
+                    int left = remaining - response.users().size();
+                    String next = response.paginationToken();
+                    if (left > 0 && next != null) {
+                        return listUsersFrom(filter, attributes, entry, next, left, sink);
+                    }
+                    return CompletableFuture.completedFuture(encodeCursor(next));
+                }));
+    }
+
+    /**
+     * Requests a single {@code ListUsers} page.
+     *
+     * @param filter          the Cognito filter expression, or {@code null} for every user
+     * @param paginationToken the Cognito pagination token, or {@code null} for the first page
+     * @param limit           the page size, at most 60
+     * @param attributes      the attributes to project
+     * @return a future of the Cognito response
+     */
+    private CompletableFuture<ListUsersResponse> requestUserPage(String filter, String paginationToken, int limit,
+                                                                 Collection<String> attributes) {
+        ListUsersRequest request = ListUsersRequest.builder()
+                .userPoolId(pool.getUserPoolId())
+                .filter(filter)
+                .attributesToGet(attributes)
+                .limit(limit)
+                .paginationToken(paginationToken)
+                .build();
+
+        return backend.listUsers(request);
     }
 
     /**
-     * Determines whether the given token belongs to a user
-     * with admin privileges in Cognito.
+     * Returns the owner of the given token if the token claims membership of
+     * the admin group.
+     * <p>
+     * The token's RS256 signature, issuer, expiry and client are verified
+     * against the pool's JWKS; repeat calls with the same token are answered
+     * from the {@link TokenVerifier} cache.
+     * </p>
      *
-     * @param token the JWT token provided by Cognito
-     * @return {@code true} if the user belongs to the admin group,
-     *         {@code false} otherwise
+     * @param token the JWT token provided by Cognito, optionally prefixed
+     *              with {@code Bearer}, or {@code null}
+     * @return the Cognito username if the token is valid and lists the admin
+     *         group, {@code null} otherwise
      */
-    private boolean isAdmin(String token) {
+    private String adminClaimOf(String token) {
+        if (token == null) {
+            return null;
+        }
         try {
-            DecodedJWT jwt = JWT.decode(token);
-            List<String> groups = jwt.getClaim("cognito:groups").asList(String.class);
-            return groups != null && groups.contains("admin");
-        } catch (Exception e) {
-            return false;
+            TokenVerifier.VerifiedToken verified = tokenVerifier.verify(token);
+            return verified.isInGroup(ADMIN_GROUP) ? verified.getUsername() : null;
+        } catch (JWTVerificationException e) {
+            return null;
         }
     }
 
-    public Map<String, String> listUsers(Map<String, String> headers) {
-        String authHeader = headers.get("Authorization");
-        if (authHeader == null || !isAdmin(authHeader)) {
-            throw new RuntimeException("Forbidden: admin access required");
+    /**
+     * Returns a request header's value, finding its name in any letter case.
+     *
+     * @param headers the request headers, possibly {@code null}
+     * @param name    the header name
+     * @return the value, or {@code null} if the header is absent
+     */
+    private static String headerValue(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
         }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
 
-        ListUsersRequest request = ListUsersRequest.builder()
-                .userPoolId(USER_POOL_ID)
-                .limit(60) // max per request
+    /**
+     * Asks Cognito whether a user is in the admin group, following the
+     * group pages until the group is found or the pages run out. A user
+     * Cognito does not know is not in the group.
+     *
+     * @param username the Cognito username
+     * @return a future of {@code true} if the user is in the admin group
+     */
+    private CompletableFuture<Boolean> lookUpAdmin(String username) {
+        return lookUpAdmin(username, null).exceptionally(failure -> {
+            Throwable cause = CognitoBackend.unwrap(failure);
+            if (!isRejection(cause)) {
+                throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Looks for the admin group from one {@code AdminListGroupsForUser} page on.
+     *
+     * @param username  the Cognito username
+     * @param nextToken the Cognito pagination token, or {@code null} for the first page
+     * @return a future of {@code true} if the admin group is on this page or a later one
+     */
+    private CompletableFuture<Boolean> lookUpAdmin(String username, String nextToken) {
+        AdminListGroupsForUserRequest request = AdminListGroupsForUserRequest.builder()
+                .userPoolId(pool.getUserPoolId())
+                .username(username)
+                .limit(COGNITO_MAX_GROUPS_PAGE_SIZE)
+                .nextToken(nextToken)
                 .build();
 
-        ListUsersResponse response = cognitoClient.listUsers(request);
-
-        Map<String, String> result = new HashMap<>();
-        for (UserType user : response.users()) {
-            String username = user.username();
-            String email = user.attributes().stream()
-                    .filter(attr -> "email".equals(attr.name()))
-                    .map(attr -> attr.value())
-                    .findFirst()
-                    .orElse("");
-            result.put(username, email);
-        }
+        return backend.adminListGroupsForUser(request).thenCompose(Deadline.carry(response -> {
+            for (GroupType group : response.groups()) {
+                if (ADMIN_GROUP.equals(group.groupName())) {
+                    return CompletableFuture.completedFuture(true);
+                }
+            }
+            String next = response.nextToken();
+            return next == null ? CompletableFuture.completedFuture(false) : lookUpAdmin(username, next);
+        }));
+    }
+
+    /**
+     * Creates the failure of a request that is not authorized.
+     *
+     * @return the exception
+     */
+    private static RuntimeException forbidden() {
+        return new RuntimeException("Forbidden: admin access required");
+    }
+
+    /**
+     * Returns the tokens of a login as the response map.
+     *
+     * @param result the Cognito authentication result
+     * @return a map containing ID, access, and refresh tokens
+     */
+    private static Map<String, String> tokensOf(AuthenticationResultType result) {
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("idToken", result.idToken());
+        tokens.put("accessToken", result.accessToken());
+        tokens.put("refreshToken", result.refreshToken());
+        return tokens;
+    }
 
+    /**
+     * Converts attribute name/value pairs into Cognito attribute types.
+     *
+     * @param attributes attribute name to value
+     * @return the Cognito attributes
+     */
+    private static List<AttributeType> toAttributes(Map<String, String> attributes) {
+        List<AttributeType> result = new ArrayList<>(attributes.size());
+        for (Map.Entry<String, String> entry : attributes.entrySet()) {
+            result.add(AttributeType.builder().name(entry.getKey()).value(entry.getValue()).build());
+        }
         return result;
+    }
+
+    /**
+     * Returns an attribute of a user listed with a projection including it.
+     *
+     * @param user the Cognito user
+     * @param name the attribute name
+     * @return the value, or an empty string if none is set
+     */
+    private static String attributeOf(UserType user, String name) {
+        for (AttributeType attribute : user.attributes()) {
+            if (name.equals(attribute.name())) {
+                return attribute.value();
+            }
+        }
+        return "";
+    }
+
+    /**
+     * Wraps a Cognito pagination token into an opaque, URL-safe cursor.
+     *
+     * @param paginationToken the Cognito token, or {@code null}
+     * @return the cursor, or {@code null} if there are no more pages
+     */
+    private static String encodeCursor(String paginationToken) {
+        if (paginationToken == null) {
+            return null;
+        }
+        return CURSOR_ENCODER.encodeToString(paginationToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Unwraps a cursor produced by {@link #encodeCursor(String)}.
+     *
+     * @param cursor the cursor, or {@code null}
+     * @return the Cognito pagination token, or {@code null} for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Builds the token verifier for a pool.
+     *
+     * @param pool the pool configuration
+     * @return a verifier using the pool's JWKS endpoint
+     */
+    private static TokenVerifier newTokenVerifier(PoolConfig pool) {
+        JwksKeyCache keys = new JwksKeyCache(JwksKeyCache.urlFor(pool.issuer()));
+        return new TokenVerifier(pool.issuer(), pool.getClientId(), keys, TokenVerifier.DEFAULT_MAX_ENTRIES);
+    }
 
+    /**
+     * Wraps a backend so that its calls are timed and kept within each
+     * request's time budget.
+     *
+     * @param backend the backend reaching Cognito
+     * @return the decorated backend
+     */
+    private static ResilientCognitoBackend decorate(CognitoBackend backend) {
+        return ResilientCognitoBackend.fromEnvironment(new InstrumentedCognitoBackend(backend, Metrics.shared()));
+    }
+
+    /**
+     * Tells whether a failure is Cognito rejecting the request itself, a
+     * {@code 4xx} other than throttling.
+     *
+     * @param cause the unwrapped failure
+     * @return {@code true} for a client error
+     */
+    private static boolean isRejection(Throwable cause) {
+        return cause instanceof AwsServiceException e && e.statusCode() >= 400 && e.statusCode() < 500
+                && !e.isThrottlingException();
     }
 }
@@ -0,0 +1,57 @@
+package com.homieomie.authservice.services;
+
+/**
+ * Secondary index over one attribute column of a {@link UserTable}.
+ * <p>
+ * The table keeps its indexes current: it hands every value it stores to the
+ * column's index and tells it when slots grow or are compacted. Values are
+ * indexed under a normalized key, so that lookups ignore differences such as
+ * letter case. Like the table, an index is not thread-safe.
+ * </p>
+ */
+interface ColumnIndex {
+
+    /**
+     * Indexes the value now stored in a slot, replacing the slot's previous entry.
+     *
+     * @param slot  the slot
+     * @param value the value, or {@code null} to leave the slot unindexed
+     */
+    void put(int slot, String value);
+
+    /**
+     * Makes room for slots up to the given capacity.
+     *
+     * @param capacity the new slot capacity of the table
+     */
+    void grow(int capacity);
+
+    /**
+     * Drops the slots whose flag is not set and renumbers the others the way
+     * {@link UserTable#retain} compacts them.
+     *
+     * @param keep per-slot flags
+     * @param size the number of slots before compaction
+     */
+    void retain(boolean[] keep, int size);
+
+    /**
+     * Stops keeping derived structures current on every {@link #put} until
+     * {@link #resume()}, for a bulk load that is cheaper to index at once.
+     * Lookups are not allowed meanwhile.
+     */
+    default void suspend() {}
+
+    /**
+     * Brings the index up to date with every value put since {@link #suspend()}.
+     */
+    default void resume() {}
+
+    /**
+     * Normalizes a value or query into the key it is indexed or looked up under.
+     *
+     * @param value the value
+     * @return the key, or {@code null} if the value is {@code null}
+     */
+    String key(String value);
+}
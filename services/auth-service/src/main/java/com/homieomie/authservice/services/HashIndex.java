@@ -0,0 +1,196 @@
+package com.homieomie.authservice.services;
+
+import java.util.Arrays;
+import java.util.function.UnaryOperator;
+
+/**
+ * Exact-match index of a column, answering which slots hold a given key.
+ * <p>
+ * Keys are kept per slot and located through an open-addressing {@code int}
+ * table holding {@code slot + 1}, like the username index of
+ * {@link UserTable}. Several slots may share a key; they sit in the same probe
+ * run. A replaced entry is left as a tombstone until the table is next
+ * rebuilt, which happens when live entries and tombstones fill half of it or
+ * slots are compacted.
+ * </p>
+ */
+final class HashIndex implements ColumnIndex {
+
+    /**
+     * Table entry of a removed slot, skipped by lookups.
+     */
+    private static final int DELETED = -1;
+
+    /**
+     * Smallest table length.
+     */
+    private static final int MIN_TABLE_LENGTH = 16;
+
+    /**
+     * Normalizes values into keys.
+     */
+    private final UnaryOperator<String> normalizer;
+
+    /**
+     * Key of each slot, {@code null} where the slot is unindexed.
+     */
+    private String[] keys;
+
+    /**
+     * Open-addressing table holding {@code slot + 1}, {@link #DELETED} or {@code 0} when empty.
+     */
+    private int[] table = new int[MIN_TABLE_LENGTH];
+
+    /**
+     * Number of indexed slots.
+     */
+    private int live;
+
+    /**
+     * Number of non-empty table entries, tombstones included.
+     */
+    private int used;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param normalizer turns a non-null value into its key
+     * @param capacity   the slot capacity of the table
+     */
+    HashIndex(UnaryOperator<String> normalizer, int capacity) {
+        this.normalizer = normalizer;
+        this.keys = new String[capacity];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(int slot, String value) {
+        String key = key(value);
+        String previous = keys[slot];
+        if (previous == null ? key == null : previous.equals(key)) {
+            return;
+        }
+        if (previous != null) {
+            remove(slot, previous);
+            keys[slot] = null;
+        }
+        if (key != null) {
+            if ((used + 1) * 2 > table.length) {
+                rebuild(keys.length);
+            }
+            keys[slot] = key;
+            insert(slot, key);
+            live++;
+            used++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void retain(boolean[] keep, int size) {
+        int target = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (keep[slot]) {
+                keys[target++] = keys[slot];
+            }
+        }
+        Arrays.fill(keys, target, size, null);
+        rebuild(target);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String key(String value) {
+        return value == null ? null : normalizer.apply(value);
+    }
+
+    /**
+     * Returns the slots indexed under a key, in no particular order.
+     *
+     * @param key the normalized key
+     * @return the matching slots, empty if none
+     */
+    int[] find(String key) {
+        int[] found = new int[1];
+        int count = 0;
+        int mask = table.length - 1;
+        for (int i = key.hashCode() & mask; table[i] != 0; i = (i + 1) & mask) {
+            int entry = table[i];
+            if (entry != DELETED && key.equals(keys[entry - 1])) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = entry - 1;
+            }
+        }
+        return count == found.length ? found : Arrays.copyOf(found, count);
+    }
+
+    /**
+     * Turns the table entry of a slot into a tombstone.
+     *
+     * @param slot the slot
+     * @param key  the key the slot is indexed under
+     */
+    private void remove(int slot, String key) {
+        int mask = table.length - 1;
+        for (int i = key.hashCode() & mask; table[i] != 0; i = (i + 1) & mask) {
+            if (table[i] == slot + 1) {
+                table[i] = DELETED;
+                live--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Adds a slot to the table, which must have a free entry.
+     *
+     * @param slot the slot
+     * @param key  the slot's key
+     */
+    private void insert(int slot, String key) {
+        int mask = table.length - 1;
+        int i = key.hashCode() & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = slot + 1;
+    }
+
+    /**
+     * Recomputes the table from the slot keys without tombstones, sized for
+     * the live entries and at least one more.
+     *
+     * @param slots the number of slots to scan
+     */
+    private void rebuild(int slots) {
+        int length = MIN_TABLE_LENGTH;
+        while (length < (live + 1) * 4) {
+            length <<= 1;
+        }
+        table = new int[length];
+        live = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (keys[slot] != null) {
+                insert(slot, keys[slot]);
+                live++;
+            }
+        }
+        used = live;
+    }
+}
@@ -0,0 +1,106 @@
+package com.homieomie.authservice.services;
+
+import com.homieomie.authservice.metrics.Metrics;
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * Backend decorator that times every Cognito call and counts its failures by
+ * exception type.
+ */
+class InstrumentedCognitoBackend implements CognitoBackend {
+
+    /**
+     * Backend the calls are made through.
+     */
+    private final CognitoBackend delegate;
+
+    /**
+     * Metrics the calls are recorded in.
+     */
+    private final Metrics metrics;
+
+    /**
+     * Creates a decorator.
+     *
+     * @param delegate the backend the calls are made through
+     * @param metrics  the metrics the calls are recorded in
+     */
+    InstrumentedCognitoBackend(CognitoBackend delegate, Metrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+        long startedAt = System.nanoTime();
+        return record("AdminCreateUser", startedAt, delegate.adminCreateUser(request));
+    }
+
+    @Override
+    public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+            AdminListGroupsForUserRequest request) {
+        long startedAt = System.nanoTime();
+        return record("AdminListGroupsForUser", startedAt, delegate.adminListGroupsForUser(request));
+    }
+
+    @Override
+    public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(
+            AdminSetUserPasswordRequest request) {
+        long startedAt = System.nanoTime();
+        return record("AdminSetUserPassword", startedAt, delegate.adminSetUserPassword(request));
+    }
+
+    @Override
+    public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+        long startedAt = System.nanoTime();
+        return record("InitiateAuth", startedAt, delegate.initiateAuth(request));
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+        long startedAt = System.nanoTime();
+        return record("ListUsers", startedAt, delegate.listUsers(request));
+    }
+
+    @Override
+    public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+            RespondToAuthChallengeRequest request) {
+        long startedAt = System.nanoTime();
+        return record("RespondToAuthChallenge", startedAt, delegate.respondToAuthChallenge(request));
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Records a call once it completes.
+     *
+     * @param operation the Cognito operation name
+     * @param startedAt the {@link System#nanoTime()} the call started at
+     * @param call      the call's future
+     * @param <T>       the response type
+     * @return a future completing like the call, after it has been recorded
+     */
+    private <T> CompletableFuture<T> record(String operation, long startedAt, CompletableFuture<T> call) {
+        return call.whenComplete((response, failure) -> {
+            metrics.recordCognito(operation, System.nanoTime() - startedAt);
+            if (failure != null) {
+                metrics.countCognitoError(CognitoBackend.unwrap(failure));
+            }
+        });
+    }
+}
@@ -0,0 +1,277 @@
+package com.homieomie.authservice.services;
+
+import com.auth0.jwk.Jwk;
+import com.auth0.jwk.JwkException;
+import com.auth0.jwk.UrlJwkProvider;
+import com.auth0.jwt.interfaces.RSAKeyProvider;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache of the RSA signing keys published by a Cognito User Pool.
+ * <p>
+ * Keys are fetched from the pool's JWKS endpoint on first use and then refreshed
+ * in the background. A token carrying an unknown {@code kid} triggers an immediate
+ * refetch, but such refetches are rate limited so a flood of forged tokens cannot
+ * turn into a flood of JWKS requests.
+ * </p>
+ */
+public class JwksKeyCache implements RSAKeyProvider {
+
+    /**
+     * Default interval between background refreshes of the key set.
+     */
+    public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofHours(1);
+
+    /**
+     * Default minimum spacing between on-demand refetches for unknown key ids.
+     */
+    public static final Duration DEFAULT_MIN_REFETCH_INTERVAL = Duration.ofSeconds(30);
+
+    /**
+     * Connect and read timeout, in milliseconds, for JWKS HTTP calls.
+     */
+    private static final int HTTP_TIMEOUT_MILLIS = 2_000;
+
+    /**
+     * Provider used to download the JWKS document.
+     */
+    private final UrlJwkProvider jwkProvider;
+
+    /**
+     * Interval between background refreshes, in nanoseconds.
+     */
+    private final long refreshIntervalNanos;
+
+    /**
+     * Minimum spacing between on-demand refetches, in nanoseconds.
+     */
+    private final long minRefetchIntervalNanos;
+
+    /**
+     * Current immutable snapshot of key id to public key.
+     */
+    private volatile Map<String, RSAPublicKey> keys = Map.of();
+
+    /**
+     * {@link System#nanoTime()} of the last fetch attempt, or {@code 0} if none yet.
+     */
+    private final AtomicLong lastFetchNanos = new AtomicLong();
+
+    /**
+     * Whether the background refresher has been scheduled.
+     */
+    private final AtomicBoolean refresherStarted = new AtomicBoolean();
+
+    /**
+     * Thread running the background refreshes, once scheduled.
+     */
+    private volatile ScheduledExecutorService refresher;
+
+    /**
+     * Whether {@link #close()} was called.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Number of JWKS documents downloaded.
+     */
+    private final LongAdder fetches = new LongAdder();
+
+    /**
+     * Number of lookups for a key id that was not in the snapshot.
+     */
+    private final LongAdder unknownKeyLookups = new LongAdder();
+
+    /**
+     * Creates a key cache for the given JWKS URL with default intervals.
+     *
+     * @param jwksUrl the URL of the JWKS document
+     */
+    public JwksKeyCache(String jwksUrl) {
+        this(jwksUrl, DEFAULT_REFRESH_INTERVAL, DEFAULT_MIN_REFETCH_INTERVAL);
+    }
+
+    /**
+     * Creates a key cache for the given JWKS URL.
+     *
+     * @param jwksUrl            the URL of the JWKS document
+     * @param refreshInterval    interval between background refreshes
+     * @param minRefetchInterval minimum spacing between on-demand refetches
+     */
+    public JwksKeyCache(String jwksUrl, Duration refreshInterval, Duration minRefetchInterval) {
+        this.jwkProvider = new UrlJwkProvider(toUrl(jwksUrl), HTTP_TIMEOUT_MILLIS, HTTP_TIMEOUT_MILLIS);
+        this.refreshIntervalNanos = refreshInterval.toNanos();
+        this.minRefetchIntervalNanos = minRefetchInterval.toNanos();
+    }
+
+    /**
+     * Returns the URL of the JWKS document of a Cognito issuer.
+     *
+     * @param issuer the issuer URL
+     * @return the JWKS URL
+     */
+    public static String urlFor(String issuer) {
+        return issuer + "/.well-known/jwks.json";
+    }
+
+    /**
+     * Returns the public key for the given key id, refetching the JWKS document
+     * if the id is unknown and the refetch rate limit allows it.
+     *
+     * @param keyId the {@code kid} header of the token being verified
+     * @return the matching public key, or {@code null} if none is known
+     */
+    @Override
+    public RSAPublicKey getPublicKeyById(String keyId) {
+        RSAPublicKey key = keys.get(keyId);
+        if (key != null) {
+            return key;
+        }
+        unknownKeyLookups.increment();
+        if (tryRefetch()) {
+            key = keys.get(keyId);
+        }
+        return key;
+    }
+
+    /**
+     * Not supported; this provider only verifies signatures.
+     *
+     * @return always {@code null}
+     */
+    @Override
+    public RSAPrivateKey getPrivateKey() {
+        return null;
+    }
+
+    /**
+     * Not supported; this provider only verifies signatures.
+     *
+     * @return always {@code null}
+     */
+    @Override
+    public String getPrivateKeyId() {
+        return null;
+    }
+
+    /**
+     * Downloads the JWKS document now, replacing the cached key set on success.
+     *
+     * @return {@code true} if the key set was refreshed
+     */
+    public boolean refresh() {
+        lastFetchNanos.set(System.nanoTime());
+        try {
+            Map<String, RSAPublicKey> fresh = new HashMap<>();
+            for (Jwk jwk : jwkProvider.getAll()) {
+                PublicKey publicKey = jwk.getPublicKey();
+                if (jwk.getId() != null && publicKey instanceof RSAPublicKey rsaKey) {
+                    fresh.put(jwk.getId(), rsaKey);
+                }
+            }
+            fetches.increment();
+            keys = Map.copyOf(fresh);
+            startRefresher();
+            return true;
+        } catch (JwkException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stops the background refreshes, for a pool no longer served.
+     */
+    public void close() {
+        closed = true;
+        refresherStarted.set(true);
+        ScheduledExecutorService scheduler = refresher;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the number of JWKS documents downloaded so far.
+     *
+     * @return the fetch count
+     */
+    public long fetchCount() {
+        return fetches.sum();
+    }
+
+    /**
+     * Returns the number of lookups for key ids missing from the cache.
+     *
+     * @return the unknown key lookup count
+     */
+    public long unknownKeyCount() {
+        return unknownKeyLookups.sum();
+    }
+
+    /**
+     * Refetches the key set unless another fetch happened within the
+     * minimum refetch interval.
+     *
+     * @return {@code true} if this call performed a successful refetch
+     */
+    private boolean tryRefetch() {
+        long last = lastFetchNanos.get();
+        long now = System.nanoTime();
+        if (last != 0 && now - last < minRefetchIntervalNanos) {
+            return false;
+        }
+        if (!lastFetchNanos.compareAndSet(last, now)) {
+            return false;
+        }
+        return refresh();
+    }
+
+    /**
+     * Schedules periodic background refreshes once the first fetch has succeeded.
+     */
+    private void startRefresher() {
+        if (!refresherStarted.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "jwks-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalNanos, refreshIntervalNanos,
+                TimeUnit.NANOSECONDS);
+        refresher = scheduler;
+        if (closed) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the JWKS URL.
+     *
+     * @param jwksUrl the URL string
+     * @return the parsed URL
+     * @throws IllegalArgumentException if the URL is malformed
+     */
+    private static URL toUrl(String jwksUrl) {
+        try {
+            return URI.create(jwksUrl).toURL();
+        } catch (MalformedURLException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid JWKS URL: " + jwksUrl, e);
+        }
+    }
+}
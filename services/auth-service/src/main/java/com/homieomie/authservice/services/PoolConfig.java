@@ -0,0 +1,123 @@
+package com.homieomie.authservice.services;
+
+import java.util.Objects;
+
+/**
+ * The Cognito User Pool and app client a {@link CognitoService} works with,
+ * and the region hosting them.
+ * <p>
+ * A pool ID has the form {@code <region>_<id>}, so the region is taken from
+ * it unless given explicitly, and only a pool ID without one falls back to
+ * the function's own region.
+ * </p>
+ */
+public final class PoolConfig {
+
+    /**
+     * The User Pool ID, or {@code null} if unset.
+     */
+    private final String userPoolId;
+
+    /**
+     * The app client ID, or {@code null} if unset.
+     */
+    private final String clientId;
+
+    /**
+     * The region hosting the pool.
+     */
+    private final String region;
+
+    /**
+     * Creates a pool configuration.
+     *
+     * @param userPoolId the User Pool ID, or {@code null} if unset
+     * @param clientId   the app client ID, or {@code null} if unset
+     * @param region     the region hosting the pool, or {@code null} to take it from the pool ID
+     */
+    public PoolConfig(String userPoolId, String clientId, String region) {
+        this.userPoolId = userPoolId;
+        this.clientId = clientId;
+        this.region = region != null && !region.isBlank() ? region.trim() : regionOf(userPoolId);
+    }
+
+    /**
+     * Creates the configuration of the pool set by the {@code USER_POOL_ID},
+     * {@code CLIENT_ID} and {@code AWS_REGION} environment variables. If they
+     * are not set, Cognito API calls may fail.
+     *
+     * @return the pool configuration
+     */
+    public static PoolConfig fromEnvironment() {
+        return new PoolConfig(System.getenv("USER_POOL_ID"), System.getenv("CLIENT_ID"), System.getenv("AWS_REGION"));
+    }
+
+    /**
+     * Returns the User Pool ID.
+     *
+     * @return the pool ID, or {@code null} if unset
+     */
+    public String getUserPoolId() {
+        return userPoolId;
+    }
+
+    /**
+     * Returns the app client ID.
+     *
+     * @return the client ID, or {@code null} if unset
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * Returns the region hosting the pool.
+     *
+     * @return the region, such as {@code us-east-1}
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * Returns the issuer of the pool's tokens, which also locates its JWKS.
+     *
+     * @return the issuer URL
+     */
+    public String issuer() {
+        return TokenVerifier.issuerFor(region, userPoolId);
+    }
+
+    /**
+     * Compares two configurations by pool, client and region.
+     *
+     * @param other the object to compare with
+     * @return {@code true} if both name the same pool, client and region
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PoolConfig pool && Objects.equals(userPoolId, pool.userPoolId)
+                && Objects.equals(clientId, pool.clientId) && region.equals(pool.region);
+    }
+
+    /**
+     * Returns a hash code derived from the pool, client and region.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(userPoolId, clientId, region);
+    }
+
+    /**
+     * Returns the region prefix of a pool ID, or else the function's region.
+     *
+     * @param userPoolId the pool ID, or {@code null}
+     * @return the region
+     */
+    private static String regionOf(String userPoolId) {
+        int separator = userPoolId == null ? -1 : userPoolId.indexOf('_');
+        return separator > 0 ? userPoolId.substring(0, separator) : CognitoClientFactory.region().id();
+    }
+}
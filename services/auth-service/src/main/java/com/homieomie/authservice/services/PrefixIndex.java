@@ -0,0 +1,239 @@
+package com.homieomie.authservice.services;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Prefix index of a column, listing slots in order of key then username.
+ * <p>
+ * The slots holding a value sit in one sorted {@code int} array, so the keys
+ * starting with a prefix form a contiguous run found by binary search and
+ * read in order, which is what a page of matches needs. A changed value moves
+ * its slot with two array copies; for a directory of a few hundred thousand
+ * users that is a few microseconds of {@code memmove}, cheaper and far more
+ * compact than a trie of one node per character.
+ * </p>
+ */
+final class PrefixIndex implements ColumnIndex {
+
+    /**
+     * Normalizes values into keys.
+     */
+    private final UnaryOperator<String> normalizer;
+
+    /**
+     * Username of each slot, breaking ties between equal keys.
+     */
+    private final IntFunction<String> usernames;
+
+    /**
+     * Key of each slot, {@code null} where the slot is unindexed.
+     */
+    private String[] keys;
+
+    /**
+     * Indexed slots ordered by key then username; the first {@link #count} are in use.
+     */
+    private int[] order;
+
+    /**
+     * Number of indexed slots.
+     */
+    private int count;
+
+    /**
+     * Whether {@link #order} is left stale until {@link #resume()}.
+     */
+    private boolean suspended;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param normalizer turns a non-null value into its key
+     * @param usernames  returns the username of a slot
+     * @param capacity   the slot capacity of the table
+     */
+    PrefixIndex(UnaryOperator<String> normalizer, IntFunction<String> usernames, int capacity) {
+        this.normalizer = normalizer;
+        this.usernames = usernames;
+        this.keys = new String[capacity];
+        this.order = new int[capacity];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(int slot, String value) {
+        String key = key(value);
+        String previous = keys[slot];
+        if (previous == null ? key == null : previous.equals(key)) {
+            return;
+        }
+        if (suspended) {
+            keys[slot] = key;
+            return;
+        }
+        String username = usernames.apply(slot);
+        if (previous != null) {
+            int position = position(previous, username);
+            System.arraycopy(order, position + 1, order, position, count - position - 1);
+            count--;
+        }
+        keys[slot] = key;
+        if (key != null) {
+            int position = position(key, username);
+            System.arraycopy(order, position, order, position + 1, count - position);
+            order[position] = slot;
+            count++;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        order = Arrays.copyOf(order, capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void retain(boolean[] keep, int size) {
+        int[] renumbered = new int[size];
+        int target = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (keep[slot]) {
+                renumbered[slot] = target;
+                keys[target++] = keys[slot];
+            }
+        }
+        Arrays.fill(keys, target, size, null);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[order[i]]) {
+                order[kept++] = renumbered[order[i]];
+            }
+        }
+        count = kept;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void suspend() {
+        suspended = true;
+    }
+
+    /**
+     * Re-sorts every indexed slot.
+     */
+    @Override
+    public void resume() {
+        if (!suspended) {
+            return;
+        }
+        suspended = false;
+        Integer[] boxed = new Integer[keys.length];
+        int indexed = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                boxed[indexed++] = slot;
+            }
+        }
+        Arrays.sort(boxed, 0, indexed, (a, b) -> {
+            int compared = keys[a].compareTo(keys[b]);
+            return compared != 0 ? compared : usernames.apply(a).compareTo(usernames.apply(b));
+        });
+        for (int i = 0; i < indexed; i++) {
+            order[i] = boxed[i];
+        }
+        count = indexed;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String key(String value) {
+        return value == null ? null : normalizer.apply(value);
+    }
+
+    /**
+     * Returns the number of indexed slots.
+     *
+     * @return the number of positions
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Returns the slot at a position of the order.
+     *
+     * @param position the position, below {@link #size()}
+     * @return the slot
+     */
+    int slotAt(int position) {
+        return order[position];
+    }
+
+    /**
+     * Returns the key of the slot at a position of the order.
+     *
+     * @param position the position, below {@link #size()}
+     * @return the key
+     */
+    String keyAt(int position) {
+        return keys[order[position]];
+    }
+
+    /**
+     * Returns the first position whose key and username sort after the given
+     * ones, or, without a username, the first whose key is not below the given one.
+     *
+     * @param key      the normalized key
+     * @param username the username to continue after, or {@code null}
+     * @return the position, {@link #size()} if there is none
+     */
+    int positionAfter(String key, String username) {
+        int position = position(key, username);
+        if (username != null && position < count && keys[order[position]].equals(key)
+                && usernames.apply(order[position]).equals(username)) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Finds the first position whose key and username do not sort below the
+     * given ones, by binary search.
+     *
+     * @param key      the key
+     * @param username the username, or {@code null} to sort before every username
+     * @return the position of the entry if it is indexed, otherwise the position it would be inserted at
+     */
+    private int position(String key, String username) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int slot = order[mid];
+            int compared = keys[slot].compareTo(key);
+            if (compared == 0 && username != null) {
+                compared = usernames.apply(slot).compareTo(username);
+            }
+            if (compared < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,386 @@
+package com.homieomie.authservice.services;
+
+import com.homieomie.authservice.resilience.CircuitBreaker;
+import com.homieomie.authservice.resilience.CircuitOpenException;
+import com.homieomie.authservice.resilience.Deadline;
+import com.homieomie.authservice.resilience.RetryQuota;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.CognitoIdentityProviderRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * Backend decorator that keeps Cognito calls within the request's time budget
+ * and stops a struggling Cognito from taking the service down with it.
+ * <p>
+ * Each call, retries included, must end within the client's call timeout
+ * and before the request's {@link Deadline}; each attempt gets a timeout
+ * that ends by then, and none is made once too little time is left. Throttled calls, and
+ * idempotent calls failing for server-side reasons, are retried with jittered
+ * backoff as long as the shared {@link RetryQuota} allows; the SDK's own
+ * retries are turned off so only this layer decides, and a caller pacing
+ * itself on throttling can ask for a view that leaves throttled calls to it.
+ * A {@link CircuitBreaker} refuses calls with {@link CircuitOpenException}
+ * while most recent calls failed. {@code ListUsers}, a read, is hedged: when no answer arrived after
+ * {@code COGNITO_HEDGE_DELAY_MILLIS}, a second identical call is made and the
+ * first answer wins. Hedging needs the non-blocking backend, since a blocking
+ * call has answered before it returns.
+ * </p>
+ */
+class ResilientCognitoBackend implements CognitoBackend {
+
+    /**
+     * Default number of attempts of a call, the first included.
+     */
+    static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Shortest time worth starting a call with, in nanoseconds.
+     */
+    private static final long MIN_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Base of the exponential backoff between attempts, in milliseconds.
+     */
+    private static final long BACKOFF_BASE_MILLIS = 50;
+
+    /**
+     * Longest backoff between attempts, in milliseconds.
+     */
+    private static final long BACKOFF_CAP_MILLIS = 1_000;
+
+    /**
+     * Backend the calls are made through.
+     */
+    private final CognitoBackend delegate;
+
+    /**
+     * Breaker refusing calls while Cognito is unhealthy.
+     */
+    private final CircuitBreaker circuitBreaker;
+
+    /**
+     * Quota bounding retries and hedges.
+     */
+    private final RetryQuota retryQuota;
+
+    /**
+     * Number of attempts of a call, the first included.
+     */
+    private final int maxAttempts;
+
+    /**
+     * Longest a single call may take, in nanoseconds.
+     */
+    private final long callTimeoutNanos;
+
+    /**
+     * Delay before a read is hedged, in milliseconds, or {@code 0} to never hedge.
+     */
+    private final long hedgeDelayMillis;
+
+    /**
+     * Whether throttled calls are retried.
+     */
+    private final boolean retryThrottled;
+
+    /**
+     * Creates a decorator.
+     *
+     * @param delegate         the backend the calls are made through
+     * @param circuitBreaker   the breaker refusing calls while Cognito is unhealthy
+     * @param retryQuota       the quota bounding retries and hedges
+     * @param maxAttempts      the number of attempts of a call, the first included
+     * @param callTimeout      the longest a single call may take
+     * @param hedgeDelayMillis the delay before a read is hedged, or {@code 0} to never hedge
+     */
+    ResilientCognitoBackend(CognitoBackend delegate, CircuitBreaker circuitBreaker, RetryQuota retryQuota,
+                            int maxAttempts, Duration callTimeout, long hedgeDelayMillis) {
+        this(delegate, circuitBreaker, retryQuota, maxAttempts, callTimeout.toNanos(), hedgeDelayMillis, true);
+    }
+
+    /**
+     * Creates a decorator, choosing whether throttled calls are retried.
+     *
+     * @param delegate         the backend the calls are made through
+     * @param circuitBreaker   the breaker refusing calls while Cognito is unhealthy
+     * @param retryQuota       the quota bounding retries and hedges
+     * @param maxAttempts      the number of attempts of a call, the first included
+     * @param callTimeoutNanos the longest a single call may take, in nanoseconds
+     * @param hedgeDelayMillis the delay before a read is hedged, or {@code 0} to never hedge
+     * @param retryThrottled   whether throttled calls are retried
+     */
+    private ResilientCognitoBackend(CognitoBackend delegate, CircuitBreaker circuitBreaker, RetryQuota retryQuota,
+                                    int maxAttempts, long callTimeoutNanos, long hedgeDelayMillis,
+                                    boolean retryThrottled) {
+        this.delegate = delegate;
+        this.circuitBreaker = circuitBreaker;
+        this.retryQuota = retryQuota;
+        this.maxAttempts = maxAttempts;
+        this.callTimeoutNanos = callTimeoutNanos;
+        this.hedgeDelayMillis = hedgeDelayMillis;
+        this.retryThrottled = retryThrottled;
+    }
+
+    /**
+     * Wraps a backend with the settings from {@code COGNITO_MAX_ATTEMPTS},
+     * {@code COGNITO_HEDGE_DELAY_MILLIS}, {@code COGNITO_CALL_TIMEOUT_SECONDS}
+     * and those read by {@link CircuitBreaker#fromEnvironment()} and
+     * {@link RetryQuota#fromEnvironment()}.
+     *
+     * @param delegate the backend the calls are made through
+     * @return the decorated backend
+     */
+    static ResilientCognitoBackend fromEnvironment(CognitoBackend delegate) {
+        return new ResilientCognitoBackend(delegate, CircuitBreaker.fromEnvironment(), RetryQuota.fromEnvironment(),
+                CognitoClientFactory.envInt("COGNITO_MAX_ATTEMPTS", DEFAULT_MAX_ATTEMPTS),
+                CognitoClientFactory.callTimeout(),
+                CognitoClientFactory.envInt("COGNITO_HEDGE_DELAY_MILLIS", 0));
+    }
+
+    /**
+     * Returns a view of this backend that fails throttled calls at once
+     * instead of retrying them, for a caller that paces itself on throttling
+     * and retries with its own backoff. The view shares this backend's
+     * delegate, breaker and quota; closing this backend closes it too.
+     *
+     * @return the view
+     */
+    ResilientCognitoBackend withoutThrottlingRetries() {
+        return new ResilientCognitoBackend(delegate, circuitBreaker, retryQuota, maxAttempts, callTimeoutNanos,
+                hedgeDelayMillis, false);
+    }
+
+    @Override
+    public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+        return call(request, delegate::adminCreateUser, false, deadline(), 1);
+    }
+
+    @Override
+    public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+            AdminListGroupsForUserRequest request) {
+        return call(request, delegate::adminListGroupsForUser, true, deadline(), 1);
+    }
+
+    @Override
+    public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(
+            AdminSetUserPasswordRequest request) {
+        return call(request, delegate::adminSetUserPassword, true, deadline(), 1);
+    }
+
+    @Override
+    public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+        return call(request, delegate::initiateAuth, false, deadline(), 1);
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+        Function<ListUsersRequest, CompletableFuture<ListUsersResponse>> send =
+                hedgeDelayMillis > 0 ? this::hedgedListUsers : delegate::listUsers;
+        return call(request, send, true, deadline(), 1);
+    }
+
+    @Override
+    public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+            RespondToAuthChallengeRequest request) {
+        return call(request, delegate::respondToAuthChallenge, false, deadline(), 1);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Returns the time a call starting now must end by, retries included: the
+     * request's {@link Deadline} or the call timeout, whichever comes first.
+     *
+     * @return the deadline in {@link System#nanoTime()} terms
+     */
+    private long deadline() {
+        long now = System.nanoTime();
+        long deadline = Deadline.current();
+        return deadline == Deadline.NONE || deadline - now > callTimeoutNanos ? now + callTimeoutNanos : deadline;
+    }
+
+    /**
+     * Makes one attempt of a call and, if it fails in a retryable way,
+     * schedules the next.
+     *
+     * @param request    the request
+     * @param send       the delegate operation
+     * @param idempotent whether repeating the call after a server-side failure is safe
+     * @param deadline   the time all attempts must end by, in {@link System#nanoTime()} terms
+     * @param attempt    the attempt number, starting at 1
+     * @param <Q>        the request type
+     * @param <R>        the response type
+     * @return a future of the response
+     */
+    private <Q extends CognitoIdentityProviderRequest, R> CompletableFuture<R> call(
+            Q request, Function<Q, CompletableFuture<R>> send, boolean idempotent, long deadline, int attempt) {
+        long budget = deadline - System.nanoTime();
+        if (budget < MIN_BUDGET_NANOS) {
+            return CompletableFuture.failedFuture(new TimeoutException("Latency budget exhausted"));
+        }
+        long retryAfterMillis = circuitBreaker.acquire();
+        if (retryAfterMillis > 0) {
+            return CompletableFuture.failedFuture(new CircuitOpenException(retryAfterMillis));
+        }
+
+        CompletableFuture<R> response;
+        try {
+            boolean bounded = attempt > 1 || budget < callTimeoutNanos - MIN_BUDGET_NANOS;
+            response = send.apply(bounded ? withTimeout(request, budget) : request);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        return response.handle((result, failure) -> {
+            if (failure == null) {
+                circuitBreaker.onSuccess();
+                retryQuota.onSuccess(attempt > 1);
+                return CompletableFuture.completedFuture(result);
+            }
+            Throwable cause = CognitoBackend.unwrap(failure);
+            if (isUnhealthy(cause)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            long backoff = backoffMillis(attempt);
+            boolean retryable = isThrottling(cause) ? retryThrottled : idempotent && isUnhealthy(cause);
+            if (retryable && attempt < maxAttempts
+                    && deadline - System.nanoTime() > TimeUnit.MILLISECONDS.toNanos(backoff) + MIN_BUDGET_NANOS
+                    && retryQuota.tryAcquire()) {
+                return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(
+                                backoff, TimeUnit.MILLISECONDS))
+                        .thenCompose(ignored -> call(request, send, idempotent, deadline, attempt + 1));
+            }
+            return CompletableFuture.<R>failedFuture(cause);
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Calls {@code ListUsers} and, if no answer arrived after the hedge delay
+     * and the retry quota allows, calls it again; the first answer wins and
+     * the other call is cancelled.
+     *
+     * @param request the request
+     * @return a future of the first response
+     */
+    private CompletableFuture<ListUsersResponse> hedgedListUsers(ListUsersRequest request) {
+        CompletableFuture<ListUsersResponse> primary = delegate.listUsers(request);
+        if (primary.isDone()) {
+            return primary;
+        }
+        CompletableFuture<ListUsersResponse> winner = new CompletableFuture<>();
+        primary.whenComplete((result, failure) -> complete(winner, result, failure));
+        CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            if (!winner.isDone() && retryQuota.tryAcquire()) {
+                CompletableFuture<ListUsersResponse> hedge = delegate.listUsers(request);
+                hedge.whenComplete((result, failure) -> {
+                    if (failure == null || primary.isDone()) {
+                        complete(winner, result, failure);
+                    }
+                });
+                winner.whenComplete((result, failure) -> hedge.cancel(true));
+            }
+        });
+        winner.whenComplete((result, failure) -> primary.cancel(true));
+        return winner;
+    }
+
+    /**
+     * Completes a future like another one completed.
+     *
+     * @param future  the future to complete
+     * @param result  the result, if there was no failure
+     * @param failure the failure, or {@code null}
+     * @param <R>     the result type
+     */
+    private static <R> void complete(CompletableFuture<R> future, R result, Throwable failure) {
+        if (failure == null) {
+            future.complete(result);
+        } else {
+            future.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Returns a copy of a request bounded by the given timeout.
+     *
+     * @param request the request
+     * @param nanos   the timeout in nanoseconds
+     * @param <Q>     the request type
+     * @return the bounded request
+     */
+    @SuppressWarnings("unchecked")
+    private static <Q extends CognitoIdentityProviderRequest> Q withTimeout(Q request, long nanos) {
+        return (Q) request.toBuilder()
+                .overrideConfiguration(AwsRequestOverrideConfiguration.builder()
+                        .apiCallTimeout(Duration.ofNanos(nanos))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Picks the backoff before a retry: full jitter over an exponential
+     * ceiling, so that retrying callers spread out.
+     *
+     * @param attempt the attempt that failed, starting at 1
+     * @return the backoff in milliseconds
+     */
+    private static long backoffMillis(int attempt) {
+        long ceiling = Math.min(BACKOFF_CAP_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Tells whether a failure means Cognito throttled the call.
+     *
+     * @param cause the unwrapped failure
+     * @return {@code true} for throttling
+     */
+    private static boolean isThrottling(Throwable cause) {
+        return cause instanceof AwsServiceException e && e.isThrottlingException();
+    }
+
+    /**
+     * Tells whether a failure means Cognito is unhealthy or unreachable,
+     * rather than that it answered the call.
+     *
+     * @param cause the unwrapped failure
+     * @return {@code true} for server errors, timeouts and connection failures
+     */
+    static boolean isUnhealthy(Throwable cause) {
+        if (cause instanceof AwsServiceException e) {
+            return e.statusCode() >= 500;
+        }
+        return cause instanceof ApiCallTimeoutException
+                || cause instanceof ApiCallAttemptTimeoutException
+                || cause instanceof SdkClientException
+                || cause instanceof UncheckedIOException
+                || cause instanceof IOException;
+    }
+}
@@ -0,0 +1,78 @@
+package com.homieomie.authservice.services;
+
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * View of a backend shared by the services of several pools in one region,
+ * so they share its SDK client and pooled connections.
+ * <p>
+ * Closing the view leaves the backend open: whoever created the backend
+ * closes it once no service uses it any more.
+ * </p>
+ */
+public final class SharedCognitoBackend implements CognitoBackend {
+
+    /**
+     * Backend the calls are made through.
+     */
+    private final CognitoBackend delegate;
+
+    /**
+     * Creates a view.
+     *
+     * @param delegate the shared backend
+     */
+    public SharedCognitoBackend(CognitoBackend delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+        return delegate.adminCreateUser(request);
+    }
+
+    @Override
+    public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+            AdminListGroupsForUserRequest request) {
+        return delegate.adminListGroupsForUser(request);
+    }
+
+    @Override
+    public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(
+            AdminSetUserPasswordRequest request) {
+        return delegate.adminSetUserPassword(request);
+    }
+
+    @Override
+    public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+        return delegate.initiateAuth(request);
+    }
+
+    @Override
+    public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+        return delegate.listUsers(request);
+    }
+
+    @Override
+    public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+            RespondToAuthChallengeRequest request) {
+        return delegate.respondToAuthChallenge(request);
+    }
+
+    @Override
+    public void close() {
+        // The backend is closed by its owner.
+    }
+}
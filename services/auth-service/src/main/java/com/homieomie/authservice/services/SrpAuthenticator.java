@@ -0,0 +1,247 @@
+package com.homieomie.authservice.services;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client side of Cognito's {@code USER_SRP_AUTH} flow: the ephemeral key
+ * sent with {@code InitiateAuth} and the answer to the
+ * {@code PASSWORD_VERIFIER} challenge that follows, so the password itself
+ * never leaves the function.
+ * <p>
+ * Computing an ephemeral public value {@code A = g^a mod N} is a full 3072-bit
+ * modular exponentiation. A few keys are kept ready and each one taken is
+ * replaced on a background thread, which runs while the caller waits on
+ * Cognito, so a login usually pays only for the exponentiations of the
+ * challenge answer. A key is used for one login only.
+ * </p>
+ */
+final class SrpAuthenticator {
+
+    /**
+     * Default number of ephemeral keys kept ready.
+     */
+    static final int DEFAULT_SPARE_KEYS = 4;
+
+    /**
+     * Size of the random ephemeral secret {@code a}: 320 bits, the upper
+     * exponent size RFC 3526 gives for the strength of its 3072-bit group.
+     * Cognito's client libraries draw 1024 bits, which makes both
+     * exponentiations by {@code a} about twice as slow for no added strength.
+     */
+    private static final int SECRET_BYTES = 40;
+
+    /**
+     * Pool name signed into the password claim.
+     */
+    private final String poolName;
+
+    /**
+     * Number of ephemeral keys kept ready.
+     */
+    private final int spareKeys;
+
+    /**
+     * Source of the ephemeral secrets.
+     */
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Ephemeral keys ready to be used.
+     */
+    private final Queue<EphemeralKey> spares = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Keys ready or being generated, kept at most {@link #spareKeys}.
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    /**
+     * Single daemon thread generating spare keys.
+     */
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "srp-ephemeral-keys");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates an authenticator for a user pool.
+     *
+     * @param userPoolId the user pool ID, or {@code null} if unset
+     * @param spareKeys  the number of ephemeral keys kept ready, {@code 0} to generate each on demand
+     */
+    SrpAuthenticator(String userPoolId, int spareKeys) {
+        this.poolName = userPoolId == null ? "" : SrpGroup.poolName(userPoolId);
+        this.spareKeys = spareKeys;
+    }
+
+    /**
+     * Starts generating ephemeral keys until {@code spareKeys} are ready, so
+     * that the first logins do not wait for one.
+     */
+    void prepareKeys() {
+        for (int i = 0; i < spareKeys; i++) {
+            scheduleSpare();
+        }
+    }
+
+    /**
+     * Takes a ready ephemeral key, or generates one if none is, and starts
+     * generating a replacement.
+     *
+     * @return a key not handed out before
+     */
+    EphemeralKey nextKey() {
+        EphemeralKey key = spares.poll();
+        if (key != null) {
+            reserved.decrementAndGet();
+        }
+        scheduleSpare();
+        return key != null ? key : newKey();
+    }
+
+    /**
+     * Replaces the ready ephemeral keys with new ones, so that keys captured
+     * in a SnapStart snapshot are never used by more than one restored instance.
+     */
+    void renewKeys() {
+        while (spares.poll() != null) {
+            reserved.decrementAndGet();
+        }
+        prepareKeys();
+    }
+
+    /**
+     * Stops generating ephemeral keys.
+     */
+    void close() {
+        generator.shutdownNow();
+    }
+
+    /**
+     * Answers a {@code PASSWORD_VERIFIER} challenge: computes the shared
+     * secret from the server's public value and signs the secret block with it.
+     *
+     * @param key       the ephemeral key sent with {@code InitiateAuth}
+     * @param challenge the challenge parameters
+     * @param password  the user's password
+     * @param now       the time of the claim
+     * @return the challenge responses
+     * @throws IllegalStateException if the challenge parameters are invalid
+     */
+    Map<String, String> respond(EphemeralKey key, Map<String, String> challenge, String password, Instant now) {
+        String userId = challenge.get("USER_ID_FOR_SRP");
+        String secretBlock = challenge.get("SECRET_BLOCK");
+        String salt = challenge.get("SALT");
+        String serverPublicHex = challenge.get("SRP_B");
+        if (userId == null || secretBlock == null || salt == null || serverPublicHex == null) {
+            throw new IllegalStateException("Incomplete PASSWORD_VERIFIER challenge");
+        }
+        BigInteger serverPublic = new BigInteger(serverPublicHex, 16);
+        if (serverPublic.mod(SrpGroup.N).signum() == 0) {
+            throw new IllegalStateException("Invalid SRP_B in PASSWORD_VERIFIER challenge");
+        }
+        BigInteger scramble = SrpGroup.scramble(key.publicValue, serverPublic);
+        if (scramble.signum() == 0) {
+            throw new IllegalStateException("Invalid SRP_B in PASSWORD_VERIFIER challenge");
+        }
+        BigInteger privateKey = SrpGroup.privateKey(poolName, userId, password, new BigInteger(salt, 16));
+        BigInteger premaster = serverPublic.subtract(SrpGroup.K.multiply(SrpGroup.G.modPow(privateKey, SrpGroup.N)))
+                .modPow(key.secret.add(scramble.multiply(privateKey)), SrpGroup.N);
+        byte[] derivedKey = SrpGroup.derivedKey(premaster, scramble);
+        String timestamp = SrpGroup.timestamp(now);
+        return Map.of(
+                "USERNAME", userId,
+                "PASSWORD_CLAIM_SECRET_BLOCK", secretBlock,
+                "TIMESTAMP", timestamp,
+                "PASSWORD_CLAIM_SIGNATURE", SrpGroup.signature(derivedKey, poolName, userId, secretBlock, timestamp));
+    }
+
+    /**
+     * Starts generating one spare key, unless enough are ready or being generated.
+     *
+     */
+    private void scheduleSpare() {
+        if (reserved.incrementAndGet() > spareKeys) {
+            reserved.decrementAndGet();
+            return;
+        }
+        try {
+            generator.execute(() -> spares.add(newKey()));
+        } catch (RejectedExecutionException e) {
+            reserved.decrementAndGet();
+        }
+    }
+
+    /**
+     * Generates an ephemeral key.
+     *
+     * @return the key
+     */
+    private EphemeralKey newKey() {
+        byte[] bytes = new byte[SECRET_BYTES];
+        while (true) {
+            random.nextBytes(bytes);
+            BigInteger secret = new BigInteger(1, bytes).mod(SrpGroup.N);
+            BigInteger publicValue = SrpGroup.G.modPow(secret, SrpGroup.N);
+            if (publicValue.signum() != 0) {
+                return new EphemeralKey(secret, publicValue);
+            }
+        }
+    }
+
+    /**
+     * An ephemeral secret {@code a} and its public value {@code A}.
+     */
+    static final class EphemeralKey {
+
+        /**
+         * The secret {@code a}.
+         */
+        private final BigInteger secret;
+
+        /**
+         * The public value {@code A = g^a mod N}.
+         */
+        private final BigInteger publicValue;
+
+        /**
+         * Creates a key.
+         *
+         * @param secret      the secret
+         * @param publicValue the public value
+         */
+        private EphemeralKey(BigInteger secret, BigInteger publicValue) {
+            this.secret = secret;
+            this.publicValue = publicValue;
+        }
+
+        /**
+         * Creates the key of a chosen secret, for replaying a known exchange.
+         *
+         * @param secret the secret, between {@code 1} and {@code N - 1}
+         * @return the key
+         */
+        static EphemeralKey of(BigInteger secret) {
+            return new EphemeralKey(secret, SrpGroup.G.modPow(secret, SrpGroup.N));
+        }
+
+        /**
+         * Returns the public value as the {@code SRP_A} parameter.
+         *
+         * @return the public value in hexadecimal
+         */
+        String publicHex() {
+            return publicValue.toString(16);
+        }
+    }
+}
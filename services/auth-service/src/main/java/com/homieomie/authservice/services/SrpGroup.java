@@ -0,0 +1,254 @@
+package com.homieomie.authservice.services;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * The SRP-6a group and derivations Cognito's {@code USER_SRP_AUTH} flow uses.
+ * <p>
+ * The group is the 3072-bit prime of RFC 3526 with generator 2, and every
+ * hash is SHA-256 over the bytes of zero-padded hexadecimal strings, as the
+ * Cognito client libraries compute them. The group constants, including the
+ * multiplier {@code k}, are computed once per class load; digests and HMACs
+ * are kept per thread and reused, so a derivation allocates only its result.
+ * </p>
+ * <p>
+ * The methods serve both sides of the exchange, so a stand-in for Cognito can
+ * verify what the client side computes.
+ * </p>
+ */
+public final class SrpGroup {
+
+    /**
+     * The group's safe prime {@code N}, in hexadecimal.
+     */
+    private static final String N_HEX =
+            "FFFFFFFFFFFFFFFFC90FDAA22168C234C4C6628B80DC1CD129024E088A67CC74"
+            + "020BBEA63B139B22514A08798E3404DDEF9519B3CD3A431B302B0A6DF25F1437"
+            + "4FE1356D6D51C245E485B576625E7EC6F44C42E9A637ED6B0BFF5CB6F406B7ED"
+            + "EE386BFB5A899FA5AE9F24117C4B1FE649286651ECE45B3DC2007CB8A163BF05"
+            + "98DA48361C55D39A69163FA8FD24CF5F83655D23DCA3AD961C62F356208552BB"
+            + "9ED529077096966D670C354E4ABC9804F1746C08CA18217C32905E462E36CE3B"
+            + "E39E772C180E86039B2783A2EC07A28FB5C55DF06F4C52C9DE2BCBF695581718"
+            + "3995497CEA956AE515D2261898FA051015728E5A8AAAC42DAD33170D04507A33"
+            + "A85521ABDF1CBA64ECFB850458DBEF0A8AEA71575D060C7DB3970F85A6E1E4C7"
+            + "ABF5AE8CDB0933D71E8C94E04A25619DCEE3D2261AD2EE6BF12FFA06D98A0864"
+            + "D87602733EC86A64521F2B18177B200CBBE117577A615D6C770988C0BAD946E2"
+            + "08E24FA074E5AB3143DB5BFCE0FD108E4B82D120A93AD2CAFFFFFFFFFFFFFFFF";
+
+    /**
+     * The group's prime modulus.
+     */
+    public static final BigInteger N = new BigInteger(N_HEX, 16);
+
+    /**
+     * The group's generator.
+     */
+    public static final BigInteger G = BigInteger.TWO;
+
+    /**
+     * Information string of the HKDF expanding the premaster secret.
+     */
+    private static final byte[] DERIVED_KEY_INFO = "Caldera Derived Key\u0001".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Length in bytes of the key signing the password claim.
+     */
+    private static final int DERIVED_KEY_BYTES = 16;
+
+    /**
+     * Format of the {@code TIMESTAMP} signed with the password claim, such as {@code Tue Jan 2 03:04:05 UTC 2024}.
+     */
+    private static final DateTimeFormatter TIMESTAMP =
+            DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss 'UTC' yyyy", Locale.US).withZone(ZoneOffset.UTC);
+
+    /**
+     * Reusable SHA-256 digest of the current thread.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(SrpGroup::newDigest);
+
+    /**
+     * Reusable HMAC-SHA256 of the current thread.
+     */
+    private static final ThreadLocal<Mac> HMAC_SHA_256 = ThreadLocal.withInitial(SrpGroup::newMac);
+
+    /**
+     * Lower-case hexadecimal formatter.
+     */
+    private static final HexFormat HEX = HexFormat.of();
+
+    /**
+     * The multiplier {@code k = H(N | g)}.
+     */
+    public static final BigInteger K = hashHex(padHex(N) + padHex(G));
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private SrpGroup() {}
+
+    /**
+     * Formats a non-negative number as hexadecimal the way Cognito hashes it:
+     * an even number of digits, with a leading {@code 00} byte when the first
+     * digit would otherwise set the sign bit.
+     *
+     * @param value the number
+     * @return the padded hexadecimal string
+     */
+    public static String padHex(BigInteger value) {
+        String hex = value.toString(16);
+        if (hex.length() % 2 == 1) {
+            return "0" + hex;
+        }
+        return "89abcdef".indexOf(hex.charAt(0)) >= 0 ? "00" + hex : hex;
+    }
+
+    /**
+     * Hashes the bytes a hexadecimal string spells.
+     *
+     * @param hex the hexadecimal string, of even length
+     * @return the hash as a non-negative number
+     */
+    public static BigInteger hashHex(String hex) {
+        return new BigInteger(1, SHA_256.get().digest(HEX.parseHex(hex)));
+    }
+
+    /**
+     * Computes the scrambling parameter {@code u = H(A | B)}.
+     *
+     * @param clientPublic the client's public value {@code A}
+     * @param serverPublic the server's public value {@code B}
+     * @return {@code u}
+     */
+    public static BigInteger scramble(BigInteger clientPublic, BigInteger serverPublic) {
+        return hashHex(padHex(clientPublic) + padHex(serverPublic));
+    }
+
+    /**
+     * Computes the private key {@code x = H(salt | H(poolName | userId | ":" | password))}.
+     *
+     * @param poolName the part of the user pool ID after the underscore
+     * @param userId   the {@code USER_ID_FOR_SRP} Cognito names
+     * @param password the password
+     * @param salt     the user's salt
+     * @return {@code x}
+     */
+    public static BigInteger privateKey(String poolName, String userId, String password, BigInteger salt) {
+        byte[] identity = SHA_256.get().digest((poolName + userId + ":" + password).getBytes(StandardCharsets.UTF_8));
+        return hashHex(padHex(salt) + HEX.formatHex(identity));
+    }
+
+    /**
+     * Derives the key signing the password claim from the premaster secret
+     * with a one-block HKDF salted with {@code u}.
+     *
+     * @param premaster the premaster secret {@code S}
+     * @param scramble  the scrambling parameter {@code u}
+     * @return the 16-byte key
+     */
+    public static byte[] derivedKey(BigInteger premaster, BigInteger scramble) {
+        byte[] pseudoRandomKey = hmac(HEX.parseHex(padHex(scramble)), HEX.parseHex(padHex(premaster)));
+        return Arrays.copyOf(hmac(pseudoRandomKey, DERIVED_KEY_INFO), DERIVED_KEY_BYTES);
+    }
+
+    /**
+     * Computes the {@code PASSWORD_CLAIM_SIGNATURE} of a password claim.
+     *
+     * @param key         the key from {@link #derivedKey}
+     * @param poolName    the part of the user pool ID after the underscore
+     * @param userId      the {@code USER_ID_FOR_SRP} Cognito names
+     * @param secretBlock the {@code SECRET_BLOCK} of the challenge, in base64
+     * @param timestamp   the timestamp from {@link #timestamp}
+     * @return the signature in base64
+     */
+    public static String signature(byte[] key, String poolName, String userId, String secretBlock,
+                                   String timestamp) {
+        Mac mac = HMAC_SHA_256.get();
+        try {
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException("HMAC key rejected", e);
+        }
+        mac.update(poolName.getBytes(StandardCharsets.UTF_8));
+        mac.update(userId.getBytes(StandardCharsets.UTF_8));
+        mac.update(Base64.getDecoder().decode(secretBlock));
+        mac.update(timestamp.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(mac.doFinal());
+    }
+
+    /**
+     * Formats the {@code TIMESTAMP} of a password claim.
+     *
+     * @param now the time of the claim
+     * @return the timestamp
+     */
+    public static String timestamp(Instant now) {
+        return TIMESTAMP.format(now);
+    }
+
+    /**
+     * Returns the pool name signed into SRP values: the part of the user pool
+     * ID after the underscore, such as {@code abc123} for {@code us-east-1_abc123}.
+     *
+     * @param userPoolId the user pool ID
+     * @return the pool name
+     */
+    public static String poolName(String userPoolId) {
+        return userPoolId.substring(userPoolId.indexOf('_') + 1);
+    }
+
+    /**
+     * Computes an HMAC-SHA256.
+     *
+     * @param key  the key
+     * @param data the data
+     * @return the MAC
+     */
+    private static byte[] hmac(byte[] key, byte[] data) {
+        Mac mac = HMAC_SHA_256.get();
+        try {
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        } catch (InvalidKeyException e) {
+            throw new IllegalStateException("HMAC key rejected", e);
+        }
+        return mac.doFinal(data);
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return a new digest instance
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Creates an HMAC-SHA256 instance.
+     *
+     * @return a new MAC instance
+     */
+    private static Mac newMac() {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
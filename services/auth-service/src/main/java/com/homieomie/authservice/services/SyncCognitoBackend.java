@@ -0,0 +1,115 @@
+package com.homieomie.authservice.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * {@link CognitoBackend} over the blocking {@link CognitoIdentityProviderClient}.
+ * <p>
+ * Each call runs on the caller's thread and returns an already completed
+ * future, which suits Lambda: one request per execution environment, and no
+ * event loop to start during init.
+ * </p>
+ */
+public class SyncCognitoBackend implements CognitoBackend {
+
+    /**
+     * The blocking SDK client.
+     */
+    private final CognitoIdentityProviderClient client;
+
+    /**
+     * Creates a backend over the given client.
+     *
+     * @param client the blocking SDK client
+     */
+    public SyncCognitoBackend(CognitoIdentityProviderClient client) {
+        this.client = client;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+        return call(() -> client.adminCreateUser(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+            AdminListGroupsForUserRequest request) {
+        return call(() -> client.adminListGroupsForUser(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(AdminSetUserPasswordRequest request) {
+        return call(() -> client.adminSetUserPassword(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+        return call(() -> client.initiateAuth(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+        return call(() -> client.listUsers(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+            RespondToAuthChallengeRequest request) {
+        return call(() -> client.respondToAuthChallenge(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * Runs a blocking call and captures its outcome in a completed future.
+     *
+     * @param call the SDK call
+     * @param <T>  the response type
+     * @return a future holding the response or the exception thrown
+     */
+    private static <T> CompletableFuture<T> call(Supplier<T> call) {
+        try {
+            return CompletableFuture.completedFuture(call.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
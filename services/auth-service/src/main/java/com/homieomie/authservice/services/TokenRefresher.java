@@ -0,0 +1,296 @@
+package com.homieomie.authservice.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthenticationResultType;
+
+/**
+ * Exchanges refresh tokens for fresh ID and access tokens, coalescing
+ * concurrent exchanges and briefly caching their results.
+ * <p>
+ * Requests carrying the same refresh token while an exchange is in flight
+ * share that exchange, so a browser refreshing from many tabs at once costs
+ * one Cognito call. A successful result is then kept for a short time-to-live,
+ * capped at half the lifetime of the issued tokens, and answers repeat
+ * requests without reaching Cognito. Failures are never cached.
+ * </p>
+ * <p>
+ * Entries are keyed by the SHA-256 hash of the refresh token, so the tokens
+ * themselves are not held as keys. A cached result outlives a revocation of
+ * its refresh token by at most the time-to-live.
+ * </p>
+ */
+public class TokenRefresher {
+
+    /**
+     * Default time a refreshed token set is reused.
+     */
+    public static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    /**
+     * Default upper bound on the number of cached token sets.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Per-thread SHA-256 digest used to hash refresh tokens into cache keys.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(TokenRefresher::newDigest);
+
+    /**
+     * Performs the {@code REFRESH_TOKEN_AUTH} call for a refresh token.
+     */
+    private final Function<String, CompletableFuture<AuthenticationResultType>> exchange;
+
+    /**
+     * Time in milliseconds a refreshed token set is reused; {@code 0} disables the cache.
+     */
+    private final long ttlMillis;
+
+    /**
+     * Maximum number of cached token sets.
+     */
+    private final int maxEntries;
+
+    /**
+     * Exchanges in flight, keyed by refresh-token hash.
+     */
+    private final Map<ByteBuffer, CompletableFuture<Map<String, String>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Recently refreshed token sets, keyed by refresh-token hash.
+     */
+    private final Map<ByteBuffer, CachedTokens> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Number of requests answered from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of requests that joined an exchange already in flight.
+     */
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Number of exchanges sent to Cognito.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a refresher.
+     *
+     * @param exchange   performs the {@code REFRESH_TOKEN_AUTH} call for a refresh token
+     * @param ttl        the time a refreshed token set is reused, zero to disable the cache
+     * @param maxEntries the maximum number of cached token sets
+     */
+    public TokenRefresher(Function<String, CompletableFuture<AuthenticationResultType>> exchange, Duration ttl,
+                          int maxEntries) {
+        this.exchange = exchange;
+        this.ttlMillis = Math.max(0, ttl.toMillis());
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Creates a refresher whose time-to-live is read from
+     * {@code REFRESH_CACHE_TTL_SECONDS}.
+     *
+     * @param exchange performs the {@code REFRESH_TOKEN_AUTH} call for a refresh token
+     * @return the refresher
+     */
+    public static TokenRefresher fromEnvironment(
+            Function<String, CompletableFuture<AuthenticationResultType>> exchange) {
+        Duration ttl = DEFAULT_TTL;
+        String value = System.getenv("REFRESH_CACHE_TTL_SECONDS");
+        if (value != null && !value.isBlank()) {
+            try {
+                ttl = Duration.ofSeconds(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                ttl = DEFAULT_TTL;
+            }
+        }
+        return new TokenRefresher(exchange, ttl, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Returns fresh tokens for a refresh token, from the cache, from an
+     * exchange already in flight, or from a new exchange.
+     *
+     * @param refreshToken the refresh token issued at login
+     * @return a future of a read-only map containing ID, access, and refresh tokens
+     */
+    public CompletableFuture<Map<String, String>> refresh(String refreshToken) {
+        ByteBuffer key = keyOf(refreshToken);
+        long now = System.currentTimeMillis();
+
+        CachedTokens cached = cache.get(key);
+        if (cached != null) {
+            if (cached.expiresAtMillis > now) {
+                hits.increment();
+                return CompletableFuture.completedFuture(cached.tokens);
+            }
+            cache.remove(key, cached);
+        }
+
+        CompletableFuture<Map<String, String>> promise = new CompletableFuture<>();
+        CompletableFuture<Map<String, String>> running = inFlight.putIfAbsent(key, promise);
+        if (running != null) {
+            coalesced.increment();
+            return running;
+        }
+
+        misses.increment();
+        CompletableFuture<AuthenticationResultType> call;
+        try {
+            call = exchange.apply(refreshToken);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.thenApply(result -> {
+            Map<String, String> tokens = tokensOf(result, refreshToken);
+            store(key, tokens, result.expiresIn());
+            return tokens;
+        }).whenComplete((tokens, failure) -> {
+            inFlight.remove(key, promise);
+            if (failure != null) {
+                promise.completeExceptionally(failure);
+            } else {
+                promise.complete(tokens);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Returns the number of requests answered from the cache.
+     *
+     * @return the cache hit count
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that joined an exchange already in flight.
+     *
+     * @return the coalesced request count
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Returns the number of exchanges sent to Cognito.
+     *
+     * @return the cache miss count
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Caches a token set for the time-to-live, or for half the lifetime of
+     * its tokens if that is shorter, making room first if the cache is full.
+     *
+     * @param key              the refresh-token hash
+     * @param tokens           the token set
+     * @param expiresInSeconds the lifetime of the issued tokens, or {@code null} if unknown
+     */
+    private void store(ByteBuffer key, Map<String, String> tokens, Integer expiresInSeconds) {
+        long lifetime = ttlMillis;
+        if (expiresInSeconds != null) {
+            lifetime = Math.min(lifetime, expiresInSeconds * 500L);
+        }
+        if (lifetime <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(entry -> entry.expiresAtMillis <= now);
+            Iterator<ByteBuffer> it = cache.keySet().iterator();
+            while (cache.size() >= maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        cache.put(key, new CachedTokens(tokens, now + lifetime));
+    }
+
+    /**
+     * Builds the token map returned to clients, keeping the presented refresh
+     * token unless Cognito rotated it.
+     *
+     * @param result       the Cognito authentication result
+     * @param refreshToken the refresh token that was exchanged
+     * @return a read-only map containing ID, access, and refresh tokens
+     */
+    private static Map<String, String> tokensOf(AuthenticationResultType result, String refreshToken) {
+        Map<String, String> tokens = new HashMap<>();
+        tokens.put("idToken", result.idToken());
+        tokens.put("accessToken", result.accessToken());
+        tokens.put("refreshToken", result.refreshToken() != null ? result.refreshToken() : refreshToken);
+        return Collections.unmodifiableMap(tokens);
+    }
+
+    /**
+     * Hashes a refresh token into a cache key. The token is hashed as UTF-8,
+     * so tokens differing only in characters outside ASCII never share a key.
+     *
+     * @param refreshToken the refresh token
+     * @return a buffer over the SHA-256 hash, compared by content
+     */
+    private static ByteBuffer keyOf(String refreshToken) {
+        return ByteBuffer.wrap(SHA_256.get().digest(refreshToken.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return a new digest instance
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * A cached token set and the time it stops being reused.
+     */
+    private static final class CachedTokens {
+
+        /**
+         * The token set handed to clients.
+         */
+        private final Map<String, String> tokens;
+
+        /**
+         * Epoch milliseconds after which the entry is no longer used.
+         */
+        private final long expiresAtMillis;
+
+        /**
+         * Creates a cache entry.
+         *
+         * @param tokens          the token set
+         * @param expiresAtMillis the end of reuse in epoch milliseconds
+         */
+        private CachedTokens(Map<String, String> tokens, long expiresAtMillis) {
+            this.tokens = tokens;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
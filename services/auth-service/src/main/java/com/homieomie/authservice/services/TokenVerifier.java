@@ -0,0 +1,464 @@
+package com.homieomie.authservice.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifies Cognito-issued JWTs (RS256 signature, issuer, token use and client)
+ * and caches the verified claims.
+ * <p>
+ * Verified tokens are kept in a bounded in-process cache keyed by a SHA-256 hash
+ * of the token and evicted once the token's {@code exp} has passed, so repeat
+ * calls with the same token skip both the JWT parse and the signature check.
+ * </p>
+ * <p>
+ * A full cache makes room with a clock sweep over the insertion order: the
+ * oldest entry is evicted unless it was read since the sweep last passed it,
+ * in which case it is given a second chance. Each insert therefore evicts in
+ * amortized constant time, and tokens in use outlive one-off ones.
+ * </p>
+ */
+public class TokenVerifier {
+
+    /**
+     * Default upper bound on the number of cached verified tokens.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Prefix stripped from {@code Authorization} header values.
+     */
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    /**
+     * Per-thread SHA-256 digest used to hash tokens into cache keys.
+     */
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(TokenVerifier::newDigest);
+
+    /**
+     * Signature and issuer verifier built once for the configured pool.
+     */
+    private final JWTVerifier verifier;
+
+    /**
+     * App client id that tokens must have been issued to.
+     */
+    private final String clientId;
+
+    /**
+     * Maximum number of cached verified tokens.
+     */
+    private final int maxEntries;
+
+    /**
+     * Cache of verified tokens keyed by token hash.
+     */
+    private final Map<TokenKey, CacheEntry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Cached entries in insertion order, swept to make room; may still hold
+     * entries already removed from {@link #cache}.
+     */
+    private final ConcurrentLinkedQueue<CacheEntry> clock = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Number of entries in {@link #clock}.
+     */
+    private final AtomicInteger clockSize = new AtomicInteger();
+
+    /**
+     * Number of lookups answered from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of lookups that required a full verification.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a verifier for tokens issued by the given pool.
+     *
+     * @param issuer     the expected {@code iss} claim
+     * @param clientId   the app client id tokens must be issued to
+     * @param keys       the JWKS key cache used to resolve signing keys
+     * @param maxEntries the maximum number of cached verified tokens
+     */
+    public TokenVerifier(String issuer, String clientId, JwksKeyCache keys, int maxEntries) {
+        this.verifier = JWT.require(Algorithm.RSA256(keys))
+                .withIssuer(issuer)
+                .withClaimPresence("token_use")
+                .build();
+        this.clientId = clientId;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the Cognito issuer URL for the given region and pool.
+     *
+     * @param region     the AWS region of the pool
+     * @param userPoolId the Cognito User Pool ID
+     * @return the issuer URL
+     */
+    public static String issuerFor(String region, String userPoolId) {
+        return "https://cognito-idp." + region + ".amazonaws.com/" + userPoolId;
+    }
+
+    /**
+     * Verifies a token, consulting the cache first.
+     *
+     * @param authorization the raw token or an {@code Authorization} header value
+     *                      carrying a {@code Bearer} token
+     * @return the verified token claims
+     * @throws JWTVerificationException if the token is invalid, expired or
+     *                                  was not issued to this client
+     */
+    public VerifiedToken verify(String authorization) {
+        String token = stripBearer(authorization);
+        TokenKey key = TokenKey.of(token);
+        long now = System.currentTimeMillis();
+
+        CacheEntry cached = cache.get(key);
+        if (cached != null) {
+            if (cached.token.getExpiresAtMillis() > now) {
+                if (!cached.referenced) {
+                    cached.referenced = true;
+                }
+                hits.increment();
+                return cached.token;
+            }
+            cache.remove(key, cached);
+        }
+
+        misses.increment();
+        VerifiedToken verified = verifyUncached(token);
+        if (verified.getExpiresAtMillis() > now) {
+            store(key, verified, now);
+        }
+        return verified;
+    }
+
+    /**
+     * Returns the number of lookups answered from the cache.
+     *
+     * @return the cache hit count
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that required full verification.
+     *
+     * @return the cache miss count
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of currently cached tokens.
+     *
+     * @return the cache size
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Parses and verifies a token without consulting the cache.
+     *
+     * @param token the raw JWT
+     * @return the verified token claims
+     * @throws JWTVerificationException if verification fails
+     */
+    private VerifiedToken verifyUncached(String token) {
+        DecodedJWT jwt = verifier.verify(token);
+        String tokenUse = jwt.getClaim("token_use").asString();
+        boolean issuedToClient;
+        if ("access".equals(tokenUse)) {
+            issuedToClient = clientId != null && clientId.equals(jwt.getClaim("client_id").asString());
+        } else if ("id".equals(tokenUse)) {
+            issuedToClient = jwt.getAudience() != null && jwt.getAudience().contains(clientId);
+        } else {
+            throw new JWTVerificationException("Unsupported token_use: " + tokenUse);
+        }
+        if (!issuedToClient) {
+            throw new JWTVerificationException("Token was not issued to this client");
+        }
+
+        String username = "access".equals(tokenUse)
+                ? jwt.getClaim("username").asString()
+                : jwt.getClaim("cognito:username").asString();
+        List<String> groups = jwt.getClaim("cognito:groups").asList(String.class);
+        long expiresAt = jwt.getExpiresAtAsInstant() == null ? 0 : jwt.getExpiresAtAsInstant().toEpochMilli();
+        return new VerifiedToken(jwt.getSubject(), username,
+                groups == null ? Set.of() : Set.copyOf(groups), expiresAt);
+    }
+
+    /**
+     * Inserts a verified token, making room first if the cache is full.
+     *
+     * @param key      the token hash
+     * @param verified the verified claims
+     * @param now      the current time in epoch milliseconds
+     */
+    private void store(TokenKey key, VerifiedToken verified, long now) {
+        for (int secondChances = maxEntries; clockSize.get() >= maxEntries; secondChances--) {
+            if (!sweepOne(now, secondChances > 0)) {
+                break;
+            }
+        }
+        CacheEntry entry = new CacheEntry(key, verified);
+        cache.put(key, entry);
+        clock.offer(entry);
+        clockSize.incrementAndGet();
+    }
+
+    /**
+     * Advances the clock by one entry: evicts the oldest entry if it expired,
+     * was replaced or removed, or was not read since the last pass, and
+     * otherwise moves it to the back without its second chance. Second
+     * chances are bounded per insert so that readers cannot keep the sweep
+     * going round.
+     *
+     * @param now          the current time in epoch milliseconds
+     * @param secondChance whether a recently read entry may be kept
+     * @return {@code false} if the clock is empty
+     */
+    private boolean sweepOne(long now, boolean secondChance) {
+        CacheEntry oldest = clock.poll();
+        if (oldest == null) {
+            return false;
+        }
+        if (cache.get(oldest.key) != oldest) {
+            clockSize.decrementAndGet();
+        } else if (secondChance && oldest.referenced && oldest.token.getExpiresAtMillis() > now) {
+            oldest.referenced = false;
+            clock.offer(oldest);
+        } else {
+            cache.remove(oldest.key, oldest);
+            clockSize.decrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Removes a leading {@code Bearer } scheme from a header value.
+     *
+     * @param authorization the header value or raw token
+     * @return the raw token
+     */
+    private static String stripBearer(String authorization) {
+        if (authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return authorization.substring(BEARER_PREFIX.length()).trim();
+        }
+        return authorization;
+    }
+
+    /**
+     * Creates a SHA-256 message digest.
+     *
+     * @return a new digest instance
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Claims of a token that passed verification.
+     */
+    public static final class VerifiedToken {
+
+        /**
+         * The {@code sub} claim.
+         */
+        private final String subject;
+
+        /**
+         * The Cognito username of the token owner.
+         */
+        private final String username;
+
+        /**
+         * The {@code cognito:groups} claim.
+         */
+        private final Set<String> groups;
+
+        /**
+         * The {@code exp} claim in epoch milliseconds.
+         */
+        private final long expiresAtMillis;
+
+        /**
+         * Creates a verified token view.
+         *
+         * @param subject         the {@code sub} claim
+         * @param username        the Cognito username
+         * @param groups          the group memberships
+         * @param expiresAtMillis the expiry in epoch milliseconds
+         */
+        public VerifiedToken(String subject, String username, Set<String> groups, long expiresAtMillis) {
+            this.subject = subject;
+            this.username = username;
+            this.groups = groups;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        /**
+         * Returns the {@code sub} claim.
+         *
+         * @return the subject
+         */
+        public String getSubject() {
+            return subject;
+        }
+
+        /**
+         * Returns the Cognito username of the token owner.
+         *
+         * @return the username
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Returns the groups the token owner belonged to when it was issued.
+         *
+         * @return the group names
+         */
+        public Set<String> getGroups() {
+            return groups;
+        }
+
+        /**
+         * Returns the token expiry.
+         *
+         * @return the expiry in epoch milliseconds
+         */
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+
+        /**
+         * Returns whether the token carries the given group.
+         *
+         * @param group the group name
+         * @return {@code true} if the group is present
+         */
+        public boolean isInGroup(String group) {
+            return groups.contains(group);
+        }
+    }
+
+    /**
+     * A cached token with its clock reference bit.
+     */
+    private static final class CacheEntry {
+
+        /**
+         * The token hash the entry is cached under.
+         */
+        private final TokenKey key;
+
+        /**
+         * The verified claims.
+         */
+        private final VerifiedToken token;
+
+        /**
+         * Whether the entry was read since the clock last passed it.
+         */
+        private volatile boolean referenced;
+
+        /**
+         * Creates an entry.
+         *
+         * @param key   the token hash
+         * @param token the verified claims
+         */
+        private CacheEntry(TokenKey key, VerifiedToken token) {
+            this.key = key;
+            this.token = token;
+        }
+    }
+
+    /**
+     * Cache key made of the first 128 bits of a token's SHA-256 hash.
+     */
+    private static final class TokenKey {
+
+        /**
+         * High 64 bits of the hash prefix.
+         */
+        private final long high;
+
+        /**
+         * Low 64 bits of the hash prefix.
+         */
+        private final long low;
+
+        /**
+         * Creates a key from two hash words.
+         *
+         * @param high the high word
+         * @param low  the low word
+         */
+        private TokenKey(long high, long low) {
+            this.high = high;
+            this.low = low;
+        }
+
+        /**
+         * Hashes a token into a key.
+         *
+         * @param token the raw JWT
+         * @return the cache key
+         */
+        static TokenKey of(String token) {
+            MessageDigest digest = SHA_256.get();
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenKey(hash.getLong(), hash.getLong());
+        }
+
+        /**
+         * Compares two keys by hash value.
+         *
+         * @param other the object to compare with
+         * @return {@code true} if both keys hold the same hash
+         */
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TokenKey key && key.high == high && key.low == low;
+        }
+
+        /**
+         * Returns a hash code derived from the low word.
+         *
+         * @return the hash code
+         */
+        @Override
+        public int hashCode() {
+            return Long.hashCode(low);
+        }
+    }
+}
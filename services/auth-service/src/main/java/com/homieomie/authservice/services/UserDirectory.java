@@ -0,0 +1,903 @@
+package com.homieomie.authservice.services;
+
+import com.homieomie.authservice.models.ConfirmSignupRequest;
+import com.homieomie.authservice.models.SignupOutcome;
+import com.homieomie.authservice.models.SignupRequest;
+import com.homieomie.authservice.models.UserMatch;
+import com.homieomie.authservice.models.UserSummary;
+import com.homieomie.authservice.resilience.Deadline;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
+
+/**
+ * In-memory, read-through directory of the users in the Cognito User Pool,
+ * layered around {@link CognitoService}.
+ * <p>
+ * The directory is filled by a full paginated sweep the first time it is read
+ * and is then kept fresh in two ways: {@code signup} and {@code confirmSignup}
+ * write through to it, and sweeps re-run in the background once the data is
+ * older than the refresh-after bound, an hour by default. Cognito cannot list
+ * only the users modified since a date, so a sweep pages through the pool,
+ * but it only rewrites the rows whose {@code UserLastModifiedDate} moved, each
+ * as a whole, and drops users that no longer exist. When disabled, every call
+ * is passed straight to Cognito.
+ * </p>
+ * <p>
+ * No request waits for a sweep it did not need: a first page asked for while
+ * the directory was never filled, is older than the max-staleness bound or
+ * must be refreshed is answered straight from Cognito while the sweep runs in
+ * the background, with a cursor that keeps the listing in Cognito. Only a
+ * later page of a directory listing waits, and no longer than the request's
+ * {@link Deadline}. A sweep is only started once the caller is known to be an
+ * admin, so an unauthorized request never makes the directory page through
+ * the pool.
+ * </p>
+ * <p>
+ * The searchable attributes are indexed as they are stored: {@code email} and
+ * {@code phone_number} in a {@link HashIndex}, {@code given_name} and
+ * {@code family_name} in a {@link PrefixIndex}. A search is then a hash probe
+ * or a binary search under the read lock, with no Cognito call.
+ * </p>
+ */
+public class UserDirectory {
+
+    /**
+     * Attributes cached for every user: those users are searched by.
+     */
+    public static final List<String> DEFAULT_ATTRIBUTES = CognitoService.SEARCH_ATTRIBUTES;
+
+    /**
+     * Default age after which a read triggers a background sweep.
+     */
+    public static final Duration DEFAULT_REFRESH_AFTER = Duration.ofHours(1);
+
+    /**
+     * Default age after which a first page is answered from Cognito.
+     */
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ofHours(6);
+
+    /**
+     * Encoder for the opaque cursors handed out by {@link #listUsers}.
+     */
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    /**
+     * Attribute looked up by each field of a {@code searchUsers} request.
+     */
+    private static final Map<String, String> SEARCH_FIELDS = Map.of(
+            "email", "email",
+            "phone_number", "phone_number",
+            "first_name", "given_name",
+            "last_name", "family_name");
+
+    /**
+     * Separates the key from the username in a {@code searchUsers} cursor; usernames cannot contain it.
+     */
+    private static final char CURSOR_SEPARATOR = '\u0000';
+
+    /**
+     * Marks a cursor continuing a listing answered from Cognito; URL-safe, and not a Base64 character.
+     */
+    private static final char COGNITO_CURSOR = '~';
+
+    /**
+     * Service used to reach Cognito.
+     */
+    private final CognitoService cognitoService;
+
+    /**
+     * Whether listing is served from the directory at all.
+     */
+    private final boolean enabled;
+
+    /**
+     * Attributes projected on every sweep.
+     */
+    private final List<String> attributes;
+
+    /**
+     * Age in milliseconds after which a read triggers a background sweep.
+     */
+    private final long refreshAfterMillis;
+
+    /**
+     * Age in milliseconds after which a first page is answered from Cognito.
+     */
+    private final long maxStalenessMillis;
+
+    /**
+     * Guards {@link #table}.
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The cached users.
+     */
+    private final UserTable table;
+
+    /**
+     * Column of the {@code email} attribute in {@link #table}.
+     */
+    private final int emailColumn;
+
+    /**
+     * Column of the {@code phone_number} attribute in {@link #table}, or {@code -1}.
+     */
+    private final int phoneColumn;
+
+    /**
+     * Column of the {@code given_name} attribute in {@link #table}, or {@code -1}.
+     */
+    private final int givenNameColumn;
+
+    /**
+     * Column of the {@code family_name} attribute in {@link #table}, or {@code -1}.
+     */
+    private final int familyNameColumn;
+
+    /**
+     * Index of each cached searchable attribute, by attribute name.
+     */
+    private final Map<String, ColumnIndex> searchIndexes = new HashMap<>();
+
+    /**
+     * Start time of the last completed sweep in epoch milliseconds, or {@code 0} if none.
+     */
+    private volatile long lastRefreshMillis;
+
+    /**
+     * The sweep currently running, shared by every caller that asks for one.
+     */
+    private final AtomicReference<CompletableFuture<Void>> inFlight = new AtomicReference<>();
+
+    /**
+     * Single daemon thread running sweeps.
+     */
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-directory-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a directory.
+     *
+     * @param cognitoService the service used to reach Cognito
+     * @param enabled        whether listing is served from the directory
+     * @param attributes     the attributes to cache; must include {@code email}
+     * @param refreshAfter   age after which a read triggers a background sweep
+     * @param maxStaleness   age after which a first page is answered from Cognito
+     */
+    public UserDirectory(CognitoService cognitoService, boolean enabled, List<String> attributes,
+                         Duration refreshAfter, Duration maxStaleness) {
+        this.cognitoService = cognitoService;
+        this.enabled = enabled;
+        this.attributes = List.copyOf(attributes);
+        this.refreshAfterMillis = refreshAfter.toMillis();
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.table = new UserTable(this.attributes);
+        this.emailColumn = table.column("email");
+        this.phoneColumn = table.column("phone_number");
+        this.givenNameColumn = table.column("given_name");
+        this.familyNameColumn = table.column("family_name");
+        for (String attribute : SEARCH_FIELDS.values()) {
+            int column = table.column(attribute);
+            if (column >= 0) {
+                searchIndexes.put(attribute, switch (attribute) {
+                    case "email" -> table.hashIndex(column, UserDirectory::normalizeEmail);
+                    case "phone_number" -> table.hashIndex(column, UserDirectory::normalizePhone);
+                    default -> table.prefixIndex(column, UserDirectory::normalizeName);
+                });
+            }
+        }
+    }
+
+    /**
+     * Creates a directory configured from the {@code USER_DIRECTORY_ENABLED},
+     * {@code USER_DIRECTORY_REFRESH_AFTER_SECONDS} and
+     * {@code USER_DIRECTORY_MAX_STALENESS_SECONDS} environment variables.
+     *
+     * @param cognitoService the service used to reach Cognito
+     * @return the configured directory
+     */
+    public static UserDirectory fromEnvironment(CognitoService cognitoService) {
+        return new UserDirectory(cognitoService,
+                !"false".equalsIgnoreCase(System.getenv("USER_DIRECTORY_ENABLED")),
+                DEFAULT_ATTRIBUTES,
+                envDuration("USER_DIRECTORY_REFRESH_AFTER_SECONDS", DEFAULT_REFRESH_AFTER),
+                envDuration("USER_DIRECTORY_MAX_STALENESS_SECONDS", DEFAULT_MAX_STALENESS));
+    }
+
+    /**
+     * Streams one page of users, ordered by username, to the given sink.
+     *
+     * @param headers      request headers, expected to contain an
+     *                     {@code Authorization} token with admin privileges
+     * @param pageSize     the maximum number of users to return
+     * @param cursor       the cursor returned with the previous page, or {@code null}
+     * @param forceRefresh whether to start a sweep of Cognito and answer a first page from Cognito
+     * @param sink         receives each user of the page
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page;
+     *         it fails with a {@link RuntimeException} if the request is not authorized, with an
+     *         {@link IllegalArgumentException} if the cursor is malformed, and with a
+     *         {@link TimeoutException} if a sweep the read waits for outlasts the request's deadline
+     */
+    public CompletableFuture<String> listUsers(Map<String, String> headers, int pageSize, String cursor,
+                                               boolean forceRefresh, Consumer<UserSummary> sink) {
+        if (!enabled) {
+            return cognitoService.listUsers(headers, pageSize, cursor, sink);
+        }
+        if (isCognitoCursor(cursor)) {
+            return inCognito(cognitoService.listUsers(headers, pageSize, cursor.substring(1), sink));
+        }
+        long deadline = Deadline.current();
+        return cognitoService.requireAdmin(headers).thenCompose(Deadline.carry(ignored -> {
+            if (isFirstPage(cursor) && !isFresh(forceRefresh)) {
+                refreshAsync();
+                return inCognito(cognitoService.listUsers(headers, pageSize, null, sink));
+            }
+            return readAuthorized(pageSize, cursor, forceRefresh, deadline, sink);
+        }));
+    }
+
+    /**
+     * Streams one page of the users matching a search to the given sink.
+     * <p>
+     * {@code email} and {@code phone_number} match whole values, ignoring
+     * letter case and phone formatting, and their matches come in username
+     * order. {@code first_name} and {@code last_name} match names starting
+     * with the query, ignoring letter case, and their matches come in name
+     * then username order. An attribute the directory does not cache, or a
+     * disabled directory, is searched through {@link CognitoService#searchUsers},
+     * and so is a first page while the directory is not fresh enough to read.
+     * </p>
+     *
+     * @param headers  request headers, expected to contain an
+     *                 {@code Authorization} token with admin privileges
+     * @param field    the field searched: {@code email}, {@code phone_number}, {@code first_name}
+     *                 or {@code last_name}
+     * @param query    the value or prefix searched for
+     * @param pageSize the maximum number of users to return
+     * @param cursor   the cursor returned with the previous page, or {@code null}
+     * @param sink     receives each user of the page
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page;
+     *         it fails with a {@link RuntimeException} if the request is not authorized, with an
+     *         {@link IllegalArgumentException} if the field is unknown or the cursor is malformed, and with a
+     *         {@link TimeoutException} if a sweep the read waits for outlasts the request's deadline
+     */
+    public CompletableFuture<String> searchUsers(Map<String, String> headers, String field, String query,
+                                                 int pageSize, String cursor, Consumer<UserMatch> sink) {
+        String attribute = SEARCH_FIELDS.get(field);
+        if (attribute == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown search field: " + field));
+        }
+        ColumnIndex index = searchIndexes.get(attribute);
+        if (!enabled || index == null) {
+            return cognitoService.searchUsers(headers, attribute, isPrefixSearch(attribute), query.trim(), pageSize,
+                    cursor, sink);
+        }
+        if (isCognitoCursor(cursor)) {
+            return inCognito(cognitoService.searchUsers(headers, attribute, isPrefixSearch(attribute), query.trim(),
+                    pageSize, cursor.substring(1), sink));
+        }
+        long deadline = Deadline.current();
+        return cognitoService.requireAdmin(headers).thenCompose(Deadline.carry(ignored -> {
+            if (isFirstPage(cursor) && !isFresh(false)) {
+                refreshAsync();
+                return inCognito(cognitoService.searchUsers(headers, attribute, isPrefixSearch(attribute),
+                        query.trim(), pageSize, null, sink));
+            }
+            return searchAuthorized(index, query, pageSize, cursor, deadline, sink);
+        }));
+    }
+
+    /**
+     * Creates a user through {@link CognitoService#signup} and writes the new
+     * user into the directory once Cognito has created it.
+     *
+     * @param req     the signup request containing user attributes
+     * @param headers request headers carrying the admin token
+     * @return a future of the message returned by {@link CognitoService#signup}
+     */
+    public CompletableFuture<String> signup(SignupRequest req, Map<String, String> headers) {
+        return cognitoService.signup(req, headers).thenApply(result -> {
+            if (enabled) {
+                writeSignup(req);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Creates many users through {@link CognitoService#bulkSignup} and writes
+     * each created user into the directory as its outcome arrives.
+     *
+     * @param users   the users to create
+     * @param headers request headers carrying the admin token
+     * @param sink    receives the outcome of each user as it completes
+     * @return a future completing once every user has an outcome
+     */
+    public CompletableFuture<Void> bulkSignup(List<SignupRequest> users, Map<String, String> headers,
+                                              Consumer<SignupOutcome> sink) {
+        return cognitoService.bulkSignup(users, headers, outcome -> {
+            if (outcome.isCreated() && enabled) {
+                writeSignup(users.get(outcome.getIndex()));
+            }
+            sink.accept(outcome);
+        });
+    }
+
+    /**
+     * Confirms a signup through {@link CognitoService#confirmSignup} and marks
+     * the user as modified in the directory.
+     *
+     * @param req the confirmation request containing username and password
+     * @return a future of {@code true} if confirmation succeeds, {@code false} otherwise
+     */
+    public CompletableFuture<Boolean> confirmSignup(ConfirmSignupRequest req) {
+        return cognitoService.confirmSignup(req).thenApply(confirmed -> {
+            if (confirmed && enabled) {
+                touch(req.getUsername());
+            }
+            return confirmed;
+        });
+    }
+
+    /**
+     * Sweeps Cognito now, waiting for a sweep that is already running
+     * instead of starting a second one.
+     *
+     * @throws RuntimeException if the sweep fails
+     */
+    public void refresh() {
+        try {
+            refreshAsync().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of cached users.
+     *
+     * @return the user count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return table.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns when the last completed sweep started.
+     *
+     * @return the sweep start in epoch milliseconds, or {@code 0} if none completed
+     */
+    public long getLastRefreshMillis() {
+        return lastRefreshMillis;
+    }
+
+    /**
+     * Stops the refresher thread once any running sweep ends, for a pool no
+     * longer served.
+     */
+    public void close() {
+        refresher.shutdown();
+    }
+
+    /**
+     * Streams one page of users once the request is known to be authorized.
+     *
+     * @param pageSize     the maximum number of users to return
+     * @param cursor       the cursor returned with the previous page, or {@code null}
+     * @param forceRefresh whether to start a sweep of Cognito and answer a first page from Cognito
+     * @param deadline     the request's {@link Deadline}, captured on the request thread
+     * @param sink         receives each user of the page
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    private CompletableFuture<String> readAuthorized(int pageSize, String cursor, boolean forceRefresh,
+                                                     long deadline, Consumer<UserSummary> sink) {
+        String after = decodeCursor(cursor);
+        return whenFresh(forceRefresh, deadline, () -> readPage(after, pageSize, sink));
+    }
+
+    /**
+     * Streams one page of search matches once the request is known to be authorized.
+     *
+     * @param index    the index of the attribute searched
+     * @param query    the value or prefix searched for
+     * @param pageSize the maximum number of users to return
+     * @param cursor   the cursor returned with the previous page, or {@code null}
+     * @param deadline the request's {@link Deadline}, captured on the request thread
+     * @param sink     receives each user of the page
+     * @return a future of the cursor for the next page, or of {@code null} if this was the last page
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another search
+     */
+    private CompletableFuture<String> searchAuthorized(ColumnIndex index, String query, int pageSize,
+                                                       String cursor, long deadline, Consumer<UserMatch> sink) {
+        String key = index.key(query);
+        String after = decodeCursor(cursor);
+        String afterKey = null;
+        String afterUsername = null;
+        if (after != null) {
+            int separator = after.lastIndexOf(CURSOR_SEPARATOR);
+            afterKey = separator < 0 ? null : after.substring(0, separator);
+            afterUsername = separator < 0 ? null : after.substring(separator + 1);
+            boolean matches = index instanceof PrefixIndex ? afterKey != null && afterKey.startsWith(key)
+                    : key.equals(afterKey);
+            if (!matches) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        String continueKey = afterKey;
+        String continueAfter = afterUsername;
+        return whenFresh(false, deadline, () -> {
+            lock.readLock().lock();
+            try {
+                if (index instanceof HashIndex exact) {
+                    return exactPage(exact, key, continueAfter, pageSize, sink);
+                }
+                return prefixPage((PrefixIndex) index, key, continueKey, continueAfter, pageSize, sink);
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * Runs a read of a later page once the directory is fresh enough: at once,
+     * starting a background sweep if the data is past the refresh-after bound,
+     * or after a sweep if it is forced, the directory was never filled or the
+     * data is past the max-staleness bound. The wait ends at the request's
+     * deadline; the sweep itself runs on.
+     *
+     * @param forceRefresh whether to sweep Cognito before reading
+     * @param deadline     the request's {@link Deadline}, or {@link Deadline#NONE}
+     * @param read         the read
+     * @param <T>          the type of the read's result
+     * @return a future of the read's result, failing with a {@link TimeoutException} if the deadline passes first
+     */
+    private <T> CompletableFuture<T> whenFresh(boolean forceRefresh, long deadline, Supplier<T> read) {
+        if (isFresh(forceRefresh)) {
+            if (System.currentTimeMillis() - lastRefreshMillis > refreshAfterMillis) {
+                refreshAsync();
+            }
+            return CompletableFuture.completedFuture(read.get());
+        }
+        CompletableFuture<Void> sweep = refreshAsync().copy();
+        if (deadline != Deadline.NONE) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return CompletableFuture.failedFuture(new TimeoutException("No time left to wait for the directory"));
+            }
+            sweep.orTimeout(remaining, TimeUnit.NANOSECONDS);
+        }
+        return sweep.thenApply(ignored -> read.get());
+    }
+
+    /**
+     * Returns whether the directory may be read without a sweep first.
+     *
+     * @param forceRefresh whether the caller asked for a sweep
+     * @return {@code true} if it was filled within the max-staleness bound and no sweep was asked for
+     */
+    private boolean isFresh(boolean forceRefresh) {
+        long refreshed = lastRefreshMillis;
+        return !forceRefresh && refreshed != 0 && System.currentTimeMillis() - refreshed <= maxStalenessMillis;
+    }
+
+    /**
+     * Streams one page of the cached users, ordered by username, to the sink.
+     *
+     * @param after    the username to continue after, or {@code null} for the first page
+     * @param pageSize the maximum number of users to return
+     * @param sink     receives each user of the page
+     * @return the cursor for the next page, or {@code null} if this was the last page
+     */
+    private String readPage(String after, int pageSize, Consumer<UserSummary> sink) {
+        lock.readLock().lock();
+        try {
+            int start = table.positionAfter(after);
+            int end = Math.min(table.size(), start + pageSize);
+            for (int i = start; i < end; i++) {
+                int slot = table.sortedSlot(i);
+                String email = table.value(slot, emailColumn);
+                sink.accept(new UserSummary(table.username(slot), email == null ? "" : email));
+            }
+            return end < table.size() && end > start ? encodeCursor(table.username(table.sortedSlot(end - 1))) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of the users holding an exact key, in username order.
+     * Must be called with the read lock held.
+     *
+     * @param index         the hash index searched
+     * @param key           the normalized key
+     * @param afterUsername the username to continue after, or {@code null} for the first page
+     * @param pageSize      the maximum number of users to return
+     * @param sink          receives each user of the page
+     * @return the cursor for the next page, or {@code null} if this was the last page
+     */
+    private String exactPage(HashIndex index, String key, String afterUsername, int pageSize,
+                             Consumer<UserMatch> sink) {
+        int[] slots = index.find(key);
+        for (int i = 1; i < slots.length; i++) {
+            int slot = slots[i];
+            int j = i - 1;
+            while (j >= 0 && table.username(slots[j]).compareTo(table.username(slot)) > 0) {
+                slots[j + 1] = slots[j];
+                j--;
+            }
+            slots[j + 1] = slot;
+        }
+        int start = 0;
+        while (afterUsername != null && start < slots.length
+                && table.username(slots[start]).compareTo(afterUsername) <= 0) {
+            start++;
+        }
+        int end = Math.min(slots.length, start + pageSize);
+        for (int i = start; i < end; i++) {
+            sink.accept(matchOf(slots[i]));
+        }
+        return end < slots.length ? encodeCursor(key + CURSOR_SEPARATOR + table.username(slots[end - 1])) : null;
+    }
+
+    /**
+     * Returns one page of the users whose key starts with a prefix, in key
+     * then username order. Must be called with the read lock held.
+     *
+     * @param index         the prefix index searched
+     * @param prefix        the normalized prefix
+     * @param afterKey      the key to continue after, or {@code null} for the first page
+     * @param afterUsername the username to continue after within that key, or {@code null}
+     * @param pageSize      the maximum number of users to return
+     * @param sink          receives each user of the page
+     * @return the cursor for the next page, or {@code null} if this was the last page
+     */
+    private String prefixPage(PrefixIndex index, String prefix, String afterKey, String afterUsername,
+                              int pageSize, Consumer<UserMatch> sink) {
+        int position = afterKey == null ? index.positionAfter(prefix, null)
+                : index.positionAfter(afterKey, afterUsername);
+        int returned = 0;
+        while (position < index.size() && index.keyAt(position).startsWith(prefix)) {
+            if (returned == pageSize) {
+                return encodeCursor(index.keyAt(position - 1) + CURSOR_SEPARATOR
+                        + table.username(index.slotAt(position - 1)));
+            }
+            sink.accept(matchOf(index.slotAt(position)));
+            returned++;
+            position++;
+        }
+        return null;
+    }
+
+    /**
+     * Builds the search entry of a cached user. Must be called with the read lock held.
+     *
+     * @param slot the user's slot
+     * @return the entry
+     */
+    private UserMatch matchOf(int slot) {
+        return new UserMatch(table.username(slot), valueOf(slot, emailColumn), valueOf(slot, phoneColumn),
+                valueOf(slot, givenNameColumn), valueOf(slot, familyNameColumn));
+    }
+
+    /**
+     * Returns a cached attribute value. Must be called with the read lock held.
+     *
+     * @param slot   the user's slot
+     * @param column the attribute column, or {@code -1} if not cached
+     * @return the value, or an empty string if not set or not cached
+     */
+    private String valueOf(int slot, int column) {
+        String value = column < 0 ? null : table.value(slot, column);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Writes a newly created user into the table.
+     *
+     * @param req the signup request the user was created from
+     */
+    private void writeSignup(SignupRequest req) {
+        Map<String, String> values = CognitoService.signupAttributes(req);
+        lock.writeLock().lock();
+        try {
+            int slot = table.findOrAdd(req.getUsername());
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                int column = table.column(entry.getKey());
+                if (column >= 0) {
+                    table.setValue(slot, column, entry.getValue());
+                }
+            }
+            table.setLastModified(slot, System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a cached user as modified now, so a sweep that started earlier
+     * does not drop it.
+     *
+     * @param username the username
+     */
+    private void touch(String username) {
+        lock.writeLock().lock();
+        try {
+            int slot = table.find(username);
+            if (slot >= 0) {
+                table.setLastModified(slot, System.currentTimeMillis());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a sweep on the refresher thread unless one is already running.
+     *
+     * @return a future completing when the sweep finishes
+     */
+    private CompletableFuture<Void> refreshAsync() {
+        while (true) {
+            CompletableFuture<Void> current = inFlight.get();
+            if (current != null) {
+                return current;
+            }
+            CompletableFuture<Void> created = new CompletableFuture<>();
+            if (inFlight.compareAndSet(null, created)) {
+                refresher.execute(() -> {
+                    try {
+                        sweep();
+                        inFlight.set(null);
+                        created.complete(null);
+                    } catch (RuntimeException e) {
+                        inFlight.set(null);
+                        created.completeExceptionally(e);
+                    }
+                });
+                return created;
+            }
+        }
+    }
+
+    /**
+     * Pages through the whole pool, applying changed rows as each page arrives
+     * and dropping users that were not seen and not written through meanwhile.
+     * The first sweep leaves the indexes unordered until its last page, since
+     * no read is served before it completes.
+     */
+    private void sweep() {
+        long started = System.currentTimeMillis();
+        BitSet seen = new BitSet();
+        boolean firstFill = lastRefreshMillis == 0;
+        if (firstFill) {
+            lock.writeLock().lock();
+            try {
+                table.suspendIndexes();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        try {
+            String paginationToken = null;
+            do {
+                ListUsersResponse response = cognitoService.listUserPage(paginationToken,
+                        CognitoService.COGNITO_MAX_PAGE_SIZE, attributes);
+                lock.writeLock().lock();
+                try {
+                    for (UserType user : response.users()) {
+                        seen.set(apply(user));
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                paginationToken = response.paginationToken();
+            } while (paginationToken != null);
+        } finally {
+            if (firstFill) {
+                lock.writeLock().lock();
+                try {
+                    table.resumeIndexes();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            boolean[] keep = new boolean[table.size()];
+            for (int slot = 0; slot < keep.length; slot++) {
+                keep[slot] = seen.get(slot) || table.lastModified(slot) >= started;
+            }
+            table.retain(keep);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lastRefreshMillis = started;
+    }
+
+    /**
+     * Writes a swept user into the table if it is new or has changed,
+     * replacing the whole row so that attributes deleted in Cognito are
+     * cleared. Must be called with the write lock held.
+     *
+     * @param user the Cognito user
+     * @return the user's slot
+     */
+    private int apply(UserType user) {
+        int slot = table.findOrAdd(user.username());
+        long modified = user.userLastModifiedDate() == null ? 0 : user.userLastModifiedDate().toEpochMilli();
+        if (modified != table.lastModified(slot)) {
+            String[] row = new String[attributes.size()];
+            for (AttributeType attribute : user.attributes()) {
+                int column = table.column(attribute.name());
+                if (column >= 0) {
+                    row[column] = attribute.value();
+                }
+            }
+            for (int column = 0; column < row.length; column++) {
+                table.setValue(slot, column, row[column]);
+            }
+            table.setLastModified(slot, modified);
+        }
+        return slot;
+    }
+
+    /**
+     * Marks the cursor of a page answered from Cognito, so the next page is
+     * asked of Cognito too and the listing keeps Cognito's order.
+     *
+     * @param next a future of Cognito's cursor, or of {@code null} after the last page
+     * @return a future of the marked cursor, or of {@code null} after the last page
+     */
+    private static CompletableFuture<String> inCognito(CompletableFuture<String> next) {
+        return next.thenApply(cursor -> cursor == null ? null : COGNITO_CURSOR + cursor);
+    }
+
+    /**
+     * Returns whether a cursor continues a listing answered from Cognito.
+     *
+     * @param cursor the cursor, or {@code null}
+     * @return {@code true} if it was marked by {@link #inCognito}
+     */
+    private static boolean isCognitoCursor(String cursor) {
+        return cursor != null && !cursor.isEmpty() && cursor.charAt(0) == COGNITO_CURSOR;
+    }
+
+    /**
+     * Returns whether a cursor asks for the first page.
+     *
+     * @param cursor the cursor, or {@code null}
+     * @return {@code true} if there is no cursor
+     */
+    private static boolean isFirstPage(String cursor) {
+        return cursor == null || cursor.isEmpty();
+    }
+
+    /**
+     * Encodes the last username of a page into an opaque cursor.
+     *
+     * @param username the last username returned
+     * @return the cursor
+     */
+    private static String encodeCursor(String username) {
+        return CURSOR_ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #encodeCursor(String)}.
+     *
+     * @param cursor the cursor, or {@code null}
+     * @return the username to continue after, or {@code null} for the first page
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /**
+     * Returns whether an attribute is searched by prefix rather than by whole value.
+     *
+     * @param attribute the attribute name
+     * @return {@code true} for the name attributes
+     */
+    private static boolean isPrefixSearch(String attribute) {
+        return "given_name".equals(attribute) || "family_name".equals(attribute);
+    }
+
+    /**
+     * Normalizes an email address: trimmed and in lower case.
+     *
+     * @param email the email address
+     * @return the key
+     */
+    private static String normalizeEmail(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a phone number: only its {@code +} and digits, so spaces,
+     * dashes, dots and parentheses do not matter.
+     *
+     * @param phone the phone number
+     * @return the key
+     */
+    private static String normalizePhone(String phone) {
+        StringBuilder key = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c == '+' || (c >= '0' && c <= '9')) {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Normalizes a name: trimmed and in lower case.
+     *
+     * @param name the name
+     * @return the key
+     */
+    private static String normalizeName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Reads a duration in whole seconds from an environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value to use when the variable is unset or invalid
+     * @return the configured duration
+     */
+    private static Duration envDuration(String name, Duration fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.homieomie.authservice.services;
+
+import com.homieomie.authservice.snapshot.SnapshotWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
+
+/**
+ * Exports the whole user pool, with every attribute {@code signup} sets, to a
+ * columnar snapshot file readable with
+ * {@link com.homieomie.authservice.snapshot.UserSnapshot}.
+ * <p>
+ * The pool is paged through in segments, one per username prefix given, each
+ * listed with a {@code username ^= "prefix"} filter; up to the configured
+ * parallelism segments are listed at once, each on its own thread and one
+ * page at a time. Every segment writes its own blocks to the snapshot as they
+ * fill, so memory use stays at one page and one block per running segment
+ * whatever the size of the pool. Without prefixes the pool is listed as a
+ * single segment.
+ * </p>
+ * <p>
+ * The prefixes must between them cover the first characters of every
+ * username, since users matching none are not exported, and none may start
+ * with another, since users matching both would be exported twice. The
+ * snapshot is written next to the target and moved into place once complete,
+ * so a failed export leaves any earlier snapshot untouched.
+ * </p>
+ */
+public class UserExporter {
+
+    /**
+     * Attributes exported for every user: those a {@code signup} sets.
+     */
+    public static final List<String> ATTRIBUTES = CognitoService.SIGNUP_ATTRIBUTES;
+
+    /**
+     * Default number of segments listed at once.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * Service used to reach Cognito.
+     */
+    private final CognitoService cognitoService;
+
+    /**
+     * Largest number of segments listed at once.
+     */
+    private final int parallelism;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param cognitoService the service used to reach Cognito
+     * @param parallelism    the largest number of segments listed at once
+     */
+    public UserExporter(CognitoService cognitoService, int parallelism) {
+        this.cognitoService = cognitoService;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Creates an exporter whose parallelism is read from {@code USER_EXPORT_PARALLELISM}.
+     *
+     * @param cognitoService the service used to reach Cognito
+     * @return the exporter
+     */
+    public static UserExporter fromEnvironment(CognitoService cognitoService) {
+        String value = System.getenv("USER_EXPORT_PARALLELISM");
+        int parallelism = DEFAULT_PARALLELISM;
+        if (value != null && !value.isBlank()) {
+            try {
+                parallelism = Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                // keep the default
+            }
+        }
+        return new UserExporter(cognitoService, parallelism);
+    }
+
+    /**
+     * Exports every user to a snapshot file. Runs on the calling thread and
+     * the exporter's segment threads, and blocks until the export is done.
+     * The caller is trusted: there is no admin check beyond the IAM
+     * permissions of the credentials the Cognito client uses.
+     *
+     * @param target   the snapshot file to write
+     * @param prefixes the username prefixes segmenting the pool, or an empty list for one segment
+     * @return the number of users exported
+     * @throws IOException              if the snapshot cannot be written or the export is interrupted
+     * @throws IllegalArgumentException if the prefixes are empty strings, contain quotes or
+     *                                  backslashes, or one starts with another
+     * @throws RuntimeException         the exception Cognito failed with
+     */
+    public long export(Path target, List<String> prefixes) throws IOException {
+        List<String> filters = filtersOf(prefixes);
+        Path partial = target.resolveSibling(target.getFileName() + ".partial");
+        ExecutorService segments = Executors.newFixedThreadPool(Math.min(parallelism, filters.size()), runnable -> {
+            Thread thread = new Thread(runnable, "user-export");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean exported = false;
+        try {
+            long rows;
+            try (SnapshotWriter writer = SnapshotWriter.create(partial, ATTRIBUTES,
+                    SnapshotWriter.DEFAULT_BLOCK_ROWS)) {
+                CompletionService<Void> running = new ExecutorCompletionService<>(segments);
+                for (String filter : filters) {
+                    running.submit(() -> {
+                        exportSegment(filter, writer);
+                        return null;
+                    });
+                }
+                try {
+                    for (int i = 0; i < filters.size(); i++) {
+                        await(running);
+                    }
+                } finally {
+                    segments.shutdownNow();
+                }
+                rows = writer.rowCount();
+            }
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            exported = true;
+            return rows;
+        } finally {
+            segments.shutdownNow();
+            if (!exported) {
+                Files.deleteIfExists(partial);
+            }
+        }
+    }
+
+    /**
+     * Pages through the users matching a filter, appending each page to the snapshot.
+     *
+     * @param filter the Cognito filter, or {@code null} for every user
+     * @param writer the snapshot writer
+     * @throws IOException if the snapshot cannot be written
+     */
+    private void exportSegment(String filter, SnapshotWriter writer) throws IOException {
+        String[] values = new String[ATTRIBUTES.size()];
+        try (SnapshotWriter.Appender appender = writer.appender()) {
+            String paginationToken = null;
+            do {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("User export cancelled");
+                }
+                ListUsersResponse response = cognitoService.listUserPage(filter, paginationToken,
+                        CognitoService.COGNITO_MAX_PAGE_SIZE, ATTRIBUTES);
+                for (UserType user : response.users()) {
+                    Arrays.fill(values, null);
+                    for (AttributeType attribute : user.attributes()) {
+                        int column = ATTRIBUTES.indexOf(attribute.name());
+                        if (column >= 0) {
+                            values[column] = attribute.value();
+                        }
+                    }
+                    long modified = user.userLastModifiedDate() == null
+                            ? 0 : user.userLastModifiedDate().toEpochMilli();
+                    appender.add(user.username(), user.userStatusAsString(), modified, values);
+                }
+                paginationToken = response.paginationToken();
+            } while (paginationToken != null);
+        }
+    }
+
+    /**
+     * Waits for the next segment to finish, rethrowing its failure, so the
+     * first failing segment ends the export without waiting for the others.
+     *
+     * @param running the running segments
+     * @throws IOException if the segment failed to write or the wait was interrupted
+     */
+    private static void await(CompletionService<Void> running) throws IOException {
+        try {
+            running.take().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while exporting users");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new UncheckedIOException(new IOException("User export failed", cause));
+        }
+    }
+
+    /**
+     * Turns username prefixes into Cognito filters, checking they do not overlap.
+     *
+     * @param prefixes the username prefixes
+     * @return the filters, or a single {@code null} filter for an empty list
+     * @throws IllegalArgumentException if a prefix is invalid or starts with another
+     */
+    private static List<String> filtersOf(List<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            return Collections.singletonList(null);
+        }
+        List<String> filters = new ArrayList<>(prefixes.size());
+        for (int i = 0; i < prefixes.size(); i++) {
+            String prefix = prefixes.get(i);
+            if (prefix.isEmpty() || prefix.indexOf('"') >= 0 || prefix.indexOf('\\') >= 0) {
+                throw new IllegalArgumentException("Invalid username prefix: " + prefix);
+            }
+            for (int j = 0; j < prefixes.size(); j++) {
+                String other = prefixes.get(j);
+                if (i != j && prefix.startsWith(other)) {
+                    throw new IllegalArgumentException("Username prefix " + prefix + " overlaps " + other);
+                }
+            }
+            filters.add("username ^= \"" + prefix + "\"");
+        }
+        return filters;
+    }
+}
@@ -0,0 +1,416 @@
+package com.homieomie.authservice.services;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compact columnar table of users backing the {@link UserDirectory}.
+ * <p>
+ * Each user occupies one slot in a set of parallel arrays: one column of
+ * usernames, one column per cached attribute and one column of last-modified
+ * timestamps. Attribute names are stored once per table rather than once per
+ * user, and usernames are located through an open-addressing {@code int} index
+ * instead of a boxed map. Attribute columns can carry a {@link ColumnIndex},
+ * which the table keeps current as values are stored and rows dropped, and
+ * the slots are kept in username order the same way, so reads only look
+ * structures up. The table is not thread-safe; {@link UserDirectory} guards
+ * it with a read-write lock, making every change under the write lock.
+ * </p>
+ */
+final class UserTable {
+
+    /**
+     * Initial slot capacity.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Interned names of the cached attributes, in column order.
+     */
+    private final String[] attributeNames;
+
+    /**
+     * Username of each slot.
+     */
+    private String[] usernames;
+
+    /**
+     * Attribute values, indexed by column then slot.
+     */
+    private final String[][] values;
+
+    /**
+     * Secondary index of each attribute column, {@code null} where the column is not indexed.
+     */
+    private final ColumnIndex[] indexes;
+
+    /**
+     * Cognito {@code UserLastModifiedDate} of each slot, in epoch milliseconds.
+     */
+    private long[] lastModified;
+
+    /**
+     * Open-addressing hash index holding {@code slot + 1}, or {@code 0} when empty.
+     */
+    private int[] index;
+
+    /**
+     * Number of occupied slots.
+     */
+    private int size;
+
+    /**
+     * Slots ordered by username; the first {@link #size} entries are in use.
+     */
+    private int[] sortedSlots;
+
+    /**
+     * Whether {@link #sortedSlots} is left unordered until {@link #resumeIndexes()}.
+     */
+    private boolean orderSuspended;
+
+    /**
+     * Creates an empty table caching the given attributes.
+     *
+     * @param attributes the names of the attributes to store per user
+     */
+    UserTable(List<String> attributes) {
+        this.attributeNames = new String[attributes.size()];
+        for (int i = 0; i < attributeNames.length; i++) {
+            attributeNames[i] = attributes.get(i).intern();
+        }
+        this.usernames = new String[INITIAL_CAPACITY];
+        this.values = new String[attributeNames.length][INITIAL_CAPACITY];
+        this.indexes = new ColumnIndex[attributeNames.length];
+        this.lastModified = new long[INITIAL_CAPACITY];
+        this.index = new int[INITIAL_CAPACITY * 2];
+        this.sortedSlots = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the number of users in the table.
+     *
+     * @return the user count
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the column of the given attribute.
+     *
+     * @param attribute the attribute name
+     * @return the column index, or {@code -1} if the attribute is not cached
+     */
+    int column(String attribute) {
+        for (int i = 0; i < attributeNames.length; i++) {
+            if (attributeNames[i].equals(attribute)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds an exact-match index to a column, indexing the rows already stored.
+     *
+     * @param column     the attribute column
+     * @param normalizer turns a value into its key
+     * @return the index, kept current by the table from now on
+     */
+    HashIndex hashIndex(int column, UnaryOperator<String> normalizer) {
+        return register(column, new HashIndex(normalizer, usernames.length));
+    }
+
+    /**
+     * Adds a prefix index to a column, indexing the rows already stored.
+     *
+     * @param column     the attribute column
+     * @param normalizer turns a value into its key
+     * @return the index, kept current by the table from now on
+     */
+    PrefixIndex prefixIndex(int column, UnaryOperator<String> normalizer) {
+        return register(column, new PrefixIndex(normalizer, this::username, usernames.length));
+    }
+
+    /**
+     * Stops keeping the column indexes and the username order current on
+     * every change, for loading many rows at once. Neither may be read until
+     * {@link #resumeIndexes()}.
+     */
+    void suspendIndexes() {
+        orderSuspended = true;
+        for (ColumnIndex columnIndex : indexes) {
+            if (columnIndex != null) {
+                columnIndex.suspend();
+            }
+        }
+    }
+
+    /**
+     * Brings the column indexes and the username order up to date after
+     * {@link #suspendIndexes()}.
+     */
+    void resumeIndexes() {
+        for (ColumnIndex columnIndex : indexes) {
+            if (columnIndex != null) {
+                columnIndex.resume();
+            }
+        }
+        if (orderSuspended) {
+            orderSuspended = false;
+            sortSlots();
+        }
+    }
+
+    /**
+     * Returns the slot of a user.
+     *
+     * @param username the username
+     * @return the slot, or {@code -1} if the user is not in the table
+     */
+    int find(String username) {
+        int mask = index.length - 1;
+        for (int i = username.hashCode() & mask; ; i = (i + 1) & mask) {
+            int entry = index[i];
+            if (entry == 0) {
+                return -1;
+            }
+            if (usernames[entry - 1].equals(username)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot of a user, adding an empty row if the user is new.
+     *
+     * @param username the username
+     * @return the user's slot
+     */
+    int findOrAdd(String username) {
+        int slot = find(username);
+        if (slot >= 0) {
+            return slot;
+        }
+        if (size == usernames.length) {
+            grow();
+        }
+        slot = size;
+        usernames[slot] = username;
+        insertIndex(slot);
+        if (orderSuspended) {
+            sortedSlots[slot] = slot;
+        } else {
+            int position = positionAfter(username);
+            System.arraycopy(sortedSlots, position, sortedSlots, position + 1, size - position);
+            sortedSlots[position] = slot;
+        }
+        size++;
+        return slot;
+    }
+
+    /**
+     * Returns the username stored in a slot.
+     *
+     * @param slot the slot
+     * @return the username
+     */
+    String username(int slot) {
+        return usernames[slot];
+    }
+
+    /**
+     * Returns an attribute value stored in a slot.
+     *
+     * @param slot   the slot
+     * @param column the attribute column
+     * @return the value, or {@code null} if not set
+     */
+    String value(int slot, int column) {
+        return values[column][slot];
+    }
+
+    /**
+     * Stores an attribute value in a slot.
+     *
+     * @param slot   the slot
+     * @param column the attribute column
+     * @param value  the value
+     */
+    void setValue(int slot, int column, String value) {
+        values[column][slot] = value;
+        if (indexes[column] != null) {
+            indexes[column].put(slot, value);
+        }
+    }
+
+    /**
+     * Returns the last-modified timestamp of a slot.
+     *
+     * @param slot the slot
+     * @return the timestamp in epoch milliseconds
+     */
+    long lastModified(int slot) {
+        return lastModified[slot];
+    }
+
+    /**
+     * Stores the last-modified timestamp of a slot.
+     *
+     * @param slot      the slot
+     * @param timestamp the timestamp in epoch milliseconds
+     */
+    void setLastModified(int slot, long timestamp) {
+        lastModified[slot] = timestamp;
+    }
+
+    /**
+     * Drops every slot whose flag is not set, compacting the remaining rows.
+     *
+     * @param keep per-slot flags; must cover at least {@link #size()} slots
+     */
+    void retain(boolean[] keep) {
+        int[] renumbered = new int[size];
+        int target = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (!keep[slot]) {
+                continue;
+            }
+            renumbered[slot] = target;
+            if (target != slot) {
+                usernames[target] = usernames[slot];
+                lastModified[target] = lastModified[slot];
+                for (String[] column : values) {
+                    column[target] = column[slot];
+                }
+            }
+            target++;
+        }
+        Arrays.fill(usernames, target, size, null);
+        for (String[] column : values) {
+            Arrays.fill(column, target, size, null);
+        }
+        if (target != size) {
+            for (ColumnIndex columnIndex : indexes) {
+                if (columnIndex != null) {
+                    columnIndex.retain(keep, size);
+                }
+            }
+            int position = 0;
+            for (int i = 0; i < size; i++) {
+                int slot = sortedSlots[i];
+                if (keep[slot]) {
+                    sortedSlots[position++] = renumbered[slot];
+                }
+            }
+            size = target;
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * Returns the position in username order of the first user whose name
+     * sorts after the given one.
+     *
+     * @param after the username to start after, or {@code null} for the start
+     * @return the position, between {@code 0} and {@link #size()}
+     */
+    int positionAfter(String after) {
+        if (after == null) {
+            return 0;
+        }
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (usernames[sortedSlots[mid]].compareTo(after) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the slot at a position in username order.
+     *
+     * @param position the position, below {@link #size()}
+     * @return the slot
+     */
+    int sortedSlot(int position) {
+        return sortedSlots[position];
+    }
+
+    /**
+     * Installs an index on a column and feeds it the column's stored values.
+     *
+     * @param column      the attribute column
+     * @param columnIndex the index
+     * @param <T>         the type of index
+     * @return the index
+     */
+    private <T extends ColumnIndex> T register(int column, T columnIndex) {
+        for (int slot = 0; slot < size; slot++) {
+            columnIndex.put(slot, values[column][slot]);
+        }
+        indexes[column] = columnIndex;
+        return columnIndex;
+    }
+
+    /**
+     * Orders every slot by username at once: the usernames are sorted as they
+     * are, then each is mapped back to its slot through the hash index.
+     */
+    private void sortSlots() {
+        String[] sorted = Arrays.copyOf(usernames, size);
+        Arrays.sort(sorted);
+        for (int i = 0; i < size; i++) {
+            sortedSlots[i] = find(sorted[i]);
+        }
+    }
+
+    /**
+     * Doubles the capacity of every column and of the index.
+     */
+    private void grow() {
+        int capacity = usernames.length * 2;
+        usernames = Arrays.copyOf(usernames, capacity);
+        lastModified = Arrays.copyOf(lastModified, capacity);
+        sortedSlots = Arrays.copyOf(sortedSlots, capacity);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Arrays.copyOf(values[i], capacity);
+            if (indexes[i] != null) {
+                indexes[i].grow(capacity);
+            }
+        }
+        index = new int[capacity * 2];
+        rebuildIndex();
+    }
+
+    /**
+     * Recomputes the hash index from the username column.
+     */
+    private void rebuildIndex() {
+        Arrays.fill(index, 0);
+        for (int slot = 0; slot < size; slot++) {
+            insertIndex(slot);
+        }
+    }
+
+    /**
+     * Adds a slot to the hash index.
+     *
+     * @param slot the slot whose username should be indexed
+     */
+    private void insertIndex(int slot) {
+        int mask = index.length - 1;
+        int i = usernames[slot].hashCode() & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = slot + 1;
+    }
+}
@@ -0,0 +1,161 @@
+package com.homieomie.authservice.snapshot;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Differences between two snapshots of the same pool, by username.
+ * <p>
+ * The earlier snapshot is read once into a map of username to a 64-bit hash
+ * of the user's status and attributes; the later one is then scanned against
+ * it. A user is changed when that hash differs, so a new last-modified time
+ * alone, such as after a password change, does not count. Memory use grows
+ * with the earlier snapshot's user count, at one entry per user.
+ * </p>
+ */
+public final class SnapshotDiff {
+
+    /**
+     * Kind of difference.
+     */
+    public enum Change {
+
+        /**
+         * In the later snapshot only.
+         */
+        ADDED,
+
+        /**
+         * In the earlier snapshot only.
+         */
+        REMOVED,
+
+        /**
+         * In both, with a different status or attribute.
+         */
+        CHANGED
+    }
+
+    /**
+     * Number of users in the later snapshot only.
+     */
+    private long added;
+
+    /**
+     * Number of users in the earlier snapshot only.
+     */
+    private long removed;
+
+    /**
+     * Number of users in both with a different status or attribute.
+     */
+    private long changed;
+
+    /**
+     * Number of users in both with the same status and attributes.
+     */
+    private long unchanged;
+
+    /**
+     * Not instantiable outside {@link #compare}.
+     */
+    private SnapshotDiff() {}
+
+    /**
+     * Compares two snapshots, handing each difference to a sink: added and
+     * changed users in the later snapshot's order, then removed users.
+     *
+     * @param before the earlier snapshot
+     * @param after  the later snapshot
+     * @param sink   receives the kind of each difference and its username
+     * @return the counts of each kind
+     * @throws IOException if a snapshot cannot be read
+     */
+    public static SnapshotDiff compare(UserSnapshot before, UserSnapshot after, BiConsumer<Change, String> sink)
+            throws IOException {
+        List<String> compared = before.columns();
+        Map<String, Long> earlier = new HashMap<>();
+        before.scan(row -> earlier.put(row.username(), hash(row, compared)));
+
+        SnapshotDiff diff = new SnapshotDiff();
+        after.scan(row -> {
+            Long previous = earlier.remove(row.username());
+            if (previous == null) {
+                diff.added++;
+                sink.accept(Change.ADDED, row.username());
+            } else if (previous != hash(row, compared)) {
+                diff.changed++;
+                sink.accept(Change.CHANGED, row.username());
+            } else {
+                diff.unchanged++;
+            }
+        });
+        for (String username : earlier.keySet()) {
+            diff.removed++;
+            sink.accept(Change.REMOVED, username);
+        }
+        return diff;
+    }
+
+    /**
+     * Returns the number of users in the later snapshot only.
+     *
+     * @return the added count
+     */
+    public long added() {
+        return added;
+    }
+
+    /**
+     * Returns the number of users in the earlier snapshot only.
+     *
+     * @return the removed count
+     */
+    public long removed() {
+        return removed;
+    }
+
+    /**
+     * Returns the number of users in both with a different status or attribute.
+     *
+     * @return the changed count
+     */
+    public long changed() {
+        return changed;
+    }
+
+    /**
+     * Returns the number of users in both with the same status and attributes.
+     *
+     * @return the unchanged count
+     */
+    public long unchanged() {
+        return unchanged;
+    }
+
+    /**
+     * Hashes a user's status and attributes with 64-bit FNV-1a.
+     *
+     * @param row     the user
+     * @param columns the columns hashed, by name; {@code username} and {@code lastModified} are skipped
+     * @return the hash
+     */
+    private static long hash(SnapshotRow row, List<String> columns) {
+        long hash = 0xcbf29ce484222325L;
+        for (String column : columns) {
+            if (SnapshotFormat.USERNAME.equals(column) || SnapshotFormat.LAST_MODIFIED.equals(column)) {
+                continue;
+            }
+            String value = row.value(column);
+            int length = value == null ? -1 : value.length();
+            hash = (hash ^ length) * 0x100000001b3L;
+            for (int i = 0; i < length; i++) {
+                hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,191 @@
+package com.homieomie.authservice.snapshot;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of a user snapshot file, shared by {@link SnapshotWriter} and
+ * {@link UserSnapshot}.
+ * <p>
+ * A snapshot is a header, a sequence of blocks and a footer, all big-endian:
+ * </p>
+ * <ul>
+ *   <li>header: magic, version, creation time, then each column's type and name;</li>
+ *   <li>block: its length in bytes after the length itself, its row count, then
+ *       each column as its raw length, its deflated length and the deflated bytes;</li>
+ *   <li>footer: the total row count, the block count and the magic again.</li>
+ * </ul>
+ * <p>
+ * Within a block a text column holds, per row, the UTF-8 length plus one as
+ * a varint ({@code 0} for a missing value) followed by the bytes; a number
+ * column holds zig-zag varint deltas from the previous row. A file without a
+ * footer was not completely written.
+ * </p>
+ */
+final class SnapshotFormat {
+
+    /**
+     * Magic number opening the header and closing the footer, {@code "USNP"}.
+     */
+    static final int MAGIC = 0x55534E50;
+
+    /**
+     * Version of the layout.
+     */
+    static final short VERSION = 1;
+
+    /**
+     * Type of a column of text values.
+     */
+    static final byte TEXT = 0;
+
+    /**
+     * Type of a column of whole numbers.
+     */
+    static final byte NUMBER = 1;
+
+    /**
+     * Size of the footer in bytes.
+     */
+    static final int FOOTER_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    /**
+     * Name of the username column, always the first.
+     */
+    static final String USERNAME = "username";
+
+    /**
+     * Name of the Cognito account status column, always the second.
+     */
+    static final String STATUS = "status";
+
+    /**
+     * Name of the last-modified column in epoch milliseconds, always the third.
+     */
+    static final String LAST_MODIFIED = "lastModified";
+
+    /**
+     * Number of columns that precede the attribute columns.
+     */
+    static final int FIXED_COLUMNS = 3;
+
+    /**
+     * Not instantiable.
+     */
+    private SnapshotFormat() {}
+
+    /**
+     * Reads an unsigned varint.
+     *
+     * @param in the buffer, positioned at the varint
+     * @return the value
+     */
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Growable byte buffer encoding one column of a block.
+     */
+    static final class ColumnBuffer {
+
+        /**
+         * Encoded bytes.
+         */
+        private byte[] bytes = new byte[1024];
+
+        /**
+         * Number of bytes used.
+         */
+        private int length;
+
+        /**
+         * Appends an unsigned varint.
+         *
+         * @param value the value, treated as unsigned
+         */
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        /**
+         * Appends a signed value as a zig-zag varint.
+         *
+         * @param value the value
+         */
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * Appends raw bytes.
+         *
+         * @param data the bytes
+         */
+        void write(byte[] data) {
+            write(data, 0, data.length);
+        }
+
+        /**
+         * Appends part of an array.
+         *
+         * @param data   the array
+         * @param offset the index of the first byte
+         * @param count  the number of bytes
+         */
+        void write(byte[] data, int offset, int count) {
+            ensure(count);
+            System.arraycopy(data, offset, bytes, length, count);
+            length += count;
+        }
+
+        /**
+         * Returns the backing array; only the first {@link #length()} bytes are used.
+         *
+         * @return the backing array
+         */
+        byte[] array() {
+            return bytes;
+        }
+
+        /**
+         * Returns the number of bytes used.
+         *
+         * @return the encoded length
+         */
+        int length() {
+            return length;
+        }
+
+        /**
+         * Empties the buffer, keeping its capacity.
+         */
+        void clear() {
+            length = 0;
+        }
+
+        /**
+         * Grows the backing array to fit more bytes.
+         *
+         * @param extra the number of bytes about to be written
+         */
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.homieomie.authservice.snapshot;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One user read from a {@link UserSnapshot}.
+ */
+public final class SnapshotRow {
+
+    /**
+     * Names of the text columns, in the order of {@link #values}.
+     */
+    private final List<String> textColumns;
+
+    /**
+     * Text values, {@code null} where missing.
+     */
+    private final String[] values;
+
+    /**
+     * Last modification in epoch milliseconds, {@code 0} if unknown.
+     */
+    private final long lastModifiedMillis;
+
+    /**
+     * Creates a row.
+     *
+     * @param textColumns        the names of the text columns
+     * @param values             the text values in column order
+     * @param lastModifiedMillis the last modification in epoch milliseconds
+     */
+    SnapshotRow(List<String> textColumns, String[] values, long lastModifiedMillis) {
+        this.textColumns = textColumns;
+        this.values = values;
+        this.lastModifiedMillis = lastModifiedMillis;
+    }
+
+    /**
+     * Returns the username.
+     *
+     * @return the username
+     */
+    public String username() {
+        return values[0];
+    }
+
+    /**
+     * Returns the Cognito account status, such as {@code CONFIRMED}.
+     *
+     * @return the status, or {@code null} if unknown
+     */
+    public String status() {
+        return values[1];
+    }
+
+    /**
+     * Returns when the user was last modified in Cognito.
+     *
+     * @return the epoch milliseconds, or {@code 0} if unknown
+     */
+    public long lastModifiedMillis() {
+        return lastModifiedMillis;
+    }
+
+    /**
+     * Returns the value of a text column, such as {@code email}.
+     *
+     * @param column the column name
+     * @return the value, or {@code null} if missing or if the snapshot has no such column
+     */
+    public String value(String column) {
+        int index = textColumns.indexOf(column);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Returns the attributes of the user, without the username and status.
+     *
+     * @return attribute name to value, in column order, without missing values
+     */
+    public Map<String, String> attributes() {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (int i = 2; i < values.length; i++) {
+            if (values[i] != null) {
+                attributes.put(textColumns.get(i), values[i]);
+            }
+        }
+        return attributes;
+    }
+}
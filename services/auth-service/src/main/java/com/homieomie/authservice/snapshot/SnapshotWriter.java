@@ -0,0 +1,343 @@
+package com.homieomie.authservice.snapshot;
+
+import com.homieomie.authservice.snapshot.SnapshotFormat.ColumnBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes users to a columnar, deflate-compressed snapshot file through a
+ * {@link FileChannel}; see {@link SnapshotFormat} for the layout.
+ * <p>
+ * Rows are added through {@link Appender}s, one per producing thread, each
+ * collecting up to a block of rows column by column. A full block is
+ * compressed column by column and appended to the file under the writer's
+ * lock, so blocks from several appenders interleave and the rows of a
+ * snapshot are in no particular order. Memory use is one block per appender,
+ * whatever the number of rows written.
+ * </p>
+ */
+public final class SnapshotWriter implements Closeable {
+
+    /**
+     * Default number of rows per block.
+     */
+    public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+    /**
+     * Channel the snapshot is written to.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Names of the attribute columns, after the fixed columns.
+     */
+    private final List<String> attributes;
+
+    /**
+     * Largest number of rows per block.
+     */
+    private final int blockRows;
+
+    /**
+     * Rows written so far; guarded by this writer.
+     */
+    private long rowCount;
+
+    /**
+     * Blocks written so far; guarded by this writer.
+     */
+    private long blockCount;
+
+    /**
+     * Whether the footer has been written; guarded by this writer.
+     */
+    private boolean closed;
+
+    /**
+     * Creates a writer over an open channel.
+     *
+     * @param channel    the channel, positioned after the header
+     * @param attributes the names of the attribute columns
+     * @param blockRows  the largest number of rows per block
+     */
+    private SnapshotWriter(FileChannel channel, List<String> attributes, int blockRows) {
+        this.channel = channel;
+        this.attributes = attributes;
+        this.blockRows = blockRows;
+    }
+
+    /**
+     * Creates or truncates a snapshot file and writes its header.
+     *
+     * @param path       the file to write
+     * @param attributes the names of the attribute columns, after {@code username},
+     *                   {@code status} and {@code lastModified}
+     * @param blockRows  the largest number of rows per block
+     * @return the writer
+     * @throws IOException if the file cannot be created
+     */
+    public static SnapshotWriter create(Path path, List<String> attributes, int blockRows) throws IOException {
+        if (blockRows <= 0) {
+            throw new IllegalArgumentException("blockRows must be positive");
+        }
+        List<String> names = new ArrayList<>(List.of(
+                SnapshotFormat.USERNAME, SnapshotFormat.STATUS, SnapshotFormat.LAST_MODIFIED));
+        names.addAll(attributes);
+        ColumnBuffer header = new ColumnBuffer();
+        ByteBuffer fixed = ByteBuffer.allocate(Integer.BYTES + Short.BYTES + Long.BYTES + Short.BYTES)
+                .putInt(SnapshotFormat.MAGIC)
+                .putShort(SnapshotFormat.VERSION)
+                .putLong(System.currentTimeMillis())
+                .putShort((short) names.size());
+        header.write(fixed.array());
+        for (int i = 0; i < names.size(); i++) {
+            byte[] name = names.get(i).getBytes(StandardCharsets.UTF_8);
+            byte type = i == 2 ? SnapshotFormat.NUMBER : SnapshotFormat.TEXT;
+            header.write(ByteBuffer.allocate(1 + Short.BYTES).put(type).putShort((short) name.length).array());
+            header.write(name);
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            writeFully(channel, ByteBuffer.wrap(header.array(), 0, header.length()));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new SnapshotWriter(channel, List.copyOf(attributes), blockRows);
+    }
+
+    /**
+     * Creates an appender collecting rows for this writer. An appender is
+     * used by one thread at a time and must be closed to write its last block.
+     *
+     * @return the appender
+     */
+    public Appender appender() {
+        return new Appender();
+    }
+
+    /**
+     * Returns the number of rows written so far.
+     *
+     * @return the row count
+     */
+    public synchronized long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of blocks written so far.
+     *
+     * @return the block count
+     */
+    public synchronized long blockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Writes the footer, flushes the file to disk and closes it. Rows still
+     * held by unclosed appenders are not written.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try (channel) {
+            ByteBuffer footer = ByteBuffer.allocate(SnapshotFormat.FOOTER_BYTES)
+                    .putLong(rowCount)
+                    .putLong(blockCount)
+                    .putInt(SnapshotFormat.MAGIC)
+                    .flip();
+            writeFully(channel, footer);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Appends an encoded block to the file.
+     *
+     * @param block the block, from its length to its last column
+     * @param rows  the number of rows it holds
+     * @throws IOException if the file cannot be written or the writer is closed
+     */
+    private synchronized void writeBlock(ByteBuffer block, int rows) throws IOException {
+        if (closed) {
+            throw new IOException("Snapshot writer is closed");
+        }
+        writeFully(channel, block);
+        rowCount += rows;
+        blockCount++;
+    }
+
+    /**
+     * Writes a whole buffer to a channel.
+     *
+     * @param channel the channel
+     * @param buffer  the bytes to write
+     * @throws IOException if the channel fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Collects rows of one producer into blocks. Not thread-safe.
+     */
+    public final class Appender implements Closeable {
+
+        /**
+         * Encoded columns of the block being collected.
+         */
+        private final ColumnBuffer[] columns;
+
+        /**
+         * Compressor reused for every column of every block.
+         */
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+
+        /**
+         * Block assembled for writing.
+         */
+        private final ColumnBuffer block = new ColumnBuffer();
+
+        /**
+         * Compressed bytes of the column being deflated.
+         */
+        private byte[] compressed = new byte[4096];
+
+        /**
+         * Rows in the block being collected.
+         */
+        private int rows;
+
+        /**
+         * Last-modified time of the previous row of the block, for delta encoding.
+         */
+        private long previousModified;
+
+        /**
+         * Creates an appender with one buffer per column.
+         */
+        private Appender() {
+            this.columns = new ColumnBuffer[SnapshotFormat.FIXED_COLUMNS + attributes.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new ColumnBuffer();
+            }
+        }
+
+        /**
+         * Adds a row, writing the block once it is full.
+         *
+         * @param username           the username
+         * @param status             the Cognito account status, possibly {@code null}
+         * @param lastModifiedMillis the last modification in epoch milliseconds, {@code 0} if unknown
+         * @param values             the attribute values in column order; missing or {@code null}
+         *                           entries are stored as missing
+         * @throws IOException if a full block cannot be written
+         */
+        public void add(String username, String status, long lastModifiedMillis, String... values)
+                throws IOException {
+            writeText(columns[0], username);
+            writeText(columns[1], status);
+            columns[2].writeZigZag(lastModifiedMillis - previousModified);
+            previousModified = lastModifiedMillis;
+            for (int i = 0; i < attributes.size(); i++) {
+                writeText(columns[SnapshotFormat.FIXED_COLUMNS + i], i < values.length ? values[i] : null);
+            }
+            if (++rows == blockRows) {
+                flush();
+            }
+        }
+
+        /**
+         * Compresses and writes the rows collected so far, if any.
+         *
+         * @throws IOException if the block cannot be written
+         */
+        public void flush() throws IOException {
+            if (rows == 0) {
+                return;
+            }
+            block.clear();
+            block.write(new byte[Integer.BYTES + Integer.BYTES]);
+            for (ColumnBuffer column : columns) {
+                int stored = deflate(column);
+                block.write(ByteBuffer.allocate(Integer.BYTES * 2).putInt(column.length()).putInt(stored).array());
+                block.write(compressed, 0, stored);
+                column.clear();
+            }
+            ByteBuffer encoded = ByteBuffer.wrap(block.array(), 0, block.length());
+            encoded.putInt(0, block.length() - Integer.BYTES).putInt(Integer.BYTES, rows);
+            writeBlock(encoded, rows);
+            rows = 0;
+            previousModified = 0;
+        }
+
+        /**
+         * Writes the last block and releases the compressor.
+         *
+         * @throws IOException if the block cannot be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        /**
+         * Compresses a column into {@link #compressed}.
+         *
+         * @param column the encoded column
+         * @return the number of compressed bytes
+         */
+        private int deflate(ColumnBuffer column) {
+            deflater.reset();
+            deflater.setInput(column.array(), 0, column.length());
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            return length;
+        }
+
+        /**
+         * Appends a text value to a column.
+         *
+         * @param column the column
+         * @param value  the value, or {@code null} if missing
+         */
+        private void writeText(ColumnBuffer column, String value) {
+            if (value == null) {
+                column.writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            column.writeVarLong(bytes.length + 1L);
+            column.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package com.homieomie.authservice.snapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only view of a snapshot written by {@link SnapshotWriter}, with its
+ * blocks memory-mapped.
+ * <p>
+ * Opening a snapshot checks its header and footer and locates its blocks;
+ * each block is mapped the first time it is read and decompressed column by
+ * column, so a query over one column, such as {@link #count}, inflates only
+ * that column, and {@link #select} inflates the others only for blocks with a
+ * match. A snapshot is read by one thread at a time.
+ * </p>
+ */
+public final class UserSnapshot implements Closeable {
+
+    /**
+     * Channel the blocks are mapped from.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Names of all columns, in file order.
+     */
+    private final List<String> columns;
+
+    /**
+     * Names of the text columns, in file order.
+     */
+    private final List<String> textColumns;
+
+    /**
+     * Index of each column among the text columns, or {@code -1} for the number column.
+     */
+    private final int[] textIndex;
+
+    /**
+     * When the snapshot was started, in epoch milliseconds.
+     */
+    private final long createdAtMillis;
+
+    /**
+     * Number of rows, from the footer.
+     */
+    private final long rowCount;
+
+    /**
+     * File offset of each block's contents, after its length.
+     */
+    private final long[] blockOffsets;
+
+    /**
+     * Length of each block's contents.
+     */
+    private final int[] blockLengths;
+
+    /**
+     * Blocks mapped so far.
+     */
+    private final MappedByteBuffer[] mapped;
+
+    /**
+     * Decompressor reused for every column.
+     */
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * Creates a view over a checked snapshot.
+     *
+     * @param channel         the open channel
+     * @param columns         the names of all columns
+     * @param textIndex       the index of each column among the text columns
+     * @param createdAtMillis when the snapshot was started
+     * @param rowCount        the number of rows
+     * @param blockOffsets    the file offset of each block's contents
+     * @param blockLengths    the length of each block's contents
+     */
+    private UserSnapshot(FileChannel channel, List<String> columns, int[] textIndex, long createdAtMillis,
+                         long rowCount, long[] blockOffsets, int[] blockLengths) {
+        this.channel = channel;
+        this.columns = columns;
+        this.textIndex = textIndex;
+        List<String> text = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (textIndex[i] >= 0) {
+                text.add(columns.get(i));
+            }
+        }
+        this.textColumns = List.copyOf(text);
+        this.createdAtMillis = createdAtMillis;
+        this.rowCount = rowCount;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.mapped = new MappedByteBuffer[blockOffsets.length];
+    }
+
+    /**
+     * Opens a snapshot.
+     *
+     * @param path the snapshot file
+     * @return the view
+     * @throws IOException if the file cannot be read, is not a snapshot or was not completely written
+     */
+    public static UserSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return readLayout(channel, path);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the names of all columns: {@code username}, {@code status},
+     * {@code lastModified}, then the attributes.
+     *
+     * @return the column names
+     */
+    public List<String> columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of users in the snapshot.
+     *
+     * @return the row count
+     */
+    public long rowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of blocks in the snapshot.
+     *
+     * @return the block count
+     */
+    public int blockCount() {
+        return blockOffsets.length;
+    }
+
+    /**
+     * Returns when the snapshot was started.
+     *
+     * @return the epoch milliseconds
+     */
+    public long createdAtMillis() {
+        return createdAtMillis;
+    }
+
+    /**
+     * Hands every user to a sink, in file order.
+     *
+     * @param sink receives each user
+     * @throws IOException if a block cannot be read
+     */
+    public void scan(Consumer<SnapshotRow> sink) throws IOException {
+        for (int b = 0; b < blockOffsets.length; b++) {
+            Block block = block(b);
+            String[][] text = block.allText();
+            long[] modified = block.numbers(SnapshotFormat.FIXED_COLUMNS - 1);
+            for (int row = 0; row < block.rows; row++) {
+                sink.accept(row(text, modified, row));
+            }
+        }
+    }
+
+    /**
+     * Counts the users whose value of a text column passes a test, reading only that column.
+     *
+     * @param column the text column, such as {@code email}
+     * @param test   the test, given {@code null} for missing values
+     * @return the number of users that passed
+     * @throws IOException              if a block cannot be read
+     * @throws IllegalArgumentException if there is no such text column
+     */
+    public long count(String column, Predicate<String> test) throws IOException {
+        int index = textColumn(column);
+        long count = 0;
+        for (int b = 0; b < blockOffsets.length; b++) {
+            for (String value : block(b).text(index)) {
+                if (test.test(value)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Hands the users whose value of a text column passes a test to a sink.
+     *
+     * @param column the text column, such as {@code email}
+     * @param test   the test, given {@code null} for missing values
+     * @param sink   receives each user that passed
+     * @throws IOException              if a block cannot be read
+     * @throws IllegalArgumentException if there is no such text column
+     */
+    public void select(String column, Predicate<String> test, Consumer<SnapshotRow> sink) throws IOException {
+        visit(textColumn(column), test, sink, false);
+    }
+
+    /**
+     * Finds a user by username.
+     *
+     * @param username the username
+     * @return the user, or {@code null} if the snapshot does not hold it
+     * @throws IOException if a block cannot be read
+     */
+    public SnapshotRow find(String username) throws IOException {
+        SnapshotRow[] found = new SnapshotRow[1];
+        visit(0, username::equals, row -> found[0] = row, true);
+        return found[0];
+    }
+
+    /**
+     * Closes the file and releases the decompressor; mapped blocks are
+     * unmapped once they are garbage-collected.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        Arrays.fill(mapped, null);
+        channel.close();
+    }
+
+    /**
+     * Hands the users whose value of a text column passes a test to a sink.
+     *
+     * @param index     the index of the text column
+     * @param test      the test
+     * @param sink      receives each user that passed
+     * @param firstOnly whether to stop after the first user that passed
+     * @throws IOException if a block cannot be read
+     */
+    private void visit(int index, Predicate<String> test, Consumer<SnapshotRow> sink, boolean firstOnly)
+            throws IOException {
+        for (int b = 0; b < blockOffsets.length; b++) {
+            Block block = block(b);
+            String[] values = block.text(index);
+            String[][] text = null;
+            long[] modified = null;
+            for (int row = 0; row < block.rows; row++) {
+                if (!test.test(values[row])) {
+                    continue;
+                }
+                if (text == null) {
+                    text = block.allText();
+                    modified = block.numbers(SnapshotFormat.FIXED_COLUMNS - 1);
+                }
+                sink.accept(row(text, modified, row));
+                if (firstOnly) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds a row from decoded columns.
+     *
+     * @param text     the decoded text columns
+     * @param modified the decoded last-modified column
+     * @param row      the row within the block
+     * @return the row
+     */
+    private SnapshotRow row(String[][] text, long[] modified, int row) {
+        String[] values = new String[text.length];
+        for (int i = 0; i < text.length; i++) {
+            values[i] = text[i][row];
+        }
+        return new SnapshotRow(textColumns, values, modified[row]);
+    }
+
+    /**
+     * Returns the file index of a text column.
+     *
+     * @param column the column name
+     * @return the column's index in the file
+     * @throws IllegalArgumentException if there is no such text column
+     */
+    private int textColumn(String column) {
+        int index = columns.indexOf(column);
+        if (index < 0 || textIndex[index] < 0) {
+            throw new IllegalArgumentException("No text column " + column + " in snapshot");
+        }
+        return index;
+    }
+
+    /**
+     * Maps a block, if not done yet, and locates its columns.
+     *
+     * @param index the block index
+     * @return the block
+     * @throws IOException if the block cannot be mapped or is malformed
+     */
+    private Block block(int index) throws IOException {
+        MappedByteBuffer buffer = mapped[index];
+        if (buffer == null) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, blockOffsets[index], blockLengths[index]);
+            mapped[index] = buffer;
+        }
+        return new Block(buffer.duplicate());
+    }
+
+    /**
+     * Checks a snapshot's header and footer and locates its blocks.
+     *
+     * @param channel the open channel
+     * @param path    the file, for error messages
+     * @return the view
+     * @throws IOException if the file is not a complete snapshot
+     */
+    private static UserSnapshot readLayout(FileChannel channel, Path path) throws IOException {
+        long size = channel.size();
+        ByteBuffer fixed = readAt(channel, 0, Integer.BYTES + Short.BYTES + Long.BYTES + Short.BYTES, path);
+        if (fixed.getInt() != SnapshotFormat.MAGIC || fixed.getShort() != SnapshotFormat.VERSION) {
+            throw new IOException(path + " is not a user snapshot");
+        }
+        long createdAtMillis = fixed.getLong();
+        int columnCount = fixed.getShort();
+        long position = fixed.capacity();
+
+        List<String> columns = new ArrayList<>(columnCount);
+        int[] textIndex = new int[columnCount];
+        int texts = 0;
+        for (int i = 0; i < columnCount; i++) {
+            ByteBuffer meta = readAt(channel, position, 1 + Short.BYTES, path);
+            byte type = meta.get();
+            int nameLength = meta.getShort();
+            ByteBuffer name = readAt(channel, position + meta.capacity(), nameLength, path);
+            columns.add(StandardCharsets.UTF_8.decode(name).toString());
+            textIndex[i] = type == SnapshotFormat.TEXT ? texts++ : -1;
+            position += meta.capacity() + nameLength;
+        }
+        if (columnCount < SnapshotFormat.FIXED_COLUMNS
+                || !columns.subList(0, SnapshotFormat.FIXED_COLUMNS).equals(List.of(
+                        SnapshotFormat.USERNAME, SnapshotFormat.STATUS, SnapshotFormat.LAST_MODIFIED))) {
+            throw new IOException(path + " has unexpected columns " + columns);
+        }
+
+        long footerAt = size - SnapshotFormat.FOOTER_BYTES;
+        ByteBuffer footer = readAt(channel, footerAt, SnapshotFormat.FOOTER_BYTES, path);
+        long rowCount = footer.getLong();
+        long blockCount = footer.getLong();
+        if (footer.getInt() != SnapshotFormat.MAGIC || blockCount < 0 || blockCount > Integer.MAX_VALUE) {
+            throw new IOException(path + " was not completely written");
+        }
+
+        long[] offsets = new long[(int) blockCount];
+        int[] lengths = new int[(int) blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            int length = readAt(channel, position, Integer.BYTES, path).getInt();
+            if (length < Integer.BYTES || position + Integer.BYTES + length > footerAt) {
+                throw new IOException(path + " has a malformed block at offset " + position);
+            }
+            offsets[b] = position + Integer.BYTES;
+            lengths[b] = length;
+            position = offsets[b] + length;
+        }
+        if (position != footerAt) {
+            throw new IOException(path + " has data after its last block");
+        }
+        return new UserSnapshot(channel, List.copyOf(columns), textIndex, createdAtMillis, rowCount, offsets,
+                lengths);
+    }
+
+    /**
+     * Reads bytes at a file position.
+     *
+     * @param channel  the channel
+     * @param position the file position
+     * @param length   the number of bytes
+     * @param path     the file, for error messages
+     * @return a buffer holding the bytes, positioned at the start
+     * @throws IOException if the file ends first
+     */
+    private static ByteBuffer readAt(FileChannel channel, long position, int length, Path path) throws IOException {
+        if (position < 0) {
+            throw new IOException(path + " is too short to be a user snapshot");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException(path + " is too short to be a user snapshot");
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * A mapped block and where its columns start.
+     */
+    private final class Block {
+
+        /**
+         * Block contents, after its length.
+         */
+        private final ByteBuffer data;
+
+        /**
+         * Number of rows.
+         */
+        private final int rows;
+
+        /**
+         * Offset of each column's raw length within {@link #data}.
+         */
+        private final int[] columnStarts = new int[columns.size()];
+
+        /**
+         * Locates the columns of a block.
+         *
+         * @param data the block contents
+         * @throws IOException if the block is malformed
+         */
+        private Block(ByteBuffer data) throws IOException {
+            this.data = data;
+            this.rows = data.getInt(0);
+            int position = Integer.BYTES;
+            for (int c = 0; c < columnStarts.length; c++) {
+                if (position + Integer.BYTES * 2 > data.limit()) {
+                    throw new IOException("Malformed snapshot block");
+                }
+                columnStarts[c] = position;
+                position += Integer.BYTES * 2 + data.getInt(position + Integer.BYTES);
+            }
+        }
+
+        /**
+         * Decodes every text column.
+         *
+         * @return the values, indexed by text column then row
+         * @throws IOException if a column cannot be inflated
+         */
+        private String[][] allText() throws IOException {
+            String[][] text = new String[textColumns.size()][];
+            for (int c = 0; c < columnStarts.length; c++) {
+                if (textIndex[c] >= 0) {
+                    text[textIndex[c]] = text(c);
+                }
+            }
+            return text;
+        }
+
+        /**
+         * Decodes a text column.
+         *
+         * @param column the column's index in the file
+         * @return the values by row, {@code null} where missing
+         * @throws IOException if the column cannot be inflated
+         */
+        private String[] text(int column) throws IOException {
+            ByteBuffer raw = ByteBuffer.wrap(inflate(column));
+            String[] values = new String[rows];
+            for (int row = 0; row < rows; row++) {
+                int length = (int) SnapshotFormat.readVarLong(raw) - 1;
+                if (length >= 0) {
+                    values[row] = new String(raw.array(), raw.position(), length, StandardCharsets.UTF_8);
+                    raw.position(raw.position() + length);
+                }
+            }
+            return values;
+        }
+
+        /**
+         * Decodes a number column.
+         *
+         * @param column the column's index in the file
+         * @return the values by row
+         * @throws IOException if the column cannot be inflated
+         */
+        private long[] numbers(int column) throws IOException {
+            ByteBuffer raw = ByteBuffer.wrap(inflate(column));
+            long[] values = new long[rows];
+            long previous = 0;
+            for (int row = 0; row < rows; row++) {
+                long zigZag = SnapshotFormat.readVarLong(raw);
+                previous += (zigZag >>> 1) ^ -(zigZag & 1);
+                values[row] = previous;
+            }
+            return values;
+        }
+
+        /**
+         * Inflates a column straight from the mapped block.
+         *
+         * @param column the column's index in the file
+         * @return the raw column bytes
+         * @throws IOException if the column is corrupt
+         */
+        private byte[] inflate(int column) throws IOException {
+            int start = columnStarts[column];
+            int rawLength = data.getInt(start);
+            int storedLength = data.getInt(start + Integer.BYTES);
+            byte[] raw = new byte[rawLength];
+            inflater.reset();
+            inflater.setInput(data.slice(start + Integer.BYTES * 2, storedLength));
+            try {
+                int length = 0;
+                while (length < rawLength && !inflater.finished()) {
+                    int inflated = inflater.inflate(raw, length, rawLength - length);
+                    if (inflated == 0 && inflater.needsInput()) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != rawLength) {
+                    throw new IOException("Truncated snapshot column");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt snapshot column", e);
+            }
+            return raw;
+        }
+    }
+}
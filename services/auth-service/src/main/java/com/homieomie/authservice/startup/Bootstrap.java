@@ -0,0 +1,40 @@
+package com.homieomie.authservice.startup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.services.CognitoService;
+import jakarta.validation.Validator;
+
+/**
+ * Builds the {@link AuthController} and its collaborators for an entry point.
+ * <p>
+ * Shared by the Lambda handler and the standalone server so both start the
+ * same way: every collaborator is built once, timed separately, and the
+ * request paths are primed unless {@code PRIME_ON_INIT} is {@code false}.
+ * </p>
+ */
+public final class Bootstrap {
+
+    /**
+     * Utility class; not instantiable.
+     */
+    private Bootstrap() {}
+
+    /**
+     * Builds the controller, timing each collaborator separately.
+     *
+     * @param timings the recorder for the startup phases
+     * @return the ready-to-use controller
+     */
+    public static AuthController createController(StartupTimings timings) {
+        Validator validator = timings.time("validator", AuthController::buildValidator);
+        ObjectMapper objectMapper = timings.time("objectMapper", AuthController::buildObjectMapper);
+        CognitoService cognitoService = timings.time("cognitoClient", () -> new CognitoService());
+        AuthController controller = timings.time("controller",
+                () -> AuthController.fromEnvironment(cognitoService, objectMapper, validator));
+        if (!"false".equalsIgnoreCase(System.getenv("PRIME_ON_INIT"))) {
+            timings.run("prime", controller::warmUp);
+        }
+        return controller;
+    }
+}
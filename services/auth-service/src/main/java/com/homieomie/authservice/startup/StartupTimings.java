@@ -0,0 +1,106 @@
+package com.homieomie.authservice.startup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each startup phase of the service takes.
+ * <p>
+ * Phases are timed with {@link System#nanoTime()} and reported together as a
+ * single JSON log line, so cold-start cost can be broken down per phase in
+ * CloudWatch Logs Insights.
+ * </p>
+ */
+public class StartupTimings {
+
+    /**
+     * Phase name to duration in nanoseconds, in the order the phases ran.
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Runs a phase that produces a value and records its duration.
+     *
+     * @param phase    the phase name
+     * @param supplier the phase to run
+     * @param <T>      the type of value produced
+     * @return the value produced by the phase
+     */
+    public <T> T time(String phase, Supplier<T> supplier) {
+        long start = System.nanoTime();
+        try {
+            return supplier.get();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs a phase and records its duration.
+     *
+     * @param phase    the phase name
+     * @param runnable the phase to run
+     */
+    public void run(String phase, Runnable runnable) {
+        long start = System.nanoTime();
+        try {
+            runnable.run();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the duration of a phase timed elsewhere.
+     *
+     * @param phase the phase name
+     * @param nanos the duration in nanoseconds
+     */
+    public synchronized void record(String phase, long nanos) {
+        phases.merge(phase, nanos, Long::sum);
+    }
+
+    /**
+     * Renders the recorded phases as a JSON object of phase name to milliseconds.
+     *
+     * @param event a label identifying what was being started, such as {@code init} or {@code restore}
+     * @return the JSON log line
+     */
+    public synchronized String toJson(String event) {
+        StringBuilder json = new StringBuilder(64 + phases.size() * 32);
+        json.append("{\"startup\":\"").append(event).append("\",\"phasesMs\":{");
+        long total = 0;
+        boolean first = true;
+        for (Map.Entry<String, Long> entry : phases.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(entry.getKey()).append("\":").append(toMillis(entry.getValue()));
+            total += entry.getValue();
+        }
+        json.append("},\"totalMs\":").append(toMillis(total)).append('}');
+        return json.toString();
+    }
+
+    /**
+     * Writes the recorded phases to standard output and clears them.
+     *
+     * @param event a label identifying what was being started
+     */
+    public synchronized void log(String event) {
+        System.out.println(toJson(event));
+        phases.clear();
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds with microsecond precision.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static double toMillis(long nanos) {
+        return nanos / 1_000L / 1_000.0;
+    }
+}
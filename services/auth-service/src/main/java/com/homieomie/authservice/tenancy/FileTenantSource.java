@@ -0,0 +1,104 @@
+package com.homieomie.authservice.tenancy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homieomie.authservice.services.PoolConfig;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the tenants' configuration from a local JSON file, such as one
+ * shipped in a Lambda layer, keyed by tenant ID:
+ * <pre>
+ * {"acme": {"userPoolId": "eu-west-1_AbC123", "clientId": "...",
+ *           "hosts": ["auth.acme.com"], "pathPrefix": "/acme"}}
+ * </pre>
+ * <p>
+ * {@code userPoolId} and {@code clientId} are required; {@code region}
+ * defaults to the pool ID's own, and {@code hosts} and {@code pathPrefix} to
+ * none. The file is read as a tree, so no reflection metadata is needed in a
+ * native image.
+ * </p>
+ */
+public final class FileTenantSource implements TenantSource {
+
+    /**
+     * The configuration file.
+     */
+    private final Path file;
+
+    /**
+     * Mapper parsing the file.
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Creates a source.
+     *
+     * @param file the configuration file
+     */
+    public FileTenantSource(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, TenantConfig> load() throws IOException {
+        JsonNode root = mapper.readTree(Files.readAllBytes(file));
+        if (root == null || !root.isObject()) {
+            throw new IOException(file + " is not a JSON object of tenants");
+        }
+        Map<String, TenantConfig> tenants = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = root.fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> entry = it.next();
+            tenants.put(entry.getKey(), tenantOf(entry.getKey(), entry.getValue()));
+        }
+        return tenants;
+    }
+
+    /**
+     * Reads one tenant's entry.
+     *
+     * @param id    the tenant ID
+     * @param entry the entry
+     * @return the tenant configuration
+     * @throws IOException if a required field is missing or a field is invalid
+     */
+    private TenantConfig tenantOf(String id, JsonNode entry) throws IOException {
+        String userPoolId = textOf(entry, "userPoolId");
+        String clientId = textOf(entry, "clientId");
+        if (userPoolId == null || clientId == null) {
+            throw new IOException("Tenant " + id + " in " + file + " needs a userPoolId and a clientId");
+        }
+        List<String> hosts = new ArrayList<>();
+        for (JsonNode host : entry.path("hosts")) {
+            hosts.add(host.asText());
+        }
+        try {
+            return new TenantConfig(id, new PoolConfig(userPoolId, clientId, textOf(entry, "region")), hosts,
+                    textOf(entry, "pathPrefix"));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Tenant " + id + " in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a text field of an entry.
+     *
+     * @param entry the entry
+     * @param name  the field name
+     * @return the text, or {@code null} if the field is absent, null or blank
+     */
+    private static String textOf(JsonNode entry, String name) {
+        JsonNode node = entry.get(name);
+        return node == null || node.isNull() || node.asText().isBlank() ? null : node.asText().trim();
+    }
+}
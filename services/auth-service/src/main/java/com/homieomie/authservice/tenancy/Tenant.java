@@ -0,0 +1,115 @@
+package com.homieomie.authservice.tenancy;
+
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.UserDirectory;
+
+/**
+ * The services a request is handled with: those of its tenant's pool, or of
+ * the pool set by the environment when no tenant is selected.
+ */
+public final class Tenant {
+
+    /**
+     * Resolution of {@link #lastUsedNanos}; a busy tenant's requests write it
+     * at most once per interval, rather than each contending for its cache line.
+     */
+    private static final long TOUCH_INTERVAL_NANOS = 1_000_000_000L;
+
+    /**
+     * Configuration of the tenant, or {@code null} for the environment's pool.
+     */
+    private final TenantConfig config;
+
+    /**
+     * Service reaching the tenant's pool.
+     */
+    private final CognitoService cognitoService;
+
+    /**
+     * Cached user directory layered around {@link #cognitoService}.
+     */
+    private final UserDirectory userDirectory;
+
+    /**
+     * {@link System#nanoTime()} of the last request selecting the tenant.
+     */
+    private volatile long lastUsedNanos;
+
+    /**
+     * Creates a tenant.
+     *
+     * @param config         the configuration, or {@code null} for the environment's pool
+     * @param cognitoService the service reaching the pool
+     * @param userDirectory  the user directory layered around it
+     */
+    public Tenant(TenantConfig config, CognitoService cognitoService, UserDirectory userDirectory) {
+        this.config = config;
+        this.cognitoService = cognitoService;
+        this.userDirectory = userDirectory;
+        this.lastUsedNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the tenant ID.
+     *
+     * @return the ID, or {@code null} for the environment's pool
+     */
+    public String getId() {
+        return config == null ? null : config.getId();
+    }
+
+    /**
+     * Returns the configuration of the tenant.
+     *
+     * @return the configuration, or {@code null} for the environment's pool
+     */
+    public TenantConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the service reaching the tenant's pool.
+     *
+     * @return the Cognito service
+     */
+    public CognitoService getCognitoService() {
+        return cognitoService;
+    }
+
+    /**
+     * Returns the user directory of the tenant's pool.
+     *
+     * @return the user directory
+     */
+    public UserDirectory getUserDirectory() {
+        return userDirectory;
+    }
+
+    /**
+     * Returns when a request last selected the tenant.
+     *
+     * @return the {@link System#nanoTime()} of the last use
+     */
+    long lastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    /**
+     * Records that a request selected the tenant.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void touch(long now) {
+        if (now - lastUsedNanos >= TOUCH_INTERVAL_NANOS) {
+            lastUsedNanos = now;
+        }
+    }
+
+    /**
+     * Releases the tenant's threads and its view of the shared Cognito client.
+     */
+    void close() {
+        userDirectory.close();
+        cognitoService.close();
+    }
+}
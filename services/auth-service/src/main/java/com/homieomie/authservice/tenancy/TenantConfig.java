@@ -0,0 +1,160 @@
+package com.homieomie.authservice.tenancy;
+
+import com.homieomie.authservice.services.PoolConfig;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * One tenant of a shared deployment: the pool it signs users into and how
+ * its requests are recognized, by host name or by the first segment of the
+ * path.
+ */
+public final class TenantConfig {
+
+    /**
+     * Tenant ID, as sent in the tenant header.
+     */
+    private final String id;
+
+    /**
+     * User Pool and app client of the tenant.
+     */
+    private final PoolConfig pool;
+
+    /**
+     * Host names, in lower case and without port, that select the tenant.
+     */
+    private final List<String> hosts;
+
+    /**
+     * Path prefix of one segment selecting the tenant, such as {@code /acme}, or {@code null}.
+     */
+    private final String pathPrefix;
+
+    /**
+     * Creates a tenant configuration.
+     *
+     * @param id         the tenant ID
+     * @param pool       the User Pool and app client of the tenant
+     * @param hosts      the host names selecting the tenant, possibly empty
+     * @param pathPrefix the path segment selecting the tenant, with or without
+     *                   its leading slash, or {@code null}
+     * @throws IllegalArgumentException if the path prefix has more than one segment
+     */
+    public TenantConfig(String id, PoolConfig pool, List<String> hosts, String pathPrefix) {
+        this.id = Objects.requireNonNull(id, "id");
+        this.pool = Objects.requireNonNull(pool, "pool");
+        this.hosts = hosts.stream().map(TenantConfig::normalizeHost).toList();
+        this.pathPrefix = normalizePrefix(pathPrefix);
+    }
+
+    /**
+     * Returns the tenant ID.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the User Pool and app client of the tenant.
+     *
+     * @return the pool configuration
+     */
+    public PoolConfig getPool() {
+        return pool;
+    }
+
+    /**
+     * Returns the host names selecting the tenant.
+     *
+     * @return the host names, in lower case and without port
+     */
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Returns the path prefix selecting the tenant.
+     *
+     * @return the prefix, such as {@code /acme}, or {@code null} if none
+     */
+    public String getPathPrefix() {
+        return pathPrefix;
+    }
+
+    /**
+     * Removes the tenant's path prefix from a request path, so the rest is
+     * routed like a path of a single-tenant deployment.
+     *
+     * @param path the request path, or {@code null}
+     * @return the path without the prefix, or {@code path} if it does not start with it
+     */
+    public String stripPrefix(String path) {
+        if (pathPrefix == null || path == null || !path.startsWith(pathPrefix)) {
+            return path;
+        }
+        if (path.length() == pathPrefix.length()) {
+            return "/";
+        }
+        return path.charAt(pathPrefix.length()) == '/' ? path.substring(pathPrefix.length()) : path;
+    }
+
+    /**
+     * Compares two configurations by every setting.
+     *
+     * @param other the object to compare with
+     * @return {@code true} if both configure the same tenant the same way
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other == this || other instanceof TenantConfig tenant && id.equals(tenant.id)
+                && pool.equals(tenant.pool) && hosts.equals(tenant.hosts)
+                && Objects.equals(pathPrefix, tenant.pathPrefix);
+    }
+
+    /**
+     * Returns a hash code derived from the ID and the pool.
+     *
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, pool);
+    }
+
+    /**
+     * Normalizes a host name as a {@code Host} header is matched: in lower
+     * case and without port.
+     *
+     * @param host the host name, possibly with port
+     * @return the normalized host name
+     */
+    static String normalizeHost(String host) {
+        int port = host.lastIndexOf(':');
+        String name = port > 0 && host.indexOf(']', port) < 0 ? host.substring(0, port) : host;
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a path prefix to one segment with a leading slash.
+     *
+     * @param prefix the prefix, or {@code null}
+     * @return the normalized prefix, or {@code null} if none
+     * @throws IllegalArgumentException if the prefix has more than one segment
+     */
+    private static String normalizePrefix(String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            return null;
+        }
+        String segment = prefix.trim();
+        segment = segment.substring(segment.startsWith("/") ? 1 : 0,
+                segment.endsWith("/") ? segment.length() - 1 : segment.length());
+        if (segment.isEmpty() || segment.indexOf('/') >= 0) {
+            throw new IllegalArgumentException("Path prefix must be one segment: " + prefix);
+        }
+        return "/" + segment;
+    }
+}
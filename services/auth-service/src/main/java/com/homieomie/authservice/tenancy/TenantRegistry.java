@@ -0,0 +1,480 @@
+package com.homieomie.authservice.tenancy;
+
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.services.CognitoBackend;
+import com.homieomie.authservice.services.CognitoClientFactory;
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.JwksKeyCache;
+import com.homieomie.authservice.services.PoolConfig;
+import com.homieomie.authservice.services.SharedCognitoBackend;
+import com.homieomie.authservice.services.TokenVerifier;
+import com.homieomie.authservice.services.UserDirectory;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import software.amazon.awssdk.regions.Region;
+
+/**
+ * Selects the tenant of each request and keeps the services of the tenants
+ * in use, so that one deployment serves the pools of many tenants.
+ * <p>
+ * A request selects a tenant by its {@code Host} header, else by the first
+ * segment of its path, else by the tenant header ({@code X-Tenant-Id} unless
+ * {@code TENANT_HEADER} says otherwise). A request selecting none is served
+ * with the pool set by the environment; one naming an unknown tenant in the
+ * header is refused.
+ * </p>
+ * <p>
+ * The tenants' configuration is loaded from a {@link TenantSource} and
+ * reloaded every {@code TENANT_RELOAD_SECONDS} (default 60) by the request
+ * that finds it older; a tenant whose configuration changed is built again.
+ * A tenant's services are built on its first request. The pools of one
+ * region share one Cognito client, and so its pooled connections, and the
+ * app clients of one pool share its JWKS keys. A tenant idle for
+ * {@code TENANT_IDLE_SECONDS} (default 900) is evicted, and a client or key
+ * set no tenant uses any more is closed. Evicted tenants are closed one sweep
+ * later, so a request that selected one just before is not cut short.
+ * </p>
+ */
+public final class TenantRegistry {
+
+    /**
+     * Default header naming the tenant.
+     */
+    public static final String DEFAULT_TENANT_HEADER = "X-Tenant-Id";
+
+    /**
+     * Default interval between reloads of the configuration.
+     */
+    public static final Duration DEFAULT_RELOAD_INTERVAL = Duration.ofMinutes(1);
+
+    /**
+     * Default time a tenant is kept without requests.
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(15);
+
+    /**
+     * Source of the configuration, or {@code null} if tenants are not configured.
+     */
+    private final TenantSource source;
+
+    /**
+     * Header naming the tenant.
+     */
+    private final String tenantHeader;
+
+    /**
+     * Interval between reloads in nanoseconds, {@code 0} to load once.
+     */
+    private final long reloadIntervalNanos;
+
+    /**
+     * Time a tenant is kept without requests, in nanoseconds.
+     */
+    private final long idleTimeoutNanos;
+
+    /**
+     * Creates the backend reaching a region's Cognito.
+     */
+    private final Function<Region, CognitoBackend> backendFactory;
+
+    /**
+     * Tenants in use, by ID.
+     */
+    private final Map<String, Tenant> active = new ConcurrentHashMap<>();
+
+    /**
+     * Tenants evicted by the last sweep, closed by the next; guarded by {@code this}.
+     */
+    private final List<Tenant> retired = new ArrayList<>();
+
+    /**
+     * Cognito backends by region; guarded by {@code this}.
+     */
+    private final Map<String, CognitoBackend> backends = new HashMap<>();
+
+    /**
+     * JWKS key caches by issuer; guarded by {@code this}.
+     */
+    private final Map<String, JwksKeyCache> keyCaches = new HashMap<>();
+
+    /**
+     * Whether a request is reloading the configuration.
+     */
+    private final AtomicBoolean reloading = new AtomicBoolean();
+
+    /**
+     * {@link System#nanoTime()} of the last sweep for idle tenants.
+     */
+    private final AtomicLong lastSweepNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Current configuration.
+     */
+    private volatile Table table;
+
+    /**
+     * Creates a registry and loads the configuration.
+     *
+     * @param source         the source of the configuration, or {@code null} if tenants are not configured
+     * @param tenantHeader   the header naming the tenant
+     * @param reloadInterval the interval between reloads, zero to load once
+     * @param idleTimeout    the time a tenant is kept without requests
+     * @param backendFactory creates the backend reaching a region's Cognito
+     * @throws IllegalStateException if the configuration cannot be loaded
+     */
+    public TenantRegistry(TenantSource source, String tenantHeader, Duration reloadInterval, Duration idleTimeout,
+                          Function<Region, CognitoBackend> backendFactory) {
+        this.source = source;
+        this.tenantHeader = tenantHeader;
+        this.reloadIntervalNanos = reloadInterval.toNanos();
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.backendFactory = backendFactory;
+        try {
+            this.table = source == null ? new Table(Map.of(), System.nanoTime()) : load(System.nanoTime());
+        } catch (IOException e) {
+            throw new IllegalStateException("Tenant configuration cannot be loaded: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates a registry reading {@code TENANT_CONFIG_FILE}, configured from
+     * {@code TENANT_HEADER}, {@code TENANT_RELOAD_SECONDS} and
+     * {@code TENANT_IDLE_SECONDS}. Without a configuration file, no request
+     * selects a tenant.
+     *
+     * @return the registry
+     * @throws IllegalStateException if the configuration file cannot be loaded
+     */
+    public static TenantRegistry fromEnvironment() {
+        String file = System.getenv("TENANT_CONFIG_FILE");
+        String header = System.getenv("TENANT_HEADER");
+        return new TenantRegistry(file == null || file.isBlank() ? null : new FileTenantSource(Path.of(file.trim())),
+                header == null || header.isBlank() ? DEFAULT_TENANT_HEADER : header.trim(),
+                envDuration("TENANT_RELOAD_SECONDS", DEFAULT_RELOAD_INTERVAL),
+                envDuration("TENANT_IDLE_SECONDS", DEFAULT_IDLE_TIMEOUT),
+                CognitoClientFactory::createBackend);
+    }
+
+    /**
+     * Selects the tenant of a request, building its services on first use.
+     *
+     * @param headers the request headers, possibly {@code null}
+     * @param path    the request path, or {@code null}
+     * @return the tenant, or {@code null} if the request selects none
+     * @throws UnknownTenantException if the tenant header names a tenant that is not configured
+     */
+    public Tenant select(Map<String, String> headers, String path) {
+        if (source == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        Table current = currentTable(now);
+        TenantConfig config = null;
+        String host = headerValue(headers, "Host");
+        if (host != null) {
+            config = current.byHost.get(TenantConfig.normalizeHost(host));
+        }
+        if (config == null && path != null && path.length() > 1) {
+            int end = path.indexOf('/', 1);
+            config = current.byPrefix.get(end < 0 ? path : path.substring(0, end));
+        }
+        if (config == null) {
+            String id = headerValue(headers, tenantHeader);
+            if (id == null) {
+                return null;
+            }
+            config = current.byId.get(id);
+            if (config == null) {
+                throw new UnknownTenantException(id);
+            }
+        }
+        sweepIfDue(now);
+        Tenant tenant = active.get(config.getId());
+        if (tenant == null || !tenant.getConfig().equals(config)) {
+            tenant = activate(config);
+        }
+        tenant.touch(now);
+        return tenant;
+    }
+
+    /**
+     * Returns the number of tenants whose services are built.
+     *
+     * @return the active tenant count
+     */
+    public int activeCount() {
+        return active.size();
+    }
+
+    /**
+     * Closes every tenant and shared client, and reloads the configuration,
+     * after a snapshot restore: tenants are built again on their next
+     * request, so no connection or key opened before the snapshot is reused.
+     */
+    public synchronized void reconnect() {
+        retired.addAll(active.values());
+        active.clear();
+        closeRetired();
+        releaseUnused();
+        if (source != null) {
+            reload(System.nanoTime());
+        }
+    }
+
+    /**
+     * Closes every tenant and shared client, when the service shuts down.
+     */
+    public synchronized void close() {
+        retired.addAll(active.values());
+        active.clear();
+        closeRetired();
+        releaseUnused();
+    }
+
+    /**
+     * Returns the configuration, reloading it first if it is due and no
+     * other request is reloading it.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the configuration
+     */
+    private Table currentTable(long now) {
+        Table current = table;
+        if (reloadIntervalNanos > 0 && now - current.loadedAtNanos >= reloadIntervalNanos
+                && reloading.compareAndSet(false, true)) {
+            try {
+                current = reload(now);
+            } finally {
+                reloading.set(false);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Reloads the configuration, keeping the current one if it cannot be read.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the configuration now in use
+     */
+    private Table reload(long now) {
+        Table current;
+        try {
+            current = load(now);
+        } catch (IOException | RuntimeException e) {
+            EventLog.shared().warn("Tenant configuration could not be reloaded", null, null, e.getMessage(), null);
+            current = new Table(table.byId, now);
+        }
+        table = current;
+        return current;
+    }
+
+    /**
+     * Loads the configuration from the source.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return the configuration
+     * @throws IOException if the configuration cannot be read or is invalid
+     */
+    private Table load(long now) throws IOException {
+        return new Table(source.load(), now);
+    }
+
+    /**
+     * Builds a tenant's services, replacing those built for an older
+     * configuration of the tenant.
+     *
+     * @param config the tenant's configuration
+     * @return the tenant
+     */
+    private synchronized Tenant activate(TenantConfig config) {
+        Tenant tenant = active.get(config.getId());
+        if (tenant != null && tenant.getConfig().equals(config)) {
+            return tenant;
+        }
+        if (tenant != null) {
+            retired.add(tenant);
+        }
+        PoolConfig pool = config.getPool();
+        CognitoBackend backend = backends.computeIfAbsent(pool.getRegion(),
+                region -> backendFactory.apply(Region.of(region)));
+        JwksKeyCache keys = keyCaches.computeIfAbsent(pool.issuer(),
+                issuer -> new JwksKeyCache(JwksKeyCache.urlFor(issuer)));
+        CognitoService service = new CognitoService(pool, new SharedCognitoBackend(backend),
+                new TokenVerifier(pool.issuer(), pool.getClientId(), keys, TokenVerifier.DEFAULT_MAX_ENTRIES));
+        tenant = new Tenant(config, service, UserDirectory.fromEnvironment(service));
+        active.put(config.getId(), tenant);
+        return tenant;
+    }
+
+    /**
+     * Sweeps for idle tenants if half the idle timeout has passed since the
+     * last sweep and no other request is sweeping.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    private void sweepIfDue(long now) {
+        long last = lastSweepNanos.get();
+        if (now - last >= idleTimeoutNanos / 2 && lastSweepNanos.compareAndSet(last, now)) {
+            sweep(now);
+        }
+    }
+
+    /**
+     * Closes the tenants the previous sweep evicted, evicts the tenants that
+     * are idle or no longer configured, and closes the clients and key sets
+     * no remaining tenant uses.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    private synchronized void sweep(long now) {
+        closeRetired();
+        Map<String, TenantConfig> configured = table.byId;
+        for (Iterator<Tenant> it = active.values().iterator(); it.hasNext();) {
+            Tenant tenant = it.next();
+            if (now - tenant.lastUsedNanos() > idleTimeoutNanos
+                    || !tenant.getConfig().equals(configured.get(tenant.getId()))) {
+                it.remove();
+                retired.add(tenant);
+            }
+        }
+        releaseUnused();
+    }
+
+    /**
+     * Closes the evicted tenants.
+     */
+    private void closeRetired() {
+        for (Tenant tenant : retired) {
+            tenant.close();
+        }
+        retired.clear();
+    }
+
+    /**
+     * Closes the backends and key caches that neither an active nor an
+     * evicted tenant uses.
+     */
+    private void releaseUnused() {
+        Set<String> regions = new HashSet<>();
+        Set<String> issuers = new HashSet<>();
+        for (Tenant tenant : active.values()) {
+            regions.add(tenant.getConfig().getPool().getRegion());
+            issuers.add(tenant.getConfig().getPool().issuer());
+        }
+        for (Tenant tenant : retired) {
+            regions.add(tenant.getConfig().getPool().getRegion());
+            issuers.add(tenant.getConfig().getPool().issuer());
+        }
+        for (Iterator<Map.Entry<String, CognitoBackend>> it = backends.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, CognitoBackend> backend = it.next();
+            if (!regions.contains(backend.getKey())) {
+                backend.getValue().close();
+                it.remove();
+            }
+        }
+        for (Iterator<Map.Entry<String, JwksKeyCache>> it = keyCaches.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, JwksKeyCache> keys = it.next();
+            if (!issuers.contains(keys.getKey())) {
+                keys.getValue().close();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns a request header's value, finding its name in any letter case.
+     *
+     * @param headers the request headers, possibly {@code null}
+     * @param name    the header name
+     * @return the value, or {@code null} if the header is absent
+     */
+    private static String headerValue(Map<String, String> headers, String name) {
+        if (headers == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a non-negative duration in whole seconds from an environment variable.
+     *
+     * @param name     the variable name
+     * @param fallback the value to use when the variable is unset or invalid
+     * @return the configured duration
+     */
+    private static Duration envDuration(String name, Duration fallback) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds >= 0 ? Duration.ofSeconds(seconds) : fallback;
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * One loaded configuration, indexed the ways a request selects a tenant.
+     */
+    private static final class Table {
+
+        /**
+         * Tenants by ID.
+         */
+        private final Map<String, TenantConfig> byId;
+
+        /**
+         * Tenants by host name.
+         */
+        private final Map<String, TenantConfig> byHost = new HashMap<>();
+
+        /**
+         * Tenants by path prefix.
+         */
+        private final Map<String, TenantConfig> byPrefix = new HashMap<>();
+
+        /**
+         * {@link System#nanoTime()} the configuration was loaded at.
+         */
+        private final long loadedAtNanos;
+
+        /**
+         * Indexes a configuration.
+         *
+         * @param byId          the tenants by ID
+         * @param loadedAtNanos the {@link System#nanoTime()} it was loaded at
+         */
+        private Table(Map<String, TenantConfig> byId, long loadedAtNanos) {
+            this.byId = Map.copyOf(byId);
+            this.loadedAtNanos = loadedAtNanos;
+            for (TenantConfig config : this.byId.values()) {
+                for (String host : config.getHosts()) {
+                    byHost.put(host, config);
+                }
+                if (config.getPathPrefix() != null) {
+                    byPrefix.put(config.getPathPrefix(), config);
+                }
+            }
+        }
+    }
+}
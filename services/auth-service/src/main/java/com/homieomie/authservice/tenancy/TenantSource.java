@@ -0,0 +1,20 @@
+package com.homieomie.authservice.tenancy;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Where the {@link TenantRegistry} loads the tenants' configuration from:
+ * a local file, or any store implementing this interface, such as a
+ * parameter store or a table.
+ */
+public interface TenantSource {
+
+    /**
+     * Loads the configuration of every tenant.
+     *
+     * @return tenant ID to configuration
+     * @throws IOException if the configuration cannot be read or is invalid
+     */
+    Map<String, TenantConfig> load() throws IOException;
+}
@@ -0,0 +1,21 @@
+package com.homieomie.authservice.tenancy;
+
+/**
+ * Thrown when a request names a tenant that is not configured.
+ */
+public class UnknownTenantException extends RuntimeException {
+
+    /**
+     * Serialization version.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates the exception.
+     *
+     * @param tenantId the tenant ID the request named
+     */
+    public UnknownTenantException(String tenantId) {
+        super("Unknown tenant: " + tenantId);
+    }
+}
@@ -0,0 +1,310 @@
+package com.homieomie.authservice.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Validates request models against their Bean Validation annotations without
+ * per-call reflection.
+ * <p>
+ * The constraints of a model class are read once, the first time the class is
+ * seen, and compiled into {@link FieldRule}s with their patterns precompiled
+ * and their fields read through method handles. A valid object is checked
+ * without allocating; a message string is only built when a rule fails.
+ * </p>
+ * <p>
+ * The supported constraints are {@link NotNull}, {@link NotBlank}, {@link Size},
+ * {@link Pattern}, {@link Email}, {@link Min} and {@link Max} on fields, with literal messages
+ * and the default group. A class using anything else (another constraint,
+ * validation groups, message templates, class- or getter-level constraints)
+ * is validated by the reference Hibernate {@link Validator} instead, so the
+ * outcome never depends on which path ran. Messages are joined with
+ * {@code "; "} in field declaration order.
+ * </p>
+ */
+public final class CompiledValidator {
+
+    /**
+     * Marker for classes that must be validated by the reference validator.
+     */
+    private static final CompiledModel REFERENCE = new CompiledModel(new MethodHandle[0], new FieldRule[0][]);
+
+    /**
+     * Getter signature every field accessor is adapted to.
+     */
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /**
+     * Hibernate validator used for classes that cannot be compiled.
+     */
+    private final Validator reference;
+
+    /**
+     * Compiled constraints per model class, built on first use.
+     */
+    private final ClassValue<CompiledModel> models = new ClassValue<>() {
+        @Override
+        protected CompiledModel computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    /**
+     * Creates a validator and compiles the given model classes right away.
+     *
+     * @param reference the Hibernate validator for classes that cannot be compiled
+     * @param types     the model classes to compile eagerly
+     */
+    public CompiledValidator(Validator reference, List<Class<?>> types) {
+        this.reference = reference;
+        for (Class<?> type : types) {
+            models.get(type);
+        }
+    }
+
+    /**
+     * Validates an object against its declared constraints.
+     *
+     * @param dto the object to validate
+     * @return the violation messages joined with {@code "; "}, or {@code null} if the object is valid
+     */
+    public String validate(Object dto) {
+        CompiledModel model = models.get(dto.getClass());
+        if (model == REFERENCE) {
+            return validateWithReference(dto);
+        }
+        StringBuilder messages = null;
+        for (int i = 0; i < model.accessors.length; i++) {
+            Object value = model.read(i, dto);
+            for (FieldRule rule : model.rules[i]) {
+                String message = rule.check(value);
+                if (message != null) {
+                    messages = messages == null ? new StringBuilder(message) : messages.append("; ").append(message);
+                }
+            }
+        }
+        return messages == null ? null : messages.toString();
+    }
+
+    /**
+     * Tells whether a class is validated by compiled rules rather than by the
+     * reference validator.
+     *
+     * @param type the model class
+     * @return {@code true} if its constraints were compiled
+     */
+    public boolean isCompiled(Class<?> type) {
+        return models.get(type) != REFERENCE;
+    }
+
+    /**
+     * Validates an object with the reference validator.
+     *
+     * @param dto the object to validate
+     * @return the joined violation messages, or {@code null} if the object is valid
+     */
+    private String validateWithReference(Object dto) {
+        Set<ConstraintViolation<Object>> violations = reference.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        StringBuilder messages = new StringBuilder();
+        for (ConstraintViolation<Object> violation : violations) {
+            if (messages.length() > 0) {
+                messages.append("; ");
+            }
+            messages.append(violation.getMessage());
+        }
+        return messages.toString();
+    }
+
+    /**
+     * Compiles the field constraints of a class and its superclasses.
+     *
+     * @param type the model class
+     * @return the compiled model, or {@link #REFERENCE} if the class uses anything unsupported
+     */
+    private static CompiledModel compile(Class<?> type) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            if (hasConstraint(c.getAnnotations())) {
+                return REFERENCE;
+            }
+            for (Method method : c.getDeclaredMethods()) {
+                if (hasConstraint(method.getAnnotations())) {
+                    return REFERENCE;
+                }
+            }
+            hierarchy.add(0, c);
+        }
+
+        List<MethodHandle> accessors = new ArrayList<>();
+        List<FieldRule[]> rules = new ArrayList<>();
+        try {
+            for (Class<?> c : hierarchy) {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(c, MethodHandles.lookup());
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    List<FieldRule> fieldRules = new ArrayList<>();
+                    for (Annotation annotation : field.getAnnotations()) {
+                        if (!isConstraint(annotation)) {
+                            continue;
+                        }
+                        FieldRule rule = compile(annotation, field.getType());
+                        if (rule == null) {
+                            return REFERENCE;
+                        }
+                        fieldRules.add(rule);
+                    }
+                    if (!fieldRules.isEmpty()) {
+                        accessors.add(lookup.unreflectGetter(field).asType(ACCESSOR_TYPE));
+                        rules.add(fieldRules.toArray(new FieldRule[0]));
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            return REFERENCE;
+        }
+        return new CompiledModel(accessors.toArray(new MethodHandle[0]), rules.toArray(new FieldRule[0][]));
+    }
+
+    /**
+     * Compiles a single field constraint.
+     *
+     * @param annotation the constraint annotation
+     * @param fieldType  the declared type of the annotated field
+     * @return the rule, or {@code null} if the constraint is not supported on this field
+     */
+    private static FieldRule compile(Annotation annotation, Class<?> fieldType) {
+        boolean text = CharSequence.class.isAssignableFrom(fieldType);
+        boolean sized = text || Collection.class.isAssignableFrom(fieldType);
+        boolean integral = fieldType == Integer.class || fieldType == Long.class
+                || fieldType == Short.class || fieldType == Byte.class;
+        if (annotation instanceof NotNull c && isLiteral(c.message(), c.groups())) {
+            return FieldRule.notNull(c);
+        } else if (annotation instanceof NotBlank c && text && isLiteral(c.message(), c.groups())) {
+            return FieldRule.notBlank(c);
+        } else if (annotation instanceof Size c && sized && isLiteral(c.message(), c.groups())) {
+            return FieldRule.size(c);
+        } else if (annotation instanceof Pattern c && text && isLiteral(c.message(), c.groups())) {
+            return FieldRule.pattern(c);
+        } else if (annotation instanceof Email c && text && isLiteral(c.message(), c.groups())) {
+            return FieldRule.email(c);
+        } else if (annotation instanceof Min c && integral && isLiteral(c.message(), c.groups())) {
+            return FieldRule.min(c);
+        } else if (annotation instanceof Max c && integral && isLiteral(c.message(), c.groups())) {
+            return FieldRule.max(c);
+        }
+        return null;
+    }
+
+    /**
+     * Tells whether a constraint can be compiled with its message taken as is:
+     * the message holds no template to interpolate and the constraint belongs
+     * to the default group.
+     *
+     * @param message the constraint message
+     * @param groups  the constraint groups
+     * @return {@code true} if the message is literal and no group is set
+     */
+    private static boolean isLiteral(String message, Class<?>[] groups) {
+        return groups.length == 0 && message.indexOf('{') < 0 && message.indexOf('$') < 0;
+    }
+
+    /**
+     * Tells whether any of the annotations is a constraint.
+     *
+     * @param annotations the annotations
+     * @return {@code true} if one of them is a constraint
+     */
+    private static boolean hasConstraint(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (isConstraint(annotation)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether an annotation affects validation: a constraint, a
+     * container of repeated constraints, or any other Bean Validation or
+     * Hibernate Validator annotation.
+     *
+     * @param annotation the annotation
+     * @return {@code true} if the annotation affects validation
+     */
+    private static boolean isConstraint(Annotation annotation) {
+        Class<? extends Annotation> type = annotation.annotationType();
+        String name = type.getName();
+        return type.isAnnotationPresent(Constraint.class)
+                || name.startsWith("jakarta.validation.")
+                || name.startsWith("org.hibernate.validator.");
+    }
+
+    /**
+     * Compiled constraints of one model class: for each constrained field, its
+     * accessor and its rules, in declaration order.
+     */
+    private static final class CompiledModel {
+
+        /**
+         * Getters of the constrained fields, adapted to {@code (Object) Object}.
+         */
+        private final MethodHandle[] accessors;
+
+        /**
+         * Rules of each constrained field, parallel to {@link #accessors}.
+         */
+        private final FieldRule[][] rules;
+
+        /**
+         * Creates a compiled model.
+         *
+         * @param accessors the field getters
+         * @param rules     the rules per field
+         */
+        private CompiledModel(MethodHandle[] accessors, FieldRule[][] rules) {
+            this.accessors = accessors;
+            this.rules = rules;
+        }
+
+        /**
+         * Reads a constrained field.
+         *
+         * @param index the field index
+         * @param dto   the object to read from
+         * @return the field value
+         */
+        private Object read(int index, Object dto) {
+            try {
+                return accessors[index].invokeExact(dto);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot read field of " + dto.getClass().getName(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.homieomie.authservice.validation;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import java.util.Collection;
+import org.hibernate.validator.internal.constraintvalidators.bv.EmailValidator;
+
+/**
+ * A single field constraint, specialized from its annotation once.
+ * <p>
+ * Each factory mirrors the semantics of the matching Hibernate Validator
+ * constraint validator: every constraint except {@link NotBlank} accepts
+ * {@code null}, and the annotation's message is returned verbatim.
+ * </p>
+ */
+@FunctionalInterface
+interface FieldRule {
+
+    /**
+     * Checks a field value.
+     *
+     * @param value the current value of the field, possibly {@code null}
+     * @return the violation message, or {@code null} if the value is valid
+     */
+    String check(Object value);
+
+    /**
+     * Compiles {@link NotBlank}: the value must be non-null and keep at least
+     * one character after {@link String#trim()}, which is what Hibernate
+     * checks, but without allocating the trimmed copy.
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule notBlank(NotBlank constraint) {
+        String message = constraint.message();
+        return value -> {
+            if (value == null) {
+                return message;
+            }
+            CharSequence text = (CharSequence) value;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) > ' ') {
+                    return null;
+                }
+            }
+            return message;
+        };
+    }
+
+    /**
+     * Compiles {@link NotNull}.
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule notNull(NotNull constraint) {
+        String message = constraint.message();
+        return value -> value == null ? message : null;
+    }
+
+    /**
+     * Compiles {@link Size} for character sequences and collections.
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule size(Size constraint) {
+        int min = constraint.min();
+        int max = constraint.max();
+        String message = constraint.message();
+        return value -> {
+            if (value == null) {
+                return null;
+            }
+            int length = value instanceof CharSequence text ? text.length() : ((Collection<?>) value).size();
+            return length < min || length > max ? message : null;
+        };
+    }
+
+    /**
+     * Compiles {@link Pattern}; the regular expression is compiled here, once.
+     * The whole value must match, as with {@link java.util.regex.Matcher#matches()}.
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule pattern(Pattern constraint) {
+        int flags = 0;
+        for (Pattern.Flag flag : constraint.flags()) {
+            flags |= flag.getValue();
+        }
+        java.util.regex.Pattern regex = java.util.regex.Pattern.compile(constraint.regexp(), flags);
+        String message = constraint.message();
+        return value -> value == null || regex.matcher((CharSequence) value).matches() ? null : message;
+    }
+
+    /**
+     * Compiles {@link Email} around Hibernate's own email validator, so both
+     * paths accept exactly the same addresses. The validator is initialized
+     * here, once, and does not use its context.
+     * <p>
+     * Hibernate converts the domain with {@link java.net.IDN}, which allocates
+     * heavily. Plain ASCII addresses, which Hibernate always accepts, are
+     * recognized by {@link #isPlainAddress(CharSequence)} without allocating;
+     * only the others reach Hibernate.
+     * </p>
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule email(Email constraint) {
+        EmailValidator validator = new EmailValidator();
+        validator.initialize(constraint);
+        boolean anyAddress = ".*".equals(constraint.regexp());
+        String message = constraint.message();
+        return value -> {
+            if (value == null || anyAddress && isPlainAddress((CharSequence) value)) {
+                return null;
+            }
+            return validator.isValid((CharSequence) value, null) ? null : message;
+        };
+    }
+
+    /**
+     * Compiles {@link Min} for integral numbers.
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule min(Min constraint) {
+        long min = constraint.value();
+        String message = constraint.message();
+        return value -> value == null || ((Number) value).longValue() >= min ? null : message;
+    }
+
+    /**
+     * Compiles {@link Max} for integral numbers.
+     *
+     * @param constraint the annotation
+     * @return the rule
+     */
+    static FieldRule max(Max constraint) {
+        long max = constraint.value();
+        String message = constraint.message();
+        return value -> value == null || ((Number) value).longValue() <= max ? null : message;
+    }
+
+    /**
+     * Tells whether a value is an email address of the plain ASCII form
+     * {@code atom(.atom)*@label(.label)*}, with a local part of at most 64
+     * characters, letter-digit-hyphen labels of 1 to 63 characters that
+     * neither start nor end with a hyphen, and a domain of at most 255
+     * characters. Hibernate's email validator accepts every such address.
+     *
+     * @param value the value to check
+     * @return {@code true} if the value has the plain form; {@code false} if
+     *         it does not, which does not make it invalid
+     */
+    private static boolean isPlainAddress(CharSequence value) {
+        int length = value.length();
+        int at = -1;
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) == '@') {
+                if (at >= 0) {
+                    return false;
+                }
+                at = i;
+            }
+        }
+        if (at < 1 || at > 64 || length - at - 1 > 255) {
+            return false;
+        }
+
+        boolean atomStart = true;
+        for (int i = 0; i < at; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (atomStart) {
+                    return false;
+                }
+                atomStart = true;
+            } else if (isAsciiAlphanumeric(c) || "!#$%&'*+/=?^_`{|}~-".indexOf(c) >= 0) {
+                atomStart = false;
+            } else {
+                return false;
+            }
+        }
+        if (atomStart) {
+            return false;
+        }
+
+        int labelLength = 0;
+        char previous = '.';
+        for (int i = at + 1; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (labelLength == 0 || previous == '-') {
+                    return false;
+                }
+                labelLength = 0;
+            } else if (isAsciiAlphanumeric(c) || c == '-' && labelLength > 0) {
+                if (++labelLength > 63) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+            previous = c;
+        }
+        return labelLength > 0 && previous != '-';
+    }
+
+    /**
+     * Tells whether a character is an ASCII letter or digit.
+     *
+     * @param c the character
+     * @return {@code true} for {@code [A-Za-z0-9]}
+     */
+    private static boolean isAsciiAlphanumeric(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9';
+    }
+}
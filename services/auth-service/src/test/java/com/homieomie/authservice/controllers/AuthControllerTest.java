@@ -0,0 +1,136 @@
+package com.homieomie.authservice.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.homieomie.authservice.idempotency.IdempotencyGuard;
+import com.homieomie.authservice.idempotency.InMemoryIdempotencyStore;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.ratelimit.RateLimiter;
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.tenancy.TenantRegistry;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for how {@link AuthController} routes requests, settled before any
+ * call reaches Cognito.
+ */
+class AuthControllerTest {
+
+    /**
+     * Mocked Cognito service the controller calls.
+     */
+    private CognitoService cognito;
+
+    /**
+     * Controller under test, over {@link #cognito}.
+     */
+    private AuthController controller;
+
+    /**
+     * Creates a controller with rate limiting off and no tenants.
+     */
+    @BeforeEach
+    void setUp() {
+        cognito = mock(CognitoService.class);
+        controller = new AuthController(cognito, AuthController.buildObjectMapper(),
+                AuthController.buildValidator(),
+                new RateLimiter(false, 1, 1, 1, 1, 16),
+                new IdempotencyGuard(new InMemoryIdempotencyStore(16), Duration.ZERO),
+                new TenantRegistry(null, TenantRegistry.DEFAULT_TENANT_HEADER, Duration.ZERO, Duration.ofMinutes(1),
+                        region -> null));
+    }
+
+    /**
+     * A CORS preflight is answered whatever its path, as before routing by path.
+     */
+    @Test
+    void preflightIsAnsweredOnAnyPath() {
+        assertThat(route("OPTIONS", "/login").getStatusCode()).isEqualTo(200);
+        assertThat(route("OPTIONS", "/no-such-path").getStatusCode()).isEqualTo(200);
+        assertThat(route("OPTIONS", null).getStatusCode()).isEqualTo(200);
+    }
+
+    /**
+     * A request to a path with no route is refused as not found.
+     */
+    @Test
+    void unknownPathIsNotFound() {
+        assertThat(route("POST", "/no-such-path").getStatusCode()).isEqualTo(404);
+    }
+
+    /**
+     * A method a path does not accept is refused, naming the ones it does.
+     */
+    @Test
+    void unsupportedMethodIsNotAllowed() {
+        APIGatewayProxyResponseEvent response = route("GET", "/login");
+
+        assertThat(response.getStatusCode()).isEqualTo(405);
+        assertThat(response.getHeaders()).containsEntry("Allow", "POST, OPTIONS");
+    }
+
+    /**
+     * A body sent to the root path is held to the limit of the action its
+     * first field names, or to the single-record limit if it names none,
+     * before it is decoded.
+     */
+    @Test
+    void rootPathBodyIsHeldToItsLeadingActionsLimit() {
+        String padding = " ".repeat(Router.DEFAULT_MAX_BODY_CHARS);
+
+        assertThat(post("/", "{\"action\":\"login\"," + padding + "\"username\":\"alice\"}").getStatusCode())
+                .isEqualTo(413);
+        assertThat(post("/", "{\"users\":[]," + padding + "\"action\":\"bulkSignup\"}").getStatusCode())
+                .isEqualTo(413);
+        assertThat(post("/", "{\"action\":\"bulkSignup\"," + padding + "\"users\":[]}").getStatusCode())
+                .isNotEqualTo(413);
+        assertThat(post("/", "{\"action\":\"bulkSignup\",\"users\":[]," + " ".repeat(Router.BULK_MAX_BODY_CHARS)
+                + "}").getStatusCode()).isEqualTo(413);
+    }
+
+    /**
+     * A call failing with a checked exception answers 500 rather than
+     * failing the response.
+     */
+    @Test
+    void checkedFailureAnswersInternalServerError() {
+        when(cognito.login(any(LoginRequest.class)))
+                .thenReturn(CompletableFuture.failedFuture(new Exception("socket closed")));
+
+        APIGatewayProxyResponseEvent response = post("/login", "{\"username\":\"alice\",\"password\":\"Secret1!\"}");
+
+        assertThat(response.getStatusCode()).isEqualTo(500);
+        assertThat(response.getBody()).contains("Internal server error").doesNotContain("socket closed");
+    }
+
+    /**
+     * Routes a request without a body.
+     *
+     * @param method the HTTP method
+     * @param path   the request path
+     * @return the response
+     */
+    private APIGatewayProxyResponseEvent route(String method, String path) {
+        return controller.routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod(method).withPath(path));
+    }
+
+    /**
+     * Routes a {@code POST} request with a body.
+     *
+     * @param path the request path
+     * @param body the request body
+     * @return the response
+     */
+    private APIGatewayProxyResponseEvent post(String path, String body) {
+        return controller.routeRequest(new APIGatewayProxyRequestEvent().withHttpMethod("POST").withPath(path)
+                .withBody(body));
+    }
+}
@@ -0,0 +1,159 @@
+package com.homieomie.authservice.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.homieomie.authservice.models.BulkSignupRequest;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.models.SignupRequest;
+import com.homieomie.authservice.models.UserListRequest;
+import java.io.IOException;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link RequestDecoder}: binding with the action first, after
+ * buffered fields, from the path, and as newline-delimited JSON.
+ */
+class RequestDecoderTest {
+
+    /**
+     * Decoder under test, with the mapper the controller uses.
+     */
+    private final RequestDecoder decoder = newDecoder();
+
+    /**
+     * A body leading with its action is bound directly.
+     */
+    @Test
+    void actionFirstIsBound() throws IOException {
+        LoginRequest login = (LoginRequest) decoder.decode(
+                "{\"action\":\"login\",\"username\":\"alice\",\"password\":\"secret\"}");
+
+        assertThat(login.getUsername()).isEqualTo("alice");
+        assertThat(login.getPassword()).isEqualTo("secret");
+    }
+
+    /**
+     * Fields before the action are buffered and replayed in front of the rest.
+     */
+    @Test
+    void fieldsBeforeTheActionAreReplayed() throws IOException {
+        LoginRequest login = (LoginRequest) decoder.decode(
+                "{\"username\":\"alice\",\"action\":\"login\",\"password\":\"secret\"}");
+
+        assertThat(login.getUsername()).isEqualTo("alice");
+        assertThat(login.getPassword()).isEqualTo("secret");
+    }
+
+    /**
+     * Nested values before the action are buffered whole.
+     */
+    @Test
+    void nestedValuesBeforeTheActionAreReplayed() throws IOException {
+        BulkSignupRequest bulk = (BulkSignupRequest) decoder.decode(
+                "{\"users\":[{\"username\":\"a\"},{\"username\":\"b\",\"email\":\"b@example.com\"}],"
+                        + "\"action\":\"bulkSignup\"}");
+
+        assertThat(bulk.getUsers()).extracting(SignupRequest::getUsername).containsExactly("a", "b");
+        assertThat(bulk.getUsers().get(1).getEmail()).isEqualTo("b@example.com");
+    }
+
+    /**
+     * An action as the only or the last field binds an empty model or the buffered fields.
+     */
+    @Test
+    void actionAloneOrLastIsBound() throws IOException {
+        UserListRequest list = (UserListRequest) decoder.decode("{\"action\":\"listUsers\"}");
+        assertThat(list.getCursor()).isNull();
+
+        LoginRequest login = (LoginRequest) decoder.decode(
+                "{\"username\":\"alice\",\"password\":\"secret\",\"action\":\"login\"}");
+        assertThat(login.getPassword()).isEqualTo("secret");
+    }
+
+    /**
+     * A missing or unknown action, a missing body and a body that is not an
+     * object are refused.
+     */
+    @Test
+    void malformedBodiesAreRefused() {
+        assertThatThrownBy(() -> decoder.decode("{\"username\":\"alice\"}"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoder.decode("{\"action\":\"drop\"}"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("drop");
+        assertThatThrownBy(() -> decoder.decode(null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoder.decode("[]")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> decoder.decode("{\"action\":\"login\",\"unknown\":1}"))
+                .isInstanceOf(IOException.class);
+    }
+
+    /**
+     * The leading action is read from the first field only, and is
+     * {@code null} for anything else.
+     */
+    @Test
+    void leadingActionReadsTheFirstFieldOnly() {
+        assertThat(decoder.leadingAction("{\"action\":\"bulkSignup\",\"users\":[")).isEqualTo("bulkSignup");
+        assertThat(decoder.leadingAction("{\"action\":\"login\"}\n{\"username\":\"alice\"}")).isEqualTo("login");
+        assertThat(decoder.leadingAction("{\"username\":\"alice\",\"action\":\"login\"}")).isNull();
+        assertThat(decoder.leadingAction("{\"action\":[\"bulkSignup\"]}")).isNull();
+        assertThat(decoder.leadingAction("{\"action\"")).isNull();
+        assertThat(decoder.leadingAction("[]")).isNull();
+        assertThat(decoder.leadingAction(null)).isNull();
+    }
+
+    /**
+     * An action named by the path binds the body from its first field, and
+     * a leading action field must agree with it.
+     */
+    @Test
+    void pathActionBindsTheWholeBody() throws IOException {
+        LoginRequest login = (LoginRequest) decoder.decode("login", "{\"username\":\"alice\"}");
+        assertThat(login.getUsername()).isEqualTo("alice");
+
+        login = (LoginRequest) decoder.decode("login", "{\"action\":\"login\",\"username\":\"bob\"}");
+        assertThat(login.getUsername()).isEqualTo("bob");
+
+        assertThat(decoder.decode("listUsers", "{}")).isInstanceOf(UserListRequest.class);
+        assertThatThrownBy(() -> decoder.decode("login", "{\"action\":\"signup\"}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Newline-delimited bodies bind one item per line, after a line naming
+     * the action or with the action named by the path.
+     */
+    @Test
+    void linesAreBoundAsItems() throws IOException {
+        BulkSignupRequest named = (BulkSignupRequest) decoder.decodeLines(
+                "{\"action\":\"bulkSignup\"}\n{\"username\":\"a\"}\n{\"username\":\"b\"}\n");
+        assertThat(named.getUsers()).extracting(SignupRequest::getUsername).containsExactly("a", "b");
+
+        BulkSignupRequest routed = (BulkSignupRequest) decoder.decodeLines("bulkSignup",
+                "{\"username\":\"a\"}\n{\"username\":\"b\"}");
+        assertThat(routed.getUsers()).extracting(SignupRequest::getUsername).containsExactly("a", "b");
+
+        BulkSignupRequest empty = (BulkSignupRequest) decoder.decodeLines("{\"action\":\"bulkSignup\"}");
+        assertThat(empty.getUsers()).isEmpty();
+
+        assertThatThrownBy(() -> decoder.decodeLines("{\"action\":\"login\"}\n{}"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Creates a decoder for the login, signup, listing and bulk actions.
+     *
+     * @return the decoder
+     */
+    private static RequestDecoder newDecoder() {
+        RequestDecoder decoder = new RequestDecoder(AuthController.buildObjectMapper(), Map.of(
+                "login", LoginRequest.class,
+                "signup", SignupRequest.class,
+                "listUsers", UserListRequest.class,
+                "bulkSignup", BulkSignupRequest.class));
+        decoder.bindLines("bulkSignup", SignupRequest.class, BulkSignupRequest::new);
+        return decoder;
+    }
+}
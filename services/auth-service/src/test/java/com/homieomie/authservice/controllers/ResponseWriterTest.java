@@ -0,0 +1,215 @@
+package com.homieomie.authservice.controllers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homieomie.authservice.models.SignupOutcome;
+import com.homieomie.authservice.models.UserMatch;
+import com.homieomie.authservice.models.UserSummary;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link ResponseWriter}: bodies identical to the generic
+ * serialization they replace, and buffers that are reused without leaking
+ * one body into the next.
+ */
+class ResponseWriterTest {
+
+    /**
+     * Text needing escapes, non-ASCII characters and a surrogate pair.
+     */
+    private static final String AWKWARD = "Zoë \"quoted\" \\ </script>\n  😀";
+
+    /**
+     * Mapper the controller uses, serializing the bodies as before.
+     */
+    private final ObjectMapper objectMapper = AuthController.buildObjectMapper();
+
+    /**
+     * Writer under test.
+     */
+    private final ResponseWriter writer = new ResponseWriter(objectMapper.getFactory());
+
+    /**
+     * Message, flag, token and error bodies match the maps the controller
+     * used to serialize.
+     */
+    @Test
+    void simpleBodiesMatchGenericSerialization() throws IOException {
+        Map<String, String> tokens = new LinkedHashMap<>();
+        tokens.put("idToken", "id." + AWKWARD);
+        tokens.put("accessToken", "access");
+        tokens.put("refreshToken", null);
+
+        assertThat(writer.message(AWKWARD).getBody())
+                .isEqualTo(objectMapper.writeValueAsString(Collections.singletonMap("result", AWKWARD)));
+        assertThat(writer.flag(true).getBody())
+                .isEqualTo(objectMapper.writeValueAsString(Collections.singletonMap("result", true)));
+        assertThat(writer.flag(false).getBody())
+                .isEqualTo(objectMapper.writeValueAsString(Collections.singletonMap("result", false)));
+        assertThat(writer.tokens(tokens).getBody())
+                .isEqualTo(objectMapper.writeValueAsString(Collections.singletonMap("result", tokens)));
+        APIGatewayProxyResponseEvent error = writer.error(400, AWKWARD);
+        assertThat(error.getStatusCode()).isEqualTo(400);
+        assertThat(error.getBody())
+                .isEqualTo(objectMapper.writeValueAsString(Collections.singletonMap("error", AWKWARD)));
+    }
+
+    /**
+     * {@code listUsers} and {@code searchUsers} pages match the same pages
+     * serialized from maps, null fields and cursor included.
+     */
+    @Test
+    void userPagesMatchGenericSerialization() throws IOException {
+        ResponseWriter.Body list = writer.openUserPage(2);
+        ResponseWriter.writeUser(list.generator(), new UserSummary("alice", AWKWARD));
+        ResponseWriter.writeUser(list.generator(), new UserSummary("bob", null));
+
+        assertThat(list.finishUserPage("next").getBody()).isEqualTo(objectMapper.writeValueAsString(
+                page(List.of(fields("username", "alice", "email", AWKWARD), fields("username", "bob", "email", null)),
+                        "next")));
+
+        ResponseWriter.Body search = writer.openUserPage(1);
+        ResponseWriter.writeMatch(search.generator(), new UserMatch("carol", "c@example.com", null, "Carol", AWKWARD));
+
+        assertThat(search.finishUserPage(null).getBody()).isEqualTo(objectMapper.writeValueAsString(
+                page(List.of(fields("username", "carol", "email", "c@example.com", "phone_number", null,
+                        "first_name", "Carol", "last_name", AWKWARD)), null)));
+    }
+
+    /**
+     * A {@code bulkSignup} result matches the same result serialized from maps.
+     */
+    @Test
+    void signupOutcomesMatchGenericSerialization() throws IOException {
+        ResponseWriter.Body body = writer.openSignupOutcomes(2);
+        ResponseWriter.writeOutcome(body.generator(), SignupOutcome.created(0, "alice", "User created"));
+        ResponseWriter.writeOutcome(body.generator(), SignupOutcome.failed(1, "bob", AWKWARD));
+
+        Map<String, Object> created = fields("index", 0, "username", "alice", "result", "User created");
+        Map<String, Object> failed = fields("index", 1, "username", "bob", "error", AWKWARD);
+        assertThat(body.finishSignupOutcomes(1, 1).getBody()).isEqualTo(objectMapper.writeValueAsString(
+                Collections.singletonMap("result", fields("items", List.of(created, failed), "created", 1,
+                        "failed", 1))));
+    }
+
+    /**
+     * A buffer reused for a shorter body carries nothing of the longer body
+     * written into it before.
+     */
+    @Test
+    void reusedBufferDoesNotLeakThePreviousBody() {
+        RecordingFactory factory = new RecordingFactory();
+        ResponseWriter recording = new ResponseWriter(factory);
+
+        recording.message("x".repeat(1_000));
+        APIGatewayProxyResponseEvent shorter = recording.message("y");
+
+        assertThat(factory.buffers.get(1)).isSameAs(factory.buffers.get(0));
+        assertThat(shorter.getBody()).isEqualTo("{\"result\":\"y\"}");
+        assertThat(recording.error(500, null).getBody()).isEqualTo("{\"error\":null}");
+    }
+
+    /**
+     * A buffer grown past the retained size is dropped rather than pooled,
+     * while smaller ones keep being reused.
+     */
+    @Test
+    void oversizedBufferIsNotPooled() {
+        RecordingFactory factory = new RecordingFactory();
+        ResponseWriter recording = new ResponseWriter(factory, 4 * 1024);
+
+        recording.message("small");
+        String large = "z".repeat(8 * 1024);
+        assertThat(recording.message(large).getBody()).isEqualTo("{\"result\":\"" + large + "\"}");
+        recording.message("small");
+        recording.message("small");
+
+        assertThat(factory.buffers.get(1)).isSameAs(factory.buffers.get(0));
+        assertThat(factory.buffers.get(2)).isNotSameAs(factory.buffers.get(1));
+        assertThat(factory.buffers.get(3)).isSameAs(factory.buffers.get(2));
+    }
+
+    /**
+     * The preflight response is one shared instance, and neither it nor the
+     * shared header map is changed by the responses written after it.
+     */
+    @Test
+    void sharedPreflightAndHeadersStayUnmodified() {
+        Map<String, String> headers = new HashMap<>(ResponseWriter.HEADERS);
+        APIGatewayProxyResponseEvent preflight = writer.preflight();
+
+        writer.message("done");
+        APIGatewayProxyResponseEvent error = writer.error(429, "Too many requests");
+
+        assertThat(writer.preflight()).isSameAs(preflight);
+        assertThat(preflight.getStatusCode()).isEqualTo(200);
+        assertThat(preflight.getBody()).isEmpty();
+        assertThat(preflight.getHeaders()).isSameAs(ResponseWriter.HEADERS);
+        assertThat(error.getHeaders()).isSameAs(ResponseWriter.HEADERS);
+        assertThat(ResponseWriter.HEADERS).isEqualTo(headers);
+        assertThatThrownBy(() -> ResponseWriter.HEADERS.put("Retry-After", "1"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> preflight.getHeaders().remove("Content-Type"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * Builds a {@code listUsers} or {@code searchUsers} result as maps.
+     *
+     * @param users      the user entries
+     * @param nextCursor the cursor of the next page, or {@code null}
+     * @return the body as maps
+     */
+    private static Map<String, Object> page(List<Map<String, Object>> users, String nextCursor) {
+        return Collections.singletonMap("result", fields("users", users, "nextCursor", nextCursor));
+    }
+
+    /**
+     * Builds an ordered map allowing {@code null} values.
+     *
+     * @param namesAndValues alternating field names and values
+     * @return the map, in the order given
+     */
+    private static Map<String, Object> fields(Object... namesAndValues) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            fields.put((String) namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return fields;
+    }
+
+    /**
+     * Factory recording the buffer each generator writes into.
+     */
+    private static final class RecordingFactory extends JsonFactory {
+
+        /**
+         * Serialization version.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Buffers handed to the generators, in order.
+         */
+        private final transient List<Writer> buffers = new ArrayList<>();
+
+        @Override
+        public JsonGenerator createGenerator(Writer out) throws IOException {
+            buffers.add(out);
+            return super.createGenerator(out);
+        }
+    }
+}
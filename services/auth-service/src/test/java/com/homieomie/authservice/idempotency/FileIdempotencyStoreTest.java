@@ -0,0 +1,144 @@
+package com.homieomie.authservice.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link FileIdempotencyStore}.
+ */
+class FileIdempotencyStoreTest {
+
+    /**
+     * Directory the store under test writes to.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * A saved response is found by another store on the same directory, as
+     * after a restart, with every field intact.
+     */
+    @Test
+    void savedResponseIsFoundByAnotherStore() {
+        StoredResponse saved = new StoredResponse("abc", 201, Map.of("Content-Type", "application/json"),
+                "{\"user\":\"élodie\"}", System.currentTimeMillis() + 60_000);
+        new FileIdempotencyStore(directory).save("signup:key/with:odd chars", saved);
+
+        StoredResponse found = new FileIdempotencyStore(directory).find("signup:key/with:odd chars");
+
+        assertThat(found).isNotNull();
+        assertThat(found.getFingerprint()).isEqualTo("abc");
+        assertThat(found.getStatusCode()).isEqualTo(201);
+        assertThat(found.getHeaders()).isEqualTo(saved.getHeaders());
+        assertThat(found.getBody()).isEqualTo(saved.getBody());
+        assertThat(found.getExpiresAtMillis()).isEqualTo(saved.getExpiresAtMillis());
+    }
+
+    /**
+     * A later save replaces the earlier response, and a null body survives.
+     */
+    @Test
+    void saveReplacesEarlierResponse() {
+        FileIdempotencyStore store = new FileIdempotencyStore(directory);
+        long expiry = System.currentTimeMillis() + 60_000;
+        store.save("k", new StoredResponse("a", 200, Map.of(), "first", expiry));
+        store.save("k", new StoredResponse("a", 400, Map.of(), null, expiry));
+
+        assertThat(store.find("k").getStatusCode()).isEqualTo(400);
+        assertThat(store.find("k").getBody()).isNull();
+        assertThat(store.find("other")).isNull();
+    }
+
+    /**
+     * An expired response is not found, and its file is deleted.
+     */
+    @Test
+    void expiredResponseIsDropped() throws IOException {
+        FileIdempotencyStore store = new FileIdempotencyStore(directory);
+        store.save("k", new StoredResponse("a", 200, Map.of(), "", System.currentTimeMillis() - 1));
+
+        assertThat(store.find("k")).isNull();
+        assertThat(fileCount()).isZero();
+    }
+
+    /**
+     * A purge deletes only expired responses.
+     */
+    @Test
+    void purgeDeletesOnlyExpiredResponses() {
+        FileIdempotencyStore store = new FileIdempotencyStore(directory);
+        long now = System.currentTimeMillis();
+        store.save("old", new StoredResponse("a", 200, Map.of(), "", now - 1));
+        store.save("new", new StoredResponse("a", 200, Map.of(), "", now + 60_000));
+
+        assertThat(store.purgeExpired()).isEqualTo(1);
+        assertThat(store.find("new")).isNotNull();
+    }
+
+    /**
+     * A truncated file reads as no response rather than failing the request.
+     */
+    @Test
+    void truncatedFileReadsAsMissing() throws IOException {
+        FileIdempotencyStore store = new FileIdempotencyStore(directory);
+        store.save("k", new StoredResponse("a", 200, Map.of(), "body", System.currentTimeMillis() + 60_000));
+        try (Stream<Path> files = responseFiles()) {
+            Path file = files.findFirst().orElseThrow();
+            Files.write(file, new byte[] {0, 0, 0, 1, 0});
+        }
+
+        assertThat(store.find("k")).isNull();
+    }
+
+    /**
+     * The fingerprint key is created once, readable by its owner only, and
+     * read back by every later store on the directory.
+     */
+    @Test
+    void fingerprintKeyIsSharedThroughTheDirectory() throws IOException {
+        byte[] key = new FileIdempotencyStore(directory).fingerprintKey();
+        Path file = directory.resolve("fingerprint.key");
+
+        assertThat(key).hasSize(32);
+        assertThat(new FileIdempotencyStore(directory).fingerprintKey()).isEqualTo(key);
+        assertThat(Files.readAllBytes(file)).isEqualTo(key);
+        if (Files.getFileStore(file).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            assertThat(Files.getPosixFilePermissions(file))
+                    .containsExactlyInAnyOrder(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    /**
+     * Counts the response files in the store's directory.
+     *
+     * @return the file count
+     * @throws IOException if the directory cannot be listed
+     */
+    private long fileCount() throws IOException {
+        try (Stream<Path> files = responseFiles()) {
+            return files.count();
+        }
+    }
+
+    /**
+     * Lists the response files in the store's directory, leaving out the fingerprint key.
+     *
+     * @return the files, to be closed by the caller
+     * @throws IOException if the directory cannot be listed
+     */
+    private Stream<Path> responseFiles() throws IOException {
+        return Files.list(directory).filter(file -> file.getFileName().toString().endsWith(".response"));
+    }
+}
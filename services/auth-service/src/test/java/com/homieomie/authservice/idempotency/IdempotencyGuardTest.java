@@ -0,0 +1,213 @@
+package com.homieomie.authservice.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link IdempotencyGuard}: coalescing of concurrent repeats,
+ * replay of saved responses and refusal of reused keys.
+ */
+class IdempotencyGuardTest {
+
+    /**
+     * Store the guard under test saves in.
+     */
+    private final InMemoryIdempotencyStore store = new InMemoryIdempotencyStore(100);
+
+    /**
+     * Guard under test.
+     */
+    private final IdempotencyGuard guard = new IdempotencyGuard(store, Duration.ofMinutes(1));
+
+    /**
+     * Fingerprint of the request the tests repeat.
+     */
+    private final String fingerprint = guard.fingerprint("signup", "alice");
+
+    /**
+     * Number of times a request ran.
+     */
+    private final AtomicInteger runs = new AtomicInteger();
+
+    /**
+     * A repeat arriving while the first request runs waits for it and gets
+     * the same response, without running the request again.
+     */
+    @Test
+    void concurrentRepeatJoinsTheRunningRequest() {
+        CompletableFuture<APIGatewayProxyResponseEvent> call = new CompletableFuture<>();
+
+        CompletableFuture<APIGatewayProxyResponseEvent> first = guard.execute("k", fingerprint, () -> run(call));
+        CompletableFuture<APIGatewayProxyResponseEvent> repeat = guard.execute("k", fingerprint, () -> run(call));
+        assertThat(repeat).isNotDone();
+
+        call.complete(response(200));
+        assertThat(first.join().getStatusCode()).isEqualTo(200);
+        assertThat(repeat.join()).isSameAs(first.join());
+        assertThat(runs).hasValue(1);
+        assertThat(guard.coalescedCount()).isEqualTo(1);
+    }
+
+    /**
+     * A repeat after the first request answered is replayed from the store
+     * and marked as a replay.
+     */
+    @Test
+    void laterRepeatIsReplayed() {
+        guard.execute("k", fingerprint, () -> run(CompletableFuture.completedFuture(response(409)))).join();
+
+        APIGatewayProxyResponseEvent replay = guard.execute("k", fingerprint,
+                () -> run(CompletableFuture.completedFuture(response(200)))).join();
+
+        assertThat(replay.getStatusCode()).isEqualTo(409);
+        assertThat(replay.getHeaders()).containsEntry(StoredResponse.REPLAYED_HEADER, "true");
+        assertThat(runs).hasValue(1);
+    }
+
+    /**
+     * Server errors and rate limits are not saved, so the next repeat runs.
+     */
+    @Test
+    void serverErrorsAndRateLimitsAreNotReplayed() {
+        guard.execute("a", fingerprint, () -> run(CompletableFuture.completedFuture(response(503)))).join();
+        guard.execute("a", fingerprint, () -> run(CompletableFuture.completedFuture(response(200)))).join();
+        guard.execute("b", fingerprint, () -> run(CompletableFuture.completedFuture(response(429)))).join();
+        guard.execute("b", fingerprint, () -> run(CompletableFuture.completedFuture(response(200)))).join();
+
+        assertThat(runs).hasValue(4);
+    }
+
+    /**
+     * A key reused with a different request fails, whether the first request
+     * is running or answered.
+     */
+    @Test
+    void keyReusedWithAnotherRequestConflicts() {
+        CompletableFuture<APIGatewayProxyResponseEvent> call = new CompletableFuture<>();
+        String other = guard.fingerprint("signup", "bob");
+        guard.execute("k", fingerprint, () -> run(call));
+
+        assertThat(guard.execute("k", other, () -> run(call)))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(IdempotencyConflictException.class);
+
+        call.complete(response(200));
+        assertThat(guard.execute("k", other, () -> run(call)))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(IdempotencyConflictException.class);
+        assertThat(guard.conflictCount()).isEqualTo(2);
+    }
+
+    /**
+     * A store that fails to save still lets the request and its waiting
+     * repeats complete, and frees the key for the next repeat.
+     */
+    @Test
+    void failedSaveStillCompletesWaitingRepeats() {
+        IdempotencyStore failing = new IdempotencyStore() {
+            @Override
+            public StoredResponse find(String key) {
+                return null;
+            }
+
+            @Override
+            public void save(String key, StoredResponse response) {
+                throw new IllegalStateException("disk full");
+            }
+
+            @Override
+            public byte[] fingerprintKey() {
+                return store.fingerprintKey();
+            }
+        };
+        IdempotencyGuard failingGuard = new IdempotencyGuard(failing, Duration.ofMinutes(1));
+        CompletableFuture<APIGatewayProxyResponseEvent> call = new CompletableFuture<>();
+
+        CompletableFuture<APIGatewayProxyResponseEvent> first = failingGuard.execute("k", fingerprint,
+                () -> run(call));
+        CompletableFuture<APIGatewayProxyResponseEvent> repeat = failingGuard.execute("k", fingerprint,
+                () -> run(call));
+        call.complete(response(200));
+
+        assertThat(first).isCompletedWithValueMatching(response -> response.getStatusCode() == 200);
+        assertThat(repeat).isCompletedWithValueMatching(response -> response.getStatusCode() == 200);
+        failingGuard.execute("k", fingerprint, () -> run(CompletableFuture.completedFuture(response(200)))).join();
+        assertThat(runs).hasValue(2);
+    }
+
+    /**
+     * A failed request fails its waiting repeats too, and is not saved.
+     */
+    @Test
+    void failedRequestFailsWaitingRepeats() {
+        CompletableFuture<APIGatewayProxyResponseEvent> call = new CompletableFuture<>();
+        CompletableFuture<APIGatewayProxyResponseEvent> first = guard.execute("k", fingerprint, () -> run(call));
+        CompletableFuture<APIGatewayProxyResponseEvent> repeat = guard.execute("k", fingerprint, () -> run(call));
+
+        call.completeExceptionally(new IllegalStateException("boom"));
+
+        assertThat(first).isCompletedExceptionally();
+        assertThat(repeat).isCompletedExceptionally();
+        assertThat(store.size()).isZero();
+    }
+
+    /**
+     * Fingerprints separate their parts, so moving text between parts changes
+     * the fingerprint.
+     */
+    @Test
+    void fingerprintSeparatesParts() {
+        assertThat(guard.fingerprint("ab", "c")).isNotEqualTo(guard.fingerprint("a", "bc"));
+        assertThat(guard.fingerprint("a", null)).isEqualTo(guard.fingerprint("a", ""));
+    }
+
+    /**
+     * Fingerprints are keyed by the store: guards over stores with different
+     * keys disagree, and neither gives the plain SHA-256 of the parts.
+     */
+    @Test
+    void fingerprintIsKeyedByTheStore() throws Exception {
+        IdempotencyGuard other = new IdempotencyGuard(new InMemoryIdempotencyStore(100), Duration.ofMinutes(1));
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        sha256.update("signup\0alice\0".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(other.fingerprint("signup", "alice")).isNotEqualTo(fingerprint);
+        assertThat(fingerprint).isNotEqualTo(HexFormat.of().formatHex(sha256.digest()));
+        assertThat(guard.fingerprint("signup", "alice")).isEqualTo(fingerprint);
+    }
+
+    /**
+     * Counts a run of a request and returns its future.
+     *
+     * @param call the future the request completes
+     * @return the future
+     */
+    private CompletableFuture<APIGatewayProxyResponseEvent> run(CompletableFuture<APIGatewayProxyResponseEvent> call) {
+        runs.incrementAndGet();
+        return call;
+    }
+
+    /**
+     * Builds a response.
+     *
+     * @param statusCode the status code
+     * @return the response
+     */
+    private static APIGatewayProxyResponseEvent response(int statusCode) {
+        return new APIGatewayProxyResponseEvent()
+                .withStatusCode(statusCode)
+                .withHeaders(Map.of("Content-Type", "application/json"))
+                .withBody("{\"status\":" + statusCode + "}");
+    }
+}
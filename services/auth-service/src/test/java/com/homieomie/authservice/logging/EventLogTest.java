@@ -0,0 +1,68 @@
+package com.homieomie.authservice.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.homieomie.authservice.models.LoginRequest;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link EventLog}: what a flush writes, including the report of
+ * events dropped while the ring was full.
+ */
+class EventLogTest {
+
+    /**
+     * Stream the log is flushed to.
+     */
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    /**
+     * Events past the ring's capacity are dropped, reported by count ahead
+     * of the events kept, and the count starts over after the report.
+     */
+    @Test
+    void droppedEventsAreCountedAndReportedOnce() {
+        EventLog log = new EventLog(true, 4, 100, 10, 200);
+        for (int i = 0; i < 10; i++) {
+            log.warn("event " + i, "login", null, null, null);
+        }
+
+        String first = flush(log);
+        log.warn("event 10", "login", null, null, null);
+        String second = flush(log);
+
+        assertThat(first.split("\n")).hasSize(5);
+        assertThat(first.split("\n")[0]).contains("\"message\":\"Log events dropped\",\"dropped\":6");
+        assertThat(first).contains("\"event 0\"", "\"event 3\"").doesNotContain("\"event 4\"");
+        assertThat(second).doesNotContain("dropped").contains("\"event 10\"");
+    }
+
+    /**
+     * A flushed request event carries its model without its password.
+     */
+    @Test
+    void flushedRequestIsRedacted() {
+        EventLog log = new EventLog(true, 4, 100, 10, 200);
+
+        log.request("request-1", null, "login", 400, 41_207_000, "NotAuthorizedException",
+                new LoginRequest("alice", "Pa55word"));
+
+        assertThat(flush(log)).doesNotContain("Pa55word")
+                .contains("\"level\":\"WARN\"", "\"latencyMs\":41.207", "\"password\":\"[REDACTED]\"");
+    }
+
+    /**
+     * Flushes the log and returns what it wrote since the last flush.
+     *
+     * @param log the log
+     * @return the lines written
+     */
+    private String flush(EventLog log) {
+        output.reset();
+        log.flush(new PrintStream(output, true, StandardCharsets.UTF_8));
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
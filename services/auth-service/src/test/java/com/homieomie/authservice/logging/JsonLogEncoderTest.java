@@ -0,0 +1,167 @@
+package com.homieomie.authservice.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.homieomie.authservice.models.BulkSignupRequest;
+import com.homieomie.authservice.models.ConfirmSignupRequest;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.models.RefreshRequest;
+import com.homieomie.authservice.models.SignupRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JsonLogEncoder}: redaction of request models, escaping
+ * and UTF-8 encoding of strings, and truncation of long values.
+ */
+class JsonLogEncoderTest {
+
+    /**
+     * Password given to the request models, which must never be written.
+     */
+    private static final String PASSWORD = "Pa55word-never-logged";
+
+    /**
+     * Refresh token given to the request model, which must never be written.
+     */
+    private static final String REFRESH_TOKEN = "refresh-token-never-logged";
+
+    /**
+     * Mapper parsing the encoded lines back.
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Encoder under test, starting small so that it grows.
+     */
+    private final JsonLogEncoder encoder = new JsonLogEncoder(16);
+
+    /**
+     * Every request model is written with its username only and its secrets
+     * replaced by a placeholder, and no secret reaches the buffer, not even
+     * past the encoded length.
+     */
+    @Test
+    void requestSecretsNeverReachTheBuffer() throws IOException {
+        SignupRequest signup = new SignupRequest("alice", "alice@example.com", "1990-01-01", "+15550100", "Alice",
+                "Liddell", "F");
+        List<Object> requests = List.of(new LoginRequest("alice", PASSWORD),
+                new ConfirmSignupRequest("alice", PASSWORD), new RefreshRequest(REFRESH_TOKEN), signup,
+                new BulkSignupRequest(List.of(signup)));
+
+        for (Object request : requests) {
+            encoder.encode(event("Request handled", request));
+        }
+
+        String written = new String(encoder.buffer(), StandardCharsets.UTF_8);
+        assertThat(written).doesNotContain(PASSWORD, REFRESH_TOKEN, "alice@example.com", "+15550100", "1990-01-01");
+        List<JsonNode> lines = lines();
+        String withPassword = "{\"username\":\"alice\",\"password\":\"[REDACTED]\"}";
+        assertThat(lines.get(0).get("request").toString()).isEqualTo(withPassword);
+        assertThat(lines.get(1).get("request").toString()).isEqualTo(withPassword);
+        assertThat(lines.get(2).get("request").toString()).isEqualTo("{\"refreshToken\":\"[REDACTED]\"}");
+        assertThat(lines.get(3).get("request").toString()).isEqualTo("{\"username\":\"alice\"}");
+        assertThat(lines.get(4).has("request")).isFalse();
+    }
+
+    /**
+     * Quotes, backslashes and control characters are escaped, and the line
+     * parses back to the original string.
+     */
+    @Test
+    void stringsAreEscaped() throws IOException {
+        String message = "quote \" backslash \\ newline \n return \r tab \t bell \u0007 nul \u0000";
+
+        encoder.encode(event(message, null));
+
+        assertThat(lines().get(0).get("message").asText()).isEqualTo(message);
+        assertThat(new String(encoder.buffer(), 0, encoder.length(), StandardCharsets.UTF_8))
+                .contains("\\\"", "\\\\", "\\n", "\\r", "\\t", "\\u0007", "\\u0000");
+    }
+
+    /**
+     * Two-, three- and four-byte characters are UTF-8 encoded, a surrogate
+     * pair as one four-byte character, and a lone surrogate as {@code ?}.
+     */
+    @Test
+    void charactersAreUtf8Encoded() throws IOException {
+        String message = "café 中 😀";
+
+        encoder.encode(event(message, null));
+        encoder.encode(event("lone \ud83d high", null));
+        encoder.encode(event("lone \ude00 low", null));
+
+        List<JsonNode> lines = lines();
+        assertThat(lines.get(0).get("message").asText()).isEqualTo(message);
+        assertThat(new String(encoder.buffer(), 0, encoder.length(), StandardCharsets.UTF_8)).contains(message);
+        assertThat(lines.get(1).get("message").asText()).isEqualTo("lone ? high");
+        assertThat(lines.get(2).get("message").asText()).isEqualTo("lone ? low");
+    }
+
+    /**
+     * A value longer than the limit is cut short; a surrogate pair split by
+     * the cut is written as {@code ?} rather than as half a character.
+     */
+    @Test
+    void longValuesAreTruncated() throws IOException {
+        String longMessage = "x".repeat(5_000);
+        String splitPair = "x".repeat(1_023) + "😀";
+
+        encoder.encode(event(longMessage, null));
+        encoder.encode(event(splitPair, null));
+
+        List<JsonNode> lines = lines();
+        assertThat(lines.get(0).get("message").asText()).isEqualTo("x".repeat(1_024));
+        assertThat(lines.get(1).get("message").asText()).isEqualTo("x".repeat(1_023) + "?");
+    }
+
+    /**
+     * The drop report is one warning line carrying the count.
+     */
+    @Test
+    void droppedEventsAreReported() throws IOException {
+        encoder.encodeDropped(1_000, 42);
+
+        JsonNode line = lines().get(0);
+        assertThat(line.get("level").asText()).isEqualTo("WARN");
+        assertThat(line.get("dropped").asLong()).isEqualTo(42);
+    }
+
+    /**
+     * Builds a warning event.
+     *
+     * @param message the message
+     * @param request the request model, or {@code null}
+     * @return the event
+     */
+    private static LogEvent event(String message, Object request) {
+        LogEvent event = new LogEvent();
+        event.timestampMillis = 1_760_000_000_000L;
+        event.level = LogEvent.Level.WARN;
+        event.message = message;
+        event.latencyNanos = -1;
+        event.request = request;
+        return event;
+    }
+
+    /**
+     * Parses the encoded lines.
+     *
+     * @return one tree per line
+     * @throws IOException if a line is not valid JSON
+     */
+    private List<JsonNode> lines() throws IOException {
+        String text = new String(encoder.buffer(), 0, encoder.length(), StandardCharsets.UTF_8);
+        assertThat(text).endsWith("\n");
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : text.split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        return lines;
+    }
+}
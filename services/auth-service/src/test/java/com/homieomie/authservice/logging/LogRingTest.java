@@ -0,0 +1,96 @@
+package com.homieomie.authservice.logging;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link LogRing}: claiming, publishing and consuming slots in
+ * sequence order as the sequences wrap around the ring.
+ */
+class LogRingTest {
+
+    /**
+     * A ring a whole lap ahead of its consumer has no slot to give, and
+     * gets one back for each event consumed.
+     */
+    @Test
+    void fullRingRefusesClaimsUntilConsumed() {
+        LogRing ring = new LogRing(4);
+        for (int i = 0; i < 4; i++) {
+            publish(ring, "event " + i);
+        }
+
+        assertThat(ring.claim()).isNull();
+        ring.release(ring.peek());
+        assertThat(ring.claim()).isNotNull();
+        assertThat(ring.claim()).isNull();
+    }
+
+    /**
+     * Events keep coming out in the order they were published as their
+     * sequences wrap around the slots many times.
+     */
+    @Test
+    void eventsComeOutInOrderAcrossWrapArounds() {
+        LogRing ring = new LogRing(4);
+        int next = 0;
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                publish(ring, "event " + (round * 3 + i));
+            }
+            LogEvent event;
+            while ((event = ring.peek()) != null) {
+                assertThat(event.message).isEqualTo("event " + next++);
+                ring.release(event);
+            }
+        }
+
+        assertThat(next).isEqualTo(30);
+    }
+
+    /**
+     * A claimed slot is not seen by the consumer until it is published, and
+     * a consumed slot keeps no references.
+     */
+    @Test
+    void onlyPublishedEventsAreConsumed() {
+        LogRing ring = new LogRing(4);
+        LogEvent claimed = ring.claim();
+        claimed.message = "pending";
+
+        assertThat(ring.peek()).isNull();
+        ring.publish(claimed);
+        LogEvent event = ring.peek();
+        assertThat(event.message).isEqualTo("pending");
+        ring.release(event);
+        assertThat(event.message).isNull();
+        assertThat(ring.peek()).isNull();
+    }
+
+    /**
+     * The capacity is rounded up to a power of two.
+     */
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        LogRing ring = new LogRing(5);
+        int claimed = 0;
+        while (ring.claim() != null) {
+            claimed++;
+        }
+
+        assertThat(claimed).isEqualTo(8);
+    }
+
+    /**
+     * Claims, fills and publishes one event.
+     *
+     * @param ring    the ring
+     * @param message the event's message
+     */
+    private static void publish(LogRing ring, String message) {
+        LogEvent event = ring.claim();
+        event.message = message;
+        ring.publish(event);
+    }
+}
@@ -0,0 +1,188 @@
+package com.homieomie.authservice.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link BucketTable}: the burst and wait of a bucket, the packing
+ * of keys into slots, and which bucket a full group gives up.
+ * <p>
+ * Keys are built as hashes with a chosen fingerprint in the top 24 bits and
+ * group in the low bits, and intervals are an hour long, so a bucket does not
+ * refill while a test runs.
+ * </p>
+ */
+class BucketTableTest {
+
+    /**
+     * Emission interval that outlasts any test, in milliseconds.
+     */
+    private static final long HOUR = 3_600_000;
+
+    /**
+     * A bucket allows its burst, then refuses with the time until the next
+     * token.
+     */
+    @Test
+    void burstThenWait() {
+        BucketTable table = new BucketTable(8);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(table.acquire(key(1), HOUR, 2 * HOUR)).isZero();
+        }
+        assertThat(table.acquire(key(1), HOUR, 2 * HOUR)).isBetween(HOUR - 1_000, HOUR);
+        assertThat(table.acquire(key(1), HOUR, 2 * HOUR)).isPositive();
+    }
+
+    /**
+     * A bucket refills at its interval, without any sweep.
+     */
+    @Test
+    void bucketRefillsAfterItsInterval() throws InterruptedException {
+        BucketTable table = new BucketTable(8);
+        assertThat(table.acquire(key(1), 20, 0)).isZero();
+        assertThat(table.acquire(key(1), 20, 0)).isPositive();
+
+        Thread.sleep(40);
+
+        assertThat(table.acquire(key(1), 20, 0)).isZero();
+    }
+
+    /**
+     * Keys in one group with different fingerprints have their own buckets,
+     * and hashes differing only in bits the slot does not keep share one.
+     */
+    @Test
+    void keysAreToldApartByFingerprint() {
+        BucketTable table = new BucketTable(8);
+
+        assertThat(table.acquire(key(1), HOUR, 0)).isZero();
+        assertThat(table.acquire(key(2), HOUR, 0)).isZero();
+        assertThat(table.acquire(key(1) | 1L << 20, HOUR, 0)).isPositive();
+    }
+
+    /**
+     * A hash whose fingerprint bits are all zero still occupies its slot,
+     * rather than reading as empty.
+     */
+    @Test
+    void zeroFingerprintIsTracked() {
+        BucketTable table = new BucketTable(8);
+
+        assertThat(table.acquire(0, HOUR, 0)).isZero();
+        assertThat(table.acquire(0, HOUR, 0)).isPositive();
+    }
+
+    /**
+     * A full group evicts the draining bucket closest to full, whose key
+     * starts over, and counts the eviction.
+     */
+    @Test
+    void fullGroupEvictsTheBucketClosestToFull() {
+        BucketTable table = new BucketTable(8);
+        long tolerance = 10 * HOUR;
+        for (int k = 1; k <= 8; k++) {
+            for (int taken = 0; taken < (k == 3 ? 1 : 2); taken++) {
+                assertThat(table.acquire(key(k), HOUR, tolerance)).isZero();
+            }
+        }
+        assertThat(table.evictionCount()).isZero();
+
+        assertThat(table.acquire(key(9), HOUR, tolerance)).isZero();
+
+        assertThat(table.evictionCount()).isEqualTo(1);
+        for (int taken = 0; taken < 9; taken++) {
+            assertThat(table.acquire(key(2), HOUR, tolerance)).isZero();
+        }
+        assertThat(table.acquire(key(2), HOUR, tolerance)).as("key 2 was not evicted").isPositive();
+    }
+
+    /**
+     * A full group reclaims a bucket that is full again without counting an
+     * eviction.
+     */
+    @Test
+    void fullGroupReclaimsFullBucketsFirst() throws InterruptedException {
+        BucketTable table = new BucketTable(8);
+        for (int k = 1; k <= 8; k++) {
+            table.acquire(key(k), 1, 0);
+        }
+
+        Thread.sleep(10);
+
+        assertThat(table.acquire(key(9), 1, 0)).isZero();
+        assertThat(table.evictionCount()).isZero();
+    }
+
+    /**
+     * Capacity is rounded up to a power of two, at least one group.
+     */
+    @Test
+    void capacityIsRoundedUp() {
+        assertThat(new BucketTable(1).capacity()).isEqualTo(8);
+        assertThat(new BucketTable(8).capacity()).isEqualTo(8);
+        assertThat(new BucketTable(9).capacity()).isEqualTo(16);
+        assertThat(new BucketTable(1_000).capacity()).isEqualTo(1_024);
+    }
+
+    /**
+     * Threads racing for one bucket take exactly its burst between them.
+     */
+    @Test
+    void racingThreadsTakeExactlyTheBurst() throws Exception {
+        BucketTable table = new BucketTable(64);
+        AtomicInteger taken = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Void>> threads = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int t = 0; t < 8; t++) {
+                threads.add(CompletableFuture.runAsync(() -> {
+                    awaitQuietly(start);
+                    for (int i = 0; i < 1_000; i++) {
+                        if (table.acquire(key(7), HOUR, 99 * HOUR) == 0) {
+                            taken.incrementAndGet();
+                        }
+                    }
+                }, executor));
+            }
+            start.countDown();
+            CompletableFuture.allOf(threads.toArray(new CompletableFuture<?>[0])).get();
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(taken).hasValue(100);
+    }
+
+    /**
+     * Builds a key hash in group zero with a chosen fingerprint.
+     *
+     * @param fingerprint the fingerprint, in the top 24 bits of the hash
+     * @return the hash
+     */
+    private static long key(long fingerprint) {
+        return fingerprint << 40;
+    }
+
+    /**
+     * Waits for a latch, restoring the interrupt flag if interrupted.
+     *
+     * @param latch the latch
+     */
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.homieomie.authservice.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link RateLimiter}: which requests share a bucket, the switch
+ * that turns limiting off, and keys crafted to collide.
+ */
+class RateLimiterTest {
+
+    /**
+     * Seed of the hash seeds an attacker is assumed to know.
+     */
+    private static final long KNOWN_SEED = 42;
+
+    /**
+     * Mask turning a hash into its group in a table of 1024 keys.
+     */
+    private static final int GROUP_MASK = 1_023 & -8;
+
+    /**
+     * Limiter allowing a client two requests per action and a user one,
+     * refilling too slowly to matter during a test.
+     */
+    private final RateLimiter limiter = new RateLimiter(true, 0.001, 2, 0.001, 1, 1_024);
+
+    /**
+     * A client's burst is per action, and other clients are not affected.
+     */
+    @Test
+    void clientBucketIsPerActionAndAddress() {
+        assertThat(limiter.acquire("login", "10.0.0.1", null)).isZero();
+        assertThat(limiter.acquire("login", "10.0.0.1", null)).isZero();
+        assertThat(limiter.acquire("login", "10.0.0.1", null)).isPositive();
+
+        assertThat(limiter.acquire("signup", "10.0.0.1", null)).isZero();
+        assertThat(limiter.acquire("login", "10.0.0.2", null)).isZero();
+        assertThat(limiter.acquire("login", null, null)).isZero();
+        assertThat(limiter.rejectedCount()).isEqualTo(1);
+    }
+
+    /**
+     * A user's bucket is shared by every client and ignores letter case.
+     */
+    @Test
+    void usernameBucketIsSharedAcrossClients() {
+        assertThat(limiter.acquire("login", "10.0.0.1", "Alice")).isZero();
+        assertThat(limiter.acquire("login", "10.0.0.2", "alice")).isPositive();
+        assertThat(limiter.acquire("login", "10.0.0.3", "bob")).isZero();
+        assertThat(limiter.acquire("confirmSignup", "10.0.0.4", "ALICE")).isZero();
+    }
+
+    /**
+     * A refused client does not spend the user's token.
+     */
+    @Test
+    void refusedClientDoesNotSpendTheUserToken() {
+        limiter.acquire("login", "10.0.0.1", null);
+        limiter.acquire("login", "10.0.0.1", null);
+
+        assertThat(limiter.acquire("login", "10.0.0.1", "alice")).isPositive();
+        assertThat(limiter.acquire("login", "10.0.0.2", "alice")).isZero();
+    }
+
+    /**
+     * A disabled limiter lets every request through.
+     */
+    @Test
+    void disabledLimiterAllowsEverything() {
+        RateLimiter disabled = new RateLimiter(false, 0.001, 1, 0.001, 1, 8);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(disabled.acquire("login", "10.0.0.1", "alice")).isZero();
+        }
+        assertThat(disabled.rejectedCount()).isZero();
+    }
+
+    /**
+     * Usernames crafted to land in the group of a draining user evict it
+     * when the hash seeds are known, but not with the seeds a limiter draws
+     * itself.
+     */
+    @Test
+    void craftedCollisionsDoNotResetADrainingUser() throws InterruptedException {
+        long usernameSeed = knownUsernameSeed();
+        List<String> crafted = collidingUsernames(usernameSeed, "victim", 16);
+
+        RateLimiter predictable = new RateLimiter(true, 1_000_000, 1_000_000, 0.001, 1, 1_024,
+                new Random(KNOWN_SEED));
+        assertThat(afterAttack(predictable, crafted)).isZero();
+        assertThat(predictable.evictionCount()).isPositive();
+
+        RateLimiter seeded = new RateLimiter(true, 1_000_000, 1_000_000, 0.001, 1, 1_024);
+        assertThat(afterAttack(seeded, crafted)).isPositive();
+        assertThat(seeded.evictionCount()).isZero();
+    }
+
+    /**
+     * Drains the victim's bucket, sends one request naming each crafted
+     * username, and tries the victim again.
+     *
+     * @param limiter the limiter attacked
+     * @param crafted the usernames sent by the attacker
+     * @return the victim's wait after the attack, {@code 0} if its bucket was reset
+     * @throws InterruptedException if interrupted while letting the victim's request age
+     */
+    private static long afterAttack(RateLimiter limiter, List<String> crafted) throws InterruptedException {
+        assertThat(limiter.acquire("login", "10.0.0.1", "victim")).isZero();
+        assertThat(limiter.acquire("login", "10.0.0.1", "victim")).isPositive();
+        Thread.sleep(2);
+        for (String username : crafted) {
+            limiter.acquire("login", "10.0.0.2", username);
+        }
+        return limiter.acquire("login", "10.0.0.1", "victim");
+    }
+
+    /**
+     * Returns the username hash seed a limiter draws from {@link #KNOWN_SEED}.
+     *
+     * @return the seed
+     */
+    private static long knownUsernameSeed() {
+        Random seeds = new Random(KNOWN_SEED);
+        seeds.nextLong();
+        return seeds.nextLong();
+    }
+
+    /**
+     * Finds usernames whose key lands in the same group as the victim's.
+     *
+     * @param seed   the username hash seed
+     * @param victim the victim's username
+     * @param count  the number of usernames wanted
+     * @return the usernames
+     */
+    private static List<String> collidingUsernames(long seed, String victim, int count) {
+        int group = (int) RateLimiter.hash(seed, "login", victim) & GROUP_MASK;
+        List<String> usernames = new ArrayList<>();
+        for (int i = 0; usernames.size() < count; i++) {
+            String username = "user" + i;
+            if (((int) RateLimiter.hash(seed, "login", username) & GROUP_MASK) == group) {
+                usernames.add(username);
+            }
+        }
+        return usernames;
+    }
+}
@@ -0,0 +1,54 @@
+package com.homieomie.authservice.resilience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link Deadline}.
+ */
+class DeadlineTest {
+
+    /**
+     * A deadline is visible inside {@link Deadline#within} and gone after it.
+     */
+    @Test
+    void withinSetsAndRestoresTheDeadline() {
+        long before = System.nanoTime();
+
+        long inside = Deadline.within(1_000, Deadline::current);
+
+        assertThat(inside).isBetween(before, System.nanoTime() + 1_000_000_000L);
+        assertThat(Deadline.current()).isEqualTo(Deadline.NONE);
+    }
+
+    /**
+     * A nested deadline is replaced by the outer one when it ends, and
+     * {@link Deadline#NONE} runs an action without any.
+     */
+    @Test
+    void nestedDeadlinesRestoreTheOuterOne() {
+        Deadline.at(42, () -> {
+            assertThat(Deadline.at(7, Deadline::current)).isEqualTo(7);
+            assertThat(Deadline.at(Deadline.NONE, Deadline::current)).isEqualTo(Deadline.NONE);
+            assertThat(Deadline.current()).isEqualTo(42);
+            return null;
+        });
+    }
+
+    /**
+     * A carried continuation sees the deadline it was created under on
+     * whichever thread it runs, and leaves that thread without one.
+     */
+    @Test
+    void carriedContinuationSeesItsDeadlineOnAnotherThread() {
+        Function<Object, Long> continuation = Deadline.at(42, () -> Deadline.carry(ignored -> Deadline.current()));
+        Function<Object, Long> plain = Deadline.at(42, () -> ignored -> Deadline.current());
+
+        assertThat(CompletableFuture.supplyAsync(() -> continuation.apply(null)).join()).isEqualTo(42);
+        assertThat(CompletableFuture.supplyAsync(() -> plain.apply(null)).join()).isEqualTo(Deadline.NONE);
+        assertThat(CompletableFuture.supplyAsync(Deadline::current).join()).isEqualTo(Deadline.NONE);
+    }
+}
@@ -0,0 +1,85 @@
+package com.homieomie.authservice.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for which client address {@link Exchanges} reports as a request's source IP.
+ */
+class ExchangesTest {
+
+    /**
+     * Address of the peer the exchanges come from, such as the load balancer.
+     */
+    private static final String PEER = "10.0.0.2";
+
+    /**
+     * Only the last {@code X-Forwarded-For} entry, the one the load balancer
+     * appended, is taken as the client, with the spaces around it trimmed.
+     */
+    @Test
+    void lastForwardedEntryIsTheClient() throws IOException {
+        assertThat(sourceIp(true, "203.0.113.7")).isEqualTo("203.0.113.7");
+        assertThat(sourceIp(true, "198.51.100.1, 192.0.2.4,  203.0.113.7 ")).isEqualTo("203.0.113.7");
+    }
+
+    /**
+     * With the header repeated, the last entry of the last line is the client;
+     * entries the client sent on earlier lines are ignored.
+     */
+    @Test
+    void lastLineOfARepeatedHeaderIsRead() throws IOException {
+        assertThat(sourceIp(true, "198.51.100.1", "192.0.2.4, 203.0.113.7")).isEqualTo("203.0.113.7");
+    }
+
+    /**
+     * A missing header or an empty last entry falls back to the peer address.
+     */
+    @Test
+    void missingOrEmptyEntryFallsBackToThePeer() throws IOException {
+        assertThat(sourceIp(true)).isEqualTo(PEER);
+        assertThat(sourceIp(true, "203.0.113.7,")).isEqualTo(PEER);
+        assertThat(sourceIp(true, " ")).isEqualTo(PEER);
+    }
+
+    /**
+     * Unless the load balancer is trusted, the header is ignored, as any
+     * client can set it.
+     */
+    @Test
+    void forwardedForIsIgnoredByDefault() throws IOException {
+        assertThat(sourceIp(false, "203.0.113.7")).isEqualTo(PEER);
+    }
+
+    /**
+     * Converts a body-less exchange from {@link #PEER} and returns its source IP.
+     *
+     * @param trustForwardedFor whether to read {@code X-Forwarded-For}
+     * @param forwardedFor      the {@code X-Forwarded-For} header lines, in order
+     * @return the source IP of the request event
+     * @throws IOException never, as the body is empty
+     */
+    private static String sourceIp(boolean trustForwardedFor, String... forwardedFor) throws IOException {
+        Headers headers = new Headers();
+        for (String line : forwardedFor) {
+            headers.add("X-Forwarded-For", line);
+        }
+        HttpExchange exchange = mock(HttpExchange.class);
+        when(exchange.getRequestHeaders()).thenReturn(headers);
+        when(exchange.getRequestMethod()).thenReturn("POST");
+        when(exchange.getRequestURI()).thenReturn(URI.create("/login"));
+        when(exchange.getRequestBody()).thenReturn(new ByteArrayInputStream(new byte[0]));
+        when(exchange.getRemoteAddress()).thenReturn(new InetSocketAddress(PEER, 40_000));
+        return Exchanges.toRequestEvent(exchange, 1024, trustForwardedFor)
+                .getRequestContext().getIdentity().getSourceIp();
+    }
+}
@@ -0,0 +1,150 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link AdminAuthorizer}: caching of memberships and
+ * non-memberships, coalescing of lookups, and invalidation.
+ */
+class AdminAuthorizerTest {
+
+    /**
+     * Next answer of the lookup per username; users without one are members.
+     */
+    private final Map<String, CompletableFuture<Boolean>> answers = new ConcurrentHashMap<>();
+
+    /**
+     * Number of lookups made.
+     */
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    /**
+     * A membership and a non-membership are both reused within their
+     * time-to-live.
+     */
+    @Test
+    void answersAreCached() {
+        AdminAuthorizer authorizer = authorizer(Duration.ofMinutes(1), Duration.ofMinutes(1));
+        answers.put("bob", CompletableFuture.completedFuture(false));
+
+        assertThat(authorizer.isAdmin("alice").join()).isTrue();
+        assertThat(authorizer.isAdmin("alice").join()).isTrue();
+        assertThat(authorizer.isAdmin("bob").join()).isFalse();
+        assertThat(authorizer.isAdmin("bob").join()).isFalse();
+
+        assertThat(lookups).hasValue(2);
+        assertThat(authorizer.hitCount()).isEqualTo(2);
+        assertThat(authorizer.missCount()).isEqualTo(2);
+    }
+
+    /**
+     * Each kind of answer has its own time-to-live, and zero disables caching it.
+     */
+    @Test
+    void zeroTimeToLiveDisablesCaching() {
+        AdminAuthorizer authorizer = authorizer(Duration.ofMinutes(1), Duration.ZERO);
+        answers.put("bob", CompletableFuture.completedFuture(false));
+
+        authorizer.isAdmin("bob").join();
+        authorizer.isAdmin("bob").join();
+        authorizer.isAdmin("alice").join();
+        authorizer.isAdmin("alice").join();
+
+        assertThat(lookups).hasValue(3);
+    }
+
+    /**
+     * An expired answer is looked up again.
+     */
+    @Test
+    void expiredAnswerIsLookedUpAgain() throws InterruptedException {
+        AdminAuthorizer authorizer = authorizer(Duration.ofMillis(20), Duration.ofMillis(20));
+        authorizer.isAdmin("alice").join();
+
+        Thread.sleep(40);
+
+        authorizer.isAdmin("alice").join();
+        assertThat(lookups).hasValue(2);
+    }
+
+    /**
+     * Concurrent checks for one user share a lookup.
+     */
+    @Test
+    void concurrentChecksShareOneLookup() {
+        AdminAuthorizer authorizer = authorizer(Duration.ofMinutes(1), Duration.ofMinutes(1));
+        CompletableFuture<Boolean> call = new CompletableFuture<>();
+        answers.put("alice", call);
+
+        CompletableFuture<Boolean> first = authorizer.isAdmin("alice");
+        CompletableFuture<Boolean> second = authorizer.isAdmin("alice");
+        assertThat(second).isNotDone();
+        call.complete(true);
+
+        assertThat(first.join()).isTrue();
+        assertThat(second.join()).isTrue();
+        assertThat(lookups).hasValue(1);
+        assertThat(authorizer.coalescedCount()).isEqualTo(1);
+    }
+
+    /**
+     * A failed lookup fails its checks and is not cached.
+     */
+    @Test
+    void failuresAreNotCached() {
+        AdminAuthorizer authorizer = authorizer(Duration.ofMinutes(1), Duration.ofMinutes(1));
+        answers.put("alice", CompletableFuture.failedFuture(new IllegalStateException("unavailable")));
+
+        assertThat(authorizer.isAdmin("alice")).isCompletedExceptionally();
+        answers.remove("alice");
+        assertThat(authorizer.isAdmin("alice").join()).isTrue();
+        assertThat(lookups).hasValue(2);
+    }
+
+    /**
+     * Invalidating a user drops the cached answer, and keeps a lookup still
+     * in flight from filling the cache, though its checks still complete.
+     */
+    @Test
+    void invalidationForgetsTheUser() {
+        AdminAuthorizer authorizer = authorizer(Duration.ofMinutes(1), Duration.ofMinutes(1));
+        authorizer.isAdmin("alice").join();
+        authorizer.invalidate("alice");
+        answers.put("alice", CompletableFuture.completedFuture(false));
+        assertThat(authorizer.isAdmin("alice").join()).isFalse();
+
+        CompletableFuture<Boolean> call = new CompletableFuture<>();
+        answers.put("bob", call);
+        CompletableFuture<Boolean> check = authorizer.isAdmin("bob");
+        authorizer.invalidate("bob");
+        call.complete(true);
+        assertThat(check.join()).isTrue();
+        answers.put("bob", CompletableFuture.completedFuture(false));
+        assertThat(authorizer.isAdmin("bob").join()).isFalse();
+
+        authorizer.invalidateAll();
+        authorizer.isAdmin("alice").join();
+        assertThat(lookups).hasValue(5);
+    }
+
+    /**
+     * Creates an authorizer over the scripted lookup, holding a few answers.
+     *
+     * @param ttl         the time a membership is reused
+     * @param negativeTtl the time a non-membership is reused
+     * @return the authorizer
+     */
+    private AdminAuthorizer authorizer(Duration ttl, Duration negativeTtl) {
+        return new AdminAuthorizer(username -> {
+            lookups.incrementAndGet();
+            return answers.getOrDefault(username, CompletableFuture.completedFuture(true));
+        }, ttl, negativeTtl, 16);
+    }
+}
@@ -0,0 +1,161 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.homieomie.authservice.models.SignupOutcome;
+import com.homieomie.authservice.models.SignupRequest;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.TooManyRequestsException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UsernameExistsException;
+
+/**
+ * Tests for {@link BulkSignupRunner}: every user gets exactly one outcome,
+ * calls in flight stay within the limit, and only throttled calls are retried.
+ */
+class BulkSignupRunnerTest {
+
+    /**
+     * Longest a batch is waited for.
+     */
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * Outcomes received by the sink, in completion order.
+     */
+    private final List<SignupOutcome> outcomes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Calls made per username.
+     */
+    private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Every user is created once and reported once, with its position in the
+     * batch, while calls in flight never exceed the bound.
+     */
+    @Test
+    void everyUserIsReportedOnceWithinTheBound() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<SignupRequest> users = users(50);
+
+        BulkSignupRunner runner = new BulkSignupRunner(user -> {
+            count(user);
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                inFlight.decrementAndGet();
+                return "created " + user.getUsername();
+            }, CompletableFuture.delayedExecutor(2, TimeUnit.MILLISECONDS));
+        }, 4, users, outcomes::add);
+
+        assertThat(runner.run()).succeedsWithin(TIMEOUT);
+        assertThat(outcomes).hasSize(50).allMatch(SignupOutcome::isCreated);
+        assertThat(outcomes).extracting(SignupOutcome::getIndex)
+                .containsExactlyInAnyOrderElementsOf(IntStream.range(0, 50).boxed().toList());
+        assertThat(outcomes).allMatch(outcome ->
+                outcome.getResult().equals("created " + outcome.getUsername())
+                        && outcome.getUsername().equals(users.get(outcome.getIndex()).getUsername()));
+        assertThat(calls.values()).allMatch(count -> count.get() == 1);
+        assertThat(peak.get()).isBetween(1, 4);
+    }
+
+    /**
+     * A throttled call is retried until it succeeds, and reported once.
+     */
+    @Test
+    void throttledCallIsRetried() {
+        BulkSignupRunner runner = new BulkSignupRunner(user -> count(user) < 3
+                ? CompletableFuture.failedFuture(TooManyRequestsException.builder().message("slow down").build())
+                : CompletableFuture.completedFuture("created"), 2, users(1), outcomes::add);
+
+        assertThat(runner.run()).succeedsWithin(TIMEOUT);
+        assertThat(outcomes).singleElement().satisfies(outcome -> assertThat(outcome.isCreated()).isTrue());
+        assertThat(calls.get("user0")).hasValue(3);
+    }
+
+    /**
+     * Any other failure is reported as failed without a retry, and the rest
+     * of the batch still runs.
+     */
+    @Test
+    void otherFailureIsReportedWithoutRetry() {
+        BulkSignupRunner runner = new BulkSignupRunner(user -> {
+            count(user);
+            return user.getUsername().equals("user1")
+                    ? CompletableFuture.failedFuture(UsernameExistsException.builder().message("taken").build())
+                    : CompletableFuture.completedFuture("created");
+        }, 2, users(3), outcomes::add);
+
+        assertThat(runner.run()).succeedsWithin(TIMEOUT);
+        assertThat(outcomes).hasSize(3);
+        assertThat(outcomes).filteredOn(outcome -> !outcome.isCreated()).singleElement().satisfies(outcome -> {
+            assertThat(outcome.getIndex()).isEqualTo(1);
+            assertThat(outcome.getError()).contains("taken");
+        });
+        assertThat(calls.get("user1")).hasValue(1);
+    }
+
+    /**
+     * A failure thrown by the call itself, rather than returned in its
+     * future, is reported the same way.
+     */
+    @Test
+    void thrownFailureIsReported() {
+        BulkSignupRunner runner = new BulkSignupRunner(user -> {
+            throw new IllegalStateException("broken");
+        }, 2, users(2), outcomes::add);
+
+        assertThat(runner.run()).succeedsWithin(TIMEOUT);
+        assertThat(outcomes).hasSize(2).noneMatch(SignupOutcome::isCreated);
+    }
+
+    /**
+     * An empty batch completes at once, and a failing sink fails the batch.
+     */
+    @Test
+    void emptyBatchAndFailingSink() {
+        assertThat(new BulkSignupRunner(user -> CompletableFuture.completedFuture("created"), 2, List.of(),
+                outcomes::add).run()).isCompleted();
+
+        BulkSignupRunner failing = new BulkSignupRunner(user -> CompletableFuture.completedFuture("created"), 1,
+                users(3), outcome -> {
+                    throw new IllegalStateException("client gone");
+                });
+        assertThat(failing.run())
+                .failsWithin(TIMEOUT)
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Counts a call for a user.
+     *
+     * @param user the user
+     * @return the number of calls made for the user, this one included
+     */
+    private int count(SignupRequest user) {
+        return calls.computeIfAbsent(user.getUsername(), name -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * Builds a batch of users named {@code user0}, {@code user1}, and so on.
+     *
+     * @param count the number of users
+     * @return the users
+     */
+    private static List<SignupRequest> users(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new SignupRequest("user" + i, "user" + i + "@example.com", "1990-01-31",
+                        "+15551234567", "Alice", "Smith", "female"))
+                .toList();
+    }
+}
@@ -0,0 +1,77 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import java.time.Duration;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CognitoService}'s admin check, settled before any call
+ * reaches Cognito.
+ */
+class CognitoServiceTest {
+
+    /**
+     * Mocked verifier of the admin tokens; it refuses every token.
+     */
+    private TokenVerifier tokenVerifier;
+
+    /**
+     * Service under test.
+     */
+    private CognitoService service;
+
+    /**
+     * Creates a service over a mocked backend and a verifier refusing every token.
+     */
+    @BeforeEach
+    void setUp() {
+        tokenVerifier = mock(TokenVerifier.class);
+        when(tokenVerifier.verify(any())).thenThrow(new JWTVerificationException("bad token"));
+        service = new CognitoService(new PoolConfig("us-east-1_pool", "client", "us-east-1"),
+                mock(CognitoBackend.class), tokenVerifier);
+    }
+
+    /**
+     * Closes the service.
+     */
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    /**
+     * A request without headers is refused rather than failing with a
+     * {@link NullPointerException}.
+     */
+    @Test
+    void missingHeadersAreForbidden() {
+        assertThat(service.requireAdmin(null))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withMessageContaining("Forbidden");
+        verify(tokenVerifier, never()).verify(any());
+    }
+
+    /**
+     * The {@code Authorization} header is found under any letter case, as
+     * HTTP/2 clients send it in lower case.
+     */
+    @Test
+    void authorizationHeaderIsFoundInAnyCase() {
+        assertThat(service.requireAdmin(Map.of("authorization", "Bearer token")))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withMessageContaining("Forbidden");
+        verify(tokenVerifier).verify("Bearer token");
+    }
+}
@@ -0,0 +1,84 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HashIndex} on its own, over slots numbered by the test.
+ */
+class HashIndexTest {
+
+    /**
+     * Index under test, ignoring letter case.
+     */
+    private final HashIndex index = new HashIndex(value -> value.toLowerCase(Locale.ROOT), 8);
+
+    /**
+     * Every slot holding a key is found under it, whatever the case of its value.
+     */
+    @Test
+    void slotsAreFoundByNormalizedKey() {
+        index.put(0, "alice@example.com");
+        index.put(3, "ALICE@example.com");
+        index.put(5, "bob@example.com");
+
+        assertThat(index.find("alice@example.com")).containsExactlyInAnyOrder(0, 3);
+        assertThat(index.find("bob@example.com")).containsExactly(5);
+        assertThat(index.find("carol@example.com")).isEmpty();
+        assertThat(index.key(null)).isNull();
+    }
+
+    /**
+     * A new value replaces the slot's previous entry, and {@code null} removes it.
+     */
+    @Test
+    void putReplacesAndRemoves() {
+        index.put(0, "alice@example.com");
+        index.put(0, "alicia@example.com");
+        index.put(1, "bob@example.com");
+        index.put(1, null);
+
+        assertThat(index.find("alice@example.com")).isEmpty();
+        assertThat(index.find("alicia@example.com")).containsExactly(0);
+        assertThat(index.find("bob@example.com")).isEmpty();
+    }
+
+    /**
+     * Many replacements in few slots leave no stale entries behind.
+     */
+    @Test
+    void churnLeavesNoStaleEntries() {
+        for (int round = 0; round < 1_000; round++) {
+            index.put(round % 8, "value" + round);
+        }
+
+        for (int round = 0; round < 992; round++) {
+            assertThat(index.find("value" + round)).isEmpty();
+        }
+        for (int round = 992; round < 1_000; round++) {
+            assertThat(index.find("value" + round)).containsExactly(round % 8);
+        }
+    }
+
+    /**
+     * Growing and compacting renumber the slots the way the table does.
+     */
+    @Test
+    void retainRenumbersSlots() {
+        index.grow(16);
+        for (int slot = 0; slot < 12; slot++) {
+            index.put(slot, slot % 2 == 0 ? "even" : "odd");
+        }
+        boolean[] keep = new boolean[12];
+        keep[1] = true;
+        keep[4] = true;
+        keep[11] = true;
+
+        index.retain(keep, 12);
+
+        assertThat(index.find("even")).containsExactly(1);
+        assertThat(index.find("odd")).containsExactlyInAnyOrder(0, 2);
+    }
+}
@@ -0,0 +1,163 @@
+package com.homieomie.authservice.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local JWKS endpoint publishing one locally generated RSA key, for tests
+ * that sign and verify tokens without reaching Cognito.
+ */
+final class JwksEndpoint implements AutoCloseable {
+
+    /**
+     * Key id the published key is listed under.
+     */
+    static final String KEY_ID = "test-key";
+
+    /**
+     * Key pair whose public half is published.
+     */
+    private final KeyPair keyPair = newKeyPair();
+
+    /**
+     * Server answering every path with the JWKS document.
+     */
+    private final HttpServer server;
+
+    /**
+     * Number of JWKS documents served.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Starts the endpoint on a free loopback port.
+     */
+    JwksEndpoint() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] document = jwksDocument((RSAPublicKey) keyPair.getPublic()).getBytes(StandardCharsets.UTF_8);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, document.length);
+            exchange.getResponseBody().write(document);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    /**
+     * Returns the issuer URL whose JWKS document this endpoint serves.
+     *
+     * @return the issuer URL
+     */
+    String issuer() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/pool";
+    }
+
+    /**
+     * Returns the number of JWKS documents served so far.
+     *
+     * @return the request count
+     */
+    int requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Starts a token carrying the published key id and this issuer.
+     *
+     * @return the token builder
+     */
+    JWTCreator.Builder token() {
+        return JWT.create().withKeyId(KEY_ID).withIssuer(issuer());
+    }
+
+    /**
+     * Signs a token with the published key.
+     *
+     * @param token the token builder
+     * @return the signed JWT
+     */
+    String sign(JWTCreator.Builder token) {
+        return sign(token, keyPair);
+    }
+
+    /**
+     * Signs a token with a given key pair.
+     *
+     * @param token   the token builder
+     * @param signing the key pair signing it
+     * @return the signed JWT
+     */
+    static String sign(JWTCreator.Builder token, KeyPair signing) {
+        return token.sign(Algorithm.RSA256((RSAPublicKey) signing.getPublic(), (RSAPrivateKey) signing.getPrivate()));
+    }
+
+    /**
+     * Generates a 2048-bit RSA key pair.
+     *
+     * @return the key pair
+     */
+    static KeyPair newKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Stops the endpoint.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Renders a public key as a JWKS document.
+     *
+     * @param key the public key
+     * @return the JWKS JSON
+     */
+    private static String jwksDocument(RSAPublicKey key) {
+        return "{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"" + KEY_ID + "\",\"alg\":\"RS256\",\"use\":\"sig\","
+                + "\"n\":\"" + base64Url(key.getModulus()) + "\",\"e\":\"" + base64Url(key.getPublicExponent())
+                + "\"}]}";
+    }
+
+    /**
+     * Encodes an unsigned big integer as base64url without padding.
+     *
+     * @param value the integer
+     * @return the encoded value
+     */
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,93 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link JwksKeyCache}: lookups of published keys and the rate
+ * limit on refetches for unknown key ids.
+ */
+class JwksKeyCacheTest {
+
+    /**
+     * Local endpoint publishing the signing key.
+     */
+    private JwksEndpoint endpoint;
+
+    /**
+     * Cache under test, closed after each test.
+     */
+    private JwksKeyCache keys;
+
+    /**
+     * Starts the local JWKS endpoint.
+     */
+    @BeforeEach
+    void setUp() {
+        endpoint = new JwksEndpoint();
+    }
+
+    /**
+     * Stops the cache's refresher and the endpoint.
+     */
+    @AfterEach
+    void tearDown() {
+        if (keys != null) {
+            keys.close();
+        }
+        endpoint.close();
+    }
+
+    /**
+     * The first lookup fetches the key set, and later lookups of a published
+     * key are answered without a fetch.
+     */
+    @Test
+    void publishedKeyIsFetchedOnce() {
+        keys = new JwksKeyCache(JwksKeyCache.urlFor(endpoint.issuer()));
+
+        assertThat(keys.getPublicKeyById(JwksEndpoint.KEY_ID)).isNotNull();
+        assertThat(keys.getPublicKeyById(JwksEndpoint.KEY_ID)).isNotNull();
+        assertThat(endpoint.requestCount()).isEqualTo(1);
+        assertThat(keys.fetchCount()).isEqualTo(1);
+    }
+
+    /**
+     * A flood of lookups for an unknown key id right after a fetch makes no
+     * further request until the minimum refetch interval has passed.
+     */
+    @Test
+    void unknownKeyIdRefetchesAtMostOncePerInterval() {
+        keys = new JwksKeyCache(JwksKeyCache.urlFor(endpoint.issuer()), JwksKeyCache.DEFAULT_REFRESH_INTERVAL,
+                JwksKeyCache.DEFAULT_MIN_REFETCH_INTERVAL);
+        keys.getPublicKeyById(JwksEndpoint.KEY_ID);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(keys.getPublicKeyById("forged-" + i)).isNull();
+        }
+        assertThat(endpoint.requestCount()).isEqualTo(1);
+        assertThat(keys.unknownKeyCount()).isEqualTo(101);
+    }
+
+    /**
+     * Once the minimum refetch interval has passed, an unknown key id
+     * triggers one more fetch.
+     */
+    @Test
+    void unknownKeyIdRefetchesAgainAfterTheInterval() throws InterruptedException {
+        keys = new JwksKeyCache(JwksKeyCache.urlFor(endpoint.issuer()), JwksKeyCache.DEFAULT_REFRESH_INTERVAL,
+                Duration.ofMillis(100));
+        keys.getPublicKeyById(JwksEndpoint.KEY_ID);
+        keys.getPublicKeyById("rotated");
+
+        Thread.sleep(150);
+        keys.getPublicKeyById("rotated");
+        keys.getPublicKeyById("rotated");
+
+        assertThat(endpoint.requestCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,95 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PrefixIndex} on its own, over slots whose usernames are
+ * {@code user0}, {@code user1}, and so on.
+ */
+class PrefixIndexTest {
+
+    /**
+     * Index under test, ignoring letter case.
+     */
+    private final PrefixIndex index = new PrefixIndex(value -> value.toLowerCase(Locale.ROOT),
+            slot -> "user" + slot, 8);
+
+    /**
+     * Entries are kept in key then username order, and a search starts at
+     * the first key with the prefix.
+     */
+    @Test
+    void entriesAreOrderedByKeyThenUsername() {
+        index.put(3, "Smith");
+        index.put(1, "smithers");
+        index.put(2, "smith");
+        index.put(0, "Jones");
+
+        assertThat(entries()).containsExactly("jones/user0", "smith/user2", "smith/user3", "smithers/user1");
+        assertThat(index.positionAfter("smi", null)).isEqualTo(1);
+        assertThat(index.positionAfter("smith", "user2")).isEqualTo(2);
+        assertThat(index.positionAfter("smith", "user3")).isEqualTo(3);
+        assertThat(index.positionAfter("z", null)).isEqualTo(4);
+    }
+
+    /**
+     * A new value moves the slot, and {@code null} removes it.
+     */
+    @Test
+    void putMovesAndRemoves() {
+        index.put(0, "b");
+        index.put(1, "c");
+        index.put(0, "d");
+        index.put(1, null);
+
+        assertThat(entries()).containsExactly("d/user0");
+    }
+
+    /**
+     * Values put while suspended are ordered at once on resume.
+     */
+    @Test
+    void resumeOrdersSuspendedValues() {
+        index.put(0, "m");
+        index.suspend();
+        index.put(5, "a");
+        index.put(4, "a");
+        index.put(0, "z");
+        index.resume();
+
+        assertThat(entries()).containsExactly("a/user4", "a/user5", "z/user0");
+    }
+
+    /**
+     * Compacting drops the slots not kept and renumbers the others.
+     */
+    @Test
+    void retainRenumbersSlots() {
+        for (int slot = 0; slot < 6; slot++) {
+            index.put(slot, "key" + (5 - slot));
+        }
+        boolean[] keep = {false, true, false, true, true, false};
+
+        index.retain(keep, 6);
+
+        assertThat(entries()).containsExactly("key1/user2", "key2/user1", "key4/user0");
+    }
+
+    /**
+     * Lists the entries in index order.
+     *
+     * @return each entry as its key and username
+     */
+    private List<String> entries() {
+        List<String> entries = new ArrayList<>();
+        for (int position = 0; position < index.size(); position++) {
+            entries.add(index.keyAt(position) + "/user" + index.slotAt(position));
+        }
+        return entries;
+    }
+}
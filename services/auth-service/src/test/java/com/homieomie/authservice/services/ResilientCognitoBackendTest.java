@@ -0,0 +1,321 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.homieomie.authservice.resilience.CircuitBreaker;
+import com.homieomie.authservice.resilience.CircuitOpenException;
+import com.homieomie.authservice.resilience.Deadline;
+import com.homieomie.authservice.resilience.RetryQuota;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.CognitoIdentityProviderException;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.CognitoIdentityProviderRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * Tests for {@link ResilientCognitoBackend} over a stub backend answering
+ * from a script: which failures are retried, when the breaker opens, and how
+ * attempts are bounded by the request's {@link Deadline}.
+ */
+class ResilientCognitoBackendTest {
+
+    /**
+     * Call timeout of the backend under test.
+     */
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * Stub the backend under test calls.
+     */
+    private final StubBackend stub = new StubBackend();
+
+    /**
+     * Retry quota of the backend under test.
+     */
+    private final RetryQuota retryQuota = new RetryQuota(RetryQuota.DEFAULT_CAPACITY);
+
+    /**
+     * Breaker of the backend under test, opening after four calls of which half failed.
+     */
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(50, 4, 60_000);
+
+    /**
+     * Backend under test.
+     */
+    private final ResilientCognitoBackend backend = new ResilientCognitoBackend(stub, circuitBreaker, retryQuota,
+            3, CALL_TIMEOUT, 0);
+
+    /**
+     * A throttled call is retried, and the retry's tokens are put back once it succeeds.
+     */
+    @Test
+    void throttledCallIsRetried() {
+        stub.script(error(429), InitiateAuthResponse.builder().build());
+
+        assertThat(backend.initiateAuth(InitiateAuthRequest.builder().build()).join()).isNotNull();
+        assertThat(stub.requests).hasSize(2);
+        assertThat(retryQuota.available()).isEqualTo(RetryQuota.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * The view without throttling retries fails a throttled call at once,
+     * but still retries a read failing for a server-side reason.
+     */
+    @Test
+    void viewWithoutThrottlingRetriesFailsThrottledCallsAtOnce() {
+        ResilientCognitoBackend paced = backend.withoutThrottlingRetries();
+        stub.script(error(429));
+
+        assertThat(paced.adminCreateUser(AdminCreateUserRequest.builder().build()))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(AwsServiceException.class);
+        assertThat(stub.requests).hasSize(1);
+
+        stub.requests.clear();
+        stub.script(error(500), ListUsersResponse.builder().build());
+        assertThat(paced.listUsers(ListUsersRequest.builder().build()).join()).isNotNull();
+        assertThat(stub.requests).hasSize(2);
+    }
+
+    /**
+     * A server error is retried for a read, but not for a call that may have
+     * taken effect.
+     */
+    @Test
+    void serverErrorIsRetriedOnlyWhenIdempotent() {
+        stub.script(error(500), ListUsersResponse.builder().build());
+        assertThat(backend.listUsers(ListUsersRequest.builder().build()).join()).isNotNull();
+        assertThat(stub.requests).hasSize(2);
+
+        stub.requests.clear();
+        stub.script(error(500), InitiateAuthResponse.builder().build());
+        assertThat(backend.initiateAuth(InitiateAuthRequest.builder().build()))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(AwsServiceException.class);
+        assertThat(stub.requests).hasSize(1);
+    }
+
+    /**
+     * A client error is Cognito's answer, and is neither retried nor counted against its health.
+     */
+    @Test
+    void clientErrorIsNotRetried() {
+        stub.script(error(400), error(400), error(400), error(400));
+
+        for (int i = 0; i < 4; i++) {
+            backend.listUsers(ListUsersRequest.builder().build()).exceptionally(e -> null).join();
+        }
+
+        assertThat(stub.requests).hasSize(4);
+        assertThat(circuitBreaker.isOpen()).isFalse();
+    }
+
+    /**
+     * Attempts stop at the configured number.
+     */
+    @Test
+    void retriesStopAtMaxAttempts() {
+        stub.script(error(429), error(429), error(429), ListUsersResponse.builder().build());
+
+        assertThat(backend.listUsers(ListUsersRequest.builder().build()))
+                .failsWithin(Duration.ofSeconds(5))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(AwsServiceException.class);
+        assertThat(stub.requests).hasSize(3);
+    }
+
+    /**
+     * Once enough calls failed, the breaker refuses calls without reaching Cognito.
+     */
+    @Test
+    void breakerOpensAfterFailures() {
+        ResilientCognitoBackend single = new ResilientCognitoBackend(stub, circuitBreaker, retryQuota, 1,
+                CALL_TIMEOUT, 0);
+        stub.script(error(503), error(503), error(503), error(503));
+        for (int i = 0; i < 4; i++) {
+            single.listUsers(ListUsersRequest.builder().build()).exceptionally(e -> null).join();
+        }
+
+        assertThat(single.listUsers(ListUsersRequest.builder().build()))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(CircuitOpenException.class);
+        assertThat(stub.requests).hasSize(4);
+    }
+
+    /**
+     * Without a deadline the first attempt keeps the client's own timeout.
+     */
+    @Test
+    void firstAttemptWithoutDeadlineIsNotBounded() {
+        stub.script(ListUsersResponse.builder().build());
+
+        backend.listUsers(ListUsersRequest.builder().build()).join();
+
+        assertThat(stub.requests.get(0).overrideConfiguration()).isEmpty();
+    }
+
+    /**
+     * Under a deadline shorter than the call timeout, every attempt, retries
+     * made on the scheduler's thread included, is bounded by the time left
+     * before the deadline.
+     */
+    @Test
+    void attemptsAreBoundedByTheDeadline() {
+        stub.script(error(429), ListUsersResponse.builder().build());
+
+        Deadline.within(2_000, () -> backend.listUsers(ListUsersRequest.builder().build())).join();
+
+        assertThat(stub.requests).hasSize(2);
+        for (CognitoIdentityProviderRequest request : stub.requests) {
+            assertThat(request.overrideConfiguration().orElseThrow().apiCallTimeout().orElseThrow())
+                    .isLessThanOrEqualTo(Duration.ofSeconds(2));
+        }
+    }
+
+    /**
+     * A call whose deadline leaves too little time is not made.
+     */
+    @Test
+    void callIsNotMadePastTheDeadline() {
+        assertThat(Deadline.within(10, () -> backend.listUsers(ListUsersRequest.builder().build())))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(TimeoutException.class);
+        assertThat(stub.requests).isEmpty();
+    }
+
+    /**
+     * A call made from a continuation on another thread is bounded by the
+     * deadline captured when the continuation was created.
+     */
+    @Test
+    void continuationCarriesTheDeadline() {
+        stub.script(ListUsersResponse.builder().build());
+        CompletableFuture<Void> elsewhere = new CompletableFuture<>();
+
+        CompletableFuture<ListUsersResponse> call = Deadline.within(2_000, () -> elsewhere.thenComposeAsync(
+                Deadline.carry(ignored -> backend.listUsers(ListUsersRequest.builder().build()))));
+        elsewhere.complete(null);
+        call.join();
+
+        assertThat(stub.requests.get(0).overrideConfiguration().orElseThrow().apiCallTimeout().orElseThrow())
+                .isLessThanOrEqualTo(Duration.ofSeconds(2));
+    }
+
+    /**
+     * Builds a Cognito service error.
+     *
+     * @param statusCode the HTTP status code
+     * @return the error
+     */
+    private static AwsServiceException error(int statusCode) {
+        return CognitoIdentityProviderException.builder()
+                .statusCode(statusCode)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("Error" + statusCode).build())
+                .build();
+    }
+
+    /**
+     * Backend answering calls from a script of responses and errors, and
+     * recording the requests it received.
+     */
+    private static final class StubBackend implements CognitoBackend {
+
+        /**
+         * Requests received, in order.
+         */
+        private final List<CognitoIdentityProviderRequest> requests = new CopyOnWriteArrayList<>();
+
+        /**
+         * Outcomes of the next calls: responses, or errors to fail with.
+         */
+        private final Deque<Object> outcomes = new ArrayDeque<>();
+
+        /**
+         * Appends outcomes to the script.
+         *
+         * @param next the responses and errors of the next calls
+         */
+        private synchronized void script(Object... next) {
+            outcomes.addAll(List.of(next));
+        }
+
+        @Override
+        public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+            return answer(request);
+        }
+
+        @Override
+        public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+                AdminListGroupsForUserRequest request) {
+            return answer(request);
+        }
+
+        @Override
+        public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(
+                AdminSetUserPasswordRequest request) {
+            return answer(request);
+        }
+
+        @Override
+        public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+            return answer(request);
+        }
+
+        @Override
+        public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+            return answer(request);
+        }
+
+        @Override
+        public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+                RespondToAuthChallengeRequest request) {
+            return answer(request);
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /**
+         * Records a request and answers it with the next outcome of the script.
+         *
+         * @param request the request
+         * @param <R>     the response type
+         * @return a future of the scripted outcome
+         */
+        @SuppressWarnings("unchecked")
+        private synchronized <R> CompletableFuture<R> answer(CognitoIdentityProviderRequest request) {
+            requests.add(request);
+            Object outcome = outcomes.poll();
+            if (outcome == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("No scripted outcome"));
+            }
+            return outcome instanceof Throwable failure
+                    ? CompletableFuture.failedFuture(failure)
+                    : CompletableFuture.completedFuture((R) outcome);
+        }
+    }
+}
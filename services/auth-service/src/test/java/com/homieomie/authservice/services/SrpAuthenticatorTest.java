@@ -0,0 +1,164 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SrpAuthenticator}: a known-answer vector for the
+ * {@code PASSWORD_VERIFIER} response, and the challenges it refuses.
+ * <p>
+ * The vector was computed by an independent implementation of the Cognito
+ * SRP variant: the server holds the verifier {@code v = g^x} of the password
+ * and sends {@code B = k v + g^b}, and the expected signature is keyed with
+ * the session key the server derives from {@code (A v^u)^b}.
+ * </p>
+ */
+class SrpAuthenticatorTest {
+
+    /**
+     * User pool of the vector.
+     */
+    private static final String USER_POOL_ID = "us-east-1_ABCdefGHI";
+
+    /**
+     * User of the vector.
+     */
+    private static final String USER_ID = "alice";
+
+    /**
+     * Password of the vector.
+     */
+    private static final String PASSWORD = "Passw0rd!";
+
+    /**
+     * Salt of the vector, in hexadecimal.
+     */
+    private static final String SALT = "5ac2d1f0e9b7c3a41234567890abcdef";
+
+    /**
+     * Secret block of the vector: the bytes 0 to 47, in Base64.
+     */
+    private static final String SECRET_BLOCK = "AAECAwQFBgcICQoLDA0ODxAREhMUFRYXGBkaGxwdHh8gISIjJCUmJygpKissLS4v";
+
+    /**
+     * Client secret {@code a} of the vector: the byte {@code a1} forty times.
+     */
+    private static final BigInteger CLIENT_SECRET = new BigInteger("a1".repeat(40), 16);
+
+    /**
+     * Server secret {@code b} of the vector: the byte {@code 3c} forty times.
+     */
+    private static final BigInteger SERVER_SECRET = new BigInteger("3c".repeat(40), 16);
+
+    /**
+     * Time of the response.
+     */
+    private static final Instant NOW = Instant.parse("2024-01-02T03:04:05Z");
+
+    /**
+     * Authenticator under test, without spare keys.
+     */
+    private final SrpAuthenticator authenticator = new SrpAuthenticator(USER_POOL_ID, 0);
+
+    /**
+     * The response to the vector's challenge carries the known signature.
+     */
+    @Test
+    void responseMatchesKnownAnswer() {
+        SrpAuthenticator.EphemeralKey key = SrpAuthenticator.EphemeralKey.of(CLIENT_SECRET);
+        assertThat(key.publicHex()).startsWith("20c4abf6587d5f09cc8c69273b08b7957469c23a00a782621388c236fda5b212");
+        BigInteger x = SrpGroup.privateKey("ABCdefGHI", USER_ID, PASSWORD, new BigInteger(SALT, 16));
+        assertThat(x.toString(16)).isEqualTo("7cafe575d8681eee7e0695cbba99b3f2850a628676d30e958f43046574f4ff5b");
+        BigInteger serverPublic = serverPublic(x);
+        assertThat(SrpGroup.scramble(new BigInteger(key.publicHex(), 16), serverPublic).toString(16))
+                .isEqualTo("a38c289610066c5a78d62b0c6d1087353ba52139c56477b53f7d66be1f63ad8d");
+
+        Map<String, String> response = authenticator.respond(key, challenge(serverPublic), PASSWORD, NOW);
+
+        assertThat(response)
+                .containsEntry("USERNAME", USER_ID)
+                .containsEntry("PASSWORD_CLAIM_SECRET_BLOCK", SECRET_BLOCK)
+                .containsEntry("TIMESTAMP", "Tue Jan 2 03:04:05 UTC 2024")
+                .containsEntry("PASSWORD_CLAIM_SIGNATURE", "BoUgejA2g2fu5qfInemgaDNgShAocaoCJs4SFqvqvOY=");
+    }
+
+    /**
+     * A wrong password yields another signature, which the server would refuse.
+     */
+    @Test
+    void wrongPasswordChangesTheSignature() {
+        BigInteger x = SrpGroup.privateKey("ABCdefGHI", USER_ID, PASSWORD, new BigInteger(SALT, 16));
+
+        Map<String, String> response = authenticator.respond(SrpAuthenticator.EphemeralKey.of(CLIENT_SECRET),
+                challenge(serverPublic(x)), "Passw0rd?", NOW);
+
+        assertThat(response.get("PASSWORD_CLAIM_SIGNATURE"))
+                .isNotEqualTo("BoUgejA2g2fu5qfInemgaDNgShAocaoCJs4SFqvqvOY=");
+    }
+
+    /**
+     * A challenge missing a parameter, or whose {@code SRP_B} is a multiple
+     * of {@code N}, is refused.
+     */
+    @Test
+    void malformedChallengesAreRefused() {
+        SrpAuthenticator.EphemeralKey key = SrpAuthenticator.EphemeralKey.of(CLIENT_SECRET);
+        Map<String, String> incomplete = challenge(BigInteger.TEN);
+        incomplete.remove("SALT");
+
+        assertThatThrownBy(() -> authenticator.respond(key, incomplete, PASSWORD, NOW))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> authenticator.respond(key, challenge(BigInteger.ZERO), PASSWORD, NOW))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> authenticator.respond(key, challenge(SrpGroup.N), PASSWORD, NOW))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * Keys are fresh for every login, prepared ahead or not, and still come
+     * after the generator is closed.
+     */
+    @Test
+    void keysAreFresh() {
+        SrpAuthenticator prepared = new SrpAuthenticator(USER_POOL_ID, 2);
+        prepared.prepareKeys();
+        String first = prepared.nextKey().publicHex();
+        String second = prepared.nextKey().publicHex();
+        prepared.close();
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(prepared.nextKey().publicHex()).isNotIn(first, second);
+    }
+
+    /**
+     * Computes the server's public value for the vector.
+     *
+     * @param x the private key of the password
+     * @return {@code B = k g^x + g^b mod N}
+     */
+    private static BigInteger serverPublic(BigInteger x) {
+        BigInteger verifier = SrpGroup.G.modPow(x, SrpGroup.N);
+        return SrpGroup.K.multiply(verifier).add(SrpGroup.G.modPow(SERVER_SECRET, SrpGroup.N)).mod(SrpGroup.N);
+    }
+
+    /**
+     * Builds the vector's {@code PASSWORD_VERIFIER} challenge.
+     *
+     * @param serverPublic the server's public value
+     * @return the mutable challenge parameters
+     */
+    private static Map<String, String> challenge(BigInteger serverPublic) {
+        Map<String, String> challenge = new HashMap<>();
+        challenge.put("USER_ID_FOR_SRP", USER_ID);
+        challenge.put("SECRET_BLOCK", SECRET_BLOCK);
+        challenge.put("SALT", SALT);
+        challenge.put("SRP_B", serverPublic.toString(16));
+        return challenge;
+    }
+}
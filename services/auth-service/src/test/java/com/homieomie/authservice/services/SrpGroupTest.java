@@ -0,0 +1,48 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SrpGroup}: the multiplier and the encodings the Cognito
+ * variant of SRP hashes, against known values.
+ */
+class SrpGroupTest {
+
+    /**
+     * The multiplier {@code k = H(N | g)} is the one every Cognito SRP client uses.
+     */
+    @Test
+    void multiplierMatchesCognito() {
+        assertThat(SrpGroup.K.toString(16))
+                .isEqualTo("538282c4354742d7cbbde2359fcf67f9f5b3a6b08791e5011b43b8a5b66d9ee6");
+    }
+
+    /**
+     * Values are padded to whole bytes, with a zero byte in front of a set
+     * high bit, so they always hash as positive numbers.
+     */
+    @Test
+    void padHexKeepsValuesPositive() {
+        assertThat(SrpGroup.padHex(BigInteger.valueOf(0x7f))).isEqualTo("7f");
+        assertThat(SrpGroup.padHex(BigInteger.valueOf(0x80))).isEqualTo("0080");
+        assertThat(SrpGroup.padHex(BigInteger.valueOf(0xabc))).isEqualTo("0abc");
+        assertThat(SrpGroup.padHex(SrpGroup.N)).startsWith("00ff").hasSize(770);
+    }
+
+    /**
+     * The pool name is the user pool ID after its region, and the timestamp
+     * has no leading zero on the day.
+     */
+    @Test
+    void poolNameAndTimestamp() {
+        assertThat(SrpGroup.poolName("us-east-1_ABCdefGHI")).isEqualTo("ABCdefGHI");
+        assertThat(SrpGroup.timestamp(Instant.parse("2024-01-02T03:04:05Z")))
+                .isEqualTo("Tue Jan 2 03:04:05 UTC 2024");
+        assertThat(SrpGroup.timestamp(Instant.parse("2024-11-12T13:14:15Z")))
+                .isEqualTo("Tue Nov 12 13:14:15 UTC 2024");
+    }
+}
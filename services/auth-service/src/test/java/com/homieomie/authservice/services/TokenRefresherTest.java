@@ -0,0 +1,172 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthenticationResultType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.NotAuthorizedException;
+
+/**
+ * Tests for {@link TokenRefresher}: coalescing of concurrent exchanges,
+ * caching of results, and failures that are never cached.
+ */
+class TokenRefresherTest {
+
+    /**
+     * Number of exchanges made.
+     */
+    private final AtomicInteger exchanges = new AtomicInteger();
+
+    /**
+     * Requests with the same refresh token while an exchange is in flight
+     * share it; a different token gets its own exchange.
+     */
+    @Test
+    void concurrentRefreshesShareOneExchange() {
+        CompletableFuture<AuthenticationResultType> call = new CompletableFuture<>();
+        TokenRefresher refresher = new TokenRefresher(token -> exchange(call), Duration.ZERO, 16);
+
+        CompletableFuture<Map<String, String>> first = refresher.refresh("r1");
+        CompletableFuture<Map<String, String>> second = refresher.refresh("r1");
+        refresher.refresh("r2");
+        assertThat(second).isNotDone();
+
+        call.complete(result(3600, null));
+        assertThat(second.join()).isSameAs(first.join());
+        assertThat(exchanges).hasValue(2);
+        assertThat(refresher.coalescedCount()).isEqualTo(1);
+        assertThat(refresher.missCount()).isEqualTo(2);
+    }
+
+    /**
+     * Tokens differing only in characters outside ASCII, which a lossy
+     * encoding would hash alike, get their own exchanges and results.
+     */
+    @Test
+    void tokensDifferingOutsideAsciiAreKeptApart() {
+        TokenRefresher refresher = new TokenRefresher(
+                token -> exchange(CompletableFuture.completedFuture(result(3600, token))), Duration.ofMinutes(1), 16);
+
+        refresher.refresh("r\u00e9").join();
+
+        assertThat(refresher.refresh("r\u00e8").join()).containsEntry("refreshToken", "r\u00e8");
+        assertThat(exchanges).hasValue(2);
+    }
+
+    /**
+     * A result is reused within the time-to-live, and keeps the presented
+     * refresh token unless Cognito rotated it.
+     */
+    @Test
+    void resultIsCachedAndKeepsTheRefreshToken() {
+        TokenRefresher refresher = new TokenRefresher(
+                token -> exchange(CompletableFuture.completedFuture(result(3600, null))), Duration.ofMinutes(1), 16);
+
+        Map<String, String> tokens = refresher.refresh("r1").join();
+        assertThat(refresher.refresh("r1").join()).isSameAs(tokens);
+        assertThat(tokens).containsEntry("idToken", "id").containsEntry("accessToken", "access")
+                .containsEntry("refreshToken", "r1");
+        assertThat(exchanges).hasValue(1);
+        assertThat(refresher.hitCount()).isEqualTo(1);
+
+        TokenRefresher rotating = new TokenRefresher(
+                token -> CompletableFuture.completedFuture(result(3600, "r2")), Duration.ofMinutes(1), 16);
+        assertThat(rotating.refresh("r1").join()).containsEntry("refreshToken", "r2");
+    }
+
+    /**
+     * Nothing is cached with a zero time-to-live, nor for tokens whose
+     * lifetime is too short to halve into a whole millisecond.
+     */
+    @Test
+    void nothingIsCachedWithoutLifetime() {
+        TokenRefresher disabled = new TokenRefresher(
+                token -> exchange(CompletableFuture.completedFuture(result(3600, null))), Duration.ZERO, 16);
+        disabled.refresh("r1").join();
+        disabled.refresh("r1").join();
+
+        TokenRefresher expired = new TokenRefresher(
+                token -> exchange(CompletableFuture.completedFuture(result(0, null))), Duration.ofMinutes(1), 16);
+        expired.refresh("r1").join();
+        expired.refresh("r1").join();
+
+        assertThat(exchanges).hasValue(4);
+        assertThat(disabled.hitCount() + expired.hitCount()).isZero();
+    }
+
+    /**
+     * A failed exchange fails every request sharing it and is not cached, so
+     * the next request exchanges again.
+     */
+    @Test
+    void failuresAreNotCached() {
+        CompletableFuture<AuthenticationResultType> call = new CompletableFuture<>();
+        TokenRefresher refresher = new TokenRefresher(token -> exchange(call), Duration.ofMinutes(1), 16);
+        CompletableFuture<Map<String, String>> first = refresher.refresh("r1");
+        CompletableFuture<Map<String, String>> second = refresher.refresh("r1");
+
+        call.completeExceptionally(NotAuthorizedException.builder().message("revoked").build());
+
+        assertThat(first).isCompletedExceptionally();
+        assertThat(second).isCompletedExceptionally();
+        TokenRefresher thrower = new TokenRefresher(token -> {
+            exchanges.incrementAndGet();
+            throw new IllegalStateException("closed");
+        }, Duration.ofMinutes(1), 16);
+        assertThat(thrower.refresh("r1")).isCompletedExceptionally();
+        assertThat(thrower.refresh("r1")).isCompletedExceptionally();
+        assertThat(exchanges).hasValue(3);
+    }
+
+    /**
+     * A full cache makes room for a new result by dropping an entry, so one
+     * of the first two tokens has to be exchanged again.
+     */
+    @Test
+    void fullCacheMakesRoom() {
+        TokenRefresher refresher = new TokenRefresher(
+                token -> exchange(CompletableFuture.completedFuture(result(3600, null))), Duration.ofMinutes(1), 2);
+        refresher.refresh("r1").join();
+        refresher.refresh("r2").join();
+        refresher.refresh("r3").join();
+
+        refresher.refresh("r3").join();
+        assertThat(refresher.hitCount()).isEqualTo(1);
+        assertThat(exchanges).hasValue(3);
+
+        refresher.refresh("r1").join();
+        refresher.refresh("r2").join();
+        assertThat(exchanges.get()).isBetween(4, 5);
+    }
+
+    /**
+     * Counts an exchange and returns its future.
+     *
+     * @param call the future the exchange completes
+     * @return the future
+     */
+    private CompletableFuture<AuthenticationResultType> exchange(CompletableFuture<AuthenticationResultType> call) {
+        exchanges.incrementAndGet();
+        return call;
+    }
+
+    /**
+     * Builds an authentication result.
+     *
+     * @param expiresIn    the lifetime of the tokens in seconds
+     * @param refreshToken the rotated refresh token, or {@code null}
+     * @return the result
+     */
+    private static AuthenticationResultType result(int expiresIn, String refreshToken) {
+        return AuthenticationResultType.builder()
+                .idToken("id")
+                .accessToken("access")
+                .refreshToken(refreshToken)
+                .expiresIn(expiresIn)
+                .build();
+    }
+}
@@ -0,0 +1,209 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.SignatureVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
+import java.time.Instant;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link TokenVerifier}: which tokens are refused, and how the
+ * cache of verified tokens expires and evicts entries.
+ */
+class TokenVerifierTest {
+
+    /**
+     * App client the tokens are issued to.
+     */
+    private static final String CLIENT_ID = "client";
+
+    /**
+     * Local endpoint publishing the signing key, shared so the key is generated once.
+     */
+    private static JwksEndpoint endpoint;
+
+    /**
+     * Key cache reading the local endpoint.
+     */
+    private JwksKeyCache keys;
+
+    /**
+     * Starts the local JWKS endpoint.
+     */
+    @BeforeAll
+    static void startEndpoint() {
+        endpoint = new JwksEndpoint();
+    }
+
+    /**
+     * Stops the local JWKS endpoint.
+     */
+    @AfterAll
+    static void stopEndpoint() {
+        endpoint.close();
+    }
+
+    /**
+     * Creates a key cache reading the local endpoint.
+     */
+    @BeforeEach
+    void setUp() {
+        keys = new JwksKeyCache(JwksKeyCache.urlFor(endpoint.issuer()));
+    }
+
+    /**
+     * Stops the key cache's refresher.
+     */
+    @AfterEach
+    void tearDown() {
+        keys.close();
+    }
+
+    /**
+     * A valid access token is verified once, then answered from the cache.
+     */
+    @Test
+    void validTokenIsVerifiedThenCached() {
+        TokenVerifier verifier = newVerifier(16);
+        String token = endpoint.sign(accessToken("alice", 3600));
+
+        TokenVerifier.VerifiedToken verified = verifier.verify("Bearer " + token);
+
+        assertThat(verified.getUsername()).isEqualTo("alice");
+        assertThat(verified.isInGroup("admin")).isTrue();
+        assertThat(verifier.verify(token).getUsername()).isEqualTo("alice");
+        assertThat(verifier.missCount()).isEqualTo(1);
+        assertThat(verifier.hitCount()).isEqualTo(1);
+    }
+
+    /**
+     * A token signed by another key under the published key id is refused
+     * and not cached.
+     */
+    @Test
+    void badSignatureIsRejected() {
+        TokenVerifier verifier = newVerifier(16);
+        String forged = JwksEndpoint.sign(accessToken("alice", 3600), JwksEndpoint.newKeyPair());
+
+        assertThatThrownBy(() -> verifier.verify(forged)).isInstanceOf(SignatureVerificationException.class);
+        assertThat(verifier.size()).isZero();
+    }
+
+    /**
+     * Tokens from another issuer, of another use, or issued to another
+     * client are refused.
+     */
+    @Test
+    void foreignTokensAreRejected() {
+        TokenVerifier verifier = newVerifier(16);
+
+        assertThatThrownBy(() -> verifier.verify(endpoint.sign(accessToken("alice", 3600)
+                .withIssuer("https://cognito-idp.eu-west-1.amazonaws.com/other"))))
+                .isInstanceOf(JWTVerificationException.class);
+        assertThatThrownBy(() -> verifier.verify(endpoint.sign(accessToken("alice", 3600)
+                .withClaim("token_use", "refresh"))))
+                .isInstanceOf(JWTVerificationException.class);
+        assertThatThrownBy(() -> verifier.verify(endpoint.sign(accessToken("alice", 3600)
+                .withClaim("client_id", "other"))))
+                .isInstanceOf(JWTVerificationException.class);
+        assertThatThrownBy(() -> verifier.verify(endpoint.sign(endpoint.token()
+                .withClaim("token_use", "id")
+                .withClaim("cognito:username", "alice")
+                .withAudience("other")
+                .withExpiresAt(Instant.now().plusSeconds(3600)))))
+                .isInstanceOf(JWTVerificationException.class);
+        assertThat(verifier.size()).isZero();
+    }
+
+    /**
+     * An ID token issued to this client is accepted.
+     */
+    @Test
+    void idTokenForThisClientIsAccepted() {
+        TokenVerifier verifier = newVerifier(16);
+
+        assertThat(verifier.verify(endpoint.sign(endpoint.token()
+                .withClaim("token_use", "id")
+                .withClaim("cognito:username", "alice")
+                .withAudience(CLIENT_ID)
+                .withExpiresAt(Instant.now().plusSeconds(3600)))).getUsername()).isEqualTo("alice");
+    }
+
+    /**
+     * A cached token is dropped once its {@code exp} has passed, and is then
+     * refused rather than answered from the cache.
+     */
+    @Test
+    void cachedTokenIsDroppedAtExpiry() throws InterruptedException {
+        TokenVerifier verifier = newVerifier(16);
+        String token = endpoint.sign(accessToken("alice", 2));
+        verifier.verify(token);
+        assertThat(verifier.size()).isEqualTo(1);
+
+        Thread.sleep(2_100);
+
+        assertThatThrownBy(() -> verifier.verify(token)).isInstanceOf(TokenExpiredException.class);
+        assertThat(verifier.size()).isZero();
+        assertThat(verifier.hitCount()).isZero();
+    }
+
+    /**
+     * A full cache evicts the oldest entry not read since the sweep last
+     * passed it, giving a token in use a second chance.
+     */
+    @Test
+    void fullCacheEvictsTheOldestUnreadToken() {
+        TokenVerifier verifier = newVerifier(2);
+        String alice = endpoint.sign(accessToken("alice", 3600));
+        String bob = endpoint.sign(accessToken("bob", 3600));
+        String carol = endpoint.sign(accessToken("carol", 3600));
+        verifier.verify(alice);
+        verifier.verify(bob);
+        verifier.verify(alice);
+
+        verifier.verify(carol);
+
+        assertThat(verifier.size()).isEqualTo(2);
+        long misses = verifier.missCount();
+        verifier.verify(alice);
+        verifier.verify(carol);
+        assertThat(verifier.missCount()).isEqualTo(misses);
+        verifier.verify(bob);
+        assertThat(verifier.missCount()).isEqualTo(misses + 1);
+    }
+
+    /**
+     * Creates a verifier of tokens issued by the local endpoint to {@link #CLIENT_ID}.
+     *
+     * @param maxEntries the maximum number of cached tokens
+     * @return the verifier
+     */
+    private TokenVerifier newVerifier(int maxEntries) {
+        return new TokenVerifier(endpoint.issuer(), CLIENT_ID, keys, maxEntries);
+    }
+
+    /**
+     * Starts an access token of an admin issued to {@link #CLIENT_ID}.
+     *
+     * @param username         the token owner
+     * @param expiresInSeconds the time until the token expires
+     * @return the token builder
+     */
+    private static JWTCreator.Builder accessToken(String username, long expiresInSeconds) {
+        return endpoint.token()
+                .withSubject(username)
+                .withClaim("token_use", "access")
+                .withClaim("client_id", CLIENT_ID)
+                .withClaim("username", username)
+                .withArrayClaim("cognito:groups", new String[] {"admin"})
+                .withExpiresAt(Instant.now().plusSeconds(expiresInSeconds));
+    }
+}
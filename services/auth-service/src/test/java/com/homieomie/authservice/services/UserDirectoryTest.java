@@ -0,0 +1,238 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.homieomie.authservice.models.UserMatch;
+import com.homieomie.authservice.models.UserSummary;
+import com.homieomie.authservice.resilience.Deadline;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
+
+/**
+ * Tests for {@link UserDirectory}: which reads are answered from the cached
+ * table and which from Cognito, and how sweeps rewrite the table.
+ */
+class UserDirectoryTest {
+
+    /**
+     * Headers of an admin request; admin checks are stubbed to pass.
+     */
+    private static final Map<String, String> HEADERS = Map.of("Authorization", "Bearer admin");
+
+    /**
+     * Mocked service the directory reads Cognito through.
+     */
+    private CognitoService cognito;
+
+    /**
+     * Directory under test.
+     */
+    private UserDirectory directory;
+
+    /**
+     * Creates a directory around a mocked service that authorizes every request.
+     */
+    @BeforeEach
+    void setUp() {
+        cognito = mock(CognitoService.class);
+        when(cognito.requireAdmin(any())).thenReturn(CompletableFuture.completedFuture(null));
+        directory = new UserDirectory(cognito, true, UserDirectory.DEFAULT_ATTRIBUTES,
+                Duration.ofHours(1), Duration.ofHours(6));
+    }
+
+    /**
+     * Stops the directory's refresher thread.
+     */
+    @AfterEach
+    void tearDown() {
+        directory.close();
+    }
+
+    /**
+     * A first page asked of a directory that was never filled is answered by
+     * Cognito, with a cursor that sends the next page to Cognito too.
+     */
+    @Test
+    void coldFirstPageIsAnsweredFromCognitoAndStaysThere() {
+        stubSweep(List.of());
+        when(cognito.listUsers(eq(HEADERS), eq(2), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture("cognito-next"));
+        when(cognito.listUsers(eq(HEADERS), eq(2), eq("cognito-next"), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        String cursor = directory.listUsers(HEADERS, 2, null, false, user -> { }).join();
+        assertThat(cursor).isEqualTo("~cognito-next");
+
+        assertThat(directory.listUsers(HEADERS, 2, cursor, false, user -> { }).join()).isNull();
+        verify(cognito).listUsers(eq(HEADERS), eq(2), eq("cognito-next"), any());
+    }
+
+    /**
+     * Once filled, the directory answers pages itself, in username order.
+     */
+    @Test
+    void warmPagesAreAnsweredFromTheTableInUsernameOrder() {
+        stubSweep(List.of(user("carol", 1, "carol@example.com"), user("alice", 1, "alice@example.com"),
+                user("bob", 1, "bob@example.com")));
+        directory.refresh();
+
+        List<String> names = new ArrayList<>();
+        String cursor = directory.listUsers(HEADERS, 2, null, false, user -> names.add(user.getUsername())).join();
+        directory.listUsers(HEADERS, 2, cursor, false, user -> names.add(user.getUsername())).join();
+
+        assertThat(names).containsExactly("alice", "bob", "carol");
+    }
+
+    /**
+     * A sweep replaces a changed user's whole row, so an attribute deleted in
+     * Cognito stops being served and stops matching searches.
+     */
+    @Test
+    void sweepClearsAttributesDeletedInCognito() {
+        stubSweep(List.of(user("alice", 1, "alice@example.com")));
+        directory.refresh();
+        stubSweep(List.of(user("alice", 2, null)));
+        directory.refresh();
+
+        List<UserSummary> users = new ArrayList<>();
+        directory.listUsers(HEADERS, 10, null, false, users::add).join();
+        assertThat(users).singleElement().extracting(UserSummary::getEmail).isEqualTo("");
+
+        List<UserMatch> matches = new ArrayList<>();
+        directory.searchUsers(HEADERS, "email", "alice@example.com", 10, null, matches::add).join();
+        assertThat(matches).isEmpty();
+    }
+
+    /**
+     * A sweep drops users that no longer exist in Cognito.
+     */
+    @Test
+    void sweepDropsDeletedUsers() {
+        stubSweep(List.of(user("alice", 1, "a@example.com"), user("bob", 1, "b@example.com")));
+        directory.refresh();
+        stubSweep(List.of(user("bob", 1, "b@example.com")));
+        directory.refresh();
+
+        assertThat(directory.size()).isEqualTo(1);
+    }
+
+    /**
+     * A later page of a directory listing waits for the directory to fill,
+     * but no longer than the request's deadline.
+     */
+    @Test
+    void laterPageOnColdDirectoryFailsAtTheDeadline() {
+        when(cognito.listUserPage(any(), anyInt(), any())).thenAnswer(invocation -> {
+            Thread.sleep(2_000);
+            return ListUsersResponse.builder().users(List.of()).build();
+        });
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("alice".getBytes());
+
+        CompletableFuture<String> page = Deadline.within(50,
+                () -> directory.listUsers(HEADERS, 2, cursor, false, user -> { }));
+
+        assertThat(page).failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .havingCause()
+                .isInstanceOf(TimeoutException.class);
+    }
+
+    /**
+     * A search on a cold directory is answered by Cognito.
+     */
+    @Test
+    void coldSearchIsAnsweredFromCognito() {
+        stubSweep(List.of());
+        when(cognito.searchUsers(eq(HEADERS), eq("given_name"), eq(true), eq("Al"), eq(5), isNull(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        assertThat(directory.searchUsers(HEADERS, "first_name", "Al", 5, null, match -> { }).join()).isNull();
+    }
+
+    /**
+     * A forced refresh by a caller who is not an admin is refused without
+     * starting a sweep or asking Cognito for the page.
+     */
+    @Test
+    void unauthorizedRefreshStartsNoSweep() {
+        Map<String, String> headers = Map.of("Authorization", "Bearer user");
+        when(cognito.requireAdmin(headers))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Forbidden")));
+
+        assertThat(directory.listUsers(headers, 2, null, true, user -> { }))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(RuntimeException.class);
+        assertThat(directory.searchUsers(headers, "email", "a@example.com", 2, null, match -> { }))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(RuntimeException.class);
+        verify(cognito, never()).listUsers(any(), anyInt(), any(), any());
+        verify(cognito, after(200).never()).listUserPage(any(), anyInt(), any());
+    }
+
+    /**
+     * A malformed cursor is refused, not read as a username.
+     */
+    @Test
+    void malformedCursorIsRefused() {
+        stubSweep(List.of(user("alice", 1, "a@example.com")));
+        directory.refresh();
+
+        assertThat(directory.listUsers(HEADERS, 2, "not base64!", false, user -> { }))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(Exception.class)
+                .withCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * Stubs every sweep to see the given users on a single page.
+     *
+     * @param users the users in the pool
+     */
+    private void stubSweep(List<UserType> users) {
+        when(cognito.listUserPage(any(), anyInt(), any()))
+                .thenReturn(ListUsersResponse.builder().users(users).build());
+    }
+
+    /**
+     * Builds a Cognito user.
+     *
+     * @param username the username
+     * @param modified the {@code UserLastModifiedDate}, in epoch seconds
+     * @param email    the email, or {@code null} if the user has none
+     * @return the user
+     */
+    private static UserType user(String username, long modified, String email) {
+        List<AttributeType> attributes = new ArrayList<>();
+        if (email != null) {
+            attributes.add(AttributeType.builder().name("email").value(email).build());
+        }
+        return UserType.builder()
+                .username(username)
+                .userLastModifiedDate(Instant.ofEpochSecond(modified))
+                .attributes(attributes)
+                .build();
+    }
+}
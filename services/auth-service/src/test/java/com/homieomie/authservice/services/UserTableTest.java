@@ -0,0 +1,169 @@
+package com.homieomie.authservice.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link UserTable} and the indexes it keeps current, checked
+ * against a plain map of the same rows after random adds, updates and
+ * compactions.
+ */
+class UserTableTest {
+
+    /**
+     * Normalizer of both indexed columns.
+     */
+    private static final UnaryOperator<String> LOWER_CASE = value -> value.toLowerCase(Locale.ROOT);
+
+    /**
+     * Values the random operations draw from, with case variants and shared prefixes.
+     */
+    private static final List<String> VALUES = List.of("alice", "Alice", "alicia", "al", "bob", "bobby", "carol",
+            "Carol", "x");
+
+    /**
+     * Users are found by name, listed in name order, and keep their own
+     * values and timestamps through growth and compaction.
+     */
+    @Test
+    void rowsSurviveGrowthAndCompaction() {
+        UserTable table = new UserTable(List.of("email", "given_name"));
+        for (int i = 199; i >= 0; i--) {
+            int slot = table.findOrAdd(String.format("user%03d", i));
+            table.setValue(slot, 0, "user" + i + "@example.com");
+            table.setLastModified(slot, i);
+        }
+        assertThat(table.findOrAdd("user005")).isEqualTo(table.find("user005"));
+        assertThat(table.size()).isEqualTo(200);
+
+        boolean[] keep = new boolean[table.size()];
+        for (int slot = 0; slot < table.size(); slot++) {
+            keep[slot] = table.lastModified(slot) % 3 != 0;
+        }
+        table.retain(keep);
+
+        assertThat(table.size()).isEqualTo(133);
+        assertThat(table.find("user003")).isEqualTo(-1);
+        int slot = table.find("user004");
+        assertThat(table.value(slot, 0)).isEqualTo("user4@example.com");
+        assertThat(table.value(slot, 1)).isNull();
+        assertThat(table.lastModified(slot)).isEqualTo(4);
+        assertThat(table.username(table.sortedSlot(0))).isEqualTo("user001");
+        assertThat(table.positionAfter("user004")).isEqualTo(3);
+        assertThat(table.positionAfter(null)).isZero();
+        assertThat(table.column("given_name")).isEqualTo(1);
+        assertThat(table.column("phone_number")).isEqualTo(-1);
+    }
+
+    /**
+     * After any sequence of adds, updates and compactions, with indexes
+     * suspended or not, the username order and both indexes agree with a
+     * plain map of the rows.
+     */
+    @Test
+    void indexesAgreeWithRowsAfterRandomChanges() {
+        for (long seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            UserTable table = new UserTable(List.of("email", "given_name"));
+            HashIndex emails = table.hashIndex(0, LOWER_CASE);
+            PrefixIndex names = table.prefixIndex(1, LOWER_CASE);
+            Map<String, String[]> rows = new HashMap<>();
+
+            for (int step = 0; step < 400; step++) {
+                int op = random.nextInt(20);
+                if (op == 0) {
+                    table.suspendIndexes();
+                    change(table, rows, random, 50);
+                    table.resumeIndexes();
+                } else if (op == 1) {
+                    boolean[] keep = new boolean[table.size()];
+                    for (int slot = 0; slot < keep.length; slot++) {
+                        keep[slot] = random.nextInt(4) != 0;
+                        if (!keep[slot]) {
+                            rows.remove(table.username(slot));
+                        }
+                    }
+                    table.retain(keep);
+                } else {
+                    change(table, rows, random, 1);
+                }
+                assertAgrees(table, emails, names, rows);
+            }
+        }
+    }
+
+    /**
+     * Adds or updates random rows in the table and the model alike.
+     *
+     * @param table  the table
+     * @param rows   the model, username to email and given name
+     * @param random the source of the changes
+     * @param count  the number of changes
+     */
+    private static void change(UserTable table, Map<String, String[]> rows, Random random, int count) {
+        for (int i = 0; i < count; i++) {
+            String username = "u" + random.nextInt(120);
+            int slot = table.findOrAdd(username);
+            String[] row = rows.computeIfAbsent(username, name -> new String[2]);
+            int column = random.nextInt(2);
+            String value = random.nextInt(5) == 0 ? null : VALUES.get(random.nextInt(VALUES.size()));
+            table.setValue(slot, column, value);
+            row[column] = value;
+        }
+    }
+
+    /**
+     * Checks the table, its username order and its indexes against the model.
+     *
+     * @param table  the table
+     * @param emails the exact-match index of the first column
+     * @param names  the prefix index of the second column
+     * @param rows   the model
+     */
+    private static void assertAgrees(UserTable table, HashIndex emails, PrefixIndex names,
+                                     Map<String, String[]> rows) {
+        assertThat(table.size()).isEqualTo(rows.size());
+        List<String> ordered = new ArrayList<>();
+        for (int position = 0; position < table.size(); position++) {
+            ordered.add(table.username(table.sortedSlot(position)));
+        }
+        assertThat(ordered).isEqualTo(rows.keySet().stream().sorted().toList());
+
+        Map<String, List<String>> byEmail = new TreeMap<>();
+        List<String[]> byName = new ArrayList<>();
+        rows.forEach((username, row) -> {
+            assertThat(table.value(table.find(username), 0)).isEqualTo(row[0]);
+            if (row[0] != null) {
+                byEmail.computeIfAbsent(LOWER_CASE.apply(row[0]), key -> new ArrayList<>()).add(username);
+            }
+            if (row[1] != null) {
+                byName.add(new String[] {LOWER_CASE.apply(row[1]), username});
+            }
+        });
+        for (String value : VALUES) {
+            String key = LOWER_CASE.apply(value);
+            List<String> found = new ArrayList<>();
+            for (int slot : emails.find(key)) {
+                found.add(table.username(slot));
+            }
+            assertThat(found).containsExactlyInAnyOrderElementsOf(byEmail.getOrDefault(key, List.of()));
+        }
+
+        byName.sort(Comparator.<String[], String>comparing(entry -> entry[0]).thenComparing(entry -> entry[1]));
+        assertThat(names.size()).isEqualTo(byName.size());
+        for (int position = 0; position < names.size(); position++) {
+            assertThat(names.keyAt(position)).isEqualTo(byName.get(position)[0]);
+            assertThat(table.username(names.slotAt(position))).isEqualTo(byName.get(position)[1]);
+        }
+    }
+}
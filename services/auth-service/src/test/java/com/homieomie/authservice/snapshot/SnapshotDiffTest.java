@@ -0,0 +1,63 @@
+package com.homieomie.authservice.snapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for {@link SnapshotDiff} over two snapshots written to disk.
+ */
+class SnapshotDiffTest {
+
+    /**
+     * Directory the snapshots are written to.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Users are added, removed or changed by username; a new last-modified
+     * time alone is not a change.
+     */
+    @Test
+    void changesAreFoundByUsername() throws IOException {
+        Path before = directory.resolve("before.snap");
+        try (SnapshotWriter writer = SnapshotWriter.create(before, List.of("email"), 2);
+             SnapshotWriter.Appender appender = writer.appender()) {
+            appender.add("alice", "CONFIRMED", 1, "alice@example.com");
+            appender.add("bob", "CONFIRMED", 1, "bob@example.com");
+            appender.add("carol", "UNCONFIRMED", 1, "carol@example.com");
+            appender.add("dave", "CONFIRMED", 1, "dave@example.com");
+        }
+        Path after = directory.resolve("after.snap");
+        try (SnapshotWriter writer = SnapshotWriter.create(after, List.of("email"), 2);
+             SnapshotWriter.Appender appender = writer.appender()) {
+            appender.add("alice", "CONFIRMED", 99, "alice@example.com");
+            appender.add("bob", "CONFIRMED", 1, "bob@new.example.com");
+            appender.add("carol", "CONFIRMED", 1, "carol@example.com");
+            appender.add("erin", "CONFIRMED", 1, "erin@example.com");
+        }
+
+        Map<String, SnapshotDiff.Change> changes = new HashMap<>();
+        SnapshotDiff diff;
+        try (UserSnapshot earlier = UserSnapshot.open(before); UserSnapshot later = UserSnapshot.open(after)) {
+            diff = SnapshotDiff.compare(earlier, later, (change, username) -> changes.put(username, change));
+        }
+
+        assertThat(changes).containsOnly(
+                Map.entry("bob", SnapshotDiff.Change.CHANGED),
+                Map.entry("carol", SnapshotDiff.Change.CHANGED),
+                Map.entry("dave", SnapshotDiff.Change.REMOVED),
+                Map.entry("erin", SnapshotDiff.Change.ADDED));
+        assertThat(diff.added()).isEqualTo(1);
+        assertThat(diff.removed()).isEqualTo(1);
+        assertThat(diff.changed()).isEqualTo(2);
+        assertThat(diff.unchanged()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,180 @@
+package com.homieomie.authservice.snapshot;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round-trip tests for {@link SnapshotWriter} and {@link UserSnapshot}: what
+ * is written is read back whole, across blocks and appenders, and files that
+ * are not complete snapshots are refused.
+ */
+class UserSnapshotTest {
+
+    /**
+     * Attribute columns of the snapshots written.
+     */
+    private static final List<String> ATTRIBUTES = List.of("email", "given_name");
+
+    /**
+     * Directory the snapshots are written to.
+     */
+    @TempDir
+    Path directory;
+
+    /**
+     * Every row comes back with its username, status, last-modified time and
+     * attributes, across several blocks, with missing values kept missing.
+     */
+    @Test
+    void rowsRoundTripAcrossBlocks() throws IOException {
+        Path file = directory.resolve("users.snap");
+        try (SnapshotWriter writer = SnapshotWriter.create(file, ATTRIBUTES, 3);
+             SnapshotWriter.Appender appender = writer.appender()) {
+            for (int i = 0; i < 10; i++) {
+                appender.add("user" + i, i % 2 == 0 ? "CONFIRMED" : null, 1_700_000_000_000L - i * 1_000L,
+                        "user" + i + "@example.com", i == 4 ? null : "Zoë " + i);
+            }
+            appender.add("short", "UNCONFIRMED", 0, "short@example.com");
+        }
+
+        try (UserSnapshot snapshot = UserSnapshot.open(file)) {
+            assertThat(snapshot.columns()).containsExactly("username", "status", "lastModified", "email",
+                    "given_name");
+            assertThat(snapshot.rowCount()).isEqualTo(11);
+            assertThat(snapshot.blockCount()).isEqualTo(4);
+            assertThat(snapshot.createdAtMillis()).isPositive();
+
+            List<SnapshotRow> rows = scan(snapshot);
+            assertThat(rows).extracting(SnapshotRow::username).startsWith("user0", "user1").endsWith("short");
+            SnapshotRow third = rows.get(3);
+            assertThat(third.status()).isNull();
+            assertThat(third.lastModifiedMillis()).isEqualTo(1_699_999_997_000L);
+            assertThat(third.attributes()).containsExactly(Map.entry("email", "user3@example.com"),
+                    Map.entry("given_name", "Zoë 3"));
+            assertThat(rows.get(4).value("given_name")).isNull();
+            assertThat(rows.get(4).attributes()).containsOnlyKeys("email");
+            assertThat(rows.get(10).value("given_name")).isNull();
+            assertThat(rows.get(10).lastModifiedMillis()).isZero();
+        }
+    }
+
+    /**
+     * Queries read the same rows as a scan.
+     */
+    @Test
+    void queriesMatchTheScan() throws IOException {
+        Path file = directory.resolve("users.snap");
+        try (SnapshotWriter writer = SnapshotWriter.create(file, ATTRIBUTES, 4);
+             SnapshotWriter.Appender appender = writer.appender()) {
+            for (int i = 0; i < 10; i++) {
+                appender.add("user" + i, "CONFIRMED", i, i < 3 ? "user" + i + "@corp.example" : null, "Alice");
+            }
+        }
+
+        try (UserSnapshot snapshot = UserSnapshot.open(file)) {
+            assertThat(snapshot.count("email", email -> email != null && email.endsWith("@corp.example")))
+                    .isEqualTo(3);
+            assertThat(snapshot.count("email", email -> email == null)).isEqualTo(7);
+
+            List<String> selected = new ArrayList<>();
+            snapshot.select("given_name", "Alice"::equals, row -> selected.add(row.username()));
+            assertThat(selected).hasSize(10);
+
+            SnapshotRow found = snapshot.find("user7");
+            assertThat(found.lastModifiedMillis()).isEqualTo(7);
+            assertThat(found.value("email")).isNull();
+            assertThat(snapshot.find("nobody")).isNull();
+            assertThatThrownBy(() -> snapshot.count("lastModified", value -> true))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> snapshot.count("phone_number", value -> true))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    /**
+     * Blocks from several appenders interleave, and every row of each is
+     * written once the appenders are closed.
+     */
+    @Test
+    void appendersInterleaveBlocks() throws IOException {
+        Path file = directory.resolve("users.snap");
+        try (SnapshotWriter writer = SnapshotWriter.create(file, ATTRIBUTES, 2)) {
+            try (SnapshotWriter.Appender first = writer.appender();
+                 SnapshotWriter.Appender second = writer.appender()) {
+                for (int i = 0; i < 5; i++) {
+                    first.add("a" + i, "CONFIRMED", i);
+                    second.add("b" + i, "CONFIRMED", i);
+                }
+            }
+            assertThat(writer.rowCount()).isEqualTo(10);
+            assertThat(writer.blockCount()).isEqualTo(6);
+        }
+
+        try (UserSnapshot snapshot = UserSnapshot.open(file)) {
+            assertThat(scan(snapshot)).extracting(SnapshotRow::username).containsExactlyInAnyOrder(
+                    "a0", "a1", "a2", "a3", "a4", "b0", "b1", "b2", "b3", "b4");
+        }
+    }
+
+    /**
+     * A snapshot without rows opens and is empty.
+     */
+    @Test
+    void emptySnapshotRoundTrips() throws IOException {
+        Path file = directory.resolve("users.snap");
+        SnapshotWriter.create(file, List.of(), SnapshotWriter.DEFAULT_BLOCK_ROWS).close();
+
+        try (UserSnapshot snapshot = UserSnapshot.open(file)) {
+            assertThat(snapshot.rowCount()).isZero();
+            assertThat(snapshot.columns()).containsExactly("username", "status", "lastModified");
+            assertThat(scan(snapshot)).isEmpty();
+        }
+    }
+
+    /**
+     * A snapshot whose writer was not closed, one cut short, and a file
+     * that is not a snapshot are refused.
+     */
+    @Test
+    void incompleteFilesAreRefused() throws IOException {
+        Path unclosed = directory.resolve("unclosed.snap");
+        SnapshotWriter writer = SnapshotWriter.create(unclosed, ATTRIBUTES, 1);
+        try (SnapshotWriter.Appender appender = writer.appender()) {
+            appender.add("alice", "CONFIRMED", 1, "alice@example.com", "Alice");
+        }
+        assertThatThrownBy(() -> UserSnapshot.open(unclosed)).isInstanceOf(IOException.class);
+        writer.close();
+
+        Path cut = directory.resolve("cut.snap");
+        byte[] complete = Files.readAllBytes(unclosed);
+        Files.write(cut, Arrays.copyOf(complete, complete.length - 1));
+        assertThatThrownBy(() -> UserSnapshot.open(cut)).isInstanceOf(IOException.class);
+
+        Path other = directory.resolve("other.txt");
+        Files.writeString(other, "username,status\nalice,CONFIRMED\n");
+        assertThatThrownBy(() -> UserSnapshot.open(other)).isInstanceOf(IOException.class);
+    }
+
+    /**
+     * Reads every row of a snapshot.
+     *
+     * @param snapshot the snapshot
+     * @return the rows, in file order
+     * @throws IOException if a block cannot be read
+     */
+    private static List<SnapshotRow> scan(UserSnapshot snapshot) throws IOException {
+        List<SnapshotRow> rows = new ArrayList<>();
+        snapshot.scan(rows::add);
+        return rows;
+    }
+}
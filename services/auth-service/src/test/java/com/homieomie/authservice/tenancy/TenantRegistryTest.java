@@ -0,0 +1,315 @@
+package com.homieomie.authservice.tenancy;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.homieomie.authservice.services.CognitoBackend;
+import com.homieomie.authservice.services.PoolConfig;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.RespondToAuthChallengeResponse;
+
+/**
+ * Tests for {@link TenantRegistry}: how a request selects its tenant, how
+ * idle tenants and their shared clients are released, and how a reload
+ * rebuilds changed tenants and survives a failing source.
+ */
+class TenantRegistryTest {
+
+    /**
+     * Tenant in {@code us-east-1}, selected by host or path.
+     */
+    private static final TenantConfig ACME = new TenantConfig("acme",
+            new PoolConfig("us-east-1_acme", "acme-client", null), List.of("auth.acme.example"), "/acme");
+
+    /**
+     * Second tenant in {@code us-east-1}, selected by header only.
+     */
+    private static final TenantConfig GLOBEX = new TenantConfig("globex",
+            new PoolConfig("us-east-1_globex", "globex-client", null), List.of(), null);
+
+    /**
+     * Tenant in {@code eu-west-1}.
+     */
+    private static final TenantConfig INITECH = new TenantConfig("initech",
+            new PoolConfig("eu-west-1_initech", "initech-client", null), List.of(), null);
+
+    /**
+     * Backends created by the registry under test, in creation order.
+     */
+    private final List<StubBackend> backends = new CopyOnWriteArrayList<>();
+
+    /**
+     * Configuration the source returns next.
+     */
+    private volatile Map<String, TenantConfig> configured = Map.of("acme", ACME, "globex", GLOBEX,
+            "initech", INITECH);
+
+    /**
+     * Whether the source fails.
+     */
+    private volatile boolean sourceFails;
+
+    /**
+     * Registry under test, closed after each test.
+     */
+    private TenantRegistry registry;
+
+    /**
+     * Closes the registry under test.
+     */
+    @AfterEach
+    void closeRegistry() {
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    /**
+     * A request selects its tenant by host, then path prefix, then header,
+     * and tenants of one region share one backend.
+     */
+    @Test
+    void requestsSelectTheirTenant() {
+        registry = registry(Duration.ZERO, Duration.ofMinutes(15));
+
+        Tenant acme = registry.select(Map.of("host", "Auth.Acme.Example:443"), "/login");
+        assertThat(acme.getId()).isEqualTo("acme");
+        assertThat(registry.select(Map.of(), "/acme/login")).isSameAs(acme);
+        assertThat(registry.select(Map.of("X-Tenant-Id", "globex"), "/acme/login")).isSameAs(acme);
+        assertThat(registry.select(Map.of("x-tenant-id", "globex"), "/login").getId()).isEqualTo("globex");
+        assertThat(registry.select(Map.of(), "/login")).isNull();
+        assertThat(registry.select(null, null)).isNull();
+        assertThatThrownBy(() -> registry.select(Map.of("X-Tenant-Id", "umbrella"), "/login"))
+                .isInstanceOf(UnknownTenantException.class);
+
+        assertThat(registry.activeCount()).isEqualTo(2);
+        assertThat(backends).hasSize(1);
+        assertThat(backends.get(0).region).isEqualTo(Region.US_EAST_1);
+    }
+
+    /**
+     * Without a source, no request selects a tenant.
+     */
+    @Test
+    void noSourceSelectsNothing() {
+        registry = new TenantRegistry(null, TenantRegistry.DEFAULT_TENANT_HEADER, Duration.ZERO,
+                Duration.ofMinutes(15), this::newBackend);
+
+        assertThat(registry.select(Map.of("X-Tenant-Id", "acme"), "/acme/login")).isNull();
+    }
+
+    /**
+     * An idle tenant is evicted by a sweep and closed by the next one; its
+     * region's backend is closed once no tenant uses it, while the backends
+     * of tenants still in use stay open.
+     */
+    @Test
+    void idleTenantsAreEvictedThenReleased() throws InterruptedException {
+        registry = registry(Duration.ZERO, Duration.ofMillis(200));
+        registry.select(header("acme"), null);
+
+        Thread.sleep(300);
+        registry.select(header("initech"), null);
+
+        assertThat(registry.activeCount()).isEqualTo(1);
+        StubBackend usEast = backends.get(0);
+        StubBackend euWest = backends.get(1);
+        assertThat(usEast.closed).as("backend of the evicted tenant is kept one more sweep").isFalse();
+
+        Thread.sleep(300);
+        registry.select(header("initech"), null);
+
+        assertThat(usEast.closed).isTrue();
+        assertThat(euWest.closed).isFalse();
+        assertThat(registry.select(header("acme"), null)).isNotNull();
+        assertThat(backends).hasSize(3);
+    }
+
+    /**
+     * A reload rebuilds a tenant whose configuration changed and forgets a
+     * tenant no longer configured.
+     */
+    @Test
+    void reloadRebuildsChangedTenants() {
+        registry = registry(Duration.ofNanos(1), Duration.ofMinutes(15));
+        Tenant acme = registry.select(header("acme"), null);
+        registry.select(header("globex"), null);
+
+        TenantConfig moved = new TenantConfig("acme", new PoolConfig("us-east-1_acme2", "acme-client", null),
+                List.of("auth.acme.example"), "/acme");
+        configured = Map.of("acme", moved);
+
+        Tenant rebuilt = registry.select(header("acme"), null);
+        assertThat(rebuilt).isNotSameAs(acme);
+        assertThat(rebuilt.getConfig()).isEqualTo(moved);
+        assertThat(registry.select(Map.of(), "/acme/x")).isSameAs(rebuilt);
+        assertThatThrownBy(() -> registry.select(header("globex"), null))
+                .isInstanceOf(UnknownTenantException.class);
+    }
+
+    /**
+     * A failing reload keeps the configuration in use.
+     */
+    @Test
+    void failingReloadKeepsTheConfiguration() {
+        registry = registry(Duration.ofNanos(1), Duration.ofMinutes(15));
+        Tenant acme = registry.select(header("acme"), null);
+
+        sourceFails = true;
+
+        assertThat(registry.select(header("acme"), null)).isSameAs(acme);
+        assertThat(registry.select(header("initech"), null).getId()).isEqualTo("initech");
+    }
+
+    /**
+     * A source failing at startup fails the registry, and a reconnect
+     * closes every backend so tenants are built again.
+     */
+    @Test
+    void startupFailureAndReconnect() {
+        sourceFails = true;
+        assertThatThrownBy(() -> registry(Duration.ZERO, Duration.ofMinutes(15)))
+                .isInstanceOf(IllegalStateException.class);
+
+        sourceFails = false;
+        registry = registry(Duration.ZERO, Duration.ofMinutes(15));
+        Tenant acme = registry.select(header("acme"), null);
+
+        registry.reconnect();
+
+        assertThat(registry.activeCount()).isZero();
+        assertThat(backends.get(0).closed).isTrue();
+        assertThat(registry.select(header("acme"), null)).isNotSameAs(acme);
+        assertThat(backends).hasSize(2);
+    }
+
+    /**
+     * Creates a registry over the test's source.
+     *
+     * @param reloadInterval the interval between reloads
+     * @param idleTimeout    the time a tenant is kept without requests
+     * @return the registry
+     */
+    private TenantRegistry registry(Duration reloadInterval, Duration idleTimeout) {
+        return new TenantRegistry(() -> {
+            if (sourceFails) {
+                throw new IOException("source unavailable");
+            }
+            return configured;
+        }, TenantRegistry.DEFAULT_TENANT_HEADER, reloadInterval, idleTimeout, this::newBackend);
+    }
+
+    /**
+     * Creates and records a backend.
+     *
+     * @param region the region it reaches
+     * @return the backend
+     */
+    private CognitoBackend newBackend(Region region) {
+        StubBackend backend = new StubBackend(region);
+        backends.add(backend);
+        return backend;
+    }
+
+    /**
+     * Builds headers naming a tenant.
+     *
+     * @param tenantId the tenant ID
+     * @return the headers
+     */
+    private static Map<String, String> header(String tenantId) {
+        return Map.of(TenantRegistry.DEFAULT_TENANT_HEADER, tenantId);
+    }
+
+    /**
+     * Backend that fails every call and records whether it was closed.
+     */
+    private static final class StubBackend implements CognitoBackend {
+
+        /**
+         * Region the backend reaches.
+         */
+        private final Region region;
+
+        /**
+         * Whether the backend was closed.
+         */
+        private volatile boolean closed;
+
+        /**
+         * Creates a backend.
+         *
+         * @param region the region it reaches
+         */
+        private StubBackend(Region region) {
+            this.region = region;
+        }
+
+        @Override
+        public CompletableFuture<AdminCreateUserResponse> adminCreateUser(AdminCreateUserRequest request) {
+            return unavailable();
+        }
+
+        @Override
+        public CompletableFuture<AdminListGroupsForUserResponse> adminListGroupsForUser(
+                AdminListGroupsForUserRequest request) {
+            return unavailable();
+        }
+
+        @Override
+        public CompletableFuture<AdminSetUserPasswordResponse> adminSetUserPassword(
+                AdminSetUserPasswordRequest request) {
+            return unavailable();
+        }
+
+        @Override
+        public CompletableFuture<InitiateAuthResponse> initiateAuth(InitiateAuthRequest request) {
+            return unavailable();
+        }
+
+        @Override
+        public CompletableFuture<ListUsersResponse> listUsers(ListUsersRequest request) {
+            return unavailable();
+        }
+
+        @Override
+        public CompletableFuture<RespondToAuthChallengeResponse> respondToAuthChallenge(
+                RespondToAuthChallengeRequest request) {
+            return unavailable();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        /**
+         * Fails a call.
+         *
+         * @param <T> the response type
+         * @return a failed future
+         */
+        private static <T> CompletableFuture<T> unavailable() {
+            return CompletableFuture.failedFuture(new IllegalStateException("no Cognito in tests"));
+        }
+    }
+}
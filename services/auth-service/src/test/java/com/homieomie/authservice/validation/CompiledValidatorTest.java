@@ -0,0 +1,174 @@
+package com.homieomie.authservice.validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.models.BulkSignupRequest;
+import com.homieomie.authservice.models.ConfirmSignupRequest;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.models.RefreshRequest;
+import com.homieomie.authservice.models.SignupRequest;
+import com.homieomie.authservice.models.UserListRequest;
+import com.homieomie.authservice.models.UserSearchRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Differential tests for {@link CompiledValidator}: every request model, valid
+ * and invalid, must get the same messages from the compiled rules as from the
+ * reference Hibernate {@link Validator}.
+ * <p>
+ * The compiled validator joins messages in field declaration order, while
+ * Hibernate reports them in no particular order, so messages are compared as
+ * sets.
+ * </p>
+ */
+class CompiledValidatorTest {
+
+    /**
+     * The request models the controller validates.
+     */
+    private static final List<Class<?>> MODELS = List.of(SignupRequest.class, LoginRequest.class,
+            ConfirmSignupRequest.class, UserListRequest.class, UserSearchRequest.class, BulkSignupRequest.class,
+            RefreshRequest.class);
+
+    /**
+     * Reference validator, configured as the controller configures it.
+     */
+    private static final Validator REFERENCE = AuthController.buildValidator();
+
+    /**
+     * Validator under test.
+     */
+    private static final CompiledValidator COMPILED = new CompiledValidator(REFERENCE, MODELS);
+
+    /**
+     * Every request model is validated by compiled rules, so the differential
+     * cases below do exercise them.
+     */
+    @Test
+    void everyRequestModelIsCompiled() {
+        for (Class<?> model : MODELS) {
+            assertThat(COMPILED.isCompiled(model)).as(model.getSimpleName()).isTrue();
+        }
+    }
+
+    /**
+     * The compiled rules report the same messages as the reference validator.
+     *
+     * @param description what the case covers
+     * @param dto         the model to validate
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("cases")
+    void matchesReferenceValidator(String description, Object dto) {
+        String compiled = COMPILED.validate(dto);
+        Set<String> compiledMessages = compiled == null ? Set.of() : Set.copyOf(Arrays.asList(compiled.split("; ")));
+        Set<String> referenceMessages = REFERENCE.validate(dto).stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.toSet());
+
+        assertThat(compiledMessages).isEqualTo(referenceMessages);
+    }
+
+    /**
+     * Valid models, and models breaking each constraint on its own, together
+     * and at its boundaries.
+     *
+     * @return the cases, as a description and a model
+     */
+    static Stream<Arguments> cases() {
+        List<Arguments> cases = new ArrayList<>();
+
+        cases.add(Arguments.of("signup valid", signup("alice", "alice@example.com", "1990-01-31", "+15551234567")));
+        cases.add(Arguments.of("signup all null", new SignupRequest()));
+        cases.add(Arguments.of("signup blank username", signup("   ", "alice@example.com", "1990-01-31",
+                "+15551234567")));
+        cases.add(Arguments.of("signup username too short", signup("al", "alice@example.com", "1990-01-31",
+                "+15551234567")));
+        cases.add(Arguments.of("signup username at minimum", signup("ali", "alice@example.com", "1990-01-31",
+                "+15551234567")));
+        cases.add(Arguments.of("signup username at maximum", signup("a".repeat(30), "alice@example.com",
+                "1990-01-31", "+15551234567")));
+        cases.add(Arguments.of("signup username too long", signup("a".repeat(31), "alice@example.com",
+                "1990-01-31", "+15551234567")));
+        cases.add(Arguments.of("signup username of surrogate pairs", signup("😀😀",
+                "alice@example.com", "1990-01-31", "+15551234567")));
+        for (String email : List.of("alice", "alice@", "@example.com", "alice@example", "a b@example.com",
+                "alice@@example.com", "alice.@example.com", ".alice@example.com", "al..ice@example.com",
+                "alice@exa_mple.com", "alice@-example.com", "alice@example..com", "\"quoted\"@example.com",
+                "alice+tag@sub.example.co.uk", "ALICE@EXAMPLE.COM", "alice@[127.0.0.1]", "alice@123.123.123.123",
+                "üser@exämple.com", "alice@" + "a".repeat(64) + ".com", "a".repeat(65) + "@example.com", "")) {
+            cases.add(Arguments.of("signup email " + email, signup("alice", email, "1990-01-31", "+15551234567")));
+        }
+        for (String birthdate : List.of("1990-1-31", "19900131", "1990-01-31 ", "abcd-ef-gh", "١٩٩٠-٠١-٣١")) {
+            cases.add(Arguments.of("signup birthdate " + birthdate, signup("alice", "alice@example.com", birthdate,
+                    "+15551234567")));
+        }
+        for (String phone : List.of("15551234567", "+05551234567", "+1", "+1234567890123456", "+123456789012345")) {
+            cases.add(Arguments.of("signup phone " + phone, signup("alice", "alice@example.com", "1990-01-31",
+                    phone)));
+        }
+        cases.add(Arguments.of("signup sex invalid", new SignupRequest("alice", "alice@example.com", "1990-01-31",
+                "+15551234567", "Alice", "Smith", "Male")));
+        cases.add(Arguments.of("signup everything invalid", new SignupRequest("a", "nope", "31/01/1990", "555",
+                " ", "", "x")));
+
+        cases.add(Arguments.of("login valid", new LoginRequest("alice", "secret")));
+        cases.add(Arguments.of("login null", new LoginRequest()));
+        cases.add(Arguments.of("login blank", new LoginRequest("\t", " \n")));
+        cases.add(Arguments.of("confirmSignup valid", new ConfirmSignupRequest("alice", "123456")));
+        cases.add(Arguments.of("confirmSignup blank", new ConfirmSignupRequest("", null)));
+        cases.add(Arguments.of("refresh valid", new RefreshRequest("token")));
+        cases.add(Arguments.of("refresh blank", new RefreshRequest(" ")));
+
+        cases.add(Arguments.of("listUsers defaults", new UserListRequest()));
+        for (int pageSize : List.of(Integer.MIN_VALUE, 0, 1, 1000, 1001, Integer.MAX_VALUE)) {
+            cases.add(Arguments.of("listUsers pageSize " + pageSize, new UserListRequest(pageSize, null)));
+        }
+
+        cases.add(Arguments.of("searchUsers valid", new UserSearchRequest("email", "alice@example.com")));
+        cases.add(Arguments.of("searchUsers null", new UserSearchRequest()));
+        cases.add(Arguments.of("searchUsers unknown field", new UserSearchRequest("username", "alice")));
+        cases.add(Arguments.of("searchUsers field with suffix", new UserSearchRequest("email ", "alice")));
+        cases.add(Arguments.of("searchUsers query at maximum", new UserSearchRequest("first_name",
+                "a".repeat(256))));
+        cases.add(Arguments.of("searchUsers query too long", new UserSearchRequest("first_name",
+                "a".repeat(257))));
+        UserSearchRequest zeroPage = new UserSearchRequest("last_name", "Sm");
+        zeroPage.setPageSize(0);
+        cases.add(Arguments.of("searchUsers pageSize 0", zeroPage));
+
+        cases.add(Arguments.of("bulkSignup valid", new BulkSignupRequest(List.of(signup("alice",
+                "alice@example.com", "1990-01-31", "+15551234567")))));
+        cases.add(Arguments.of("bulkSignup null users", new BulkSignupRequest()));
+        cases.add(Arguments.of("bulkSignup empty users", new BulkSignupRequest(List.of())));
+        cases.add(Arguments.of("bulkSignup too many users", new BulkSignupRequest(
+                Collections.nCopies(BulkSignupRequest.MAX_USERS + 1, new SignupRequest()))));
+        return cases.stream();
+    }
+
+    /**
+     * Builds a signup request with valid names and sex.
+     *
+     * @param username  the username
+     * @param email     the email
+     * @param birthdate the birthdate
+     * @param phone     the phone number
+     * @return the request
+     */
+    private static SignupRequest signup(String username, String email, String birthdate, String phone) {
+        return new SignupRequest(username, email, birthdate, phone, "Alice", "Smith", "female");
+    }
+}
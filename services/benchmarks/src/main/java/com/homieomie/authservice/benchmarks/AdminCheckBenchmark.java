@@ -0,0 +1,90 @@
+package com.homieomie.authservice.benchmarks;
+
+import com.homieomie.authservice.services.TokenVerifier;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Micro-benchmark of the admin check behind {@code CognitoService.isAdmin},
+ * with the verified-token cache hit and with every call missing the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AdminCheckBenchmark {
+
+    /**
+     * Shared key material.
+     */
+    private BenchmarkFixture fixture;
+
+    /**
+     * Verifier with the default cache size.
+     */
+    private TokenVerifier cachedVerifier;
+
+    /**
+     * Verifier holding a single entry, so alternating tokens always miss.
+     */
+    private TokenVerifier missingVerifier;
+
+    /**
+     * Two distinct admin tokens.
+     */
+    private String[] tokens;
+
+    /**
+     * Alternation counter for the miss benchmark.
+     */
+    private int next;
+
+    /**
+     * Builds the verifiers and tokens and loads the JWKS keys.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new BenchmarkFixture();
+        cachedVerifier = fixture.newTokenVerifier(TokenVerifier.DEFAULT_MAX_ENTRIES);
+        missingVerifier = fixture.newTokenVerifier(1);
+        tokens = new String[] {fixture.adminToken("admin-a"), fixture.adminToken("admin-b")};
+        cachedVerifier.verify(tokens[0]);
+        missingVerifier.verify(tokens[0]);
+    }
+
+    /**
+     * Stops the fixture.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    /**
+     * Checks a token that is already in the verified-token cache.
+     *
+     * @return whether the token owner is an admin
+     */
+    @Benchmark
+    public boolean isAdminCached() {
+        return cachedVerifier.verify(tokens[0]).isInGroup("admin");
+    }
+
+    /**
+     * Checks a token that requires a full parse and RS256 verification.
+     *
+     * @return whether the token owner is an admin
+     */
+    @Benchmark
+    public boolean isAdminUncached() {
+        next ^= 1;
+        return missingVerifier.verify(tokens[next]).isInGroup("admin");
+    }
+}
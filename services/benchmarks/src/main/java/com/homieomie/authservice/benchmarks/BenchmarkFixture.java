@@ -0,0 +1,205 @@
+package com.homieomie.authservice.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.idempotency.IdempotencyGuard;
+import com.homieomie.authservice.ratelimit.RateLimiter;
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.JwksKeyCache;
+import com.homieomie.authservice.services.TokenVerifier;
+import com.homieomie.authservice.tenancy.TenantRegistry;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Shared setup for the benchmarks: a signing key served from an in-process
+ * JWKS endpoint, admin tokens signed with it, and an {@link AuthController}
+ * wired to a {@link StubCognitoClient}.
+ */
+public final class BenchmarkFixture implements AutoCloseable {
+
+    /**
+     * App client id the benchmark tokens are issued to.
+     */
+    public static final String CLIENT_ID = "benchmark-client";
+
+    /**
+     * Number of users in the stubbed pool.
+     */
+    public static final int POOL_SIZE = 60;
+
+    /**
+     * Local HTTP server publishing the JWKS document.
+     */
+    private final HttpServer jwksServer;
+
+    /**
+     * Key pair signing the benchmark tokens.
+     */
+    private final KeyPair keyPair;
+
+    /**
+     * Issuer URL of the benchmark tokens.
+     */
+    private final String issuer;
+
+    /**
+     * Creates the fixture and starts the JWKS endpoint.
+     */
+    public BenchmarkFixture() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            this.keyPair = generator.generateKeyPair();
+            this.jwksServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] jwks = jwksDocument().getBytes(StandardCharsets.UTF_8);
+        jwksServer.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, jwks.length);
+            exchange.getResponseBody().write(jwks);
+            exchange.close();
+        });
+        jwksServer.start();
+        this.issuer = "http://127.0.0.1:" + jwksServer.getAddress().getPort() + "/pool";
+    }
+
+    /**
+     * Creates a token verifier trusting the fixture's key.
+     *
+     * @param maxEntries the verified-token cache capacity
+     * @return the verifier
+     */
+    public TokenVerifier newTokenVerifier(int maxEntries) {
+        return new TokenVerifier(issuer, CLIENT_ID, new JwksKeyCache(issuer + "/.well-known/jwks.json"), maxEntries);
+    }
+
+    /**
+     * Creates a Cognito service backed by the stub client.
+     *
+     * @return the service
+     */
+    public CognitoService newCognitoService() {
+        return new CognitoService(new StubCognitoClient(POOL_SIZE),
+                newTokenVerifier(TokenVerifier.DEFAULT_MAX_ENTRIES));
+    }
+
+    /**
+     * Creates a controller backed by the stub client. Its rate limiter is
+     * enabled, so its cost is measured, but never refuses a request.
+     *
+     * @return the controller
+     */
+    public AuthController newController() {
+        return newController(newCognitoService());
+    }
+
+    /**
+     * Creates a controller backed by the given service, with the same rate
+     * limiter as {@link #newController()}.
+     *
+     * @param cognitoService the service the controller calls
+     * @return the controller
+     */
+    public AuthController newController(CognitoService cognitoService) {
+        RateLimiter unlimited = new RateLimiter(true, 1_000_000, Integer.MAX_VALUE, 60_000_000, Integer.MAX_VALUE,
+                RateLimiter.DEFAULT_MAX_KEYS);
+        return new AuthController(cognitoService, AuthController.buildObjectMapper(),
+                AuthController.buildValidator(), unlimited, IdempotencyGuard.fromEnvironment(),
+                TenantRegistry.fromEnvironment());
+    }
+
+    /**
+     * Signs an access token for the given user in the {@code admin} group.
+     *
+     * @param username the token owner
+     * @return the signed JWT
+     */
+    public String adminToken(String username) {
+        return JWT.create()
+                .withKeyId("benchmark")
+                .withIssuer(issuer)
+                .withSubject(username)
+                .withClaim("token_use", "access")
+                .withClaim("client_id", CLIENT_ID)
+                .withClaim("username", username)
+                .withArrayClaim("cognito:groups", new String[] {"admin"})
+                .withExpiresAt(Instant.now().plusSeconds(24 * 3600))
+                .sign(Algorithm.RSA256((RSAPublicKey) keyPair.getPublic(), (RSAPrivateKey) keyPair.getPrivate()));
+    }
+
+    /**
+     * Builds a POST request carrying the given body and an admin token.
+     *
+     * @param body the JSON body
+     * @return the request event
+     */
+    public APIGatewayProxyRequestEvent post(String body) {
+        return new APIGatewayProxyRequestEvent()
+                .withHttpMethod("POST")
+                .withHeaders(adminHeaders())
+                .withBody(body);
+    }
+
+    /**
+     * Returns the headers of a JSON request carrying a newly signed admin token.
+     *
+     * @return the request headers
+     */
+    public Map<String, String> adminHeaders() {
+        return Map.of("Authorization", "Bearer " + adminToken("admin"), "Content-Type", "application/json");
+    }
+
+    /**
+     * Stops the JWKS endpoint.
+     */
+    @Override
+    public void close() {
+        jwksServer.stop(0);
+    }
+
+    /**
+     * Renders the public key as a JWKS document.
+     *
+     * @return the JWKS JSON
+     */
+    private String jwksDocument() {
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        return "{\"keys\":[{\"kty\":\"RSA\",\"kid\":\"benchmark\",\"alg\":\"RS256\",\"use\":\"sig\","
+                + "\"n\":\"" + base64Url(key.getModulus()) + "\",\"e\":\"" + base64Url(key.getPublicExponent())
+                + "\"}]}";
+    }
+
+    /**
+     * Encodes an unsigned big integer as base64url without padding.
+     *
+     * @param value the integer
+     * @return the encoded value
+     */
+    private static String base64Url(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length > 1 && bytes[0] == 0) {
+            bytes = Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
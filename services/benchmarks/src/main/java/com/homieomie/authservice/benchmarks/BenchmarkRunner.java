@@ -0,0 +1,63 @@
+package com.homieomie.authservice.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC (allocation rate) profiler and writes the
+ * results as JSON, so runs can be diffed.
+ * <p>
+ * Usage: {@code java -jar target/benchmarks.jar [regex] [jmh options]}. The
+ * result file defaults to {@code target/jmh-result.json} and can be changed
+ * with {@code -rff}; any other JMH command-line option is honoured as well.
+ * </p>
+ */
+public final class BenchmarkRunner {
+
+    /**
+     * Default location of the JSON results.
+     */
+    private static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    /**
+     * Entry point; not instantiable.
+     */
+    private BenchmarkRunner() {}
+
+    /**
+     * Runs the selected benchmarks.
+     *
+     * @param args JMH command-line arguments
+     * @throws RunnerException if a benchmark fails
+     * @throws CommandLineOptionException if the arguments cannot be parsed
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON);
+        if (!commandLine.getResult().hasValue()) {
+            options.result(DEFAULT_RESULT_FILE);
+        }
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include("com\\.homieomie\\.authservice\\..*");
+        }
+        if (!commandLine.getForkCount().hasValue()) {
+            options.forks(1);
+        }
+        if (!commandLine.getWarmupIterations().hasValue()) {
+            options.warmupIterations(3);
+        }
+        if (!commandLine.getMeasurementIterations().hasValue()) {
+            options.measurementIterations(5);
+        }
+        new Runner(options.build()).run();
+    }
+}
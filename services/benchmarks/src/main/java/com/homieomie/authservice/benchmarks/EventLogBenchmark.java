@@ -0,0 +1,92 @@
+package com.homieomie.authservice.benchmarks;
+
+import com.homieomie.authservice.logging.EventLog;
+import com.homieomie.authservice.models.LoginRequest;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost to the request thread of logging a request through {@link EventLog}
+ * from several threads at once, while a background thread writes the lines
+ * to a discarding stream, next to formatting and printing the line on the
+ * request thread as {@code confirmSignup} used to.
+ * <p>
+ * With {@code fullPerSecond} at its default, most events are sampled out;
+ * at its maximum every event is kept, or dropped once the writer falls behind.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class EventLogBenchmark {
+
+    /**
+     * Successful requests logged per second before sampling.
+     */
+    @Param({"100", "2147483647"})
+    private int fullPerSecond;
+
+    /**
+     * Log under test.
+     */
+    private EventLog log;
+
+    /**
+     * Stream the lines are written to and discarded.
+     */
+    private PrintStream out;
+
+    /**
+     * Request logged, whose password must not be written.
+     */
+    private LoginRequest request;
+
+    /**
+     * Builds the log and starts its background writer.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        log = new EventLog(true, 8192, fullPerSecond, 10, 1);
+        out = new PrintStream(OutputStream.nullOutputStream());
+        request = new LoginRequest("user0", "Password123!");
+        log.startFlusher(out);
+    }
+
+    /**
+     * Stops the background writer.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        log.stopFlusher(out);
+    }
+
+    /**
+     * Logs a handled login.
+     */
+    @Benchmark
+    public void request() {
+        log.request("c6af9ac6-7b61-11e6-9a41-93e8deadbeef", null, "login", 200, 4_200_000, null, request);
+    }
+
+    /**
+     * Formats and prints a line on the calling thread.
+     */
+    @Benchmark
+    public void printOnRequestThread() {
+        out.println("Error confirming signup for user " + request.getUsername() + ": "
+                + "User does not exist. (Service: CognitoIdentityProvider, Status Code: 400)");
+    }
+}
@@ -0,0 +1,117 @@
+package com.homieomie.authservice.benchmarks;
+
+import com.homieomie.authservice.loadtest.FakeCognitoServer;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.services.CognitoClientFactory;
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.TokenVerifier;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthFlowType;
+
+/**
+ * Per-login latency of {@code CognitoService.login} with the password and the
+ * SRP flow, through the real SDK client and its pooled connections to an
+ * in-process {@link FakeCognitoServer}.
+ * <p>
+ * With no fake latency, the difference between the flows is the SRP
+ * arithmetic and the second round trip; {@code latencyMs} adds the network
+ * time a Cognito call would take, which the SRP flow pays twice.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LoginFlowBenchmark {
+
+    /**
+     * Login flow measured.
+     */
+    @Param({"USER_PASSWORD_AUTH", "USER_SRP_AUTH"})
+    private String flow;
+
+    /**
+     * Fixed delay of every fake Cognito call, in milliseconds.
+     */
+    @Param({"0"})
+    private int latencyMs;
+
+    /**
+     * Shared key material.
+     */
+    private BenchmarkFixture fixture;
+
+    /**
+     * Stand-in for Cognito.
+     */
+    private FakeCognitoServer server;
+
+    /**
+     * Service under test.
+     */
+    private CognitoService service;
+
+    /**
+     * Flow parsed from {@link #flow}.
+     */
+    private AuthFlowType authFlow;
+
+    /**
+     * Login of a seeded user.
+     */
+    private LoginRequest request;
+
+    /**
+     * Starts the fake Cognito and builds the service against it. The fake
+     * starts first, as the JDK reads its server settings for the whole JVM once.
+     *
+     * @throws IOException if the fake cannot be started
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new FakeCognitoServer(Duration.ofMillis(latencyMs), Duration.ZERO, 0);
+        server.addUsers(1);
+        server.setUserPoolId(System.getenv("USER_POOL_ID"));
+        server.start(0);
+        fixture = new BenchmarkFixture();
+        service = new CognitoService(CognitoClientFactory.create(server.endpoint()),
+                fixture.newTokenVerifier(TokenVerifier.DEFAULT_MAX_ENTRIES));
+        authFlow = AuthFlowType.fromValue(flow);
+        request = new LoginRequest("user0", FakeCognitoServer.PASSWORD);
+    }
+
+    /**
+     * Stops the service, the fake and the fixture.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        server.close();
+        fixture.close();
+    }
+
+    /**
+     * Logs the user in and waits for the tokens.
+     *
+     * @return the tokens
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException   if the login fails
+     */
+    @Benchmark
+    public Map<String, String> login() throws InterruptedException, ExecutionException {
+        return service.login(request, authFlow).get();
+    }
+}
@@ -0,0 +1,80 @@
+package com.homieomie.authservice.benchmarks;
+
+import com.homieomie.authservice.ratelimit.RateLimiter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Micro-benchmark of {@link RateLimiter#acquire} from several threads at once,
+ * for a handful of hot clients and for a million distinct ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class RateLimiterBenchmark {
+
+    /**
+     * Number of distinct client addresses cycled through.
+     */
+    @Param({"16", "1000000"})
+    private int clients;
+
+    /**
+     * Limiter with the default limits and table size.
+     */
+    private RateLimiter limiter;
+
+    /**
+     * Client addresses, built up front so the benchmark measures the limiter only.
+     */
+    private String[] addresses;
+
+    /**
+     * Builds the limiter and the addresses.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        limiter = new RateLimiter(true, RateLimiter.DEFAULT_CLIENT_PER_SECOND, RateLimiter.DEFAULT_CLIENT_BURST,
+                RateLimiter.DEFAULT_USERNAME_PER_MINUTE, RateLimiter.DEFAULT_USERNAME_BURST,
+                RateLimiter.DEFAULT_MAX_KEYS);
+        addresses = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = "10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF);
+        }
+    }
+
+    /**
+     * Takes a login token for the next client and user.
+     *
+     * @param cursor the calling thread's position
+     * @return the wait, returned so JMH keeps it alive
+     */
+    @Benchmark
+    public long acquire(Cursor cursor) {
+        String address = addresses[cursor.next];
+        cursor.next = cursor.next + 1 == clients ? 0 : cursor.next + 1;
+        return limiter.acquire("login", address, address);
+    }
+
+    /**
+     * Per-thread position in the address list.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        /**
+         * Next address index.
+         */
+        private int next;
+    }
+}
@@ -0,0 +1,104 @@
+package com.homieomie.authservice.benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.homieomie.authservice.controllers.AuthController;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * End-to-end benchmark of {@link AuthController#routeRequest} for every action,
+ * with Cognito replaced by {@link StubCognitoClient}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteRequestBenchmark {
+
+    /**
+     * Request bodies per scenario; {@code options} is sent as a preflight instead.
+     */
+    private static final Map<String, String> BODIES = Map.of(
+            "signup", "{\"action\":\"signup\",\"username\":\"jdoe\",\"email\":\"jdoe@example.com\","
+                    + "\"birthdate\":\"1990-04-01\",\"phone_number\":\"+15555550100\","
+                    + "\"first_name\":\"John\",\"last_name\":\"Doe\",\"sex\":\"male\"}",
+            "login", "{\"action\":\"login\",\"username\":\"jdoe\",\"password\":\"Secret123\"}",
+            "confirmSignup", "{\"action\":\"confirmSignup\",\"username\":\"jdoe\",\"password\":\"Secret123\"}",
+            "listUsers", "{\"action\":\"listUsers\",\"pageSize\":20}",
+            "loginByPath", "{\"username\":\"jdoe\",\"password\":\"Secret123\"}",
+            "notFound", "{\"action\":\"login\",\"username\":\"jdoe\",\"password\":\"Secret123\"}",
+            "options", "",
+            "malformed", "{\"action\":\"login\",\"username\":",
+            "invalid", "{\"action\":\"signup\",\"username\":\"x\",\"email\":\"not-an-email\","
+                    + "\"birthdate\":\"01/04/1990\",\"phone_number\":\"5550100\",\"sex\":\"unknown\"}");
+
+    /**
+     * Paths of the scenarios not sent to the root path.
+     */
+    private static final Map<String, String> PATHS = Map.of(
+            "loginByPath", "/login",
+            "notFound", "/unknown");
+
+    /**
+     * Scenario being measured.
+     */
+    @Param({"signup", "login", "loginByPath", "confirmSignup", "listUsers", "options", "malformed", "invalid",
+            "notFound"})
+    private String scenario;
+
+    /**
+     * Shared key material and stub wiring.
+     */
+    private BenchmarkFixture fixture;
+
+    /**
+     * Controller under test.
+     */
+    private AuthController controller;
+
+    /**
+     * Request sent on every invocation.
+     */
+    private APIGatewayProxyRequestEvent request;
+
+    /**
+     * Builds the controller and the scenario's request.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new BenchmarkFixture();
+        controller = fixture.newController();
+        request = "options".equals(scenario)
+                ? new APIGatewayProxyRequestEvent().withHttpMethod("OPTIONS")
+                : fixture.post(BODIES.get(scenario)).withPath(PATHS.get(scenario));
+        controller.routeRequest(request);
+    }
+
+    /**
+     * Stops the fixture.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    /**
+     * Routes the scenario's request once.
+     *
+     * @return the response, returned so JMH keeps it alive
+     */
+    @Benchmark
+    public APIGatewayProxyResponseEvent routeRequest() {
+        return controller.routeRequest(request);
+    }
+}
@@ -0,0 +1,143 @@
+package com.homieomie.authservice.benchmarks;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import software.amazon.awssdk.services.cognitoidentityprovider.CognitoIdentityProviderClient;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminCreateUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminListGroupsForUserResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AdminSetUserPasswordResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AttributeType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.AuthenticationResultType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.GroupType;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.InitiateAuthResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersRequest;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.ListUsersResponse;
+import software.amazon.awssdk.services.cognitoidentityprovider.model.UserType;
+
+/**
+ * Cognito client stub returning canned responses without any I/O, so the
+ * benchmarks measure only the service's own request pipeline.
+ */
+public class StubCognitoClient implements CognitoIdentityProviderClient {
+
+    /**
+     * Canned successful authentication result.
+     */
+    private static final InitiateAuthResponse AUTH_RESPONSE = InitiateAuthResponse.builder()
+            .authenticationResult(AuthenticationResultType.builder()
+                    .idToken("stub-id-token")
+                    .accessToken("stub-access-token")
+                    .refreshToken("stub-refresh-token")
+                    .build())
+            .build();
+
+    /**
+     * Canned group listing holding only the {@code admin} group.
+     */
+    private static final AdminListGroupsForUserResponse GROUPS_RESPONSE = AdminListGroupsForUserResponse.builder()
+            .groups(GroupType.builder().groupName("admin").build())
+            .build();
+
+    /**
+     * Canned user listing.
+     */
+    private final ListUsersResponse listUsersResponse;
+
+    /**
+     * Creates a stub whose {@code ListUsers} returns the given number of users.
+     *
+     * @param userCount the number of users in the stubbed pool
+     */
+    public StubCognitoClient(int userCount) {
+        List<UserType> users = new ArrayList<>(userCount);
+        Instant modified = Instant.parse("2024-01-01T00:00:00Z");
+        for (int i = 0; i < userCount; i++) {
+            users.add(UserType.builder()
+                    .username("user" + i)
+                    .userLastModifiedDate(modified)
+                    .attributes(AttributeType.builder().name("email").value("user" + i + "@example.com").build())
+                    .build());
+        }
+        this.listUsersResponse = ListUsersResponse.builder().users(users).build();
+    }
+
+    /**
+     * Returns a created user echoing the requested username.
+     *
+     * @param request the create request
+     * @return the canned response
+     */
+    @Override
+    public AdminCreateUserResponse adminCreateUser(AdminCreateUserRequest request) {
+        return AdminCreateUserResponse.builder()
+                .user(UserType.builder().username(request.username()).build())
+                .build();
+    }
+
+    /**
+     * Places every user in the {@code admin} group.
+     *
+     * @param request the group request
+     * @return the canned response
+     */
+    @Override
+    public AdminListGroupsForUserResponse adminListGroupsForUser(AdminListGroupsForUserRequest request) {
+        return GROUPS_RESPONSE;
+    }
+
+    /**
+     * Accepts any password change.
+     *
+     * @param request the password request
+     * @return an empty response
+     */
+    @Override
+    public AdminSetUserPasswordResponse adminSetUserPassword(AdminSetUserPasswordRequest request) {
+        return AdminSetUserPasswordResponse.builder().build();
+    }
+
+    /**
+     * Returns fixed tokens for any credentials.
+     *
+     * @param request the auth request
+     * @return the canned response
+     */
+    @Override
+    public InitiateAuthResponse initiateAuth(InitiateAuthRequest request) {
+        return AUTH_RESPONSE;
+    }
+
+    /**
+     * Returns the whole stubbed pool as a single page.
+     *
+     * @param request the list request
+     * @return the canned response
+     */
+    @Override
+    public ListUsersResponse listUsers(ListUsersRequest request) {
+        return listUsersResponse;
+    }
+
+    /**
+     * Returns the service name.
+     *
+     * @return the Cognito service name
+     */
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    /**
+     * Nothing to release.
+     */
+    @Override
+    public void close() {
+        // no resources
+    }
+}
@@ -0,0 +1,161 @@
+package com.homieomie.authservice.controllers;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.homieomie.authservice.benchmarks.BenchmarkFixture;
+import com.homieomie.authservice.models.LoginRequest;
+import com.homieomie.authservice.models.SignupRequest;
+import com.homieomie.authservice.models.UserSummary;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Micro-benchmarks of the package-private {@link AuthController} stages:
+ * request validation and response writing through {@link ResponseWriter}.
+ * Lives in the controller's package so it can call them directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ControllerComponentBenchmark {
+
+    /**
+     * A signup request that passes validation.
+     */
+    private static final SignupRequest VALID_SIGNUP = new SignupRequest("jdoe", "jdoe@example.com",
+            "1990-04-01", "+15555550100", "John", "Doe", "male");
+
+    /**
+     * A login request that passes validation.
+     */
+    private static final LoginRequest VALID_LOGIN = new LoginRequest("jdoe", "Secret123");
+
+    /**
+     * A signup request violating every constraint.
+     */
+    private static final SignupRequest INVALID_SIGNUP = new SignupRequest("x", "not-an-email",
+            "01/04/1990", "5550100", "", "", "unknown");
+
+    /**
+     * Token triple returned by {@code login}.
+     */
+    private static final Map<String, String> TOKENS = Map.of(
+            "idToken", "stub-id-token", "accessToken", "stub-access-token", "refreshToken", "stub-refresh-token");
+
+    /**
+     * A {@code listUsers}-sized page.
+     */
+    private static final List<UserSummary> USERS = List.of(
+            new UserSummary("user1", "user1@example.com"),
+            new UserSummary("user2", "user2@example.com"),
+            new UserSummary("user3", "user3@example.com"));
+
+    /**
+     * Shared key material and stub wiring.
+     */
+    private BenchmarkFixture fixture;
+
+    /**
+     * Controller under test.
+     */
+    private AuthController controller;
+
+    /**
+     * Response writer under test.
+     */
+    private ResponseWriter responseWriter;
+
+    /**
+     * Builds the controller.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        fixture = new BenchmarkFixture();
+        controller = fixture.newController();
+        responseWriter = new ResponseWriter(AuthController.buildObjectMapper().getFactory());
+    }
+
+    /**
+     * Stops the fixture.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    /**
+     * Validates a signup request that passes every constraint.
+     */
+    @Benchmark
+    public void validateSignup() {
+        controller.validate(VALID_SIGNUP);
+    }
+
+    /**
+     * Validates a login request that passes every constraint.
+     */
+    @Benchmark
+    public void validateLogin() {
+        controller.validate(VALID_LOGIN);
+    }
+
+    /**
+     * Validates a signup request that fails every constraint.
+     *
+     * @return the joined error message
+     */
+    @Benchmark
+    public String validateInvalidSignup() {
+        try {
+            controller.validate(INVALID_SIGNUP);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * Builds a {@code login} success response.
+     *
+     * @return the response
+     */
+    @Benchmark
+    public APIGatewayProxyResponseEvent buildTokenResponse() {
+        return responseWriter.tokens(TOKENS);
+    }
+
+    /**
+     * Builds an error response.
+     *
+     * @return the response
+     */
+    @Benchmark
+    public APIGatewayProxyResponseEvent buildErrorResponse() {
+        return responseWriter.error(400, "Username is required");
+    }
+
+    /**
+     * Builds a response with a small user list.
+     *
+     * @return the response
+     * @throws IOException if the page cannot be written
+     */
+    @Benchmark
+    public APIGatewayProxyResponseEvent buildListResponse() throws IOException {
+        ResponseWriter.Body body = responseWriter.openUserPage(USERS.size());
+        for (UserSummary user : USERS) {
+            ResponseWriter.writeUser(body.generator(), user);
+        }
+        return body.finishUserPage(null);
+    }
+}
@@ -0,0 +1,77 @@
+package com.homieomie.authservice.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command-line options of the form {@code --name value}.
+ */
+final class Arguments {
+
+    /**
+     * Option values by name, without the leading dashes.
+     */
+    private final Map<String, String> values;
+
+    /**
+     * Creates the options from parsed values.
+     *
+     * @param values option values by name
+     */
+    private Arguments(Map<String, String> values) {
+        this.values = values;
+    }
+
+    /**
+     * Parses {@code --name value} pairs.
+     *
+     * @param args the command-line arguments
+     * @return the options
+     * @throws IllegalArgumentException if an argument is not a name followed by a value
+     */
+    static Arguments parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            }
+            values.put(args[i].substring(2), args[i + 1]);
+        }
+        return new Arguments(values);
+    }
+
+    /**
+     * Returns a text option.
+     *
+     * @param name     the option name
+     * @param fallback the value used when the option is absent
+     * @return the value
+     */
+    String text(String name, String fallback) {
+        return values.getOrDefault(name, fallback);
+    }
+
+    /**
+     * Returns a non-negative integer option.
+     *
+     * @param name     the option name
+     * @param fallback the value used when the option is absent
+     * @return the value
+     * @throws IllegalArgumentException if the value is not a non-negative integer
+     */
+    int number(String name, int fallback) {
+        String value = values.get(name);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= 0) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("--" + name + " must be a non-negative integer, got " + value);
+    }
+}
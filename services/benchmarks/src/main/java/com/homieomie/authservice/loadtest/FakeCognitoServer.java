@@ -0,0 +1,910 @@
+package com.homieomie.authservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.homieomie.authservice.services.SrpGroup;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for Cognito, speaking the AWS JSON 1.1 protocol the SDK
+ * uses, so the service can be load-tested without calling the real user pool.
+ * <p>
+ * Implements {@code InitiateAuth} (password, SRP and refresh token flows),
+ * {@code RespondToAuthChallenge} for the SRP {@code PASSWORD_VERIFIER}
+ * challenge, {@code AdminCreateUser}, {@code AdminSetUserPassword},
+ * {@code AdminListGroupsForUser} and {@code ListUsers}, with a prefix or
+ * equality filter on one attribute, against an in-memory pool, in which
+ * {@link #addAdmin(String)} places users in the {@code admin} group.
+ * Every call waits a fixed latency plus a random jitter before answering,
+ * and calls beyond the throttle rate are answered
+ * with {@code TooManyRequestsException}, as Cognito does when a quota is hit.
+ * The SDK is pointed at it with {@code endpointOverride}, or with
+ * {@code COGNITO_ENDPOINT} for a separately started service.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.homieomie.authservice.loadtest.FakeCognitoServer
+ * [--port 9229] [--latency-ms 30] [--jitter-ms 20] [--throttle-rps 0] [--users 1000] [--admin admin]
+ * [--pool-id us-east-1_loadtest]}. The pool ID must match the service's
+ * {@code USER_POOL_ID} for SRP logins, as it is signed into the password claim.
+ * </p>
+ */
+public final class FakeCognitoServer implements AutoCloseable {
+
+    /**
+     * Password of the users added by {@link #addUsers(int)}.
+     */
+    public static final String PASSWORD = "LoadTest123";
+
+    /**
+     * Default user pool ID, the one {@code RuntimeApiEmulator} hands the service.
+     */
+    public static final String DEFAULT_USER_POOL_ID = "us-east-1_loadtest";
+
+    /**
+     * Header naming the operation called, as {@code Service.Operation}.
+     */
+    private static final String TARGET_HEADER = "X-Amz-Target";
+
+    /**
+     * Content type of AWS JSON 1.1 requests and responses.
+     */
+    private static final String CONTENT_TYPE = "application/x-amz-json-1.1";
+
+    /**
+     * {@code ListUsers} filter on one attribute, by prefix ({@code ^=}) or equality ({@code =}).
+     */
+    private static final Pattern ATTRIBUTE_FILTER =
+            Pattern.compile("\\s*(\\w+)\\s*(\\^?=)\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*");
+
+    /**
+     * First names given to the seeded users in turn.
+     */
+    private static final List<String> GIVEN_NAMES = List.of("Ada", "Alan", "Grace", "Edsger", "Barbara", "Donald",
+            "Frances", "Ken", "Margaret", "Tony");
+
+    /**
+     * Last names given to the seeded users in turn.
+     */
+    private static final List<String> FAMILY_NAMES = List.of("Lovelace", "Turing", "Hopper", "Dijkstra", "Liskov",
+            "Knuth", "Allen", "Thompson", "Hamilton", "Hoare", "Lamport", "Kay", "Backus");
+
+    /**
+     * Page size used when {@code ListUsers} gives no limit.
+     */
+    private static final int DEFAULT_PAGE_SIZE = 60;
+
+    /**
+     * Size of the server's ephemeral SRP secret {@code b}. Shorter than a
+     * client's, since the stand-in needs no secrecy and its exponentiations
+     * share the CPU with the service under test.
+     */
+    private static final int SERVER_SECRET_BYTES = 32;
+
+    /**
+     * Size of the random {@code SECRET_BLOCK} of an SRP challenge.
+     */
+    private static final int SECRET_BLOCK_BYTES = 64;
+
+    /**
+     * Mapper reading requests and writing responses.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        // Answer with TCP_NODELAY, as Cognito does, so a small response does not wait tens of milliseconds on a
+        // delayed acknowledgement. The JDK reads the setting when the first server of the JVM is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Users of the pool, ordered by username so pages are stable.
+     */
+    private final NavigableMap<String, User> users = new ConcurrentSkipListMap<>();
+
+    /**
+     * Fixed delay before every answer.
+     */
+    private final Duration latency;
+
+    /**
+     * Largest random delay added to {@link #latency}.
+     */
+    private final Duration jitter;
+
+    /**
+     * Calls answered per second before throttling; {@code 0} never throttles.
+     */
+    private final int throttlePerSecond;
+
+    /**
+     * Executor starting one virtual thread per call, so waiting costs no thread.
+     */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Calls received.
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Calls answered with {@code TooManyRequestsException}.
+     */
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * Sequence making every issued token distinct.
+     */
+    private final AtomicLong tokenSequence = new AtomicLong();
+
+    /**
+     * SRP logins waiting for their {@code PASSWORD_VERIFIER} answer, by session.
+     */
+    private final Map<String, SrpLogin> srpLogins = new ConcurrentHashMap<>();
+
+    /**
+     * Pool name signed into SRP password claims.
+     */
+    private volatile String poolName = SrpGroup.poolName(DEFAULT_USER_POOL_ID);
+
+    /**
+     * Second of the current throttle window, in nanoseconds since an arbitrary origin.
+     */
+    private long windowStart = System.nanoTime();
+
+    /**
+     * Calls admitted in the current throttle window.
+     */
+    private int windowCalls;
+
+    /**
+     * The underlying server, set by {@link #start(int)}.
+     */
+    private HttpServer server;
+
+    /**
+     * Creates a stand-in with an empty pool.
+     *
+     * @param latency           the fixed delay before every answer
+     * @param jitter            the largest random delay added to the fixed one
+     * @param throttlePerSecond the calls answered per second before throttling, {@code 0} for no limit
+     */
+    public FakeCognitoServer(Duration latency, Duration jitter, int throttlePerSecond) {
+        this.latency = latency;
+        this.jitter = jitter;
+        this.throttlePerSecond = throttlePerSecond;
+    }
+
+    /**
+     * Starts a stand-in from the command line and keeps it running.
+     *
+     * @param args {@code --name value} options, see the class description
+     * @throws IOException if the port cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        Arguments options = Arguments.parse(args);
+        FakeCognitoServer server = new FakeCognitoServer(Duration.ofMillis(options.number("latency-ms", 30)),
+                Duration.ofMillis(options.number("jitter-ms", 20)), options.number("throttle-rps", 0));
+        server.addUsers(options.number("users", 1000));
+        server.addAdmin(options.text("admin", "admin"));
+        server.setUserPoolId(options.text("pool-id", DEFAULT_USER_POOL_ID));
+        server.start(options.number("port", 9229));
+        System.out.println("Fake Cognito listening on " + server.endpoint());
+    }
+
+    /**
+     * Adds confirmed users {@code user0}, {@code user1}... with the password
+     * {@link #PASSWORD}, each with an email address, a phone number and a
+     * first and last name drawn in turn from short lists.
+     *
+     * @param count the number of users to add
+     */
+    public void addUsers(int count) {
+        long now = System.currentTimeMillis() / 1000;
+        for (int i = 0; i < count; i++) {
+            String username = "user" + i;
+            User user = new User(username, Map.of(
+                    "email", username + "@example.com",
+                    "phone_number", String.format("+1555%07d", i),
+                    "given_name", GIVEN_NAMES.get(i % GIVEN_NAMES.size()),
+                    "family_name", FAMILY_NAMES.get(i % FAMILY_NAMES.size())), now);
+            user.password = PASSWORD;
+            user.status = "CONFIRMED";
+            users.put(username, user);
+        }
+    }
+
+    /**
+     * Adds a confirmed user with the password {@link #PASSWORD}, if not in the
+     * pool yet, and places the user in the {@code admin} group.
+     *
+     * @param username the username
+     */
+    public void addAdmin(String username) {
+        User user = users.computeIfAbsent(username, name -> {
+            User created = new User(name, Map.of("email", name + "@example.com"), System.currentTimeMillis() / 1000);
+            created.password = PASSWORD;
+            created.status = "CONFIRMED";
+            return created;
+        });
+        user.groups.add("admin");
+    }
+
+    /**
+     * Removes a user from the {@code admin} group, as an admin tool revoking access would.
+     *
+     * @param username the username
+     */
+    public void removeAdmin(String username) {
+        User user = users.get(username);
+        if (user != null) {
+            user.groups.remove("admin");
+        }
+    }
+
+    /**
+     * Sets the user pool ID whose pool name SRP password claims are signed with.
+     *
+     * @param userPoolId the user pool ID, or {@code null} for the empty pool name of a service without one
+     */
+    public void setUserPoolId(String userPoolId) {
+        poolName = userPoolId == null ? "" : SrpGroup.poolName(userPoolId);
+    }
+
+    /**
+     * Binds the loopback address and starts answering calls.
+     *
+     * @param port the port to listen on, {@code 0} for any free port
+     * @return this server
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized FakeCognitoServer start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Returns the endpoint to hand to the SDK.
+     *
+     * @return the base URI of the server
+     * @throws IllegalStateException if the server is not started
+     */
+    public synchronized URI endpoint() {
+        if (server == null) {
+            throw new IllegalStateException("Server is not started");
+        }
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * Returns the number of calls received.
+     *
+     * @return the call count
+     */
+    public long calls() {
+        return calls.sum();
+    }
+
+    /**
+     * Returns the number of calls answered with {@code TooManyRequestsException}.
+     *
+     * @return the throttled call count
+     */
+    public long throttled() {
+        return throttled.sum();
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers one call on its virtual thread.
+     *
+     * @param exchange the exchange
+     * @throws IOException if the response cannot be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.increment();
+        try (InputStream in = exchange.getRequestBody()) {
+            String target = exchange.getRequestHeaders().getFirst(TARGET_HEADER);
+            JsonNode request = MAPPER.readTree(in.readAllBytes());
+            sleep();
+            if (!admit()) {
+                throttled.increment();
+                sendError(exchange, "TooManyRequestsException", "Rate exceeded");
+                return;
+            }
+            String operation = target == null ? "" : target.substring(target.indexOf('.') + 1);
+            switch (operation) {
+                case "InitiateAuth" -> initiateAuth(exchange, request);
+                case "RespondToAuthChallenge" -> respondToAuthChallenge(exchange, request);
+                case "AdminCreateUser" -> adminCreateUser(exchange, request);
+                case "AdminSetUserPassword" -> adminSetUserPassword(exchange, request);
+                case "AdminListGroupsForUser" -> adminListGroupsForUser(exchange, request);
+                case "ListUsers" -> listUsers(exchange, request);
+                default -> sendError(exchange, "UnknownOperationException", "Unsupported operation " + target);
+            }
+        } catch (IOException e) {
+            sendError(exchange, "SerializationException", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers {@code InitiateAuth} for the password, SRP and refresh token flows.
+     *
+     * @param exchange the exchange
+     * @param request  the call body
+     * @throws IOException if the response cannot be written
+     */
+    private void initiateAuth(HttpExchange exchange, JsonNode request) throws IOException {
+        JsonNode parameters = request.path("AuthParameters");
+        String flow = request.path("AuthFlow").asText();
+        if ("USER_SRP_AUTH".equals(flow)) {
+            challengeSrp(exchange, parameters);
+            return;
+        }
+        String username;
+        boolean refresh = "REFRESH_TOKEN_AUTH".equals(flow);
+        if (refresh) {
+            String refreshToken = parameters.path("REFRESH_TOKEN").asText();
+            username = refreshToken.startsWith("fake-refresh-") ? refreshToken.substring(13) : null;
+        } else {
+            username = parameters.path("USERNAME").asText();
+            User user = users.get(username);
+            if (user == null || !parameters.path("PASSWORD").asText().equals(user.password)) {
+                username = null;
+            }
+        }
+        if (username == null) {
+            sendError(exchange, "NotAuthorizedException", "Incorrect username or password.");
+            return;
+        }
+        sendTokens(exchange, username, !refresh);
+    }
+
+    /**
+     * Starts an SRP login: answers {@code InitiateAuth} with a
+     * {@code PASSWORD_VERIFIER} challenge carrying the user's salt and the
+     * server's public value {@code B = k * v + g^b}.
+     *
+     * @param exchange   the exchange
+     * @param parameters the authentication parameters
+     * @throws IOException if the response cannot be written
+     */
+    private void challengeSrp(HttpExchange exchange, JsonNode parameters) throws IOException {
+        User user = users.get(parameters.path("USERNAME").asText());
+        BigInteger clientPublic = new BigInteger(parameters.path("SRP_A").asText("0"), 16);
+        if (clientPublic.mod(SrpGroup.N).signum() == 0) {
+            sendError(exchange, "InvalidParameterException", "Invalid SRP_A");
+            return;
+        }
+        Verifier verifier = user == null ? null : user.verifier(poolName);
+        if (verifier == null) {
+            sendError(exchange, "NotAuthorizedException", "Incorrect username or password.");
+            return;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        byte[] secret = new byte[SERVER_SECRET_BYTES];
+        random.nextBytes(secret);
+        BigInteger serverSecret = new BigInteger(1, secret);
+        BigInteger serverPublic = SrpGroup.K.multiply(verifier.value)
+                .add(SrpGroup.G.modPow(serverSecret, SrpGroup.N)).mod(SrpGroup.N);
+        byte[] secretBlock = new byte[SECRET_BLOCK_BYTES];
+        random.nextBytes(secretBlock);
+        SrpLogin login = new SrpLogin(user.username, verifier, clientPublic, serverSecret, serverPublic,
+                Base64.getEncoder().encodeToString(secretBlock));
+        String session = "fake-session-" + tokenSequence.incrementAndGet();
+        srpLogins.put(session, login);
+        ObjectNode response = MAPPER.createObjectNode()
+                .put("ChallengeName", "PASSWORD_VERIFIER")
+                .put("Session", session);
+        response.putObject("ChallengeParameters")
+                .put("SALT", verifier.salt.toString(16))
+                .put("SRP_B", serverPublic.toString(16))
+                .put("SECRET_BLOCK", login.secretBlock)
+                .put("USER_ID_FOR_SRP", user.username)
+                .put("USERNAME", user.username);
+        send(exchange, response);
+    }
+
+    /**
+     * Answers {@code RespondToAuthChallenge} for the {@code PASSWORD_VERIFIER}
+     * challenge, issuing tokens when the password claim's signature matches
+     * the one computed from the shared secret {@code S = (A * v^u)^b}.
+     *
+     * @param exchange the exchange
+     * @param request  the call body
+     * @throws IOException if the response cannot be written
+     */
+    private void respondToAuthChallenge(HttpExchange exchange, JsonNode request) throws IOException {
+        SrpLogin login = srpLogins.remove(request.path("Session").asText());
+        if (login == null || !"PASSWORD_VERIFIER".equals(request.path("ChallengeName").asText())) {
+            sendError(exchange, "NotAuthorizedException", "Invalid session for the user.");
+            return;
+        }
+        JsonNode responses = request.path("ChallengeResponses");
+        BigInteger scramble = SrpGroup.scramble(login.clientPublic, login.serverPublic);
+        BigInteger premaster = login.clientPublic.multiply(login.verifier.value.modPow(scramble, SrpGroup.N))
+                .modPow(login.serverSecret, SrpGroup.N);
+        String expected = SrpGroup.signature(SrpGroup.derivedKey(premaster, scramble), poolName, login.username,
+                login.secretBlock, responses.path("TIMESTAMP").asText());
+        if (!login.secretBlock.equals(responses.path("PASSWORD_CLAIM_SECRET_BLOCK").asText())
+                || !expected.equals(responses.path("PASSWORD_CLAIM_SIGNATURE").asText())) {
+            sendError(exchange, "NotAuthorizedException", "Incorrect username or password.");
+            return;
+        }
+        sendTokens(exchange, login.username, true);
+    }
+
+    /**
+     * Answers {@code AdminCreateUser}, refusing a username already in the pool.
+     *
+     * @param exchange the exchange
+     * @param request  the call body
+     * @throws IOException if the response cannot be written
+     */
+    private void adminCreateUser(HttpExchange exchange, JsonNode request) throws IOException {
+        Map<String, String> attributes = new LinkedHashMap<>();
+        for (JsonNode attribute : request.path("UserAttributes")) {
+            attributes.put(attribute.path("Name").asText(), attribute.path("Value").asText());
+        }
+        User user = new User(request.path("Username").asText(), attributes, System.currentTimeMillis() / 1000);
+        if (users.putIfAbsent(user.username, user) != null) {
+            sendError(exchange, "UsernameExistsException", "User account already exists");
+            return;
+        }
+        ObjectNode response = MAPPER.createObjectNode();
+        response.set("User", user.toJson(null));
+        send(exchange, response);
+    }
+
+    /**
+     * Answers {@code AdminSetUserPassword}, confirming the user when the password is permanent.
+     *
+     * @param exchange the exchange
+     * @param request  the call body
+     * @throws IOException if the response cannot be written
+     */
+    private void adminSetUserPassword(HttpExchange exchange, JsonNode request) throws IOException {
+        User user = users.get(request.path("Username").asText());
+        if (user == null) {
+            sendError(exchange, "UserNotFoundException", "User does not exist.");
+            return;
+        }
+        user.password = request.path("Password").asText();
+        if (request.path("Permanent").asBoolean()) {
+            user.status = "CONFIRMED";
+        }
+        send(exchange, MAPPER.createObjectNode());
+    }
+
+    /**
+     * Answers {@code AdminListGroupsForUser} with all of the user's groups on one page.
+     *
+     * @param exchange the exchange
+     * @param request  the call body
+     * @throws IOException if the response cannot be written
+     */
+    private void adminListGroupsForUser(HttpExchange exchange, JsonNode request) throws IOException {
+        User user = users.get(request.path("Username").asText());
+        if (user == null) {
+            sendError(exchange, "UserNotFoundException", "User does not exist.");
+            return;
+        }
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode groups = response.putArray("Groups");
+        for (String group : user.groups) {
+            groups.addObject().put("GroupName", group).put("UserPoolId", "local_fake");
+        }
+        send(exchange, response);
+    }
+
+    /**
+     * Answers {@code ListUsers} with one page in username order. The
+     * pagination token is the last username of the previous page. A filter on
+     * an attribute other than the username scans the pool.
+     *
+     * @param exchange the exchange
+     * @param request  the call body
+     * @throws IOException if the response cannot be written
+     */
+    private void listUsers(HttpExchange exchange, JsonNode request) throws IOException {
+        int limit = request.path("Limit").asInt(DEFAULT_PAGE_SIZE);
+        JsonNode projection = request.get("AttributesToGet");
+        NavigableMap<String, User> scope = users;
+        Predicate<User> matches = user -> true;
+        String filter = request.path("Filter").asText("");
+        if (!filter.isEmpty()) {
+            Matcher matcher = ATTRIBUTE_FILTER.matcher(filter);
+            if (!matcher.matches()) {
+                sendError(exchange, "InvalidParameterException", "Unsupported filter " + filter);
+                return;
+            }
+            String attribute = matcher.group(1);
+            boolean prefix = "^=".equals(matcher.group(2));
+            String value = matcher.group(3).replaceAll("\\\\(.)", "$1");
+            if ("username".equals(attribute)) {
+                scope = prefix
+                        ? users.subMap(value, true, value + Character.MAX_VALUE, false)
+                        : users.subMap(value, true, value, true);
+            } else {
+                matches = user -> {
+                    String actual = user.attributes.get(attribute);
+                    return actual != null && (prefix ? actual.startsWith(value) : actual.equals(value));
+                };
+            }
+        }
+        Iterator<User> remaining = (request.hasNonNull("PaginationToken")
+                ? scope.tailMap(request.get("PaginationToken").asText(), false).values().stream()
+                : scope.values().stream()).filter(matches).iterator();
+        ObjectNode response = MAPPER.createObjectNode();
+        ArrayNode page = response.putArray("Users");
+        String last = null;
+        while (remaining.hasNext() && page.size() < limit) {
+            User user = remaining.next();
+            page.add(user.toJson(projection));
+            last = user.username;
+        }
+        if (remaining.hasNext()) {
+            response.put("PaginationToken", last);
+        }
+        send(exchange, response);
+    }
+
+    /**
+     * Answers a successful login with newly issued tokens.
+     *
+     * @param exchange     the exchange
+     * @param username     the user logged in
+     * @param refreshToken whether to issue a refresh token too, as every flow but the refresh one does
+     * @throws IOException if the response cannot be written
+     */
+    private void sendTokens(HttpExchange exchange, String username, boolean refreshToken) throws IOException {
+        long sequence = tokenSequence.incrementAndGet();
+        ObjectNode result = MAPPER.createObjectNode()
+                .put("AccessToken", "fake-access-" + sequence)
+                .put("IdToken", "fake-id-" + sequence)
+                .put("ExpiresIn", 3600)
+                .put("TokenType", "Bearer");
+        if (refreshToken) {
+            result.put("RefreshToken", "fake-refresh-" + username);
+        }
+        ObjectNode response = MAPPER.createObjectNode();
+        response.set("AuthenticationResult", result);
+        response.putObject("ChallengeParameters");
+        send(exchange, response);
+    }
+
+    /**
+     * Waits the configured latency plus a random share of the jitter.
+     *
+     * @throws InterruptedException if the server is stopped while waiting
+     */
+    private void sleep() throws InterruptedException {
+        long nanos = latency.toNanos();
+        if (!jitter.isZero()) {
+            nanos += ThreadLocalRandom.current().nextLong(jitter.toNanos() + 1);
+        }
+        if (nanos > 0) {
+            Thread.sleep(Duration.ofNanos(nanos));
+        }
+    }
+
+    /**
+     * Admits a call unless the current one-second window is full.
+     *
+     * @return whether the call is answered rather than throttled
+     */
+    private synchronized boolean admit() {
+        if (throttlePerSecond == 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (now - windowStart >= 1_000_000_000L) {
+            windowStart = now;
+            windowCalls = 0;
+        }
+        return ++windowCalls <= throttlePerSecond;
+    }
+
+    /**
+     * Sends a successful response.
+     *
+     * @param exchange the exchange
+     * @param body     the response document
+     * @throws IOException if the response cannot be written
+     */
+    private static void send(HttpExchange exchange, JsonNode body) throws IOException {
+        write(exchange, 200, MAPPER.writeValueAsBytes(body));
+    }
+
+    /**
+     * Sends an error the way AWS JSON services do: the exception name in
+     * {@code __type} and in the {@code x-amzn-ErrorType} header.
+     *
+     * @param exchange the exchange
+     * @param type     the exception name
+     * @param message  the error message
+     * @throws IOException if the response cannot be written
+     */
+    private static void sendError(HttpExchange exchange, String type, String message) throws IOException {
+        exchange.getResponseHeaders().set("x-amzn-ErrorType", type);
+        ObjectNode body = MAPPER.createObjectNode().put("__type", type).put("message", message);
+        write(exchange, 400, MAPPER.writeValueAsBytes(body));
+    }
+
+    /**
+     * Writes a response and closes the exchange.
+     *
+     * @param exchange the exchange
+     * @param status   the HTTP status code
+     * @param body     the response body
+     * @throws IOException if the response cannot be written
+     */
+    private static void write(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.getResponseHeaders().set("x-amzn-RequestId", Long.toHexString(System.nanoTime()));
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * A user of the in-memory pool.
+     */
+    private static final class User {
+
+        /**
+         * Unique username.
+         */
+        private final String username;
+
+        /**
+         * Attribute values by name.
+         */
+        private final Map<String, String> attributes;
+
+        /**
+         * Creation time, in epoch seconds.
+         */
+        private final long created;
+
+        /**
+         * Current password, {@code null} until one is set.
+         */
+        private volatile String password;
+
+        /**
+         * Cognito account status.
+         */
+        private volatile String status = "FORCE_CHANGE_PASSWORD";
+
+        /**
+         * Names of the groups the user is in.
+         */
+        private final Set<String> groups = ConcurrentHashMap.newKeySet();
+
+        /**
+         * SRP verifier of the current password, computed on the first SRP login.
+         */
+        private volatile Verifier verifier;
+
+        /**
+         * Creates a user.
+         *
+         * @param username   the username
+         * @param attributes the attribute values by name
+         * @param created    the creation time, in epoch seconds
+         */
+        private User(String username, Map<String, String> attributes, long created) {
+            this.username = username;
+            this.attributes = attributes;
+            this.created = created;
+        }
+
+        /**
+         * Returns the SRP verifier of the user's current password, computing
+         * it with a new salt when the password has changed.
+         *
+         * @param poolName the pool name signed into the private key
+         * @return the verifier, or {@code null} if the user has no password
+         */
+        private Verifier verifier(String poolName) {
+            String current = password;
+            Verifier cached = verifier;
+            if (current == null) {
+                return null;
+            }
+            if (cached == null || !cached.password.equals(current) || !cached.poolName.equals(poolName)) {
+                byte[] bytes = new byte[16];
+                ThreadLocalRandom.current().nextBytes(bytes);
+                BigInteger salt = new BigInteger(1, bytes);
+                BigInteger privateKey = SrpGroup.privateKey(poolName, username, current, salt);
+                cached = new Verifier(poolName, current, salt, SrpGroup.G.modPow(privateKey, SrpGroup.N));
+                verifier = cached;
+            }
+            return cached;
+        }
+
+        /**
+         * Renders the user as a Cognito {@code UserType}.
+         *
+         * @param projection the attribute names to include, or {@code null} for all
+         * @return the JSON document
+         */
+        private ObjectNode toJson(JsonNode projection) {
+            ObjectNode node = MAPPER.createObjectNode()
+                    .put("Username", username)
+                    .put("Enabled", true)
+                    .put("UserStatus", status)
+                    .put("UserCreateDate", created)
+                    .put("UserLastModifiedDate", created);
+            ArrayNode array = node.putArray("Attributes");
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                if (projection == null || projection.isEmpty() || contains(projection, attribute.getKey())) {
+                    array.addObject().put("Name", attribute.getKey()).put("Value", attribute.getValue());
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Tells whether a JSON array of names holds the given one.
+         *
+         * @param names the array
+         * @param name  the name looked for
+         * @return whether the name is present
+         */
+        private static boolean contains(JsonNode names, String name) {
+            for (JsonNode candidate : names) {
+                if (name.equals(candidate.asText())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The SRP verifier {@code v = g^x} of a password, with the salt and pool
+     * name {@code x} was derived with.
+     */
+    private static final class Verifier {
+
+        /**
+         * Pool name signed into {@code x}.
+         */
+        private final String poolName;
+
+        /**
+         * Password the verifier was computed from.
+         */
+        private final String password;
+
+        /**
+         * Salt of {@code x}.
+         */
+        private final BigInteger salt;
+
+        /**
+         * The verifier {@code v}.
+         */
+        private final BigInteger value;
+
+        /**
+         * Creates a verifier.
+         *
+         * @param poolName the pool name
+         * @param password the password
+         * @param salt     the salt
+         * @param value    the verifier
+         */
+        private Verifier(String poolName, String password, BigInteger salt, BigInteger value) {
+            this.poolName = poolName;
+            this.password = password;
+            this.salt = salt;
+            this.value = value;
+        }
+    }
+
+    /**
+     * An SRP login between its challenge and the answer.
+     */
+    private static final class SrpLogin {
+
+        /**
+         * User logging in.
+         */
+        private final String username;
+
+        /**
+         * The user's verifier.
+         */
+        private final Verifier verifier;
+
+        /**
+         * The client's public value {@code A}.
+         */
+        private final BigInteger clientPublic;
+
+        /**
+         * The server's ephemeral secret {@code b}.
+         */
+        private final BigInteger serverSecret;
+
+        /**
+         * The server's public value {@code B}.
+         */
+        private final BigInteger serverPublic;
+
+        /**
+         * The challenge's {@code SECRET_BLOCK}, in base64.
+         */
+        private final String secretBlock;
+
+        /**
+         * Creates a pending login.
+         *
+         * @param username     the user logging in
+         * @param verifier     the user's verifier
+         * @param clientPublic the client's public value
+         * @param serverSecret the server's ephemeral secret
+         * @param serverPublic the server's public value
+         * @param secretBlock  the secret block, in base64
+         */
+        private SrpLogin(String username, Verifier verifier, BigInteger clientPublic, BigInteger serverSecret,
+                         BigInteger serverPublic, String secretBlock) {
+            this.username = username;
+            this.verifier = verifier;
+            this.clientPublic = clientPublic;
+            this.serverSecret = serverSecret;
+            this.serverPublic = serverPublic;
+            this.secretBlock = secretBlock;
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.homieomie.authservice.loadtest;
+
+import com.homieomie.authservice.benchmarks.BenchmarkFixture;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.services.AsyncCognitoBackend;
+import com.homieomie.authservice.services.CognitoBackend;
+import com.homieomie.authservice.services.CognitoClientFactory;
+import com.homieomie.authservice.services.CognitoService;
+import com.homieomie.authservice.services.SyncCognitoBackend;
+import com.homieomie.authservice.services.TokenVerifier;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Open-model load generator for {@code auth-service}: requests are started
+ * at a fixed arrival rate whether or not earlier ones have answered, the way
+ * independent users arrive, and a weighted mix of actions is sent.
+ * <p>
+ * Latency is measured from the moment each request was due to start rather
+ * than from when it actually started, so a stall of the service or of the
+ * generator shows up in the percentiles instead of silently lowering the
+ * offered load (coordinated omission). The service time, measured from the
+ * actual start, is reported next to it. The report also gives the achieved
+ * throughput, the status codes and this JVM's garbage collection figures.
+ * </p>
+ * <p>
+ * By default the controller runs in this process against a
+ * {@link FakeCognitoServer}, so the GC figures are those of the service (plus
+ * the generator and the fake). With {@code --target http} requests are posted
+ * to {@code --url} instead, such as a standalone server started with
+ * {@code COGNITO_ENDPOINT} pointing at a separately started fake.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.homieomie.authservice.loadtest.LoadGenerator
+ * [--rate 200] [--duration 60] [--warmup 10] [--mix login=80,signup=5,listUsers=15] [--target inprocess|http]
+ * [--backend sync|async] [--timeout-ms 15000] [--latency-ms 30] [--jitter-ms 20] [--throttle-rps 0]
+ * [--users 1000] [--url http://localhost:8080/] [--admin-token token]}.
+ * </p>
+ */
+public final class LoadGenerator {
+
+    /**
+     * Mix used when {@code --mix} is absent.
+     */
+    private static final String DEFAULT_MIX = "login=80,signup=5,listUsers=15";
+
+    /**
+     * Time in-flight requests get to finish once the last one was started.
+     */
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    /**
+     * Nanoseconds per millisecond, for reporting.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * Percentiles reported for every action.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Where the requests go.
+     */
+    private final LoadTarget target;
+
+    /**
+     * Actions sent and their bodies.
+     */
+    private final LoadMix mix;
+
+    /**
+     * Requests started per second.
+     */
+    private final int rate;
+
+    /**
+     * Time requests are sent before measuring starts.
+     */
+    private final Duration warmup;
+
+    /**
+     * Time requests are sent and measured.
+     */
+    private final Duration duration;
+
+    /**
+     * Latency from the due start time per action, in nanoseconds.
+     */
+    private final Histogram[] latencies;
+
+    /**
+     * Latency from the actual start time per action, in nanoseconds.
+     */
+    private final Histogram[] serviceTimes;
+
+    /**
+     * Measured responses by status code; {@code -1} counts requests that got no answer.
+     */
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a generator.
+     *
+     * @param target   where the requests go
+     * @param mix      the actions sent
+     * @param rate     the requests started per second
+     * @param warmup   the time requests are sent before measuring starts
+     * @param duration the time requests are sent and measured
+     */
+    LoadGenerator(LoadTarget target, LoadMix mix, int rate, Duration warmup, Duration duration) {
+        this.target = target;
+        this.mix = mix;
+        this.rate = rate;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.latencies = newHistograms(mix.actions().length);
+        this.serviceTimes = newHistograms(mix.actions().length);
+    }
+
+    /**
+     * Runs a load test from the command line and prints its report.
+     *
+     * @param args {@code --name value} options, see the class description
+     * @throws IOException if the fake Cognito server cannot be started
+     * @throws InterruptedException if interrupted while waiting for requests to finish
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Arguments options = Arguments.parse(args);
+        int users = options.number("users", 1000);
+        LoadMix mix = LoadMix.parse(options.text("mix", DEFAULT_MIX), users);
+        int rate = Math.max(1, options.number("rate", 200));
+        Duration warmup = Duration.ofSeconds(options.number("warmup", 10));
+        Duration duration = Duration.ofSeconds(Math.max(1, options.number("duration", 60)));
+        PrintStream out = System.out;
+
+        if ("http".equals(options.text("target", "inprocess"))) {
+            URI url = URI.create(options.text("url", "http://localhost:8080/"));
+            out.printf("Target: %s%n", url);
+            new LoadGenerator(LoadTarget.http(url, options.text("admin-token", null)), mix, rate, warmup, duration)
+                    .run(out);
+            return;
+        }
+
+        boolean async = "async".equals(options.text("backend", "sync"));
+        try (FakeCognitoServer cognito = new FakeCognitoServer(Duration.ofMillis(options.number("latency-ms", 30)),
+                Duration.ofMillis(options.number("jitter-ms", 20)), options.number("throttle-rps", 0));
+             BenchmarkFixture fixture = new BenchmarkFixture()) {
+            cognito.addUsers(users);
+            cognito.addAdmin("admin");
+            cognito.setUserPoolId(System.getenv("USER_POOL_ID"));
+            URI endpoint = cognito.start(0).endpoint();
+            CognitoBackend backend = async
+                    ? new AsyncCognitoBackend(CognitoClientFactory.createAsync(endpoint))
+                    : new SyncCognitoBackend(CognitoClientFactory.create(endpoint));
+            CognitoService service = new CognitoService(backend,
+                    fixture.newTokenVerifier(TokenVerifier.DEFAULT_MAX_ENTRIES));
+            AuthController controller = fixture.newController(service);
+            out.printf("Target: in-process controller, %s backend, fake Cognito at %s%n",
+                    async ? "async" : "sync", endpoint);
+            LoadTarget target = LoadTarget.inProcess(controller, fixture.adminHeaders(),
+                    options.number("timeout-ms", 15_000));
+            new LoadGenerator(target, mix, rate, warmup, duration).run(out);
+            out.printf("Fake Cognito: %d calls, %d throttled%n", cognito.calls(), cognito.throttled());
+            service.close();
+        }
+    }
+
+    /**
+     * Sends the warm-up and measured load, waits for the requests still in
+     * flight and prints the report.
+     *
+     * @param out where the report is printed
+     * @throws InterruptedException if interrupted while waiting for requests to finish
+     */
+    void run(PrintStream out) throws InterruptedException {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        ResourceUsage before = null;
+        LongAdder completed = new LongAdder();
+        AtomicLong lastCompletion = new AtomicLong(measureFrom);
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (before == null && due >= measureFrom) {
+                before = ResourceUsage.now();
+            }
+            int action = mix.pick();
+            String body = mix.body(action);
+            long scheduled = due;
+            executor.execute(() -> {
+                long began = System.nanoTime();
+                int status;
+                try {
+                    status = target.send(body);
+                } catch (Exception e) {
+                    status = -1;
+                }
+                long done = System.nanoTime();
+                if (scheduled >= measureFrom) {
+                    latencies[action].recordValue(done - scheduled);
+                    serviceTimes[action].recordValue(done - began);
+                    statuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+                    completed.increment();
+                    lastCompletion.accumulateAndGet(done, Math::max);
+                }
+            });
+        }
+        executor.shutdown();
+        boolean drained = executor.awaitTermination(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        ResourceUsage after = ResourceUsage.now();
+        double seconds = (lastCompletion.get() - measureFrom) / 1e9;
+
+        out.printf("Offered: %d req/s for %d s after a %d s warm-up%n", rate, duration.toSeconds(),
+                warmup.toSeconds());
+        out.printf("Achieved: %d responses, %.1f req/s%s%n", completed.sum(), completed.sum() / seconds,
+                drained ? "" : " (requests still in flight after " + DRAIN_TIMEOUT.toSeconds() + " s)");
+        StringBuilder codes = new StringBuilder();
+        new TreeMap<>(statuses).forEach((code, count) ->
+                codes.append(' ').append(code < 0 ? "none" : code).append('=').append(count.sum()));
+        out.println("Status:" + codes);
+        printLatencies(out);
+        if (before != null) {
+            after.printSince(before, seconds, out);
+        }
+    }
+
+    /**
+     * Prints the latency percentiles of every action.
+     *
+     * @param out where the table is printed
+     */
+    private void printLatencies(PrintStream out) {
+        out.printf("%-14s %8s %9s %9s %9s %9s %9s %12s%n", "Latency (ms)", "count", "p50", "p90", "p99",
+                "p99.9", "max", "service p99");
+        String[] actions = mix.actions();
+        Histogram all = new Histogram(3);
+        for (int i = 0; i < actions.length; i++) {
+            printRow(out, actions[i], latencies[i], serviceTimes[i]);
+            all.add(latencies[i]);
+        }
+        Histogram allService = new Histogram(3);
+        for (Histogram histogram : serviceTimes) {
+            allService.add(histogram);
+        }
+        printRow(out, "all", all, allService);
+    }
+
+    /**
+     * Prints one row of the latency table.
+     *
+     * @param out         where the row is printed
+     * @param action      the row label
+     * @param latency     the latency from the due start time
+     * @param serviceTime the latency from the actual start time
+     */
+    private static void printRow(PrintStream out, String action, Histogram latency, Histogram serviceTime) {
+        StringBuilder row = new StringBuilder(String.format("%-14s %8d", action, latency.getTotalCount()));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(" %9.2f", latency.getValueAtPercentile(percentile) / NANOS_PER_MILLI));
+        }
+        row.append(String.format(" %9.2f %12.2f", latency.getMaxValue() / NANOS_PER_MILLI,
+                serviceTime.getValueAtPercentile(99) / NANOS_PER_MILLI));
+        out.println(row);
+    }
+
+    /**
+     * Creates one auto-resizing histogram per action.
+     *
+     * @param count the number of actions
+     * @return the histograms
+     */
+    private static Histogram[] newHistograms(int count) {
+        Histogram[] histograms = new Histogram[count];
+        for (int i = 0; i < count; i++) {
+            histograms[i] = new ConcurrentHistogram(3);
+        }
+        return histograms;
+    }
+
+    /**
+     * Garbage collection and allocation figures of this JVM at one point in time.
+     */
+    private static final class ResourceUsage {
+
+        /**
+         * Collections per collector.
+         */
+        private final Map<String, Long> collections = new TreeMap<>();
+
+        /**
+         * Time spent collecting per collector, in milliseconds.
+         */
+        private final Map<String, Long> collectionMillis = new TreeMap<>();
+
+        /**
+         * Bytes allocated by all threads so far, or {@code -1} if the JVM does not tell.
+         */
+        private final long allocatedBytes;
+
+        /**
+         * Heap in use right after the last collection of each heap pool, in bytes.
+         */
+        private final long liveHeapBytes;
+
+        /**
+         * Captures the current figures.
+         */
+        private ResourceUsage() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collections.put(collector.getName(), collector.getCollectionCount());
+                collectionMillis.put(collector.getName(), collector.getCollectionTime());
+            }
+            allocatedBytes = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                    ? threads.getTotalThreadAllocatedBytes()
+                    : -1;
+            long live = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                MemoryUsage usage = pool.getCollectionUsage();
+                if (pool.getType() == MemoryType.HEAP && usage != null) {
+                    live += usage.getUsed();
+                }
+            }
+            liveHeapBytes = live;
+        }
+
+        /**
+         * Captures the current figures.
+         *
+         * @return the figures
+         */
+        private static ResourceUsage now() {
+            return new ResourceUsage();
+        }
+
+        /**
+         * Prints what changed since an earlier capture.
+         *
+         * @param before  the earlier capture
+         * @param seconds the time between both, in seconds
+         * @param out     where the figures are printed
+         */
+        private void printSince(ResourceUsage before, double seconds, PrintStream out) {
+            long totalMillis = 0;
+            for (Map.Entry<String, Long> entry : collections.entrySet()) {
+                String name = entry.getKey();
+                long millis = collectionMillis.get(name) - before.collectionMillis.getOrDefault(name, 0L);
+                totalMillis += millis;
+                out.printf("GC %-24s %6d collections %8d ms%n", name,
+                        entry.getValue() - before.collections.getOrDefault(name, 0L), millis);
+            }
+            out.printf("GC time: %.2f%% of the measured run%n", totalMillis / (seconds * 10));
+            if (allocatedBytes >= 0 && before.allocatedBytes >= 0) {
+                out.printf("Allocation rate: %.1f MB/s%n", (allocatedBytes - before.allocatedBytes) / seconds / 1e6);
+            }
+            out.printf("Heap after last collection: %.1f MB (max heap %.1f MB)%n", liveHeapBytes / 1e6,
+                    Runtime.getRuntime().maxMemory() / 1e6);
+        }
+    }
+}
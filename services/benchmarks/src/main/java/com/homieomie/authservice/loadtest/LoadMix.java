@@ -0,0 +1,141 @@
+package com.homieomie.authservice.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Weighted mix of the actions the load generator sends, and the request
+ * bodies for them.
+ * <p>
+ * {@code login}, {@code refresh} and {@code confirmSignup} pick a random user
+ * among those the fake Cognito pool was seeded with, {@code signup} creates a
+ * new user every time and {@code listUsers} asks for a page of 20 users.
+ * </p>
+ */
+final class LoadMix {
+
+    /**
+     * Actions the mix may contain.
+     */
+    private static final Set<String> ACTIONS = Set.of("login", "refresh", "signup", "confirmSignup", "listUsers");
+
+    /**
+     * Actions of the mix.
+     */
+    private final String[] actions;
+
+    /**
+     * Running total of the weights, aligned with {@link #actions}.
+     */
+    private final int[] cumulativeWeights;
+
+    /**
+     * Number of seeded users picked from.
+     */
+    private final int users;
+
+    /**
+     * Sequence making every signed-up username distinct.
+     */
+    private final AtomicLong signups = new AtomicLong();
+
+    /**
+     * Creates a mix.
+     *
+     * @param actions           the actions
+     * @param cumulativeWeights the running total of their weights
+     * @param users             the number of seeded users picked from
+     */
+    private LoadMix(String[] actions, int[] cumulativeWeights, int users) {
+        this.actions = actions;
+        this.cumulativeWeights = cumulativeWeights;
+        this.users = users;
+    }
+
+    /**
+     * Parses a mix such as {@code login=80,signup=5,listUsers=15}.
+     *
+     * @param spec  comma-separated {@code action=weight} pairs
+     * @param users the number of seeded users picked from
+     * @return the mix
+     * @throws IllegalArgumentException if an action is unknown or a weight is not a positive integer
+     */
+    static LoadMix parse(String spec, int users) {
+        List<String> actions = new ArrayList<>();
+        List<Integer> totals = new ArrayList<>();
+        int total = 0;
+        for (String part : spec.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2 || !ACTIONS.contains(pair[0])) {
+                throw new IllegalArgumentException("Expected action=weight with an action among " + ACTIONS
+                        + ", got " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight of " + pair[0] + " must be positive");
+            }
+            total += weight;
+            actions.add(pair[0]);
+            totals.add(total);
+        }
+        return new LoadMix(actions.toArray(new String[0]), totals.stream().mapToInt(Integer::intValue).toArray(),
+                Math.max(1, users));
+    }
+
+    /**
+     * Returns the actions of the mix.
+     *
+     * @return the action names
+     */
+    String[] actions() {
+        return actions.clone();
+    }
+
+    /**
+     * Picks an action according to the weights.
+     *
+     * @return the index of the action in {@link #actions()}
+     */
+    int pick() {
+        int ticket = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int index = 0;
+        while (ticket >= cumulativeWeights[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Builds a request body for an action.
+     *
+     * @param index the index of the action in {@link #actions()}
+     * @return the JSON body
+     */
+    String body(int index) {
+        String user = "user" + ThreadLocalRandom.current().nextInt(users);
+        return switch (actions[index]) {
+            case "login" -> "{\"action\":\"login\",\"username\":\"" + user + "\",\"password\":\""
+                    + FakeCognitoServer.PASSWORD + "\"}";
+            case "refresh" -> "{\"action\":\"refresh\",\"refreshToken\":\"fake-refresh-" + user + "\"}";
+            case "confirmSignup" -> "{\"action\":\"confirmSignup\",\"username\":\"" + user + "\",\"password\":\""
+                    + FakeCognitoServer.PASSWORD + "\"}";
+            case "signup" -> signupBody("load" + signups.incrementAndGet());
+            default -> "{\"action\":\"listUsers\",\"pageSize\":20}";
+        };
+    }
+
+    /**
+     * Builds the body of a signup for a new user.
+     *
+     * @param username the username
+     * @return the JSON body
+     */
+    private static String signupBody(String username) {
+        return "{\"action\":\"signup\",\"username\":\"" + username + "\",\"email\":\"" + username
+                + "@example.com\",\"birthdate\":\"1990-04-01\",\"phone_number\":\"+15555550100\","
+                + "\"first_name\":\"Load\",\"last_name\":\"Test\",\"sex\":\"male\"}";
+    }
+}
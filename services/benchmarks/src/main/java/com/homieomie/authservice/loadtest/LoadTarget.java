@@ -0,0 +1,62 @@
+package com.homieomie.authservice.loadtest;
+
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.homieomie.authservice.controllers.AuthController;
+import com.homieomie.authservice.resilience.Deadline;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+/**
+ * Where the load generator sends its requests.
+ */
+interface LoadTarget {
+
+    /**
+     * Sends one request and waits for its answer.
+     *
+     * @param body the JSON request body
+     * @return the response status code
+     * @throws Exception if no answer is received
+     */
+    int send(String body) throws Exception;
+
+    /**
+     * Routes requests through a controller in this process, the way the
+     * Lambda handler does: each request gets the function timeout, less the
+     * handler's half second for answering, as its Cognito deadline.
+     *
+     * @param controller    the controller
+     * @param headers       the headers sent with every request
+     * @param timeoutMillis the Lambda function timeout, in milliseconds
+     * @return the target
+     */
+    static LoadTarget inProcess(AuthController controller, Map<String, String> headers, long timeoutMillis) {
+        long budgetMillis = timeoutMillis - 500;
+        return body -> Deadline.within(budgetMillis, () -> controller.routeRequest(
+                new APIGatewayProxyRequestEvent().withHttpMethod("POST").withHeaders(headers).withBody(body)))
+                .getStatusCode();
+    }
+
+    /**
+     * Posts requests to a running standalone server or API Gateway stage.
+     *
+     * @param url        the URL requests are posted to
+     * @param adminToken the access token sent with every request, or {@code null} to send none
+     * @return the target
+     */
+    static LoadTarget http(URI url, String adminToken) {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        return body -> {
+            HttpRequest.Builder request = HttpRequest.newBuilder(url)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body));
+            if (adminToken != null) {
+                request.header("Authorization", "Bearer " + adminToken);
+            }
+            return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        };
+    }
+}
@@ -0,0 +1,537 @@
+package com.homieomie.authservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Local stand-in for the Lambda Runtime API, starting the {@code auth-service}
+ * custom runtime as Lambda would and reporting its cold start, latency and
+ * memory.
+ * <p>
+ * The command given with {@code --command}, normally the native
+ * {@code bootstrap} executable, is started with {@code AWS_LAMBDA_RUNTIME_API}
+ * pointing here and {@code COGNITO_ENDPOINT} pointing at a
+ * {@link FakeCognitoServer}. Startup is the time from launching the process to
+ * its first request for an invocation, which is when Lambda's init phase ends.
+ * The emulator then hands out API Gateway {@code POST /login} events one at a
+ * time, as Lambda does, and measures each from handing it out to receiving the
+ * response. The process's resident set size is read from
+ * {@code /proc/<pid>/status} after the first invocation and at the end.
+ * </p>
+ * <p>
+ * Without {@code --command} the JVM running the emulator starts
+ * {@code NativeMain} from its own class path, for comparison with the native
+ * executable, or to trace the native-image configuration by adding the
+ * tracing agent to {@code --jvm-options}.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.homieomie.authservice.loadtest.RuntimeApiEmulator
+ * [--command ../auth-service/target/bootstrap] [--jvm-options "-Xmx256m"] [--invocations 50]
+ * [--latency-ms 5] [--timeout-ms 15000] [--startup-timeout-ms 30000]}.
+ * </p>
+ */
+public final class RuntimeApiEmulator implements AutoCloseable {
+
+    /**
+     * Version prefix of every Runtime API path.
+     */
+    private static final String API_VERSION = "/2018-06-01/runtime";
+
+    /**
+     * Nanoseconds per millisecond, for reporting.
+     */
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * Mapper writing the events and reading the responses.
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Invocations waiting for the runtime to ask for them.
+     */
+    private final BlockingQueue<Invocation> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * Answers of the invocations handed out, keyed by request ID.
+     */
+    private final Map<String, CompletableFuture<Answer>> answers = new ConcurrentHashMap<>();
+
+    /**
+     * Completed with {@link System#nanoTime()} of the runtime's first request for an invocation.
+     */
+    private final CompletableFuture<Long> ready = new CompletableFuture<>();
+
+    /**
+     * Completed with the error document the runtime reports if it fails to start.
+     */
+    private final CompletableFuture<String> initError = new CompletableFuture<>();
+
+    /**
+     * Threads answering the runtime; one stays blocked while the runtime waits for an invocation.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "runtime-api");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Function timeout, from which each invocation's deadline is set.
+     */
+    private final Duration timeout;
+
+    /**
+     * HTTP server, {@code null} until started.
+     */
+    private HttpServer server;
+
+    /**
+     * Creates an emulator.
+     *
+     * @param timeout the function timeout, from which each invocation's deadline is set
+     */
+    public RuntimeApiEmulator(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Starts the runtime, sends it the invocations and prints the report.
+     *
+     * @param args {@code --name value} options, see the class description
+     * @throws IOException          if a server cannot be started or the process cannot be launched
+     * @throws InterruptedException if interrupted while waiting for the runtime
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        // small responses are otherwise held back by Nagle's algorithm, adding tens of ms per invocation
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        Arguments options = Arguments.parse(args);
+        int invocations = Math.max(1, options.number("invocations", 50));
+        Duration timeout = Duration.ofMillis(options.number("timeout-ms", 15_000));
+        Duration startupTimeout = Duration.ofMillis(options.number("startup-timeout-ms", 30_000));
+        List<String> command = commandOf(options.text("command", null), options.text("jvm-options", ""));
+
+        try (FakeCognitoServer cognito = new FakeCognitoServer(
+                Duration.ofMillis(options.number("latency-ms", 5)), Duration.ZERO, 0).start(0);
+             RuntimeApiEmulator emulator = new RuntimeApiEmulator(timeout).start(0)) {
+            cognito.addUsers(invocations);
+
+            ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+            Map<String, String> env = builder.environment();
+            env.put("AWS_LAMBDA_RUNTIME_API", emulator.runtimeApi());
+            env.put("COGNITO_ENDPOINT", cognito.endpoint().toString());
+            env.put("AWS_REGION", "us-east-1");
+            env.put("USER_POOL_ID", "us-east-1_loadtest");
+            env.put("CLIENT_ID", "loadtest-client");
+            env.put("RATE_LIMIT_ENABLED", "false");
+            env.put("METRICS_EMF", "false");
+
+            long launched = System.nanoTime();
+            Process process = builder.start();
+            try {
+                long readyAt = emulator.awaitReady(process, startupTimeout);
+                Histogram latency = new Histogram(3);
+                int failures = 0;
+
+                long firstStart = System.nanoTime();
+                boolean firstOk = emulator.login("user0");
+                long firstLatency = System.nanoTime() - firstStart;
+                MemoryUsage afterFirst = MemoryUsage.of(process.pid());
+                failures += firstOk ? 0 : 1;
+
+                for (int i = 1; i < invocations; i++) {
+                    long start = System.nanoTime();
+                    boolean ok = emulator.login("user" + i);
+                    latency.recordValue(System.nanoTime() - start);
+                    failures += ok ? 0 : 1;
+                }
+                MemoryUsage atEnd = MemoryUsage.of(process.pid());
+
+                PrintStream out = System.out;
+                out.printf("%nCommand:             %s%n", String.join(" ", command));
+                out.printf("Startup (init):      %.1f ms%n", (readyAt - launched) / NANOS_PER_MILLI);
+                out.printf("First invocation:    %.1f ms%n", firstLatency / NANOS_PER_MILLI);
+                if (latency.getTotalCount() > 0) {
+                    out.printf("Later invocations:   %d, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                            latency.getTotalCount(),
+                            latency.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                            latency.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                            latency.getMaxValue() / NANOS_PER_MILLI);
+                }
+                out.printf("Failed invocations:  %d of %d%n", failures, invocations);
+                out.printf("RSS after first:     %s%n", afterFirst);
+                out.printf("RSS at end:          %s%n", atEnd);
+                out.printf("Fake Cognito calls:  %d%n", cognito.calls());
+            } finally {
+                process.destroy();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+
+    /**
+     * Binds the loopback address and starts answering the runtime.
+     *
+     * @param port the port to listen on, {@code 0} for any free port
+     * @return this emulator
+     * @throws IOException if the port cannot be bound
+     */
+    public synchronized RuntimeApiEmulator start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext(API_VERSION, this::handle);
+        server.start();
+        return this;
+    }
+
+    /**
+     * Returns the value of {@code AWS_LAMBDA_RUNTIME_API} for the runtime.
+     *
+     * @return the {@code host:port} of the emulator
+     * @throws IllegalStateException if the emulator is not started
+     */
+    public synchronized String runtimeApi() {
+        if (server == null) {
+            throw new IllegalStateException("Emulator is not started");
+        }
+        return "127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Waits until the runtime first asks for an invocation.
+     *
+     * @param process the runtime's process
+     * @param limit   the longest time to wait
+     * @return {@link System#nanoTime()} of the first request for an invocation
+     * @throws IllegalStateException if the runtime reports an init error, exits or does not get ready in time
+     * @throws InterruptedException  if interrupted while waiting
+     */
+    public long awaitReady(Process process, Duration limit) throws InterruptedException {
+        try {
+            CompletableFuture.anyOf(ready, initError, process.onExit()).get(limit.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Runtime did not ask for an invocation within " + limit, e);
+        }
+        if (initError.isDone()) {
+            throw new IllegalStateException("Runtime failed to start: " + initError.join());
+        }
+        if (!ready.isDone()) {
+            throw new IllegalStateException("Runtime exited with status " + process.exitValue());
+        }
+        return ready.join();
+    }
+
+    /**
+     * Sends a {@code POST /login} event and waits for the answer.
+     *
+     * @param username the user signing in, with the fake pool's password
+     * @return whether the runtime answered with status {@code 200}
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean login(String username) throws InterruptedException {
+        ObjectNode event = mapper.createObjectNode()
+                .put("resource", "/login")
+                .put("path", "/login")
+                .put("httpMethod", "POST")
+                .put("body", "{\"action\":\"login\",\"username\":\"" + username + "\",\"password\":\""
+                        + FakeCognitoServer.PASSWORD + "\"}")
+                .put("isBase64Encoded", false);
+        event.putObject("headers").put("Content-Type", "application/json");
+        event.putObject("requestContext").putObject("identity").put("sourceIp", "127.0.0.1");
+
+        Answer answer;
+        try {
+            answer = invoke(mapper.writeValueAsBytes(event)).get(timeout.toMillis() + 1_000, TimeUnit.MILLISECONDS);
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return false;
+        }
+        if (answer.error) {
+            return false;
+        }
+        try {
+            return mapper.readTree(answer.body).path("statusCode").asInt() == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Queues an invocation for the runtime.
+     *
+     * @param event the event document
+     * @return a future of the runtime's answer
+     */
+    public CompletableFuture<Answer> invoke(byte[] event) {
+        String requestId = UUID.randomUUID().toString();
+        CompletableFuture<Answer> answer = new CompletableFuture<>();
+        answers.put(requestId, answer);
+        pending.add(new Invocation(requestId, event));
+        return answer;
+    }
+
+    /**
+     * Stops the server and its threads.
+     */
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Answers one Runtime API call.
+     *
+     * @param exchange the HTTP exchange
+     * @throws IOException if the exchange fails
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath().substring(API_VERSION.length());
+            String method = exchange.getRequestMethod();
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+
+            if ("GET".equals(method) && "/invocation/next".equals(path)) {
+                ready.complete(System.nanoTime());
+                Invocation invocation;
+                try {
+                    invocation = pending.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.sendResponseHeaders(500, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Lambda-Runtime-Aws-Request-Id", invocation.requestId);
+                exchange.getResponseHeaders().set("Lambda-Runtime-Deadline-Ms",
+                        Long.toString(System.currentTimeMillis() + timeout.toMillis()));
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, invocation.event.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(invocation.event);
+                }
+                return;
+            }
+            if ("POST".equals(method) && "/init/error".equals(path)) {
+                initError.complete(new String(body, StandardCharsets.UTF_8));
+                exchange.sendResponseHeaders(202, -1);
+                return;
+            }
+            if ("POST".equals(method) && path.startsWith("/invocation/")) {
+                String[] parts = path.split("/");
+                CompletableFuture<Answer> answer = parts.length == 4 ? answers.remove(parts[2]) : null;
+                if (answer != null && ("response".equals(parts[3]) || "error".equals(parts[3]))) {
+                    answer.complete(new Answer("error".equals(parts[3]), body));
+                    exchange.sendResponseHeaders(202, -1);
+                    return;
+                }
+            }
+            exchange.sendResponseHeaders(404, -1);
+        }
+    }
+
+    /**
+     * Builds the runtime's command line.
+     *
+     * @param command    the command given with {@code --command}, split on whitespace, or {@code null}
+     * @param jvmOptions JVM options for the default command, split on whitespace
+     * @return the command line; by default this JVM running {@code NativeMain} from this class path
+     */
+    static List<String> commandOf(String command, String jvmOptions) {
+        if (command != null && !command.isBlank()) {
+            return Arrays.asList(command.trim().split("\\s+"));
+        }
+        List<String> line = new ArrayList<>();
+        line.add(ProcessHandle.current().info().command().orElse("java"));
+        if (!jvmOptions.isBlank()) {
+            line.addAll(Arrays.asList(jvmOptions.trim().split("\\s+")));
+        }
+        line.add("-cp");
+        line.add(System.getProperty("java.class.path"));
+        line.add("com.homieomie.authservice.NativeMain");
+        return line;
+    }
+
+    /**
+     * An invocation waiting to be handed out.
+     */
+    private static final class Invocation {
+
+        /**
+         * Request ID the runtime answers under.
+         */
+        private final String requestId;
+
+        /**
+         * Event document.
+         */
+        private final byte[] event;
+
+        /**
+         * Creates an invocation.
+         *
+         * @param requestId the request ID
+         * @param event     the event document
+         */
+        private Invocation(String requestId, byte[] event) {
+            this.requestId = requestId;
+            this.event = event;
+        }
+    }
+
+    /**
+     * What the runtime posted for an invocation.
+     */
+    public static final class Answer {
+
+        /**
+         * Whether it was posted as an invocation error.
+         */
+        private final boolean error;
+
+        /**
+         * Response or error document.
+         */
+        private final byte[] body;
+
+        /**
+         * Creates an answer.
+         *
+         * @param error whether it was posted as an invocation error
+         * @param body  the response or error document
+         */
+        private Answer(boolean error, byte[] body) {
+            this.error = error;
+            this.body = body;
+        }
+
+        /**
+         * Tells whether the runtime reported an invocation error.
+         *
+         * @return {@code true} for an invocation error
+         */
+        public boolean isError() {
+            return error;
+        }
+
+        /**
+         * Returns the response or error document.
+         *
+         * @return the document the runtime posted
+         */
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * Resident memory of a process, as the kernel reports it.
+     */
+    static final class MemoryUsage {
+
+        /**
+         * Current resident set size in kB, or {@code -1} if unknown.
+         */
+        private final long residentKb;
+
+        /**
+         * Peak resident set size in kB, or {@code -1} if unknown.
+         */
+        private final long peakKb;
+
+        /**
+         * Creates a reading.
+         *
+         * @param residentKb the current resident set size in kB
+         * @param peakKb     the peak resident set size in kB
+         */
+        private MemoryUsage(long residentKb, long peakKb) {
+            this.residentKb = residentKb;
+            this.peakKb = peakKb;
+        }
+
+        /**
+         * Reads {@code VmRSS} and {@code VmHWM} from {@code /proc/<pid>/status}.
+         *
+         * @param pid the process ID
+         * @return the reading, with unknown values where {@code /proc} is not available
+         */
+        static MemoryUsage of(long pid) {
+            long resident = -1;
+            long peak = -1;
+            try {
+                for (String line : Files.readAllLines(Path.of("/proc", Long.toString(pid), "status"))) {
+                    if (line.startsWith("VmRSS:")) {
+                        resident = kilobytes(line);
+                    } else if (line.startsWith("VmHWM:")) {
+                        peak = kilobytes(line);
+                    }
+                }
+            } catch (IOException e) {
+                // not Linux, or the process is gone: reported as unknown
+            }
+            return new MemoryUsage(resident, peak);
+        }
+
+        /**
+         * Parses the size of a {@code /proc/<pid>/status} line such as {@code VmRSS:  51200 kB}.
+         *
+         * @param line the line
+         * @return the size in kB, or {@code -1} if malformed
+         */
+        private static long kilobytes(String line) {
+            String[] fields = line.trim().split("\\s+");
+            try {
+                return fields.length >= 2 ? Long.parseLong(fields[1]) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Formats the reading in MB.
+         *
+         * @return the current and peak resident set size
+         */
+        @Override
+        public String toString() {
+            if (residentKb < 0) {
+                return "unknown";
+            }
+            return String.format("%.1f MB (peak %.1f MB)", residentKb / 1024.0, peakKb / 1024.0);
+        }
+    }
+}
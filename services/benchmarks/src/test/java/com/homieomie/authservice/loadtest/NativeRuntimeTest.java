@@ -0,0 +1,109 @@
+package com.homieomie.authservice.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the {@code auth-service} custom runtime against the
+ * {@link RuntimeApiEmulator} and a {@link FakeCognitoServer}, checking that it
+ * serves invocations and reporting its startup time and resident memory.
+ * <p>
+ * The native executable is taken from the {@code native.bootstrap} system
+ * property, by default {@code ../auth-service/target/bootstrap} as built by
+ * {@code mvn -Pnative package}; its test is skipped when there is none, as on
+ * machines without GraalVM. The same runtime on this JVM is always tested,
+ * so the runtime loop and the emulator are checked either way.
+ * </p>
+ */
+class NativeRuntimeTest {
+
+    /**
+     * Invocations sent to the runtime.
+     */
+    private static final int INVOCATIONS = 10;
+
+    /**
+     * Longest the native executable may take to ask for its first invocation.
+     */
+    private static final Duration NATIVE_STARTUP_LIMIT = Duration.ofSeconds(1);
+
+    /**
+     * Longest the JVM runtime may take to ask for its first invocation.
+     */
+    private static final Duration JVM_STARTUP_LIMIT = Duration.ofSeconds(30);
+
+    /**
+     * The native executable starts within a second, answers every
+     * invocation, and reports its startup time and RSS.
+     */
+    @Test
+    void nativeExecutableServesInvocations() throws Exception {
+        Path bootstrap = Path.of(System.getProperty("native.bootstrap", "../auth-service/target/bootstrap"));
+        assumeTrue(Files.isExecutable(bootstrap), "No native executable at " + bootstrap + "; build it with "
+                + "mvn -Pnative package in auth-service");
+
+        long startupNanos = serve("native", List.of(bootstrap.toAbsolutePath().toString()), NATIVE_STARTUP_LIMIT);
+
+        assertThat(Duration.ofNanos(startupNanos)).isLessThan(NATIVE_STARTUP_LIMIT);
+    }
+
+    /**
+     * The runtime started on this JVM answers every invocation.
+     */
+    @Test
+    void jvmRuntimeServesInvocations() throws Exception {
+        serve("jvm", RuntimeApiEmulator.commandOf(null, ""), JVM_STARTUP_LIMIT);
+    }
+
+    /**
+     * Starts a runtime, signs in {@link #INVOCATIONS} users through it and
+     * prints its startup time and resident memory.
+     *
+     * @param label   the name of the runtime in the report
+     * @param command the command starting the runtime
+     * @param limit   the longest the runtime may take to ask for its first invocation
+     * @return the startup time in nanoseconds
+     * @throws Exception if a server cannot be started or the runtime fails
+     */
+    private static long serve(String label, List<String> command, Duration limit) throws Exception {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        try (FakeCognitoServer cognito = new FakeCognitoServer(Duration.ZERO, Duration.ZERO, 0).start(0);
+             RuntimeApiEmulator emulator = new RuntimeApiEmulator(Duration.ofSeconds(15)).start(0)) {
+            cognito.addUsers(INVOCATIONS);
+            ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+            Map<String, String> env = builder.environment();
+            env.put("AWS_LAMBDA_RUNTIME_API", emulator.runtimeApi());
+            env.put("COGNITO_ENDPOINT", cognito.endpoint().toString());
+            env.put("AWS_REGION", "us-east-1");
+            env.put("USER_POOL_ID", "us-east-1_loadtest");
+            env.put("CLIENT_ID", "loadtest-client");
+            env.put("RATE_LIMIT_ENABLED", "false");
+            env.put("METRICS_EMF", "false");
+
+            long launched = System.nanoTime();
+            Process process = builder.start();
+            try {
+                long startupNanos = emulator.awaitReady(process, limit) - launched;
+                for (int i = 0; i < INVOCATIONS; i++) {
+                    assertThat(emulator.login("user" + i)).as("login of user%d", i).isTrue();
+                }
+                RuntimeApiEmulator.MemoryUsage memory = RuntimeApiEmulator.MemoryUsage.of(process.pid());
+                System.out.printf("%s runtime: startup %.1f ms, RSS %s%n", label, startupNanos / 1_000_000.0, memory);
+                return startupNanos;
+            } finally {
+                process.destroy();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+    }
+}